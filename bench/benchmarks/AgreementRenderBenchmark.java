@@ -0,0 +1,41 @@
+package benchmarks;
+
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Latency and allocation of rendering an agreement with RentalAgreement.generateAgreement.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Benchmark)
+public class AgreementRenderBenchmark {
+
+    private Object agreement;
+
+    @Setup
+    public void setUp() throws Throwable {
+        Object tool = (Object) ToolRental.NEW_TOOL.invokeExact((Object) "JAKR", (Object) "Jackhammer", (Object) "Ridgid");
+        agreement = (Object) ToolRental.NEW_RENTAL_AGREEMENT.invokeExact(tool, 9, 50,
+                (Object) LocalDate.of(2024, 12, 24), ToolRental.calculationMode("PREFIX_SUM"));
+    }
+
+    @Benchmark
+    public Object generateAgreement() throws Throwable {
+        return (Object) ToolRental.GENERATE_AGREEMENT.invokeExact(agreement);
+    }
+}
@@ -0,0 +1,58 @@
+package benchmarks;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Bulk quoting throughput through BatchCheckout, reported in quotes per second.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BatchCheckoutBenchmark {
+
+    static final int BATCH_SIZE = 100_000;
+
+    private Object batchCheckout;
+    private List<Object> requests;
+
+    @Setup
+    public void setUp() throws Throwable {
+        Object[] tools = {
+            (Object) ToolRental.NEW_TOOL.invokeExact((Object) "LADW", (Object) "Ladder", (Object) "Werner"),
+            (Object) ToolRental.NEW_TOOL.invokeExact((Object) "CHNS", (Object) "Chainsaw", (Object) "Stihl"),
+            (Object) ToolRental.NEW_TOOL.invokeExact((Object) "JAKR", (Object) "Jackhammer", (Object) "Ridgid")
+        };
+        LocalDate start = LocalDate.of(2024, 1, 1);
+        requests = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            requests.add((Object) ToolRental.NEW_CHECKOUT_REQUEST.invokeExact(tools[i % tools.length],
+                    1 + i % 60, i % 101, (Object) start.plusDays(i % 730)));
+        }
+        Object checkout = (Object) ToolRental.NEW_CHECKOUT.invokeExact();
+        batchCheckout = (Object) ToolRental.NEW_BATCH_CHECKOUT.invokeExact(checkout);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public Object checkoutAll() throws Throwable {
+        return (Object) ToolRental.CHECKOUT_ALL.invokeExact(batchCheckout, (Object) requests);
+    }
+}
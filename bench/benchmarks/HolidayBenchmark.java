@@ -0,0 +1,69 @@
+package benchmarks;
+
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Holiday lookups and quotes over the holiday-dense window from late June to early September,
+ * which contains both Independence Day (and its observed day) and Labor Day.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Benchmark)
+public class HolidayBenchmark {
+
+    // 2020 observes July 4th on Friday the 3rd, 2021 on Monday the 5th, 2024 on the day itself
+    @Param({"2020", "2021", "2024"})
+    int year;
+
+    private LocalDate[] window;
+    private Object chainsaw;
+    private Object mode;
+
+    @Setup
+    public void setUp() throws Throwable {
+        LocalDate start = LocalDate.of(year, 6, 20);
+        LocalDate end = LocalDate.of(year, 9, 10);
+        window = start.datesUntil(end).toArray(LocalDate[]::new);
+        chainsaw = (Object) ToolRental.NEW_TOOL.invokeExact((Object) "CHNS", (Object) "Chainsaw", (Object) "Stihl");
+        mode = ToolRental.calculationMode("PREFIX_SUM");
+    }
+
+    @Benchmark
+    public int isHolidayAcrossWindow() throws Throwable {
+        int holidays = 0;
+        for (LocalDate date : window) {
+            if ((boolean) ToolRental.IS_HOLIDAY.invokeExact(date)) {
+                holidays++;
+            }
+        }
+        return holidays;
+    }
+
+    @Benchmark
+    public int weeklyQuotesAcrossWindow() throws Throwable {
+        int quotes = 0;
+        for (LocalDate date : window) {
+            Object agreement = (Object) ToolRental.NEW_RENTAL_AGREEMENT.invokeExact(chainsaw, 7, 0, (Object) date, mode);
+            if (agreement != null) {
+                quotes++;
+            }
+        }
+        return quotes;
+    }
+}
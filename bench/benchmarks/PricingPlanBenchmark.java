@@ -0,0 +1,73 @@
+package benchmarks;
+
+import java.time.LocalDate;
+import java.time.MonthDay;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Single-quote latency of PricingEngine.calculate with a compiled PricingPlan, against the
+ * number of active rules. Zero rules is the flat daily rate engine without a plan.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Benchmark)
+public class PricingPlanBenchmark {
+
+    private static final String[] TOOL_TYPES = {"Ladder", "Chainsaw", "Jackhammer"};
+
+    @Param({"0", "12", "48"})
+    int ruleCount;
+
+    @Param({"7", "30"})
+    int rentalDays;
+
+    private Object engine;
+    private Object tool;
+    private LocalDate checkoutDate;
+
+    @Setup
+    public void setUp() throws Throwable {
+        // A mix of weekly and monthly caps, month-long seasons and fortnight promotions
+        List<Object> rules = new ArrayList<>();
+        for (int i = 0; i < ruleCount; i++) {
+            String toolType = i % 4 == 3 ? null : TOOL_TYPES[i % TOOL_TYPES.length];
+            switch (i % 3) {
+                case 0 -> rules.add((Object) ToolRental.RATE_CAP.invokeExact((Object) toolType, i % 2 == 0 ? 7 : 30,
+                        (Object) ToolRental.MONEY_OF_CENTS.invokeExact(1000L + i * 100L)));
+                case 1 -> rules.add((Object) ToolRental.SEASONAL_SURCHARGE.invokeExact((Object) toolType,
+                        (Object) MonthDay.of(1 + i % 12, 1), (Object) MonthDay.of(1 + (i + 1) % 12, 15), 5 + i % 20));
+                default -> rules.add((Object) ToolRental.PROMOTION.invokeExact((Object) toolType,
+                        (Object) LocalDate.of(2024, 1, 1).plusDays(i * 7L),
+                        (Object) LocalDate.of(2024, 1, 14).plusDays(i * 7L), 5));
+            }
+        }
+        Object toolTypes = (Object) ToolRental.GET_SNAPSHOT.invokeExact((Object) ToolRental.BUILT_IN_TOOL_TYPES.invokeExact());
+        Object plan = ruleCount == 0 ? null
+                : (Object) ToolRental.COMPILE_PRICING_PLAN.invokeExact((Object) rules, toolTypes, 2000, 2040);
+        engine = (Object) ToolRental.NEW_PRICING_ENGINE.invokeExact(ToolRental.calculationMode("PREFIX_SUM"), plan);
+        tool = (Object) ToolRental.NEW_TOOL.invokeExact((Object) "CHNS", (Object) "Chainsaw", (Object) "Stihl");
+        checkoutDate = LocalDate.of(2024, 6, 28);
+    }
+
+    @Benchmark
+    public Object quote() throws Throwable {
+        return (Object) ToolRental.CALCULATE.invokeExact(engine, tool, rentalDays, 10, (Object) checkoutDate);
+    }
+}
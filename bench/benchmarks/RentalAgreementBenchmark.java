@@ -0,0 +1,54 @@
+package benchmarks;
+
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Single-quote latency of the RentalAgreement constructor (due date and charge calculation)
+ * across rental lengths, for both calculation modes.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Benchmark)
+public class RentalAgreementBenchmark {
+
+    @Param({"1", "7", "30", "365"})
+    int rentalDays;
+
+    @Param({"DAY_BY_DAY", "PREFIX_SUM"})
+    String mode;
+
+    @Param({"Ladder", "Chainsaw", "Jackhammer"})
+    String toolType;
+
+    private Object tool;
+    private Object calculationMode;
+    private LocalDate checkoutDate;
+
+    @Setup
+    public void setUp() throws Throwable {
+        tool = (Object) ToolRental.NEW_TOOL.invokeExact((Object) "BNCH", (Object) toolType, (Object) "Bench");
+        calculationMode = ToolRental.calculationMode(mode);
+        checkoutDate = LocalDate.of(2024, 6, 28);
+    }
+
+    @Benchmark
+    public Object quote() throws Throwable {
+        return (Object) ToolRental.NEW_RENTAL_AGREEMENT.invokeExact(tool, rentalDays, 10, (Object) checkoutDate, calculationMode);
+    }
+}
@@ -0,0 +1,74 @@
+package benchmarks;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Latency of a cheapest-window search for 5-day jackhammer rentals over a 365-day horizon,
+ * against the number of jackhammers in the catalog and how booked they are. At 90% every unit
+ * is reserved for most of the horizon, so most windows fail the availability check.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Benchmark)
+public class RentalWindowSearchBenchmark {
+
+    @Param({"100", "5000"})
+    int toolCount;
+
+    @Param({"0", "90"})
+    int bookedPercent;
+
+    private Object search;
+    private LocalDate earliestStart;
+
+    @Setup
+    public void setUp() throws Throwable {
+        earliestStart = LocalDate.of(2024, 1, 1);
+        Random random = new Random(22);
+        List<Object> tools = new ArrayList<>();
+        Object inventory = (Object) ToolRental.NEW_INVENTORY.invokeExact();
+        for (int i = 0; i < toolCount; i++) {
+            String code = String.format("J%05d", i);
+            tools.add((Object) ToolRental.NEW_TOOL.invokeExact((Object) code, (Object) "Jackhammer", (Object) "Ridgid"));
+            ToolRental.ADD_TOOL.invokeExact(inventory, (Object) code, 1);
+            // Back-to-back bookings with short gaps until the booked share of the horizon is reached
+            LocalDate day = earliestStart.plusDays(random.nextInt(10));
+            while (day.isBefore(earliestStart.plusDays(365L * bookedPercent / 100))) {
+                LocalDate last = day.plusDays(3 + random.nextInt(20));
+                Object reservation = (Object) ToolRental.RESERVE.invokeExact(inventory, (Object) code, (Object) day,
+                        (Object) last);
+                day = last.plusDays(1 + random.nextInt(3));
+            }
+        }
+        Object catalog = (Object) ToolRental.NEW_TOOL_CATALOG.invokeExact((Object) tools);
+        Object engine = (Object) ToolRental.NEW_PRICING_ENGINE.invokeExact(ToolRental.calculationMode("PREFIX_SUM"),
+                (Object) null);
+        Object calendar = (Object) ToolRental.FOR_REGION.invokeExact((Object) "US");
+        search = (Object) ToolRental.NEW_RENTAL_WINDOW_SEARCH.invokeExact(catalog, engine, calendar, inventory);
+    }
+
+    @Benchmark
+    public Object findCheapest() throws Throwable {
+        return (Object) ToolRental.FIND_CHEAPEST.invokeExact(search, (Object) "Jackhammer", 5, 10,
+                (Object) earliestStart, 365, 10);
+    }
+}
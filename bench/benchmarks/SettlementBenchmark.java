@@ -0,0 +1,82 @@
+package benchmarks;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * An end-of-day settlement of returns, a quarter of them late by up to a month: settled one at
+ * a time against the calendar, or as one batch grouped by tool type, with and without writing
+ * the batch as CSV.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Benchmark)
+public class SettlementBenchmark {
+
+    private static final String[][] TOOLS = {
+        {"LADW", "Ladder", "Werner"}, {"CHNS", "Chainsaw", "Stihl"}, {"JAKD", "Jackhammer", "DeWalt"}
+    };
+
+    @Param({"20000"})
+    int returnCount;
+
+    private Object engine;
+    private List<Object> returns;
+
+    @Setup
+    public void setUp() throws Throwable {
+        Random random = new Random(24);
+        Object mode = ToolRental.calculationMode("PREFIX_SUM");
+        Object[] tools = new Object[TOOLS.length];
+        for (int i = 0; i < TOOLS.length; i++) {
+            tools[i] = (Object) ToolRental.NEW_TOOL.invokeExact((Object) TOOLS[i][0], (Object) TOOLS[i][1], (Object) TOOLS[i][2]);
+        }
+        returns = new ArrayList<>(returnCount);
+        for (int i = 0; i < returnCount; i++) {
+            Object agreement = (Object) ToolRental.NEW_RENTAL_AGREEMENT.invokeExact(tools[random.nextInt(tools.length)],
+                    1 + random.nextInt(14), 10, (Object) LocalDate.of(2024, 1, 1).plusDays(random.nextInt(300)), mode);
+            LocalDate dueDate = (LocalDate) (Object) ToolRental.GET_DUE_DATE.invokeExact(agreement);
+            LocalDate returnDate = random.nextInt(4) == 0 ? dueDate.plusDays(1 + random.nextInt(30)) : dueDate;
+            returns.add((Object) ToolRental.NEW_RENTAL_RETURN.invokeExact(agreement, (Object) returnDate));
+        }
+        engine = (Object) ToolRental.NEW_SETTLEMENT_ENGINE.invokeExact();
+    }
+
+    @Benchmark
+    public Object settleOneAtATime() throws Throwable {
+        List<Object> settlements = new ArrayList<>(returns.size());
+        for (Object rentalReturn : returns) {
+            settlements.add((Object) ToolRental.SETTLE.invokeExact(engine, rentalReturn));
+        }
+        return settlements;
+    }
+
+    @Benchmark
+    public Object settleAll() throws Throwable {
+        return (Object) ToolRental.SETTLE_BATCH.invokeExact(engine, (Object) returns);
+    }
+
+    @Benchmark
+    public Object settleAllAsCsv() throws Throwable {
+        StringBuilder out = new StringBuilder();
+        return (Object) ToolRental.SETTLE_ALL.invokeExact(engine, (Object) returns, (Object) out);
+    }
+}
@@ -0,0 +1,204 @@
+package benchmarks;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.time.LocalDate;
+import java.time.MonthDay;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * The ToolRental class gives the benchmarks access to the application classes.
+ *
+ * JMH refuses benchmark classes in the default package, and a named package cannot refer to
+ * default-package types by name, so the benchmarks reach the application through method handles.
+ * The handles are static final constants, which the JIT inlines just like direct calls.
+ */
+final class ToolRental {
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.publicLookup();
+
+    static final Class<?> TOOL = load("Tool");
+    static final Class<?> I_TOOL = load("ITool");
+    static final Class<?> RENTAL_AGREEMENT = load("RentalAgreement");
+    static final Class<?> CALCULATION_MODE = load("RentalAgreement$CalculationMode");
+    static final Class<?> CHECKOUT = load("Checkout");
+    static final Class<?> CHECKOUT_REQUEST = load("CheckoutRequest");
+    static final Class<?> BATCH_CHECKOUT = load("BatchCheckout");
+    static final Class<?> MONEY = load("Money");
+    static final Class<?> PRICING_RULE = load("PricingRule");
+    static final Class<?> PRICING_PLAN = load("PricingPlan");
+    static final Class<?> PRICING_ENGINE = load("PricingEngine");
+    static final Class<?> TOOL_TYPE_REGISTRY = load("ToolTypeRegistry");
+    static final Class<?> TOOL_TYPE_SNAPSHOT = load("ToolTypeRegistry$Snapshot");
+    static final Class<?> TOOL_CATALOG = load("ToolCatalog");
+    static final Class<?> INVENTORY = load("Inventory");
+    static final Class<?> HOLIDAY_CALENDAR = load("HolidayCalendar");
+    static final Class<?> RENTAL_WINDOW_SEARCH = load("RentalWindowSearch");
+    static final Class<?> RENTAL_RETURN = load("RentalReturn");
+    static final Class<?> SETTLEMENT_ENGINE = load("SettlementEngine");
+
+    /** (String code, String type, String brand) -> Tool */
+    static final MethodHandle NEW_TOOL = constructor(TOOL, String.class, String.class, String.class);
+
+    /** (ITool tool, int rentalDays, int discountPercent, LocalDate checkoutDate, CalculationMode mode) -> RentalAgreement */
+    static final MethodHandle NEW_RENTAL_AGREEMENT = constructor(RENTAL_AGREEMENT,
+            I_TOOL, int.class, int.class, LocalDate.class, CALCULATION_MODE);
+
+    /** (RentalAgreement) -> String */
+    static final MethodHandle GENERATE_AGREEMENT = virtual(RENTAL_AGREEMENT, "generateAgreement",
+            MethodType.methodType(String.class));
+
+    /** (RentalAgreement) -> LocalDate */
+    static final MethodHandle GET_DUE_DATE = virtual(RENTAL_AGREEMENT, "getDueDate",
+            MethodType.methodType(LocalDate.class));
+
+    /** (LocalDate) -> boolean */
+    static final MethodHandle IS_HOLIDAY = statics(load("Holiday"), "isHoliday",
+            MethodType.methodType(boolean.class, LocalDate.class));
+
+    /** (ITool tool, int rentalDayCount, int discountPercent, LocalDate checkoutDate) -> CheckoutRequest */
+    static final MethodHandle NEW_CHECKOUT_REQUEST = constructor(CHECKOUT_REQUEST,
+            I_TOOL, int.class, int.class, LocalDate.class);
+
+    /** (Checkout) -> BatchCheckout */
+    static final MethodHandle NEW_BATCH_CHECKOUT = constructor(BATCH_CHECKOUT, CHECKOUT);
+
+    /** () -> Checkout */
+    static final MethodHandle NEW_CHECKOUT = constructor(CHECKOUT);
+
+    /** (BatchCheckout, List) -> List */
+    static final MethodHandle CHECKOUT_ALL = virtual(BATCH_CHECKOUT, "checkoutAll",
+            MethodType.methodType(List.class, List.class));
+
+    /** (long cents) -> Money */
+    static final MethodHandle MONEY_OF_CENTS = factory(MONEY, "ofCents", MONEY, long.class);
+
+    /** (String toolType, int periodDays, Money cap) -> PricingRule */
+    static final MethodHandle RATE_CAP = factory(PRICING_RULE, "rateCap", PRICING_RULE,
+            String.class, int.class, MONEY);
+
+    /** (String toolType, MonthDay first, MonthDay last, int percent) -> PricingRule */
+    static final MethodHandle SEASONAL_SURCHARGE = factory(PRICING_RULE, "seasonalSurcharge", PRICING_RULE,
+            String.class, MonthDay.class, MonthDay.class, int.class);
+
+    /** (String toolType, LocalDate first, LocalDate last, int percent) -> PricingRule */
+    static final MethodHandle PROMOTION = factory(PRICING_RULE, "promotion", PRICING_RULE,
+            String.class, LocalDate.class, LocalDate.class, int.class);
+
+    /** () -> ToolTypeRegistry */
+    static final MethodHandle BUILT_IN_TOOL_TYPES = factory(TOOL_TYPE_REGISTRY, "builtIn", TOOL_TYPE_REGISTRY);
+
+    /** (ToolTypeRegistry) -> ToolTypeRegistry.Snapshot */
+    static final MethodHandle GET_SNAPSHOT = virtual(TOOL_TYPE_REGISTRY, "getSnapshot",
+            MethodType.methodType(TOOL_TYPE_SNAPSHOT));
+
+    /** (List rules, ToolTypeRegistry.Snapshot toolTypes, int firstYear, int lastYear) -> PricingPlan */
+    static final MethodHandle COMPILE_PRICING_PLAN = factory(PRICING_PLAN, "compile", PRICING_PLAN,
+            List.class, TOOL_TYPE_SNAPSHOT, int.class, int.class);
+
+    /** (CalculationMode mode, PricingPlan plan) -> PricingEngine */
+    static final MethodHandle NEW_PRICING_ENGINE = constructor(PRICING_ENGINE, CALCULATION_MODE, PRICING_PLAN);
+
+    /** (PricingEngine, ITool tool, int rentalDays, int discountPercent, LocalDate checkoutDate) -> RentalCharges */
+    static final MethodHandle CALCULATE = virtual(PRICING_ENGINE, "calculate",
+            MethodType.methodType(load("RentalCharges"), I_TOOL, int.class, int.class, LocalDate.class));
+
+    /** (Collection tools) -> ToolCatalog */
+    static final MethodHandle NEW_TOOL_CATALOG = constructor(TOOL_CATALOG, Collection.class);
+
+    /** () -> Inventory */
+    static final MethodHandle NEW_INVENTORY = constructor(INVENTORY);
+
+    /** (Inventory, String toolCode, int units) -> void */
+    static final MethodHandle ADD_TOOL = virtual(INVENTORY, "addTool",
+            MethodType.methodType(void.class, String.class, int.class));
+
+    /** (Inventory, String toolCode, LocalDate firstDay, LocalDate lastDay) -> Inventory.Reservation */
+    static final MethodHandle RESERVE = virtual(INVENTORY, "reserve",
+            MethodType.methodType(load("Inventory$Reservation"), String.class, LocalDate.class, LocalDate.class));
+
+    /** (String region) -> HolidayCalendar */
+    static final MethodHandle FOR_REGION = factory(HOLIDAY_CALENDAR, "forRegion", HOLIDAY_CALENDAR, String.class);
+
+    /** (ToolCatalog, PricingEngine, HolidayCalendar, Inventory) -> RentalWindowSearch */
+    static final MethodHandle NEW_RENTAL_WINDOW_SEARCH = constructor(RENTAL_WINDOW_SEARCH,
+            TOOL_CATALOG, PRICING_ENGINE, HOLIDAY_CALENDAR, INVENTORY);
+
+    /** (RentalWindowSearch, String toolType, int rentalDays, int discountPercent, LocalDate earliestStart,
+     *  int horizonDays, int limit) -> List */
+    static final MethodHandle FIND_CHEAPEST = virtual(RENTAL_WINDOW_SEARCH, "findCheapest",
+            MethodType.methodType(List.class, String.class, int.class, int.class, LocalDate.class, int.class, int.class));
+
+    /** (RentalAgreement agreement, LocalDate returnDate) -> RentalReturn */
+    static final MethodHandle NEW_RENTAL_RETURN = constructor(RENTAL_RETURN, RENTAL_AGREEMENT, LocalDate.class);
+
+    /** () -> SettlementEngine */
+    static final MethodHandle NEW_SETTLEMENT_ENGINE = constructor(SETTLEMENT_ENGINE);
+
+    /** (SettlementEngine, RentalReturn) -> Settlement */
+    static final MethodHandle SETTLE = virtual(SETTLEMENT_ENGINE, "settle",
+            MethodType.methodType(load("Settlement"), RENTAL_RETURN));
+
+    /** (SettlementEngine, List returns) -> List */
+    static final MethodHandle SETTLE_BATCH = virtual(SETTLEMENT_ENGINE, "settleAll",
+            MethodType.methodType(List.class, List.class));
+
+    /** (SettlementEngine, List returns, Appendable out) -> List */
+    static final MethodHandle SETTLE_ALL = virtual(SETTLEMENT_ENGINE, "settleAll",
+            MethodType.methodType(List.class, List.class, Appendable.class));
+
+    private ToolRental() {
+    }
+
+    static Object calculationMode(String name) {
+        for (Object constant : CALCULATION_MODE.getEnumConstants()) {
+            if (((Enum<?>) constant).name().equals(name)) {
+                return constant;
+            }
+        }
+        throw new IllegalArgumentException("Unknown calculation mode: " + name);
+    }
+
+    private static Class<?> load(String name) {
+        try {
+            return Class.forName(name);
+        } catch (ClassNotFoundException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    // Every handle is erased to Object so that callers can use invokeExact without naming the types.
+    private static MethodHandle constructor(Class<?> owner, Class<?>... parameters) {
+        try {
+            MethodHandle handle = LOOKUP.findConstructor(owner, MethodType.methodType(void.class, parameters));
+            return handle.asType(handle.type().erase());
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private static MethodHandle virtual(Class<?> owner, String name, MethodType type) {
+        try {
+            MethodHandle handle = LOOKUP.findVirtual(owner, name, type);
+            return handle.asType(handle.type().erase());
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    // Static factories are erased like constructors.
+    private static MethodHandle factory(Class<?> owner, String name, Class<?> returnType, Class<?>... parameters) {
+        MethodHandle handle = statics(owner, name, MethodType.methodType(returnType, parameters));
+        return handle.asType(handle.type().erase());
+    }
+
+    private static MethodHandle statics(Class<?> owner, String name, MethodType type) {
+        try {
+            return LOOKUP.findStatic(owner, name, type);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+}
@@ -0,0 +1,471 @@
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * The AgreementIndex class answers range and aggregate queries over stored agreements, such as
+ * the total final charge per tool type for a quarter or every agreement overlapping a date.
+ *
+ * Two structures are kept up to date on every add:
+ * - Per tool type and year, columnar day buckets of count, sum, minimum and maximum final
+ *   charge by checkout date, arranged as segment trees. Aggregating any date range costs
+ *   O(log 366) per year touched, whatever the number of agreements.
+ * - An interval tree over the rental periods, checkout date through due date, balanced as an
+ *   AVL tree and augmented with each subtree's latest due date. Overlap queries cost
+ *   O(log n + k) for k matches.
+ * The agreement fields themselves are stored in growable primitive columns.
+ *
+ * Queries take a shared lock and adds an exclusive one, so queries can run while agreements
+ * are being added and always see a consistent index.
+ */
+public final class AgreementIndex {
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // Guarded by lock: the agreement columns, indexed by row
+    private String[] toolCodes = new String[1024];
+    private String[] toolTypes = new String[1024];
+    private int[] checkoutDays = new int[1024];
+    private int[] dueDays = new int[1024];
+    private int[] chargeDays = new int[1024];
+    private long[] finalCents = new long[1024];
+    private int size;
+    private final Map<String, TreeMap<Integer, DayBuckets>> bucketsByType = new HashMap<>();
+    private final IntervalTree periods = new IntervalTree();
+
+    /**
+     * Builds an index of every agreement in the journal.
+     *
+     * @param journal The journal to replay.
+     * @param toolCatalog The catalog the records' tool codes are resolved in, for their types.
+     * @return The index.
+     * @throws IllegalArgumentException If a record's tool code is not in the catalog.
+     */
+    public static AgreementIndex load(AgreementJournal journal, ToolCatalog toolCatalog) {
+        AgreementIndex index = new AgreementIndex();
+        Map<String, String> typesByCode = new HashMap<>();
+        for (ITool tool : toolCatalog.getTools()) {
+            typesByCode.put(tool.getToolCode(), tool.getToolType());
+        }
+        journal.replay(record -> {
+            String toolCode = record.getToolCode();
+            String toolType = typesByCode.get(toolCode);
+            if (toolType == null) {
+                throw new IllegalArgumentException("Unknown tool code: " + toolCode);
+            }
+            index.add(toolCode, toolType, record.getCheckoutEpochDay(), record.getDueEpochDay(),
+                    record.getChargeDays(), record.getFinalCents());
+        });
+        return index;
+    }
+
+    /**
+     * Adds an agreement to the index.
+     *
+     * @param agreement The agreement.
+     */
+    public void add(RentalAgreement agreement) {
+        add(agreement.getTool().getToolCode(), agreement.getTool().getToolType(),
+                Math.toIntExact(agreement.getCheckoutDate().toEpochDay()),
+                Math.toIntExact(agreement.getDueDate().toEpochDay()),
+                agreement.getChargeDays(), agreement.getFinalChargeCents());
+    }
+
+    private void add(String toolCode, String toolType, int checkoutDay, int dueDay, int days, long cents) {
+        lock.writeLock().lock();
+        try {
+            if (size == toolCodes.length) {
+                int capacity = size * 2;
+                toolCodes = Arrays.copyOf(toolCodes, capacity);
+                toolTypes = Arrays.copyOf(toolTypes, capacity);
+                checkoutDays = Arrays.copyOf(checkoutDays, capacity);
+                dueDays = Arrays.copyOf(dueDays, capacity);
+                chargeDays = Arrays.copyOf(chargeDays, capacity);
+                finalCents = Arrays.copyOf(finalCents, capacity);
+            }
+            int row = size++;
+            toolCodes[row] = toolCode;
+            toolTypes[row] = toolType;
+            checkoutDays[row] = checkoutDay;
+            dueDays[row] = dueDay;
+            chargeDays[row] = days;
+            finalCents[row] = cents;
+
+            LocalDate checkout = LocalDate.ofEpochDay(checkoutDay);
+            bucketsByType.computeIfAbsent(toolType, type -> new TreeMap<>())
+                    .computeIfAbsent(checkout.getYear(), DayBuckets::new)
+                    .add(checkout.getDayOfYear() - 1, cents);
+            periods.insert(checkoutDay, dueDay, row);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return The number of agreements in the index.
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Aggregates the final charges of the agreements of one tool type checked out in a date
+     * range.
+     *
+     * @param toolType The tool type, e.g. "Jackhammer".
+     * @param from The first checkout date.
+     * @param to The last checkout date, inclusive.
+     * @return The aggregate; empty if there are no matching agreements.
+     */
+    public Aggregate aggregate(String toolType, LocalDate from, LocalDate to) {
+        lock.readLock().lock();
+        try {
+            return aggregate(bucketsByType.get(toolType), from, to);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Aggregates the final charges of the agreements checked out in a date range, per tool type.
+     *
+     * @param from The first checkout date.
+     * @param to The last checkout date, inclusive.
+     * @return The aggregate of every tool type with at least one matching agreement.
+     */
+    public Map<String, Aggregate> aggregateByToolType(LocalDate from, LocalDate to) {
+        lock.readLock().lock();
+        try {
+            Map<String, Aggregate> aggregates = new TreeMap<>();
+            for (Map.Entry<String, TreeMap<Integer, DayBuckets>> entry : bucketsByType.entrySet()) {
+                Aggregate aggregate = aggregate(entry.getValue(), from, to);
+                if (aggregate.getCount() > 0) {
+                    aggregates.put(entry.getKey(), aggregate);
+                }
+            }
+            return aggregates;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static Aggregate aggregate(TreeMap<Integer, DayBuckets> years, LocalDate from, LocalDate to) {
+        Aggregate aggregate = new Aggregate();
+        if (years == null || to.isBefore(from)) {
+            return aggregate;
+        }
+        for (DayBuckets buckets : years.subMap(from.getYear(), true, to.getYear(), true).values()) {
+            int first = buckets.year == from.getYear() ? from.getDayOfYear() - 1 : 0;
+            int last = buckets.year == to.getYear() ? to.getDayOfYear() - 1 : DayBuckets.DAYS - 1;
+            buckets.query(first, last, aggregate);
+        }
+        return aggregate;
+    }
+
+    /**
+     * Finds the agreements whose rental period, checkout date through due date, overlaps the
+     * given date range.
+     *
+     * @param from The first date of the range.
+     * @param to The last date of the range, inclusive.
+     * @return The matching agreements, ordered by checkout date.
+     */
+    public List<Entry> findOverlapping(LocalDate from, LocalDate to) {
+        int first = Math.toIntExact(from.toEpochDay());
+        int last = Math.toIntExact(to.toEpochDay());
+        lock.readLock().lock();
+        try {
+            List<Entry> entries = new ArrayList<>();
+            periods.forEachOverlapping(first, last, row -> entries.add(new Entry(toolCodes[row], toolTypes[row],
+                    checkoutDays[row], dueDays[row], chargeDays[row], finalCents[row])));
+            return entries;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * The Aggregate class holds the count, sum, minimum and maximum of a set of final charges.
+     */
+    public static final class Aggregate {
+        private long count;
+        private long sumCents;
+        private long minCents = Long.MAX_VALUE;
+        private long maxCents = Long.MIN_VALUE;
+
+        private Aggregate() {
+        }
+
+        void include(long count, long sumCents, long minCents, long maxCents) {
+            this.count += count;
+            this.sumCents += sumCents;
+            this.minCents = Math.min(this.minCents, minCents);
+            this.maxCents = Math.max(this.maxCents, maxCents);
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getSumCents() {
+            return sumCents;
+        }
+
+        /**
+         * @return The smallest final charge, or 0 if the aggregate is empty.
+         */
+        public long getMinCents() {
+            return count == 0 ? 0 : minCents;
+        }
+
+        /**
+         * @return The largest final charge, or 0 if the aggregate is empty.
+         */
+        public long getMaxCents() {
+            return count == 0 ? 0 : maxCents;
+        }
+
+        @Override
+        public String toString() {
+            return "Aggregate{" +
+                   "count=" + count +
+                   ", sum=" + Money.ofCents(sumCents) +
+                   ", min=" + Money.ofCents(getMinCents()) +
+                   ", max=" + Money.ofCents(getMaxCents()) +
+                   '}';
+        }
+    }
+
+    /**
+     * The Entry class is the indexed data of one agreement.
+     */
+    public static final class Entry {
+        private final String toolCode;
+        private final String toolType;
+        private final int checkoutDay;
+        private final int dueDay;
+        private final int chargeDays;
+        private final long finalCents;
+
+        private Entry(String toolCode, String toolType, int checkoutDay, int dueDay, int chargeDays, long finalCents) {
+            this.toolCode = toolCode;
+            this.toolType = toolType;
+            this.checkoutDay = checkoutDay;
+            this.dueDay = dueDay;
+            this.chargeDays = chargeDays;
+            this.finalCents = finalCents;
+        }
+
+        public String getToolCode() {
+            return toolCode;
+        }
+
+        public String getToolType() {
+            return toolType;
+        }
+
+        public LocalDate getCheckoutDate() {
+            return LocalDate.ofEpochDay(checkoutDay);
+        }
+
+        public LocalDate getDueDate() {
+            return LocalDate.ofEpochDay(dueDay);
+        }
+
+        public int getChargeDays() {
+            return chargeDays;
+        }
+
+        public long getFinalChargeCents() {
+            return finalCents;
+        }
+
+        @Override
+        public String toString() {
+            return "Entry{" +
+                   "toolCode='" + toolCode + '\'' +
+                   ", checkoutDate=" + getCheckoutDate() +
+                   ", dueDate=" + getDueDate() +
+                   ", chargeDays=" + chargeDays +
+                   ", finalCharge=" + Money.ofCents(finalCents) +
+                   '}';
+        }
+    }
+
+    /**
+     * The DayBuckets nested class aggregates one tool type's final charges for one year by
+     * checkout day. The four columns are iterative segment trees: leaf DAYS + d holds day d,
+     * and node i combines nodes 2i and 2i + 1.
+     */
+    private static final class DayBuckets {
+        static final int DAYS = 512; // a power of two covering 366 days
+
+        final int year;
+        private final long[] counts = new long[2 * DAYS];
+        private final long[] sums = new long[2 * DAYS];
+        private final long[] mins = new long[2 * DAYS];
+        private final long[] maxes = new long[2 * DAYS];
+
+        DayBuckets(int year) {
+            this.year = year;
+            Arrays.fill(mins, Long.MAX_VALUE);
+            Arrays.fill(maxes, Long.MIN_VALUE);
+        }
+
+        void add(int day, long cents) {
+            int node = DAYS + day;
+            counts[node]++;
+            sums[node] += cents;
+            mins[node] = Math.min(mins[node], cents);
+            maxes[node] = Math.max(maxes[node], cents);
+            for (node >>>= 1; node > 0; node >>>= 1) {
+                int left = 2 * node;
+                counts[node] = counts[left] + counts[left + 1];
+                sums[node] = sums[left] + sums[left + 1];
+                mins[node] = Math.min(mins[left], mins[left + 1]);
+                maxes[node] = Math.max(maxes[left], maxes[left + 1]);
+            }
+        }
+
+        // Adds the days [first, last] to the aggregate
+        void query(int first, int last, Aggregate aggregate) {
+            for (int low = DAYS + first, high = DAYS + last + 1; low < high; low >>>= 1, high >>>= 1) {
+                if ((low & 1) != 0) {
+                    aggregate.include(counts[low], sums[low], mins[low], maxes[low]);
+                    low++;
+                }
+                if ((high & 1) != 0) {
+                    high--;
+                    aggregate.include(counts[high], sums[high], mins[high], maxes[high]);
+                }
+            }
+        }
+    }
+
+    /**
+     * The IntervalTree nested class is an AVL tree of day intervals ordered by start day, where
+     * every node also holds the latest end day in its subtree.
+     */
+    private static final class IntervalTree {
+
+        interface RowConsumer {
+            void accept(int row);
+        }
+
+        private static final class Node {
+            final int start;
+            final int end;
+            final int row;
+            int maxEnd;
+            int height = 1;
+            Node left;
+            Node right;
+
+            Node(int start, int end, int row) {
+                this.start = start;
+                this.end = end;
+                this.row = row;
+                this.maxEnd = end;
+            }
+        }
+
+        private Node root;
+
+        void insert(int start, int end, int row) {
+            root = insert(root, new Node(start, end, row));
+        }
+
+        private static Node insert(Node node, Node added) {
+            if (node == null) {
+                return added;
+            }
+            // Rows increase, so equal starts keep insertion order
+            if (added.start < node.start) {
+                node.left = insert(node.left, added);
+            } else {
+                node.right = insert(node.right, added);
+            }
+            return balance(node);
+        }
+
+        void forEachOverlapping(int from, int to, RowConsumer consumer) {
+            forEachOverlapping(root, from, to, consumer);
+        }
+
+        private static void forEachOverlapping(Node node, int from, int to, RowConsumer consumer) {
+            if (node == null || node.maxEnd < from) {
+                return;
+            }
+            forEachOverlapping(node.left, from, to, consumer);
+            if (node.start > to) {
+                return; // this node and its right subtree start after the range
+            }
+            if (node.end >= from) {
+                consumer.accept(node.row);
+            }
+            forEachOverlapping(node.right, from, to, consumer);
+        }
+
+        private static int height(Node node) {
+            return node == null ? 0 : node.height;
+        }
+
+        private static void update(Node node) {
+            node.height = 1 + Math.max(height(node.left), height(node.right));
+            int maxEnd = node.end;
+            if (node.left != null) {
+                maxEnd = Math.max(maxEnd, node.left.maxEnd);
+            }
+            if (node.right != null) {
+                maxEnd = Math.max(maxEnd, node.right.maxEnd);
+            }
+            node.maxEnd = maxEnd;
+        }
+
+        private static Node balance(Node node) {
+            update(node);
+            int skew = height(node.left) - height(node.right);
+            if (skew > 1) {
+                if (height(node.left.left) < height(node.left.right)) {
+                    node.left = rotateLeft(node.left);
+                }
+                return rotateRight(node);
+            }
+            if (skew < -1) {
+                if (height(node.right.right) < height(node.right.left)) {
+                    node.right = rotateRight(node.right);
+                }
+                return rotateLeft(node);
+            }
+            return node;
+        }
+
+        private static Node rotateRight(Node node) {
+            Node left = node.left;
+            node.left = left.right;
+            left.right = node;
+            update(node);
+            update(left);
+            return left;
+        }
+
+        private static Node rotateLeft(Node node) {
+            Node right = node.right;
+            node.right = right.left;
+            right.left = node;
+            update(node);
+            update(right);
+            return right;
+        }
+    }
+}
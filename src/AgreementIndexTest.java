@@ -0,0 +1,155 @@
+import org.junit.Test;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AgreementIndexTest {
+
+    private final ToolCatalog catalog = ToolCatalog.standard(new ToolFactory());
+
+    private List<RentalAgreement> agreements(int count, long seed) {
+        String[] codes = {"LADW", "CHNS", "JAKD", "JAKR"};
+        Random random = new Random(seed);
+        List<RentalAgreement> agreements = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            agreements.add(new RentalAgreement(catalog.getTool(codes[random.nextInt(codes.length)]),
+                    1 + random.nextInt(40), random.nextInt(101),
+                    LocalDate.of(2023, 6, 1).plusDays(random.nextInt(900))));
+        }
+        return agreements;
+    }
+
+    private static String scan(List<RentalAgreement> agreements, String toolType, LocalDate from, LocalDate to) {
+        long count = 0;
+        long sum = 0;
+        long min = Long.MAX_VALUE;
+        long max = Long.MIN_VALUE;
+        for (RentalAgreement agreement : agreements) {
+            LocalDate checkout = agreement.getCheckoutDate();
+            if (agreement.getTool().getToolType().equals(toolType) && !checkout.isBefore(from) && !checkout.isAfter(to)) {
+                count++;
+                sum += agreement.getFinalChargeCents();
+                min = Math.min(min, agreement.getFinalChargeCents());
+                max = Math.max(max, agreement.getFinalChargeCents());
+            }
+        }
+        return count + "/" + sum + "/" + (count == 0 ? 0 : min) + "/" + (count == 0 ? 0 : max);
+    }
+
+    private static String summary(AgreementIndex.Aggregate aggregate) {
+        return aggregate.getCount() + "/" + aggregate.getSumCents() + "/"
+               + aggregate.getMinCents() + "/" + aggregate.getMaxCents();
+    }
+
+    @Test
+    public void testQueriesMatchFullScan() {
+        List<RentalAgreement> agreements = agreements(5000, 18);
+        AgreementIndex index = new AgreementIndex();
+        agreements.forEach(index::add);
+        assertEquals(5000, index.size());
+
+        Random random = new Random(42);
+        for (int i = 0; i < 300; i++) {
+            LocalDate from = LocalDate.of(2023, 5, 1).plusDays(random.nextInt(1000));
+            LocalDate to = from.plusDays(random.nextInt(500));
+            for (String toolType : new String[] {"Ladder", "Chainsaw", "Jackhammer", "Unknown"}) {
+                assertEquals(scan(agreements, toolType, from, to), summary(index.aggregate(toolType, from, to)),
+                        toolType + " " + from + ".." + to);
+            }
+            Map<String, AgreementIndex.Aggregate> byType = index.aggregateByToolType(from, to);
+            for (Map.Entry<String, AgreementIndex.Aggregate> entry : byType.entrySet()) {
+                assertEquals(scan(agreements, entry.getKey(), from, to), summary(entry.getValue()));
+            }
+
+            LocalDate day = from;
+            LocalDate last = from.plusDays(random.nextInt(3));
+            List<String> expected = new ArrayList<>();
+            agreements.stream()
+                    .filter(a -> !a.getCheckoutDate().isAfter(last) && !a.getDueDate().isBefore(day))
+                    .sorted(Comparator.comparing(RentalAgreement::getCheckoutDate))
+                    .forEach(a -> expected.add(a.getTool().getToolCode() + a.getCheckoutDate() + a.getDueDate()
+                                               + a.getFinalChargeCents()));
+            List<String> actual = new ArrayList<>();
+            for (AgreementIndex.Entry entry : index.findOverlapping(day, last)) {
+                actual.add(entry.getToolCode() + entry.getCheckoutDate() + entry.getDueDate()
+                           + entry.getFinalChargeCents());
+            }
+            assertEquals(expected, actual, day + ".." + last);
+        }
+
+        assertEquals(0, index.aggregate("Ladder", LocalDate.of(2024, 2, 1), LocalDate.of(2024, 1, 1)).getCount());
+    }
+
+    @Test
+    public void testQueriesDuringAdds() throws Exception {
+        List<RentalAgreement> agreements = agreements(20000, 7);
+        AgreementIndex index = new AgreementIndex();
+        LocalDate from = LocalDate.of(2023, 1, 1);
+        LocalDate to = LocalDate.of(2026, 1, 1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<?> writer = executor.submit(() -> agreements.forEach(index::add));
+            Future<?> reader = executor.submit(() -> {
+                long previous = 0;
+                while (previous < agreements.size()) {
+                    long count = 0;
+                    for (AgreementIndex.Aggregate aggregate : index.aggregateByToolType(from, to).values()) {
+                        count += aggregate.getCount();
+                    }
+                    // Every query sees a consistent index that only grows
+                    assertTrue(count >= previous);
+                    previous = index.findOverlapping(from, to).size();
+                    assertTrue(previous >= count);
+                }
+            });
+            writer.get();
+            reader.get();
+        } finally {
+            executor.shutdown();
+        }
+        long total = 0;
+        for (RentalAgreement agreement : agreements) {
+            total += agreement.getFinalChargeCents();
+        }
+        long indexed = 0;
+        for (AgreementIndex.Aggregate aggregate : index.aggregateByToolType(from, to).values()) {
+            indexed += aggregate.getSumCents();
+        }
+        assertEquals(total, indexed);
+    }
+
+    @Test
+    public void testLoadFromJournal() throws Exception {
+        Path directory = Files.createTempDirectory("index");
+        try {
+            List<RentalAgreement> agreements = agreements(500, 3);
+            try (AgreementJournal journal = AgreementJournal.open(directory, 128, Duration.ZERO)) {
+                for (RentalAgreement agreement : agreements) {
+                    journal.append(agreement);
+                }
+                AgreementIndex index = AgreementIndex.load(journal, catalog);
+                assertEquals(500, index.size());
+                LocalDate from = LocalDate.of(2023, 7, 1);
+                LocalDate to = LocalDate.of(2023, 9, 30);
+                assertEquals(scan(agreements, "Jackhammer", from, to), summary(index.aggregate("Jackhammer", from, to)));
+            }
+        } finally {
+            try (Stream<Path> files = Files.walk(directory)) {
+                for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                    Files.delete(file);
+                }
+            }
+        }
+    }
+}
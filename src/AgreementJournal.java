@@ -0,0 +1,598 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * The AgreementJournal class is a durable, append-only log of rental agreements on local
+ * disk. Each agreement is encoded as one fixed-width 96-byte record, and records are appended
+ * to memory-mapped segment files of a fixed number of records. A full segment is flushed and
+ * a new one started.
+ *
+ * Record layout, little-endian:
+ * <pre>
+ *  0 int   CRC32C of bytes 4..95
+ *  4 byte  record type (1)
+ *  5 byte  discount percent, the clerk's
+ *  6 byte  applied discount percent, including promotions
+ *  7 byte  charging flags the rental was priced with, see PricedTool, plus 0x80
+ *  8 long  sequence number
+ * 16 byte[8]  tool code, ASCII, zero padded
+ * 24 int   checkout date, epoch day
+ * 28 int   rental days
+ * 32 int   due date, epoch day
+ * 36 int   charge days
+ * 40 long  daily charge, cents
+ * 48 long  pre-discount charge, cents
+ * 56 long  discount amount, cents
+ * 64 long  final charge, cents
+ * 72 byte[16] holiday calendar name, ASCII, zero padded
+ * 88 long  seasonal surcharge, cents
+ * </pre>
+ *
+ * The rate cap credit is not stored, as it follows from the other charges. Records written
+ * before the applied percent and surcharge were added have zeros there, which read back as the
+ * clerk's percent and no surcharge, as the applied percent is never below the clerk's. Their
+ * charging flags are zero too, and are then taken from the tool in the catalog.
+ *
+ * Appends only copy the record into the mapped segment. A background flusher forces written
+ * records to disk, batching every record appended while the previous force was in progress,
+ * or within the commit window, into one force: a group commit. Callers that need durability
+ * wait for their sequence number with sync. When the journal is opened, every segment is
+ * scanned and the log ends at the first record that is empty, fails its CRC or is out of
+ * sequence, such as one torn by a crash. Anything after that point is discarded.
+ *
+ * Appends are serialized by a lock; sync and replay may be called from any thread.
+ */
+public final class AgreementJournal implements Closeable {
+
+    public static final int RECORD_SIZE = 96;
+    public static final int DEFAULT_RECORDS_PER_SEGMENT = 1 << 20; // 96 MB segments
+
+    private static final byte RECORD_TYPE = 1;
+    private static final int FLAGS_PRESENT = 0x80;
+    private static final int TOOL_CODE_OFFSET = 16;
+    private static final int TOOL_CODE_LENGTH = 8;
+    private static final int CALENDAR_OFFSET = 72;
+    private static final int CALENDAR_LENGTH = 16;
+    private static final String SEGMENT_SUFFIX = ".journal";
+
+    private final Path directory;
+    private final int recordsPerSegment;
+    private final long commitWindowNanos;
+    private final List<Segment> segments = new ArrayList<>();
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition pending = lock.newCondition();
+    private final Condition durable = lock.newCondition();
+    private final ByteBuffer scratch = ByteBuffer.allocate(RECORD_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    private final CRC32C crc = new CRC32C();
+    private final Thread flusher;
+
+    // Guarded by lock
+    private Segment current;
+    private long written;
+    private long flushed;
+    private boolean closed;
+    private RuntimeException flushFailure;
+
+    private AgreementJournal(Path directory, int recordsPerSegment, Duration commitWindow) throws IOException {
+        if (recordsPerSegment < 1 || recordsPerSegment > Integer.MAX_VALUE / RECORD_SIZE) {
+            throw new IllegalArgumentException("Records per segment must be between 1 and "
+                    + Integer.MAX_VALUE / RECORD_SIZE + ".");
+        }
+        this.directory = directory;
+        this.recordsPerSegment = recordsPerSegment;
+        this.commitWindowNanos = commitWindow.toNanos();
+        Files.createDirectories(directory);
+        recover();
+        this.flushed = written;
+        this.flusher = new Thread(this::flushLoop, "agreement-journal-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    /**
+     * Opens the journal in the given directory, creating it if needed, with the default
+     * segment size and no commit window.
+     *
+     * @see #open(Path, int, Duration)
+     */
+    public static AgreementJournal open(Path directory) throws IOException {
+        return open(directory, DEFAULT_RECORDS_PER_SEGMENT, Duration.ZERO);
+    }
+
+    /**
+     * Opens the journal in the given directory, creating it if needed, and recovers its end.
+     *
+     * @param directory The directory holding the segment files.
+     * @param recordsPerSegment The number of records per segment file.
+     * @param commitWindow How long the flusher waits after the first unflushed append to
+     *        gather more appends into the same force; zero forces as soon as it can.
+     * @return The journal, positioned after its last valid record.
+     * @throws IOException If the segment files cannot be read or written.
+     */
+    public static AgreementJournal open(Path directory, int recordsPerSegment, Duration commitWindow)
+            throws IOException {
+        return new AgreementJournal(directory, recordsPerSegment, commitWindow);
+    }
+
+    /**
+     * Appends an agreement. The record is visible to replay at once, but only durable once
+     * sync returns for its sequence number.
+     *
+     * @param agreement The agreement to append.
+     * @return The sequence number of the record.
+     * @throws IllegalArgumentException If the tool code is longer than 8 or the holiday
+     *         calendar name longer than 16 ASCII characters.
+     * @throws UncheckedIOException If a new segment file cannot be created.
+     */
+    public long append(RentalAgreement agreement) {
+        byte[] toolCode = ascii(agreement.getTool().getToolCode(), TOOL_CODE_LENGTH, "Tool code");
+        byte[] calendar = ascii(agreement.getHolidayCalendar().getName(), CALENDAR_LENGTH, "Holiday calendar name");
+        lock.lock();
+        try {
+            if (closed) {
+                throw new IllegalStateException("Journal is closed.");
+            }
+            if (current.count == recordsPerSegment) {
+                roll();
+            }
+            long sequence = written;
+            ByteBuffer record = scratch;
+            Arrays.fill(record.array(), (byte) 0);
+            record.put(4, RECORD_TYPE);
+            record.put(5, (byte) agreement.getDiscountPercent());
+            record.put(6, (byte) agreement.getAppliedDiscountPercent());
+            record.put(7, (byte) (FLAGS_PRESENT | PricedTool.flagsOf(agreement.getCharges().getPricedAttributes())));
+            record.putLong(8, sequence);
+            record.put(TOOL_CODE_OFFSET, toolCode);
+            record.putInt(24, Math.toIntExact(agreement.getCheckoutDate().toEpochDay()));
+            record.putInt(28, agreement.getRentalDays());
+            record.putInt(32, Math.toIntExact(agreement.getDueDate().toEpochDay()));
+            record.putInt(36, agreement.getChargeDays());
+            record.putLong(40, agreement.getDailyChargeMoney().getCents());
+            record.putLong(48, agreement.getPreDiscountChargeCents());
+            record.putLong(56, agreement.getDiscountAmountCents());
+            record.putLong(64, agreement.getFinalChargeCents());
+            record.put(CALENDAR_OFFSET, calendar);
+            record.putLong(88, agreement.getSurchargeCents());
+            crc.reset();
+            crc.update(record.array(), 4, RECORD_SIZE - 4);
+            record.putInt(0, (int) crc.getValue());
+
+            current.buffer.put(current.count * RECORD_SIZE, record.array(), 0, RECORD_SIZE);
+            current.count++;
+            written = sequence + 1;
+            pending.signal();
+            return sequence;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Waits until the record with the given sequence number, and every record before it, is
+     * on disk.
+     *
+     * @param sequence The sequence number returned by append.
+     * @throws InterruptedException If interrupted while waiting.
+     * @throws IllegalStateException If the journal was closed or could not be flushed.
+     */
+    public void sync(long sequence) throws InterruptedException {
+        lock.lock();
+        try {
+            while (flushed <= sequence) {
+                if (flushFailure != null) {
+                    throw new IllegalStateException("Journal flush failed.", flushFailure);
+                }
+                if (sequence >= written) {
+                    throw new IllegalArgumentException("Sequence number has not been appended: " + sequence);
+                }
+                if (closed) {
+                    throw new IllegalStateException("Journal is closed.");
+                }
+                durable.await();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Appends an agreement and waits until it is on disk.
+     *
+     * @return The sequence number of the record.
+     */
+    public long appendDurably(RentalAgreement agreement) throws InterruptedException {
+        long sequence = append(agreement);
+        sync(sequence);
+        return sequence;
+    }
+
+    /**
+     * @return The number of records in the journal, which is also the next sequence number.
+     */
+    public long size() {
+        lock.lock();
+        try {
+            return written;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Passes every record appended so far to the handler, in sequence order. The handler gets
+     * the same reusable Record view for every record and must not keep it.
+     *
+     * @param handler Receives each record.
+     * @return The number of records replayed.
+     */
+    public long replay(RecordHandler handler) {
+        List<Segment> snapshot;
+        long end;
+        lock.lock();
+        try {
+            snapshot = List.copyOf(segments);
+            end = written;
+        } finally {
+            lock.unlock();
+        }
+        Record record = new Record();
+        long replayed = 0;
+        for (Segment segment : snapshot) {
+            ByteBuffer buffer = segment.buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+            long records = Math.min(recordsPerSegment, end - segment.firstSequence);
+            for (int i = 0; i < records; i++) {
+                record.buffer = buffer;
+                record.offset = i * RECORD_SIZE;
+                handler.accept(record);
+                replayed++;
+            }
+        }
+        return replayed;
+    }
+
+    /**
+     * Flushes every appended record and stops the flusher. The journal cannot be appended to
+     * afterwards.
+     */
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            pending.signal();
+        } finally {
+            lock.unlock();
+        }
+        boolean interrupted = false;
+        while (true) {
+            try {
+                flusher.join();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        lock.lock();
+        try {
+            if (flushed < written) {
+                current.buffer.force();
+                flushed = written;
+            }
+            durable.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Forces appended records to disk in batches until the journal is closed.
+    private void flushLoop() {
+        while (true) {
+            lock.lock();
+            try {
+                while (flushed == written && !closed) {
+                    pending.awaitUninterruptibly();
+                }
+                if (flushed == written) {
+                    return; // closed with nothing left to flush
+                }
+            } finally {
+                lock.unlock();
+            }
+            if (commitWindowNanos > 0) {
+                LockSupport.parkNanos(commitWindowNanos);
+            }
+
+            Segment segment;
+            long target;
+            int from;
+            int to;
+            lock.lock();
+            try {
+                segment = current;
+                target = written;
+                from = segment.forced;
+                to = segment.count;
+            } finally {
+                lock.unlock();
+            }
+            try {
+                if (to > from) {
+                    segment.buffer.force(from * RECORD_SIZE, (to - from) * RECORD_SIZE);
+                }
+            } catch (RuntimeException e) {
+                lock.lock();
+                try {
+                    flushFailure = e;
+                    durable.signalAll();
+                } finally {
+                    lock.unlock();
+                }
+                return;
+            }
+            lock.lock();
+            try {
+                segment.forced = Math.max(segment.forced, to);
+                flushed = Math.max(flushed, target);
+                durable.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    // Called with the lock held when the current segment is full.
+    private void roll() {
+        current.buffer.force();
+        current.forced = current.count;
+        flushed = written;
+        durable.signalAll();
+        try {
+            current = createSegment(written);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        segments.add(current);
+    }
+
+    private Segment createSegment(long firstSequence) throws IOException {
+        Path file = directory.resolve(String.format("%020d%s", firstSequence, SEGMENT_SUFFIX));
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, (long) recordsPerSegment * RECORD_SIZE);
+            return new Segment(firstSequence, buffer);
+        }
+    }
+
+    /**
+     * Maps the existing segments in sequence order, finds the last valid record and discards
+     * everything after it.
+     */
+    private void recover() throws IOException {
+        List<Path> files;
+        try (Stream<Path> list = Files.list(directory)) {
+            files = list.filter(path -> path.getFileName().toString().endsWith(SEGMENT_SUFFIX)).sorted().toList();
+        }
+        long expected = 0;
+        boolean ended = false;
+        for (Path file : files) {
+            long firstSequence = Long.parseLong(file.getFileName().toString().replace(SEGMENT_SUFFIX, ""));
+            if (ended || firstSequence != expected) {
+                Files.delete(file);
+                ended = true;
+                continue;
+            }
+            Segment segment = createSegment(firstSequence);
+            ByteBuffer buffer = segment.buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+            int count = 0;
+            while (count < recordsPerSegment && isValid(buffer, count * RECORD_SIZE, expected)) {
+                count++;
+                expected++;
+            }
+            if (count < recordsPerSegment) {
+                // Zero the torn or unused tail so that a later recovery cannot mistake stale
+                // records for valid ones.
+                byte[] zeros = new byte[RECORD_SIZE];
+                for (int i = count; i < recordsPerSegment && !isZero(buffer, i * RECORD_SIZE); i++) {
+                    buffer.put(i * RECORD_SIZE, zeros);
+                }
+                segment.buffer.force();
+                ended = true;
+            }
+            segment.count = count;
+            segment.forced = count;
+            segments.add(segment);
+        }
+        if (segments.isEmpty() || segments.get(segments.size() - 1).count == recordsPerSegment) {
+            segments.add(createSegment(expected));
+        }
+        current = segments.get(segments.size() - 1);
+        written = expected;
+    }
+
+    private boolean isValid(ByteBuffer buffer, int offset, long expectedSequence) {
+        if (buffer.get(offset + 4) != RECORD_TYPE || buffer.getLong(offset + 8) != expectedSequence) {
+            return false;
+        }
+        byte[] bytes = scratch.array();
+        buffer.get(offset, bytes);
+        crc.reset();
+        crc.update(bytes, 4, RECORD_SIZE - 4);
+        return (int) crc.getValue() == buffer.getInt(offset);
+    }
+
+    private static boolean isZero(ByteBuffer buffer, int offset) {
+        for (int i = 0; i < RECORD_SIZE; i += 8) {
+            if (buffer.getLong(offset + i) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static byte[] ascii(String text, int maxLength, String what) {
+        byte[] bytes = text.getBytes(StandardCharsets.US_ASCII);
+        if (bytes.length > maxLength) {
+            throw new IllegalArgumentException(what + " is longer than " + maxLength + " characters: " + text);
+        }
+        return bytes;
+    }
+
+    private static String text(ByteBuffer buffer, int offset, int maxLength) {
+        int length = 0;
+        while (length < maxLength && buffer.get(offset + length) != 0) {
+            length++;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(offset, bytes);
+        return new String(bytes, StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * The RecordHandler interface receives the records of a replay.
+     */
+    @FunctionalInterface
+    public interface RecordHandler {
+        void accept(Record record);
+    }
+
+    /**
+     * The Record nested class is a reusable view of one journal record. Its getters read the
+     * fields straight from the mapped segment.
+     */
+    public static final class Record {
+        private ByteBuffer buffer;
+        private int offset;
+
+        private Record() {
+        }
+
+        public long getSequence() {
+            return buffer.getLong(offset + 8);
+        }
+
+        public String getToolCode() {
+            return text(buffer, offset + TOOL_CODE_OFFSET, TOOL_CODE_LENGTH);
+        }
+
+        public int getCheckoutEpochDay() {
+            return buffer.getInt(offset + 24);
+        }
+
+        public int getRentalDays() {
+            return buffer.getInt(offset + 28);
+        }
+
+        public int getDueEpochDay() {
+            return buffer.getInt(offset + 32);
+        }
+
+        public int getChargeDays() {
+            return buffer.getInt(offset + 36);
+        }
+
+        public int getDiscountPercent() {
+            return buffer.get(offset + 5);
+        }
+
+        public int getAppliedDiscountPercent() {
+            return Math.max(getDiscountPercent(), buffer.get(offset + 6));
+        }
+
+        public long getDailyChargeCents() {
+            return buffer.getLong(offset + 40);
+        }
+
+        public long getPreDiscountCents() {
+            return buffer.getLong(offset + 48);
+        }
+
+        public long getDiscountCents() {
+            return buffer.getLong(offset + 56);
+        }
+
+        public long getFinalCents() {
+            return buffer.getLong(offset + 64);
+        }
+
+        public long getSurchargeCents() {
+            return buffer.getLong(offset + 88);
+        }
+
+        /**
+         * @return The amount rate caps took off the daily charge times the charge days.
+         */
+        public long getRateCapCreditCents() {
+            return getDailyChargeCents() * getChargeDays() + getSurchargeCents() - getPreDiscountCents();
+        }
+
+        public String getHolidayCalendarName() {
+            return text(buffer, offset + CALENDAR_OFFSET, CALENDAR_LENGTH);
+        }
+
+        /**
+         * Rebuilds the agreement, looking up its tool in the catalog and its holiday calendar
+         * by region. The charges, daily rate and charging flags are the recorded ones, not
+         * recalculated.
+         *
+         * @param toolCatalog The catalog holding the record's tool.
+         * @return The agreement.
+         * @throws IllegalArgumentException If the tool or the holiday calendar is unknown.
+         */
+        public RentalAgreement toAgreement(ToolCatalog toolCatalog) {
+            ITool tool = toolCatalog.getTool(getToolCode());
+            int flags = buffer.get(offset + 7);
+            if ((flags & FLAGS_PRESENT) == 0) {
+                flags = PricedTool.flagsOf(PricedTool.of(tool).getAttributes());
+            }
+            RentalCharges charges = new RentalCharges(LocalDate.ofEpochDay(getDueEpochDay()), getChargeDays(),
+                    getPreDiscountCents(), getAppliedDiscountPercent(), getDiscountCents(), getFinalCents(),
+                    getRateCapCreditCents(), getSurchargeCents(), PricedTool.attributes(getDailyChargeCents(), flags));
+            return new RentalAgreement(tool, getRentalDays(), getDiscountPercent(),
+                    LocalDate.ofEpochDay(getCheckoutEpochDay()), HolidayCalendar.forRegion(getHolidayCalendarName()),
+                    charges);
+        }
+    }
+
+    /**
+     * The Segment nested class is one mapped segment file.
+     */
+    private static final class Segment {
+        final long firstSequence;
+        final MappedByteBuffer buffer;
+        // Guarded by the journal lock
+        int count;
+        int forced;
+
+        Segment(long firstSequence, MappedByteBuffer buffer) {
+            this.firstSequence = firstSequence;
+            this.buffer = buffer;
+        }
+    }
+}
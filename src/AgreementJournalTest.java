@@ -0,0 +1,165 @@
+import org.junit.Test;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.MonthDay;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AgreementJournalTest {
+
+    private final ToolCatalog catalog = ToolCatalog.standard(new ToolFactory());
+
+    private List<RentalAgreement> agreements(int count) {
+        String[] codes = {"LADW", "CHNS", "JAKD", "JAKR"};
+        List<RentalAgreement> agreements = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            HolidayCalendar calendar = i % 3 == 0 ? HolidayCalendar.US_FEDERAL : HolidayCalendar.DEFAULT;
+            agreements.add(new RentalAgreement(catalog.getTool(codes[i % codes.length]), 1 + i % 20, i % 101,
+                    LocalDate.of(2024, 1, 1).plusDays(i % 400), calendar));
+        }
+        return agreements;
+    }
+
+    private static List<String> replay(AgreementJournal journal, ToolCatalog catalog) {
+        List<String> replayed = new ArrayList<>();
+        journal.replay(record -> replayed.add(record.toAgreement(catalog).generateAgreement()
+                + record.getHolidayCalendarName()));
+        return replayed;
+    }
+
+    private static void delete(Path directory) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @Test
+    public void testAppendRollAndReopen() throws Exception {
+        Path directory = Files.createTempDirectory("journal");
+        try {
+            List<RentalAgreement> agreements = agreements(250);
+            List<String> expected = new ArrayList<>();
+            try (AgreementJournal journal = AgreementJournal.open(directory, 100, Duration.ZERO)) {
+                for (RentalAgreement agreement : agreements) {
+                    journal.append(agreement);
+                    expected.add(agreement.generateAgreement() + agreement.getHolidayCalendar().getName());
+                }
+                assertEquals(expected, replay(journal, catalog));
+            }
+            try (Stream<Path> files = Files.list(directory)) {
+                assertEquals(3, files.count());
+            }
+
+            try (AgreementJournal journal = AgreementJournal.open(directory, 100, Duration.ZERO)) {
+                assertEquals(250, journal.size());
+                assertEquals(expected, replay(journal, catalog));
+                assertEquals(250, journal.appendDurably(agreements.get(0)));
+            }
+        } finally {
+            delete(directory);
+        }
+    }
+
+    @Test
+    public void testPlanAdjustmentsReplay() throws Exception {
+        Path directory = Files.createTempDirectory("journal");
+        try {
+            PricingPlan plan = PricingPlan.compile(List.of(
+                    PricingRule.rateCap("Jackhammer", 7, Money.ofDollars(12.00)),
+                    PricingRule.seasonalSurcharge(null, MonthDay.of(1, 1), MonthDay.of(1, 31), 10),
+                    PricingRule.promotion(null, LocalDate.of(2024, 1, 1), LocalDate.of(2024, 1, 31), 15)),
+                    ToolTypeRegistry.getDefault().getSnapshot(), 2024, 2024);
+            RentalAgreement agreement = new PricingEngine(RentalAgreement.CalculationMode.PREFIX_SUM, plan)
+                    .price(catalog.getTool("JAKR"), 14, 10, LocalDate.of(2024, 1, 8));
+            try (AgreementJournal journal = AgreementJournal.open(directory, 100, Duration.ZERO)) {
+                journal.append(agreement);
+                journal.replay(record -> {
+                    assertEquals(10, record.getDiscountPercent());
+                    assertEquals(25, record.getAppliedDiscountPercent());
+                    assertEquals(agreement.getRateCapCreditCents(), record.getRateCapCreditCents());
+                    assertEquals(agreement.getSurchargeCents(), record.getSurchargeCents());
+                    assertEquals(agreement.generateAgreement(), record.toAgreement(catalog).generateAgreement());
+                });
+            }
+        } finally {
+            delete(directory);
+        }
+    }
+
+    @Test
+    public void testTornRecordEndsTheLog() throws Exception {
+        Path directory = Files.createTempDirectory("journal");
+        try {
+            try (AgreementJournal journal = AgreementJournal.open(directory, 100, Duration.ZERO)) {
+                for (RentalAgreement agreement : agreements(150)) {
+                    journal.append(agreement);
+                }
+            }
+            // Flip a byte in record 120, in the second segment.
+            Path second = directory.resolve(String.format("%020d.journal", 100));
+            try (FileChannel channel = FileChannel.open(second, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                ByteBuffer bad = ByteBuffer.allocate(1);
+                channel.read(bad, 20L * AgreementJournal.RECORD_SIZE + 50);
+                bad.put(0, (byte) (bad.get(0) ^ 1)).rewind();
+                channel.write(bad, 20L * AgreementJournal.RECORD_SIZE + 50);
+            }
+
+            try (AgreementJournal journal = AgreementJournal.open(directory, 100, Duration.ZERO)) {
+                assertEquals(120, journal.size());
+                assertEquals(120, journal.replay(record -> { }));
+                assertEquals(120, journal.append(agreements(1).get(0)));
+            }
+            try (AgreementJournal journal = AgreementJournal.open(directory, 100, Duration.ZERO)) {
+                assertEquals(121, journal.size());
+            }
+        } finally {
+            delete(directory);
+        }
+    }
+
+    @Test
+    public void testConcurrentDurableAppendsAreGroupCommitted() throws Exception {
+        Path directory = Files.createTempDirectory("journal");
+        try {
+            List<RentalAgreement> agreements = agreements(64);
+            try (AgreementJournal journal = AgreementJournal.open(directory, 1000, Duration.ofMillis(1))) {
+                ExecutorService executor = Executors.newFixedThreadPool(8);
+                try {
+                    List<Future<Long>> sequences = new ArrayList<>();
+                    for (RentalAgreement agreement : agreements) {
+                        sequences.add(executor.submit(() -> journal.appendDurably(agreement)));
+                    }
+                    long sum = 0;
+                    for (Future<Long> sequence : sequences) {
+                        sum += sequence.get();
+                    }
+                    assertEquals(64 * 63 / 2, sum);
+                } finally {
+                    executor.shutdown();
+                }
+                long[] lastSequence = {-1};
+                journal.replay(record -> {
+                    assertEquals(lastSequence[0] + 1, record.getSequence());
+                    lastSequence[0] = record.getSequence();
+                });
+                assertEquals(63, lastSequence[0]);
+            }
+        } finally {
+            delete(directory);
+        }
+    }
+}
@@ -0,0 +1,234 @@
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * The AgreementRenderer class renders rental agreements in the text layout of
+ * RentalAgreement.generateAgreement without String.format, NumberFormat or per-call formatters.
+ * Dates (MM/dd/yy) and US currency ($9,999.99) are formatted by hand, straight into the
+ * caller's StringBuilder, Appendable or ByteBuffer. The output is byte-identical to the
+ * original String.format based rendering. Agreements priced with a PricingPlan also get their
+ * rate cap credit and seasonal surcharge, so that the daily charge times the charge days, less
+ * the credit plus the surcharge, is the pre-discount charge, and their discount percent
+ * includes promotions.
+ *
+ * The static StringBuilder method is stateless and safe to call from any thread. The other
+ * methods reuse a scratch buffer held by the renderer, so a renderer instance should be used
+ * by one thread at a time; create one per thread or per output stream.
+ */
+public final class AgreementRenderer {
+
+    // Only used for years the hand-rolled date formatting does not cover (year zero and earlier).
+    private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("MM/dd/yy");
+
+    // Large enough for any agreement with typical tool names, grows if needed.
+    private static final int SCRATCH_CAPACITY = 512;
+
+    private final StringBuilder scratch = new StringBuilder(SCRATCH_CAPACITY);
+
+    /**
+     * Appends the agreement text to the given StringBuilder.
+     *
+     * @param agreement The agreement to render.
+     * @param out The builder to append to.
+     */
+    public static void render(RentalAgreement agreement, StringBuilder out) {
+        ITool tool = agreement.getTool();
+        out.append("Tool code: ").append(tool.getToolCode()).append('\n');
+        out.append("Tool type: ").append(tool.getToolType()).append('\n');
+        out.append("Tool brand: ").append(tool.getBrand()).append('\n');
+        out.append("Rental days: ").append(agreement.getRentalDays()).append('\n');
+        out.append("Check out date: ");
+        appendDate(out, agreement.getCheckoutDate());
+        out.append('\n');
+        out.append("Due date: ");
+        appendDate(out, agreement.getDueDate());
+        out.append('\n');
+        out.append("Daily rental charge: ");
+        appendCurrency(out, agreement.getDailyChargeMoney().getCents());
+        out.append('\n');
+        out.append("Charge days: ").append(agreement.getChargeDays()).append('\n');
+        // Only agreements priced with a pricing plan have these, so others render as before
+        if (agreement.getRateCapCreditCents() != 0) {
+            out.append("Rate cap credit: ");
+            appendCurrency(out, agreement.getRateCapCreditCents());
+            out.append('\n');
+        }
+        if (agreement.getSurchargeCents() != 0) {
+            out.append("Seasonal surcharge: ");
+            appendCurrency(out, agreement.getSurchargeCents());
+            out.append('\n');
+        }
+        out.append("Pre-discount charge: ");
+        appendCurrency(out, agreement.getPreDiscountChargeCents());
+        out.append('\n');
+        out.append("Discount percent: ").append(agreement.getAppliedDiscountPercent()).append("%\n");
+        out.append("Discount amount: ");
+        appendCurrency(out, agreement.getDiscountAmountCents());
+        out.append('\n');
+        out.append("Final charge: ");
+        appendCurrency(out, agreement.getFinalChargeCents());
+        out.append("\n\n");
+    }
+
+    /**
+     * Appends the agreement text to the given Appendable.
+     *
+     * @param agreement The agreement to render.
+     * @param out The destination, e.g. a Writer.
+     * @throws IOException If the destination fails to accept the text.
+     */
+    public void render(RentalAgreement agreement, Appendable out) throws IOException {
+        scratch.setLength(0);
+        render(agreement, scratch);
+        out.append(scratch);
+    }
+
+    /**
+     * Writes the agreement text to the given buffer, UTF-8 encoded.
+     *
+     * @param agreement The agreement to render.
+     * @param out The buffer to write to.
+     * @throws BufferOverflowException If the buffer does not have room for the whole agreement;
+     *         the buffer's position is left unchanged in that case.
+     */
+    public void render(RentalAgreement agreement, ByteBuffer out) {
+        scratch.setLength(0);
+        render(agreement, scratch);
+        int start = out.position();
+        try {
+            encode(scratch, out);
+        } catch (BufferOverflowException e) {
+            out.position(start);
+            throw e;
+        }
+    }
+
+    /**
+     * Renders many agreements back to back into one Appendable.
+     *
+     * @param agreements The agreements to render, in output order.
+     * @param out The destination, e.g. a buffered Writer.
+     * @return The number of agreements rendered.
+     * @throws IOException If the destination fails to accept the text.
+     */
+    public int renderAll(Iterable<RentalAgreement> agreements, Appendable out) throws IOException {
+        int count = 0;
+        for (RentalAgreement agreement : agreements) {
+            render(agreement, out);
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Renders many agreements into one buffer, writing the buffer to the channel whenever it
+     * fills up and once more at the end. This is the bulk mode for file and socket output.
+     *
+     * @param agreements The agreements to render, in output order.
+     * @param channel The channel to write to.
+     * @param buffer The buffer used to batch writes; it must hold at least one agreement.
+     * @return The number of agreements rendered.
+     * @throws IOException If writing to the channel fails.
+     */
+    public int renderAll(Iterable<RentalAgreement> agreements, WritableByteChannel channel, ByteBuffer buffer)
+            throws IOException {
+        int count = 0;
+        buffer.clear();
+        for (RentalAgreement agreement : agreements) {
+            try {
+                render(agreement, buffer);
+            } catch (BufferOverflowException e) {
+                drain(buffer, channel);
+                render(agreement, buffer);
+            }
+            count++;
+        }
+        drain(buffer, channel);
+        return count;
+    }
+
+    private static void drain(ByteBuffer buffer, WritableByteChannel channel) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Appends a date in MM/dd/yy format.
+     */
+    static void appendDate(StringBuilder out, LocalDate date) {
+        int year = date.getYear();
+        if (year <= 0) {
+            DATE_FORMATTER.formatTo(date, out);
+            return;
+        }
+        appendTwoDigits(out, date.getMonthValue());
+        out.append('/');
+        appendTwoDigits(out, date.getDayOfMonth());
+        out.append('/');
+        appendTwoDigits(out, year % 100);
+    }
+
+    /**
+     * Appends an amount of cents in US currency format, e.g. $1,234.50 or -$0.99.
+     */
+    static void appendCurrency(StringBuilder out, long cents) {
+        if (cents < 0) {
+            out.append('-');
+            cents = -cents;
+        }
+        out.append('$');
+        appendGrouped(out, cents / 100);
+        out.append('.');
+        appendTwoDigits(out, (int) (cents % 100));
+    }
+
+    private static void appendGrouped(StringBuilder out, long value) {
+        if (value >= 1000) {
+            appendGrouped(out, value / 1000);
+            out.append(',');
+            int group = (int) (value % 1000);
+            out.append((char) ('0' + group / 100));
+            appendTwoDigits(out, group % 100);
+        } else {
+            out.append(value);
+        }
+    }
+
+    private static void appendTwoDigits(StringBuilder out, int value) {
+        out.append((char) ('0' + value / 10)).append((char) ('0' + value % 10));
+    }
+
+    /**
+     * UTF-8 encodes the characters into the buffer, with a fast path for ASCII.
+     */
+    static void encode(CharSequence text, ByteBuffer out) {
+        for (int i = 0, length = text.length(); i < length; i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                out.put((byte) c);
+            } else if (c < 0x800) {
+                out.put((byte) (0xC0 | (c >> 6)));
+                out.put((byte) (0x80 | (c & 0x3F)));
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(text.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, text.charAt(++i));
+                out.put((byte) (0xF0 | (codePoint >> 18)));
+                out.put((byte) (0x80 | ((codePoint >> 12) & 0x3F)));
+                out.put((byte) (0x80 | ((codePoint >> 6) & 0x3F)));
+                out.put((byte) (0x80 | (codePoint & 0x3F)));
+            } else if (Character.isSurrogate(c)) {
+                out.put((byte) '?'); // unpaired surrogate, as String.getBytes(UTF_8) does
+            } else {
+                out.put((byte) (0xE0 | (c >> 12)));
+                out.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+                out.put((byte) (0x80 | (c & 0x3F)));
+            }
+        }
+    }
+}
@@ -0,0 +1,99 @@
+import org.junit.Test;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.io.ByteArrayOutputStream;
+import java.text.NumberFormat;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AgreementRendererTest {
+
+    // The original String.format rendering, kept as the reference for byte-identical output
+    private static String formatWithStringFormat(RentalAgreement rental) {
+        DateTimeFormatter dateFormatter = DateTimeFormatter.ofPattern("MM/dd/yy");
+        NumberFormat currencyFormatter = NumberFormat.getCurrencyInstance(Locale.US);
+        ITool tool = rental.getTool();
+        return String.format(
+            "Tool code: %s\n" +
+            "Tool type: %s\n" +
+            "Tool brand: %s\n" +
+            "Rental days: %d\n" +
+            "Check out date: %s\n" +
+            "Due date: %s\n" +
+            "Daily rental charge: %s\n" +
+            "Charge days: %d\n" +
+            "Pre-discount charge: %s\n" +
+            "Discount percent: %d%%\n" +
+            "Discount amount: %s\n" +
+            "Final charge: %s\n\n",
+            tool.getToolCode(), tool.getToolType(), tool.getBrand(), rental.getRentalDays(),
+            rental.getCheckoutDate().format(dateFormatter), rental.getDueDate().format(dateFormatter),
+            currencyFormatter.format(tool.getDailyCharge()),
+            rental.getChargeDays(), currencyFormatter.format(rental.getPreDiscountCharge()),
+            rental.getDiscountPercent(), currencyFormatter.format(rental.getDiscountAmount()),
+            currencyFormatter.format(rental.getFinalCharge()));
+    }
+
+    private static List<RentalAgreement> sampleAgreements() {
+        ITool[] tools = {
+            new Tool("LADW", "Ladder", "Werner"),
+            new Tool("CHNS", "Chainsaw", "Stihl"),
+            new Tool("JAKR", "Jackhammer", "Ridgíd")
+        };
+        List<RentalAgreement> agreements = new ArrayList<>();
+        LocalDate date = LocalDate.of(1998, 12, 20);
+        for (int i = 0; i < 3000; i++) {
+            // Rental lengths up to 2000 days reach charges over $1,000
+            agreements.add(new RentalAgreement(tools[i % 3], 1 + (i * 37) % 2000, i % 101, date));
+            date = date.plusDays(5);
+        }
+        return agreements;
+    }
+
+    @Test
+    public void testMatchesStringFormatOutput() {
+        for (RentalAgreement rental : sampleAgreements()) {
+            assertEquals(formatWithStringFormat(rental), rental.generateAgreement());
+        }
+    }
+
+    @Test
+    public void testAppendableAndByteBufferOutput() throws IOException {
+        AgreementRenderer renderer = new AgreementRenderer();
+        ByteBuffer buffer = ByteBuffer.allocate(1024);
+        for (RentalAgreement rental : sampleAgreements().subList(0, 50)) {
+            String expected = formatWithStringFormat(rental);
+
+            StringWriter writer = new StringWriter();
+            renderer.render(rental, writer);
+            assertEquals(expected, writer.toString());
+
+            buffer.clear();
+            renderer.render(rental, buffer);
+            buffer.flip();
+            assertEquals(expected, StandardCharsets.UTF_8.decode(buffer).toString());
+        }
+    }
+
+    @Test
+    public void testBulkRenderingToChannel() throws IOException {
+        List<RentalAgreement> agreements = sampleAgreements();
+        StringBuilder expected = new StringBuilder();
+        for (RentalAgreement rental : agreements) {
+            expected.append(formatWithStringFormat(rental));
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        int count = new AgreementRenderer().renderAll(agreements, Channels.newChannel(bytes), ByteBuffer.allocate(4096));
+
+        assertEquals(agreements.size(), count);
+        assertEquals(expected.toString(), bytes.toString(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,80 @@
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * The BatchCheckout class prices many checkout requests in one call. The work is split
+ * across cores with a fork-join pool, and results are returned in input order, so a batch
+ * always produces the same output no matter how it was scheduled.
+ *
+ * A request that fails validation does not abort the batch; its result carries the
+ * error message instead of an agreement.
+ */
+public class BatchCheckout {
+
+    private final Checkout checkout;
+    private final ForkJoinPool pool;
+
+    /**
+     * Constructor for BatchCheckout using the common fork-join pool.
+     *
+     * @param checkout The checkout used to price each request.
+     */
+    public BatchCheckout(Checkout checkout) {
+        this(checkout, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Constructor for BatchCheckout.
+     *
+     * @param checkout The checkout used to price each request.
+     * @param pool The fork-join pool the batch runs in.
+     */
+    public BatchCheckout(Checkout checkout, ForkJoinPool pool) {
+        this.checkout = checkout;
+        this.pool = pool;
+    }
+
+    /**
+     * Prices every request in the list.
+     *
+     * @param requests The checkout requests to price.
+     * @return One result per request, in the same order as the requests.
+     */
+    public List<CheckoutResult> checkoutAll(List<CheckoutRequest> requests) {
+        CheckoutResult[] results = new CheckoutResult[requests.size()];
+        pool.submit(() -> IntStream.range(0, results.length)
+                .parallel()
+                .forEach(i -> results[i] = checkoutOne(requests.get(i))))
+            .join();
+        return Collections.unmodifiableList(Arrays.asList(results));
+    }
+
+    /**
+     * Prices every request in the stream.
+     *
+     * @param requests The checkout requests to price.
+     * @return One result per request, in the stream's encounter order.
+     */
+    public List<CheckoutResult> checkoutAll(Stream<CheckoutRequest> requests) {
+        return pool.submit(() -> requests
+                .parallel()
+                .map(this::checkoutOne)
+                .collect(Collectors.toUnmodifiableList()))
+            .join();
+    }
+
+    private CheckoutResult checkoutOne(CheckoutRequest request) {
+        try {
+            RentalAgreement agreement = checkout.checkoutTool(request.getTool(), request.getRentalDayCount(),
+                    request.getDiscountPercent(), request.getCheckoutDate(), request.getHolidayCalendar());
+            return CheckoutResult.success(request, agreement);
+        } catch (IllegalArgumentException e) {
+            return CheckoutResult.failure(request, e.getMessage());
+        }
+    }
+}
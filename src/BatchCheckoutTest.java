@@ -0,0 +1,47 @@
+import org.junit.Test;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BatchCheckoutTest {
+
+    private final ITool ladder = new Tool("LADW", "Ladder", "Werner");
+    private final ITool jackhammer = new Tool("JAKR", "Jackhammer", "Ridgid");
+
+    @Test
+    public void testResultsKeepInputOrder() {
+        List<CheckoutRequest> requests = new ArrayList<>();
+        LocalDate start = LocalDate.of(2024, 1, 1);
+        for (int i = 0; i < 10_000; i++) {
+            requests.add(new CheckoutRequest(i % 2 == 0 ? ladder : jackhammer, 1 + i % 30, i % 101, start.plusDays(i % 400)));
+        }
+
+        List<CheckoutResult> results = new BatchCheckout(new Checkout()).checkoutAll(requests);
+
+        assertEquals(requests.size(), results.size());
+        for (int i = 0; i < requests.size(); i++) {
+            CheckoutRequest request = requests.get(i);
+            RentalAgreement expected = new RentalAgreement(request.getTool(), request.getRentalDayCount(),
+                    request.getDiscountPercent(), request.getCheckoutDate());
+            RentalAgreement actual = results.get(i).getAgreement();
+            assertSame(request, results.get(i).getRequest());
+            assertEquals(expected.getDueDate(), actual.getDueDate());
+            assertEquals(expected.getFinalCharge(), actual.getFinalCharge());
+        }
+    }
+
+    @Test
+    public void testValidationErrorsAreReportedPerItem() {
+        LocalDate date = LocalDate.of(2024, 3, 15);
+        List<CheckoutResult> results = new BatchCheckout(new Checkout()).checkoutAll(List.of(
+            new CheckoutRequest(ladder, 5, 10, date),
+            new CheckoutRequest(ladder, 0, 10, date),
+            new CheckoutRequest(ladder, 5, 101, date)).stream());
+
+        assertTrue(results.get(0).isSuccess());
+        assertFalse(results.get(1).isSuccess());
+        assertEquals("Rental day count must be 1 or greater.", results.get(1).getError());
+        assertEquals("Discount percent must be between 0 and 100.", results.get(2).getError());
+    }
+}
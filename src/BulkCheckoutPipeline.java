@@ -0,0 +1,510 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * The BulkCheckoutPipeline class streams a CSV file of checkout requests of any size through
+ * RentalAgreement and writes the agreements to an output file.
+ *
+ * The input has a header line followed by one request per line:
+ *
+ *   toolCode,checkoutDate,rentalDays,discountPercent
+ *   JAKR,2024-07-02,5,10
+ *
+ * Work flows through three stages connected by bounded queues: a parser thread reads the input
+ * channel in fixed-size buffers and cuts it into batches of requests, the pricing stage prices
+ * each batch with BatchCheckout, and the calling thread renders the results into a buffer that
+ * is written to the output channel. Batches and queues have a fixed size, so memory use stays
+ * constant no matter how large the input is. Output rows are in input order.
+ *
+ * Rows that cannot be parsed or fail validation do not stop the run; they are reported in
+ * the output with their line number. Anything else that goes wrong in a stage is passed
+ * downstream as a failed batch and rethrown from run, so a failing stage never leaves the
+ * others waiting.
+ */
+public class BulkCheckoutPipeline {
+
+    /**
+     * The output layout: the agreement text of generateAgreement, or one CSV row per request.
+     */
+    public enum Format {
+        TEXT,
+        CSV
+    }
+
+    static final String CSV_HEADER = "toolCode,toolType,brand,rentalDays,checkoutDate,dueDate,dailyCharge,"
+            + "chargeDays,preDiscountCharge,discountPercent,discountAmount,finalCharge,error\n";
+
+    private static final int BATCH_SIZE = 4096;
+    private static final int QUEUE_CAPACITY = 4;
+    private static final int READ_BUFFER_SIZE = 1 << 16;
+    private static final int WRITE_BUFFER_SIZE = 1 << 18;
+
+    private final ToolCatalog toolCatalog;
+    private final BatchCheckout batchCheckout;
+    private final Format format;
+
+    /**
+     * Constructor for BulkCheckoutPipeline.
+     *
+     * @param toolCatalog The catalog used to resolve tool codes.
+     * @param batchCheckout The batch checkout used to price each batch.
+     * @param format The output layout.
+     */
+    public BulkCheckoutPipeline(ToolCatalog toolCatalog, BatchCheckout batchCheckout, Format format) {
+        this.toolCatalog = toolCatalog;
+        this.batchCheckout = batchCheckout;
+        this.format = format;
+    }
+
+    /**
+     * The Summary nested class reports the outcome of a run.
+     */
+    public static final class Summary {
+        private final long rows;
+        private final long errors;
+        private final long elapsedNanos;
+
+        Summary(long rows, long errors, long elapsedNanos) {
+            this.rows = rows;
+            this.errors = errors;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        public long getRows() {
+            return rows;
+        }
+
+        public long getErrors() {
+            return errors;
+        }
+
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        public double getRowsPerSecond() {
+            return elapsedNanos == 0 ? 0 : rows * 1_000_000_000.0 / elapsedNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Processed %d rows (%d errors) in %d ms, %.0f rows/s",
+                    rows, errors, elapsedNanos / 1_000_000, getRowsPerSecond());
+        }
+    }
+
+    /**
+     * Prices every request in the input file and writes the results to the output file.
+     *
+     * @param input The CSV file of checkout requests.
+     * @param output The file to write, replaced if it exists.
+     * @return The number of rows and errors, and the elapsed time.
+     * @throws IOException If reading or writing fails.
+     * @throws RuntimeException If parsing or pricing fails unexpectedly, as thrown by the stage.
+     */
+    public Summary run(Path input, Path output) throws IOException {
+        long start = System.nanoTime();
+        BlockingQueue<Batch> parsed = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        BlockingQueue<Batch> priced = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+
+        try (FileChannel in = FileChannel.open(input, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(output, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                     StandardOpenOption.TRUNCATE_EXISTING)) {
+            Thread parser = new Thread(() -> parse(in, parsed), "bulk-checkout-parser");
+            Thread pricer = new Thread(() -> price(parsed, priced), "bulk-checkout-pricer");
+            parser.setDaemon(true);
+            pricer.setDaemon(true);
+            parser.start();
+            pricer.start();
+            try {
+                long[] counts = write(priced, out);
+                out.force(false);
+                return new Summary(counts[0], counts[1], System.nanoTime() - start);
+            } finally {
+                parser.interrupt();
+                pricer.interrupt();
+            }
+        }
+    }
+
+    /**
+     * The Batch nested class carries up to BATCH_SIZE consecutive input rows between stages.
+     * A row holds either a parsed request or the reason it could not be parsed. A batch with
+     * a failure ends the run.
+     */
+    private static final class Batch {
+        static final Batch END = new Batch();
+
+        final long[] lineNumbers = new long[BATCH_SIZE];
+        final CheckoutRequest[] requests = new CheckoutRequest[BATCH_SIZE];
+        final String[] parseErrors = new String[BATCH_SIZE];
+        CheckoutResult[] results;
+        Throwable failure;
+        int size;
+    }
+
+    private void parse(FileChannel in, BlockingQueue<Batch> parsed) {
+        try {
+            try {
+                ByteBuffer buffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+                RowParser rows = new RowParser();
+                long lineNumber = 0;
+                Batch batch = new Batch();
+                boolean eof = false;
+                while (!eof) {
+                    eof = in.read(buffer) < 0;
+                    buffer.flip();
+                    while (true) {
+                        int lineEnd = indexOf(buffer, (byte) '\n');
+                        if (lineEnd < 0) {
+                            if (!eof || !buffer.hasRemaining()) {
+                                break;
+                            }
+                            lineEnd = buffer.limit(); // last line without a newline
+                        }
+                        lineNumber++;
+                        if (lineNumber > 1) { // skip the header
+                            int end = lineEnd > buffer.position() && buffer.get(lineEnd - 1) == '\r' ? lineEnd - 1 : lineEnd;
+                            if (end > buffer.position()) {
+                                batch.lineNumbers[batch.size] = lineNumber;
+                                rows.parse(buffer, buffer.position(), end, batch);
+                                if (batch.size == BATCH_SIZE) {
+                                    parsed.put(batch);
+                                    batch = new Batch();
+                                }
+                            }
+                        }
+                        buffer.position(Math.min(lineEnd + 1, buffer.limit()));
+                    }
+                    if (!eof && buffer.position() == 0 && buffer.limit() == buffer.capacity()) {
+                        throw new IOException("Line " + (lineNumber + 1) + " is longer than " + READ_BUFFER_SIZE + " bytes");
+                    }
+                    buffer.compact();
+                }
+                if (batch.size > 0) {
+                    parsed.put(batch);
+                }
+            } catch (InterruptedException e) {
+                throw e;
+            } catch (Throwable e) {
+                Batch failed = new Batch();
+                failed.failure = e;
+                parsed.put(failed);
+                return;
+            }
+            parsed.put(Batch.END);
+        } catch (InterruptedException e) {
+            // The writer gave up; nothing left to do
+        }
+    }
+
+    private static int indexOf(ByteBuffer buffer, byte value) {
+        for (int i = buffer.position(); i < buffer.limit(); i++) {
+            if (buffer.get(i) == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void price(BlockingQueue<Batch> parsed, BlockingQueue<Batch> priced) {
+        try {
+            while (true) {
+                Batch batch = parsed.take();
+                if (batch != Batch.END && batch.failure == null) {
+                    try {
+                        price(batch);
+                    } catch (Throwable e) {
+                        batch.failure = e;
+                    }
+                }
+                priced.put(batch);
+                if (batch == Batch.END || batch.failure != null) {
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            // The writer gave up; nothing left to do
+        }
+    }
+
+    private void price(Batch batch) {
+        List<CheckoutRequest> requests = new ArrayList<>(batch.size);
+        for (int i = 0; i < batch.size; i++) {
+            if (batch.requests[i] != null) {
+                requests.add(batch.requests[i]);
+            }
+        }
+        List<CheckoutResult> results = batchCheckout.checkoutAll(requests);
+        batch.results = new CheckoutResult[batch.size];
+        for (int i = 0, next = 0; i < batch.size; i++) {
+            batch.results[i] = batch.requests[i] != null
+                    ? results.get(next++)
+                    : CheckoutResult.failure(null, batch.parseErrors[i]);
+        }
+    }
+
+    private long[] write(BlockingQueue<Batch> priced, FileChannel out) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(WRITE_BUFFER_SIZE);
+        StringBuilder line = new StringBuilder(256);
+        long rows = 0;
+        long errors = 0;
+        if (format == Format.CSV) {
+            line.append(CSV_HEADER);
+            AgreementRenderer.encode(line, buffer);
+        }
+        try {
+            while (true) {
+                Batch batch = priced.take();
+                if (batch == Batch.END) {
+                    break;
+                }
+                if (batch.failure instanceof IOException e) {
+                    throw e;
+                } else if (batch.failure instanceof RuntimeException e) {
+                    throw e;
+                } else if (batch.failure instanceof Error e) {
+                    throw e;
+                } else if (batch.failure != null) {
+                    throw new IOException("Bulk checkout stage failed", batch.failure);
+                }
+                for (int i = 0; i < batch.size; i++) {
+                    CheckoutResult result = batch.results[i];
+                    line.setLength(0);
+                    if (result.isSuccess()) {
+                        if (format == Format.CSV) {
+                            appendCsv(line, result.getAgreement());
+                        } else {
+                            AgreementRenderer.render(result.getAgreement(), line);
+                        }
+                    } else {
+                        errors++;
+                        appendError(line, batch.lineNumbers[i], result.getError());
+                    }
+                    if (buffer.remaining() < line.length() * 3) {
+                        drain(buffer, out);
+                    }
+                    AgreementRenderer.encode(line, buffer);
+                    rows++;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for priced rows", e);
+        }
+        drain(buffer, out);
+        return new long[] {rows, errors};
+    }
+
+    private void appendError(StringBuilder line, long lineNumber, String error) {
+        if (format == Format.CSV) {
+            line.append(",,,,,,,,,,,,\"Line ").append(lineNumber).append(": ")
+                .append(error.replace("\"", "\"\"")).append("\"\n");
+        } else {
+            line.append("Error on line ").append(lineNumber).append(": ").append(error).append("\n\n");
+        }
+    }
+
+    static void appendCsv(StringBuilder line, RentalAgreement agreement) {
+        ITool tool = agreement.getTool();
+        appendCsvText(line, tool.getToolCode());
+        line.append(',');
+        appendCsvText(line, tool.getToolType());
+        line.append(',');
+        appendCsvText(line, tool.getBrand());
+        line.append(',').append(agreement.getRentalDays()).append(',');
+        appendIsoDate(line, agreement.getCheckoutDate());
+        line.append(',');
+        appendIsoDate(line, agreement.getDueDate());
+        line.append(',');
+        appendDecimal(line, agreement.getDailyChargeMoney().getCents());
+        line.append(',').append(agreement.getChargeDays()).append(',');
+        appendDecimal(line, agreement.getPreDiscountChargeCents());
+        line.append(',').append(agreement.getAppliedDiscountPercent()).append(',');
+        appendDecimal(line, agreement.getDiscountAmountCents());
+        line.append(',');
+        appendDecimal(line, agreement.getFinalChargeCents());
+        line.append(",\n");
+    }
+
+    static void appendCsvText(StringBuilder line, String text) {
+        if (text.indexOf(',') < 0 && text.indexOf('"') < 0 && text.indexOf('\n') < 0) {
+            line.append(text);
+        } else {
+            line.append('"').append(text.replace("\"", "\"\"")).append('"');
+        }
+    }
+
+    static void appendIsoDate(StringBuilder line, LocalDate date) {
+        line.append(date.getYear()).append('-');
+        int month = date.getMonthValue();
+        line.append((char) ('0' + month / 10)).append((char) ('0' + month % 10)).append('-');
+        int day = date.getDayOfMonth();
+        line.append((char) ('0' + day / 10)).append((char) ('0' + day % 10));
+    }
+
+    static void appendDecimal(StringBuilder line, long cents) {
+        if (cents < 0) {
+            line.append('-');
+            cents = -cents;
+        }
+        long fraction = cents % 100;
+        line.append(cents / 100).append('.').append((char) ('0' + fraction / 10)).append((char) ('0' + fraction % 10));
+    }
+
+    private static void drain(ByteBuffer buffer, FileChannel out) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Parses request rows straight from the read buffer. Only the tool code is decoded into a
+     * String, and that only when the catalog has not seen the code's bytes before.
+     */
+    private final class RowParser {
+        private final int[] fields = new int[8];
+        private byte[] lastCodeBytes = new byte[0];
+        private ITool lastTool;
+
+        void parse(ByteBuffer buffer, int start, int end, Batch batch) {
+            int row = batch.size++;
+            batch.requests[row] = null;
+            batch.parseErrors[row] = null;
+            int count = 0;
+            int fieldStart = start;
+            for (int i = start; i <= end; i++) {
+                if (i == end || buffer.get(i) == ',') {
+                    if (count == 4) {
+                        batch.parseErrors[row] = "expected 4 columns";
+                        return;
+                    }
+                    fields[count * 2] = fieldStart;
+                    fields[count * 2 + 1] = i;
+                    count++;
+                    fieldStart = i + 1;
+                }
+            }
+            if (count != 4) {
+                batch.parseErrors[row] = "expected 4 columns";
+                return;
+            }
+            ITool tool = tool(buffer, fields[0], fields[1]);
+            if (tool == null) {
+                Metrics.get().recordValidationFailure(Metrics.ValidationFailure.UNKNOWN_TOOL);
+                batch.parseErrors[row] = "Unknown tool code: " + text(buffer, fields[0], fields[1]);
+                return;
+            }
+            LocalDate checkoutDate = date(buffer, fields[2], fields[3]);
+            if (checkoutDate == null) {
+                batch.parseErrors[row] = "invalid checkout date: " + text(buffer, fields[2], fields[3]);
+                return;
+            }
+            long rentalDays = number(buffer, fields[4], fields[5]);
+            long discountPercent = number(buffer, fields[6], fields[7]);
+            if (rentalDays == Long.MIN_VALUE || discountPercent == Long.MIN_VALUE) {
+                batch.parseErrors[row] = "invalid number";
+                return;
+            }
+            batch.requests[row] = new CheckoutRequest(tool, (int) rentalDays, (int) discountPercent, checkoutDate);
+        }
+
+        private ITool tool(ByteBuffer buffer, int start, int end) {
+            start = skipSpaces(buffer, start, end);
+            end = trimSpaces(buffer, start, end);
+            int length = end - start;
+            // Consecutive rows usually repeat the same tool, so remember the last match
+            if (lastTool != null && length == lastCodeBytes.length) {
+                boolean same = true;
+                for (int i = 0; i < length && same; i++) {
+                    same = buffer.get(start + i) == lastCodeBytes[i];
+                }
+                if (same) {
+                    return lastTool;
+                }
+            }
+            byte[] code = new byte[length];
+            buffer.get(start, code);
+            ITool tool = toolCatalog.findTool(new String(code, StandardCharsets.UTF_8));
+            if (tool != null) {
+                lastCodeBytes = code;
+                lastTool = tool;
+            }
+            return tool;
+        }
+
+        // Parses yyyy-MM-dd
+        private LocalDate date(ByteBuffer buffer, int start, int end) {
+            start = skipSpaces(buffer, start, end);
+            end = trimSpaces(buffer, start, end);
+            if (end - start != 10 || buffer.get(start + 4) != '-' || buffer.get(start + 7) != '-') {
+                return null;
+            }
+            long year = number(buffer, start, start + 4);
+            long month = number(buffer, start + 5, start + 7);
+            long day = number(buffer, start + 8, start + 10);
+            if (year == Long.MIN_VALUE || month == Long.MIN_VALUE || day == Long.MIN_VALUE) {
+                return null;
+            }
+            try {
+                return LocalDate.of((int) year, (int) month, (int) day);
+            } catch (DateTimeException e) {
+                return null;
+            }
+        }
+
+        // Parses an optionally negative integer, Long.MIN_VALUE if the field is not a number
+        private long number(ByteBuffer buffer, int start, int end) {
+            start = skipSpaces(buffer, start, end);
+            end = trimSpaces(buffer, start, end);
+            boolean negative = start < end && buffer.get(start) == '-';
+            if (negative) {
+                start++;
+            }
+            if (start == end || end - start > 9) {
+                return Long.MIN_VALUE;
+            }
+            long value = 0;
+            for (int i = start; i < end; i++) {
+                byte b = buffer.get(i);
+                if (b < '0' || b > '9') {
+                    return Long.MIN_VALUE;
+                }
+                value = value * 10 + (b - '0');
+            }
+            return negative ? -value : value;
+        }
+
+        private String text(ByteBuffer buffer, int start, int end) {
+            byte[] bytes = new byte[end - start];
+            buffer.get(start, bytes);
+            return new String(bytes, StandardCharsets.UTF_8).trim();
+        }
+
+        private int skipSpaces(ByteBuffer buffer, int start, int end) {
+            while (start < end && buffer.get(start) == ' ') {
+                start++;
+            }
+            return start;
+        }
+
+        private int trimSpaces(ByteBuffer buffer, int start, int end) {
+            while (end > start && buffer.get(end - 1) == ' ') {
+                end--;
+            }
+            return end;
+        }
+    }
+}
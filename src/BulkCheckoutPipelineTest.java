@@ -0,0 +1,89 @@
+import org.junit.Test;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BulkCheckoutPipelineTest {
+
+    private final ToolCatalog catalog = ToolCatalog.standard(new ToolFactory());
+
+    private BulkCheckoutPipeline.Summary run(String input, Path output, BulkCheckoutPipeline.Format format) throws IOException {
+        Path inputFile = Files.createTempFile("requests", ".csv");
+        inputFile.toFile().deleteOnExit();
+        output.toFile().deleteOnExit();
+        Files.writeString(inputFile, input);
+        return new BulkCheckoutPipeline(catalog, new BatchCheckout(new Checkout()), format).run(inputFile, output);
+    }
+
+    @Test
+    public void testTextOutputMatchesGenerateAgreement() throws IOException {
+        StringBuilder input = new StringBuilder("toolCode,checkoutDate,rentalDays,discountPercent\n");
+        StringBuilder expected = new StringBuilder();
+        String[] codes = {"LADW", "CHNS", "JAKD", "JAKR"};
+        LocalDate date = LocalDate.of(2023, 6, 1);
+        // Enough rows to span several batches and read buffers
+        for (int i = 0; i < 10_000; i++) {
+            String code = codes[i % codes.length];
+            int days = 1 + i % 20;
+            int discount = i % 101;
+            input.append(code).append(',').append(date).append(',').append(days).append(',').append(discount).append('\n');
+            expected.append(new RentalAgreement(catalog.getTool(code), days, discount, date).generateAgreement());
+            date = date.plusDays(1);
+        }
+        Path output = Files.createTempFile("agreements", ".txt");
+
+        BulkCheckoutPipeline.Summary summary = run(input.toString(), output, BulkCheckoutPipeline.Format.TEXT);
+
+        assertEquals(10_000, summary.getRows());
+        assertEquals(0, summary.getErrors());
+        assertEquals(expected.toString(), Files.readString(output));
+    }
+
+    @Test
+    public void testCsvOutputReportsBadRows() throws IOException {
+        Path output = Files.createTempFile("agreements", ".csv");
+        BulkCheckoutPipeline.Summary summary = run(
+            "toolCode,checkoutDate,rentalDays,discountPercent\r\n" +
+            "JAKR,2015-09-03,5,101\r\n" +
+            "\r\n" +
+            "LADW,2020-07-02,3,10\r\n" +
+            "NONE,2020-07-02,3,10\r\n" +
+            "CHNS,2020-02-30,3,10\r\n" +
+            "CHNS,2015-07-02,5,25",
+            output, BulkCheckoutPipeline.Format.CSV);
+
+        assertEquals(5, summary.getRows());
+        assertEquals(3, summary.getErrors());
+        List<String> lines = Files.readAllLines(output);
+        assertEquals(BulkCheckoutPipeline.CSV_HEADER.trim(), lines.get(0));
+        assertEquals(",,,,,,,,,,,,\"Line 2: Discount percent must be between 0 and 100.\"", lines.get(1));
+        assertEquals("LADW,Ladder,Werner,3,2020-07-02,2020-07-07,1.99,1,1.99,10,0.20,1.79,", lines.get(2));
+        assertEquals(",,,,,,,,,,,,\"Line 5: Unknown tool code: NONE\"", lines.get(3));
+        assertEquals(",,,,,,,,,,,,\"Line 6: invalid checkout date: 2020-02-30\"", lines.get(4));
+        assertEquals("CHNS,Chainsaw,Stihl,5,2015-07-02,2015-07-09,1.49,3,4.47,25,1.12,3.35,", lines.get(5));
+    }
+
+    @Test
+    public void testPricingFailureEndsTheRun() throws IOException {
+        Path input = Files.createTempFile("requests", ".csv");
+        Path output = Files.createTempFile("agreements", ".txt");
+        input.toFile().deleteOnExit();
+        output.toFile().deleteOnExit();
+        Files.writeString(input, "toolCode,checkoutDate,rentalDays,discountPercent\nLADW,2020-07-02,3,10\n");
+        BatchCheckout failing = new BatchCheckout(new Checkout()) {
+            @Override
+            public List<CheckoutResult> checkoutAll(List<CheckoutRequest> requests) {
+                throw new IllegalStateException("pricing failed");
+            }
+        };
+
+        BulkCheckoutPipeline pipeline = new BulkCheckoutPipeline(catalog, failing, BulkCheckoutPipeline.Format.TEXT);
+        Exception error = assertTimeoutPreemptively(Duration.ofSeconds(10),
+                () -> assertThrows(IllegalStateException.class, () -> pipeline.run(input, output)));
+        assertEquals("pricing failed", error.getMessage());
+    }
+}
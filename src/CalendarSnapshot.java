@@ -0,0 +1,154 @@
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The CalendarSnapshot class saves the precomputed year tables of the registered holiday
+ * calendars to a file, and preloads them from it in a freshly started JVM. Loading reads the
+ * file with one channel read and copies each table straight into place, so no holiday rule is
+ * evaluated and no day of a snapshot year is walked with LocalDate.
+ *
+ * The file is deliberately read rather than memory-mapped: it is small, and in a cold JVM the
+ * first FileChannel.map costs tens of milliseconds, as the MappedByteBuffer is created through
+ * core reflection and spins method handle classes that a class-data-sharing archive does not
+ * keep. That is more than the whole snapshot saves.
+ *
+ * The file is little-endian: a header of magic, version and calendar count, then per calendar
+ * its name, the fingerprint of its rules, first year and year count followed by one table per
+ * year, see HolidayCalendar.YearTable.write and HolidayCalendar.rulesFingerprint. Calendars in
+ * the file that are not registered when it is loaded, or whose rules have changed since it was
+ * written, are skipped and build their tables from their rules as usual.
+ */
+public final class CalendarSnapshot {
+
+    private static final int MAGIC = 0x53435254; // "TRCS"
+    private static final int VERSION = 2;
+
+    private CalendarSnapshot() {
+    }
+
+    /**
+     * Writes the tables of every registered calendar for a range of years.
+     *
+     * @param file The snapshot file to write, replaced if it exists.
+     * @param firstYear The first year to include.
+     * @param lastYear The last year to include, inclusive.
+     * @throws IOException If the file cannot be written.
+     */
+    public static void write(Path file, int firstYear, int lastYear) throws IOException {
+        if (lastYear < firstYear) {
+            throw new IllegalArgumentException("Last year must not be before the first year.");
+        }
+        List<HolidayCalendar> calendars = new ArrayList<>(HolidayCalendar.registered());
+        List<byte[]> names = new ArrayList<>();
+        int size = 12;
+        for (HolidayCalendar calendar : calendars) {
+            byte[] name = calendar.getName().getBytes(StandardCharsets.UTF_8);
+            names.add(name);
+            size += 2 + name.length + 16;
+            for (int year = firstYear; year <= lastYear; year++) {
+                size += calendar.yearTable(year).serializedSize();
+            }
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(MAGIC).putInt(VERSION).putInt(calendars.size());
+        for (int i = 0; i < calendars.size(); i++) {
+            buffer.putShort((short) names.get(i).length).put(names.get(i));
+            buffer.putLong(calendars.get(i).rulesFingerprint());
+            buffer.putInt(firstYear).putInt(lastYear - firstYear + 1);
+            for (int year = firstYear; year <= lastYear; year++) {
+                calendars.get(i).yearTable(year).write(buffer);
+            }
+        }
+
+        // Written next to the target and moved into place, so a reader never reads a partial file
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        Files.write(temporary, buffer.array());
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Preloads the registered calendars from a snapshot. Years a calendar has already cached
+     * keep their tables, and a calendar whose rules differ from those the snapshot was written
+     * with keeps building its own.
+     *
+     * @param file The snapshot file.
+     * @return The number of year tables read for registered calendars with unchanged rules.
+     * @throws IOException If the file cannot be read.
+     * @throws IllegalArgumentException If the file is not a calendar snapshot.
+     */
+    public static int load(Path file) throws IOException {
+        Map<String, HolidayCalendar> calendars = new HashMap<>();
+        for (HolidayCalendar calendar : HolidayCalendar.registered()) {
+            calendars.put(calendar.getName(), calendar);
+        }
+        Map<String, Long> fingerprints = new HashMap<>();
+        int[] loaded = new int[1];
+        read(file, (name, rulesFingerprint, table) -> {
+            HolidayCalendar calendar = calendars.get(name);
+            if (calendar != null && fingerprints.computeIfAbsent(name, n -> calendar.rulesFingerprint()) == rulesFingerprint) {
+                calendar.preload(table);
+                loaded[0]++;
+            }
+        });
+        return loaded[0];
+    }
+
+    /**
+     * Reads every table in a snapshot.
+     */
+    static void read(Path file, TableHandler handler) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(Math.toIntExact(channel.size()));
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0) {
+                    break;
+                }
+            }
+            buffer.flip();
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            if (buffer.remaining() < 12 || buffer.getInt() != MAGIC) {
+                throw new IllegalArgumentException("Not a calendar snapshot: " + file);
+            }
+            int version = buffer.getInt();
+            if (version != VERSION) {
+                throw new IllegalArgumentException("Unsupported calendar snapshot version " + version + ": " + file);
+            }
+            int calendarCount = buffer.getInt();
+            try {
+                for (int i = 0; i < calendarCount; i++) {
+                    byte[] name = new byte[buffer.getShort()];
+                    buffer.get(name);
+                    String calendarName = new String(name, StandardCharsets.UTF_8);
+                    long rulesFingerprint = buffer.getLong();
+                    int firstYear = buffer.getInt();
+                    int yearCount = buffer.getInt();
+                    for (int year = firstYear; year < firstYear + yearCount; year++) {
+                        handler.accept(calendarName, rulesFingerprint, HolidayCalendar.YearTable.read(year, buffer));
+                    }
+                }
+            } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+                throw new IllegalArgumentException("Truncated calendar snapshot: " + file, e);
+            }
+        }
+    }
+
+    /**
+     * Receives the tables read from a snapshot.
+     */
+    interface TableHandler {
+        void accept(String calendarName, long rulesFingerprint, HolidayCalendar.YearTable table);
+    }
+}
@@ -0,0 +1,97 @@
+import org.junit.Test;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.Month;
+import java.util.Arrays;
+import java.util.List;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CalendarSnapshotTest {
+
+    @Test
+    public void testSnapshotRoundTrip() throws Exception {
+        Path file = Files.createTempFile("calendars", ".snapshot");
+        try {
+            CalendarSnapshot.write(file, 1999, 2031);
+            int[] tables = new int[1];
+            CalendarSnapshot.read(file, (name, rulesFingerprint, table) -> {
+                assertEquals(HolidayCalendar.forRegion(name).rulesFingerprint(), rulesFingerprint, name);
+                assertTrue(HolidayCalendar.forRegion(name).yearTable(table.year).matches(table), name + " " + table.year);
+                tables[0]++;
+            });
+            assertEquals(HolidayCalendar.registered().size() * 33, tables[0]);
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    public void testLoadPreloadsRegisteredCalendarsWithTheSameRules() throws Exception {
+        Path file = Files.createTempFile("calendars", ".snapshot");
+        try {
+            HolidayCalendar.register(new HolidayCalendar("SNAPSHOT-TEST",
+                    List.of(HolidayRule.fixedDate(Month.MARCH, 17))));
+            CalendarSnapshot.write(file, 2024, 2024);
+
+            // A calendar registered again with the same rules gets the snapshot's tables
+            HolidayCalendar same = new HolidayCalendar("SNAPSHOT-TEST", List.of(HolidayRule.fixedDate(Month.MARCH, 17)));
+            HolidayCalendar.register(same);
+            int calendars = HolidayCalendar.registered().size();
+            assertEquals(calendars, CalendarSnapshot.load(file));
+            assertTrue(same.isHoliday(LocalDate.of(2024, 3, 17)));
+
+            // One with other rules keeps building its own
+            HolidayCalendar changed = new HolidayCalendar("SNAPSHOT-TEST", List.of(HolidayRule.fixedDate(Month.MARCH, 18)));
+            assertNotEquals(same.rulesFingerprint(), changed.rulesFingerprint());
+            HolidayCalendar.register(changed);
+            assertEquals(calendars - 1, CalendarSnapshot.load(file));
+            assertFalse(changed.isHoliday(LocalDate.of(2024, 3, 17)));
+            assertTrue(changed.isHoliday(LocalDate.of(2024, 3, 18)));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    public void testUnreadableSnapshotFallsBackToTheRules() throws Exception {
+        Path file = Files.createTempFile("calendars", ".snapshot");
+        try {
+            CalendarSnapshot.write(file, 2020, 2021);
+            byte[] bytes = Files.readAllBytes(file);
+            Files.write(file, Arrays.copyOf(bytes, bytes.length - 100));
+            for (Path snapshot : List.of(file, file.resolveSibling(file.getFileName() + ".missing"))) {
+                Process process = new ProcessBuilder(
+                        Path.of(System.getProperty("java.home"), "bin", "java").toString(),
+                        "-D" + HolidayCalendar.SNAPSHOT_PROPERTY + "=" + snapshot,
+                        "-cp", System.getProperty("java.class.path"), "ToolRentalApplication")
+                        .redirectErrorStream(true).start();
+                String output = new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+                assertEquals(0, process.waitFor(), output);
+                assertTrue(output.contains("Unable to load calendar snapshot from " + snapshot), output);
+                assertTrue(output.contains("Tool code: JAKR"), output);
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    public void testRejectsOtherFiles() throws Exception {
+        Path file = Files.createTempFile("calendars", ".snapshot");
+        try {
+            Files.writeString(file, "type,dailyCharge\n");
+            Exception wrong = assertThrows(IllegalArgumentException.class, () -> CalendarSnapshot.load(file));
+            assertEquals("Not a calendar snapshot: " + file, wrong.getMessage());
+
+            CalendarSnapshot.write(file, 2020, 2021);
+            byte[] bytes = Files.readAllBytes(file);
+            Files.write(file, Arrays.copyOf(bytes, bytes.length - 100));
+            Exception truncated = assertThrows(IllegalArgumentException.class, () -> CalendarSnapshot.load(file));
+            assertEquals("Truncated calendar snapshot: " + file, truncated.getMessage());
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+}
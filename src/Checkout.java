@@ -1,15 +1,109 @@
 import java.time.LocalDate;
 
+/**
+ * The Checkout class validates a checkout and creates its rental agreement. An optional
+ * QuoteCache in front of the pricing lets repeated quotes for the same inputs skip the
+ * due date and charge calculation. With an Inventory, every checkout also reserves a unit of
+ * the tool from the checkout date through the due date, and fails if none is free.
+ */
 public class Checkout {
 
-    public RentalAgreement checkoutTool(Tool tool, int rentalDayCount, int discountPercent, LocalDate checkoutDate) throws IllegalArgumentException {
+    private final PricingEngine pricingEngine;
+    private final QuoteCache quoteCache;
+    private final Inventory inventory;
+
+    public Checkout() {
+        this(PricingEngine.DEFAULT, null);
+    }
+
+    /**
+     * Constructor for Checkout.
+     *
+     * @param quoteCache The cache of calculated charges, or null to price every checkout afresh.
+     */
+    public Checkout(QuoteCache quoteCache) {
+        this(PricingEngine.DEFAULT, quoteCache);
+    }
+
+    /**
+     * Constructor for Checkout.
+     *
+     * @param pricingEngine The engine that calculates due dates and charges.
+     * @param quoteCache The cache of calculated charges, or null to price every checkout afresh.
+     */
+    public Checkout(PricingEngine pricingEngine, QuoteCache quoteCache) {
+        this(pricingEngine, quoteCache, null);
+    }
+
+    /**
+     * Constructor for Checkout.
+     *
+     * @param pricingEngine The engine that calculates due dates and charges.
+     * @param quoteCache The cache of calculated charges, or null to price every checkout afresh.
+     * @param inventory The inventory units are reserved in, or null to not track availability.
+     */
+    public Checkout(PricingEngine pricingEngine, QuoteCache quoteCache, Inventory inventory) {
+        this.pricingEngine = pricingEngine;
+        this.quoteCache = quoteCache;
+        this.inventory = inventory;
+    }
+
+    public RentalAgreement checkoutTool(ITool tool, int rentalDayCount, int discountPercent, LocalDate checkoutDate) throws IllegalArgumentException {
+        return checkoutTool(tool, rentalDayCount, discountPercent, checkoutDate, HolidayCalendar.DEFAULT);
+    }
+
+    public RentalAgreement checkoutTool(ITool tool, int rentalDayCount, int discountPercent, LocalDate checkoutDate,
+                                        HolidayCalendar holidayCalendar) throws IllegalArgumentException {
+        Metrics metrics = Metrics.get();
+        long start = metrics.startNanos();
         if (rentalDayCount < 1) {
+            metrics.recordValidationFailure(Metrics.ValidationFailure.RENTAL_DAYS);
             throw new IllegalArgumentException("Rental day count must be 1 or greater.");
         }
+        if (rentalDayCount > PricingEngine.MAX_RENTAL_DAYS) {
+            metrics.recordValidationFailure(Metrics.ValidationFailure.RENTAL_DAYS);
+            throw new IllegalArgumentException("Rental day count must be " + PricingEngine.MAX_RENTAL_DAYS + " or fewer.");
+        }
         if (discountPercent < 0 || discountPercent > 100) {
+            metrics.recordValidationFailure(Metrics.ValidationFailure.DISCOUNT_PERCENT);
             throw new IllegalArgumentException("Discount percent must be between 0 and 100.");
         }
 
-        return new RentalAgreement(tool, rentalDayCount, discountPercent, checkoutDate);
+        RentalCharges charges;
+        if (quoteCache == null) {
+            charges = pricingEngine.calculate(tool, rentalDayCount, discountPercent, checkoutDate, holidayCalendar);
+        } else {
+            charges = quoteCache.get(tool, rentalDayCount, discountPercent, checkoutDate, holidayCalendar,
+                    pricingEngine.getPricingPlan(),
+                    () -> pricingEngine.calculate(tool, rentalDayCount, discountPercent, checkoutDate, holidayCalendar));
+        }
+        Inventory.Reservation reservation = null;
+        if (inventory != null) {
+            reservation = inventory.reserve(tool.getToolCode(), checkoutDate, charges.getDueDate());
+        }
+        RentalAgreement agreement = new RentalAgreement(tool, rentalDayCount, discountPercent, checkoutDate,
+                holidayCalendar, charges, reservation);
+        metrics.recordStage(Metrics.Stage.CHECKOUT, start);
+        return agreement;
+    }
+
+    /**
+     * Extends or shortens a rental. Only the days added or removed are priced, and with an
+     * Inventory the agreement's reservation is moved to the new due date, keeping its unit.
+     *
+     * @param agreement The agreement to change.
+     * @param rentalDayCount The new number of rental days.
+     * @return The changed agreement.
+     * @throws IllegalArgumentException If the rental day count is less than 1, or the reserved
+     *         unit is not free on the added days.
+     */
+    public RentalAgreement changeRentalDays(RentalAgreement agreement, int rentalDayCount) {
+        RentalCharges charges = pricingEngine.recalculate(agreement, rentalDayCount);
+        Inventory.Reservation reservation = agreement.getReservation();
+        if (inventory != null && reservation != null) {
+            reservation = inventory.extend(reservation, charges.getDueDate());
+        }
+        return new RentalAgreement(agreement.getTool(), rentalDayCount, agreement.getDiscountPercent(),
+                agreement.getCheckoutDate(), agreement.getHolidayCalendar(), charges, reservation);
     }
 }
@@ -0,0 +1,217 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * The CheckoutLoadGenerator class drives a CheckoutServer with a fixed number of concurrent
+ * clients and reports throughput and latency percentiles. It is meant for sizing, run
+ * against a server on the local machine.
+ *
+ * Each client is a virtual thread that sends checkout requests back to back over a shared
+ * HttpClient, cycling through a fixed mix of tools, rental lengths, discounts and dates.
+ * Latencies recorded during the warm-up period are discarded. Every measured latency is
+ * kept, so the percentiles are exact rather than estimated.
+ */
+public final class CheckoutLoadGenerator {
+
+    private static final String[] TOOL_CODES = {"LADW", "CHNS", "JAKD", "JAKR"};
+    private static final int REQUEST_MIX_SIZE = 1024;
+
+    private final URI[] requests;
+    private final int concurrency;
+    private final Duration warmUp;
+    private final Duration duration;
+
+    /**
+     * Constructor for CheckoutLoadGenerator.
+     *
+     * @param server The base URI of the server, e.g. http://localhost:8080.
+     * @param concurrency The number of concurrent clients.
+     * @param warmUp How long to send requests before measuring.
+     * @param duration How long to measure.
+     */
+    public CheckoutLoadGenerator(URI server, int concurrency, Duration warmUp, Duration duration) {
+        if (concurrency < 1) {
+            throw new IllegalArgumentException("Concurrency must be 1 or more.");
+        }
+        this.concurrency = concurrency;
+        this.warmUp = warmUp;
+        this.duration = duration;
+        this.requests = new URI[REQUEST_MIX_SIZE];
+        LocalDate start = LocalDate.of(2024, 1, 1);
+        for (int i = 0; i < REQUEST_MIX_SIZE; i++) {
+            requests[i] = server.resolve(CheckoutServer.CHECKOUT_PATH
+                    + "?tool=" + TOOL_CODES[i % TOOL_CODES.length]
+                    + "&days=" + (1 + i % 30)
+                    + "&discount=" + (i * 7 % 101)
+                    + "&date=" + start.plusDays(i % 366));
+        }
+    }
+
+    /**
+     * Runs the load and returns the measurements.
+     *
+     * @return The report of the measured period.
+     * @throws InterruptedException If interrupted while waiting for the clients.
+     */
+    public Report run() throws InterruptedException {
+        HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+        long startNanos = System.nanoTime();
+        long measureFrom = startNanos + warmUp.toNanos();
+        long measureUntil = measureFrom + duration.toNanos();
+        List<Future<Client>> futures = new ArrayList<>(concurrency);
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < concurrency; i++) {
+                Client worker = new Client(client, i, measureFrom, measureUntil);
+                futures.add(executor.submit(() -> {
+                    worker.run();
+                    return worker;
+                }));
+            }
+        }
+
+        List<Client> workers = new ArrayList<>(concurrency);
+        int total = 0;
+        for (Future<Client> future : futures) {
+            try {
+                Client worker = future.get();
+                workers.add(worker);
+                total += worker.count;
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Load generator client failed", e.getCause());
+            }
+        }
+        long[] latencies = new long[total];
+        long errors = 0;
+        int count = 0;
+        for (Client worker : workers) {
+            System.arraycopy(worker.latencies, 0, latencies, count, worker.count);
+            count += worker.count;
+            errors += worker.errors;
+        }
+        Arrays.sort(latencies);
+        return new Report(latencies, errors, duration.toNanos());
+    }
+
+    /**
+     * The Client nested class is one simulated client sending requests back to back.
+     */
+    private final class Client {
+        private final HttpClient client;
+        private final long measureFrom;
+        private final long measureUntil;
+        private int next;
+        private long[] latencies = new long[1024];
+        private int count;
+        private long errors;
+
+        Client(HttpClient client, int index, long measureFrom, long measureUntil) {
+            this.client = client;
+            this.next = index * 31;
+            this.measureFrom = measureFrom;
+            this.measureUntil = measureUntil;
+        }
+
+        void run() {
+            while (true) {
+                URI uri = requests[next++ & (REQUEST_MIX_SIZE - 1)];
+                long start = System.nanoTime();
+                if (start >= measureUntil) {
+                    return;
+                }
+                boolean ok;
+                try {
+                    HttpResponse<byte[]> response = client.send(HttpRequest.newBuilder(uri).GET().build(),
+                            HttpResponse.BodyHandlers.ofByteArray());
+                    ok = response.statusCode() == 200;
+                } catch (IOException e) {
+                    ok = false;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                long end = System.nanoTime();
+                if (start >= measureFrom && end <= measureUntil) {
+                    if (ok) {
+                        if (count == latencies.length) {
+                            latencies = Arrays.copyOf(latencies, count * 2);
+                        }
+                        latencies[count++] = end - start;
+                    } else {
+                        errors++;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * The Report nested class holds the results of one load run.
+     */
+    public static final class Report {
+        private final long[] sortedLatencies;
+        private final long errors;
+        private final long elapsedNanos;
+
+        Report(long[] sortedLatencies, long errors, long elapsedNanos) {
+            this.sortedLatencies = sortedLatencies;
+            this.errors = errors;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        /**
+         * @return The number of successful requests.
+         */
+        public long getRequests() {
+            return sortedLatencies.length;
+        }
+
+        public long getErrors() {
+            return errors;
+        }
+
+        public double getRequestsPerSecond() {
+            return sortedLatencies.length * 1e9 / elapsedNanos;
+        }
+
+        /**
+         * Returns the latency at the given percentile, using the nearest-rank method.
+         *
+         * @param percentile The percentile, between 0 and 100.
+         * @return The latency in nanoseconds, or 0 if no requests succeeded.
+         */
+        public long getLatencyNanos(double percentile) {
+            if (percentile < 0 || percentile > 100) {
+                throw new IllegalArgumentException("Percentile must be between 0 and 100.");
+            }
+            if (sortedLatencies.length == 0) {
+                return 0;
+            }
+            int rank = (int) Math.ceil(percentile / 100 * sortedLatencies.length);
+            return sortedLatencies[Math.max(0, rank - 1)];
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Requests: %d (%d errors), %.0f req/s%n"
+                            + "Latency: p50 %.1f us, p99 %.1f us, p99.9 %.1f us, max %.1f us",
+                    getRequests(), errors, getRequestsPerSecond(),
+                    getLatencyNanos(50) / 1e3, getLatencyNanos(99) / 1e3,
+                    getLatencyNanos(99.9) / 1e3, getLatencyNanos(100) / 1e3);
+        }
+    }
+}
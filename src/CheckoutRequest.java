@@ -0,0 +1,74 @@
+import java.time.LocalDate;
+
+/**
+ * The CheckoutRequest class holds the inputs of a single tool checkout: the tool,
+ * the rental day count, the discount percentage, the checkout date and the holiday
+ * calendar of the store's region.
+ */
+public final class CheckoutRequest {
+    private final ITool tool;
+    private final int rentalDayCount;
+    private final int discountPercent;
+    private final LocalDate checkoutDate;
+    private final HolidayCalendar holidayCalendar;
+
+    /**
+     * Constructor for CheckoutRequest.
+     *
+     * @param tool The tool being rented.
+     * @param rentalDayCount The number of days for which the tool is rented.
+     * @param discountPercent The discount percentage applied to the rental.
+     * @param checkoutDate The date on which the tool is checked out.
+     */
+    public CheckoutRequest(ITool tool, int rentalDayCount, int discountPercent, LocalDate checkoutDate) {
+        this(tool, rentalDayCount, discountPercent, checkoutDate, HolidayCalendar.DEFAULT);
+    }
+
+    /**
+     * Constructor for CheckoutRequest with the holiday calendar of the store's region.
+     *
+     * @param tool The tool being rented.
+     * @param rentalDayCount The number of days for which the tool is rented.
+     * @param discountPercent The discount percentage applied to the rental.
+     * @param checkoutDate The date on which the tool is checked out.
+     * @param holidayCalendar The holiday calendar to price the rental with.
+     */
+    public CheckoutRequest(ITool tool, int rentalDayCount, int discountPercent, LocalDate checkoutDate,
+                           HolidayCalendar holidayCalendar) {
+        this.tool = tool;
+        this.rentalDayCount = rentalDayCount;
+        this.discountPercent = discountPercent;
+        this.checkoutDate = checkoutDate;
+        this.holidayCalendar = holidayCalendar;
+    }
+
+    public ITool getTool() {
+        return tool;
+    }
+
+    public int getRentalDayCount() {
+        return rentalDayCount;
+    }
+
+    public int getDiscountPercent() {
+        return discountPercent;
+    }
+
+    public LocalDate getCheckoutDate() {
+        return checkoutDate;
+    }
+
+    public HolidayCalendar getHolidayCalendar() {
+        return holidayCalendar;
+    }
+
+    @Override
+    public String toString() {
+        return "CheckoutRequest{" +
+               "toolCode='" + tool.getToolCode() + '\'' +
+               ", rentalDayCount=" + rentalDayCount +
+               ", discountPercent=" + discountPercent +
+               ", checkoutDate=" + checkoutDate +
+               '}';
+    }
+}
@@ -0,0 +1,45 @@
+/**
+ * The CheckoutResult class is the outcome of one request in a batch checkout.
+ * It holds either the rental agreement or the validation error that prevented it.
+ */
+public final class CheckoutResult {
+    private final CheckoutRequest request;
+    private final RentalAgreement agreement;
+    private final String error;
+
+    private CheckoutResult(CheckoutRequest request, RentalAgreement agreement, String error) {
+        this.request = request;
+        this.agreement = agreement;
+        this.error = error;
+    }
+
+    static CheckoutResult success(CheckoutRequest request, RentalAgreement agreement) {
+        return new CheckoutResult(request, agreement, null);
+    }
+
+    static CheckoutResult failure(CheckoutRequest request, String error) {
+        return new CheckoutResult(request, null, error);
+    }
+
+    public CheckoutRequest getRequest() {
+        return request;
+    }
+
+    public boolean isSuccess() {
+        return agreement != null;
+    }
+
+    /**
+     * @return The rental agreement, or null if the request failed validation.
+     */
+    public RentalAgreement getAgreement() {
+        return agreement;
+    }
+
+    /**
+     * @return The validation error message, or null if the checkout succeeded.
+     */
+    public String getError() {
+        return error;
+    }
+}
@@ -0,0 +1,314 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * The CheckoutServer class exposes Checkout over HTTP using the JDK's embedded HttpServer.
+ * Every exchange is handled on its own virtual thread, so slow clients do not tie up
+ * platform threads.
+ *
+ * A checkout is a GET or POST to /checkout with the parameters tool, days, discount and date
+ * (yyyy-MM-dd), and optionally region (a holiday calendar region) and format (text or csv),
+ * e.g. /checkout?tool=LADW&days=5&discount=10&date=2024-07-02. For POST the parameters are
+ * sent form encoded in the body. The response is the agreement as rendered by
+ * RentalAgreement.generateAgreement, or as one CSV row, with status 200. Invalid requests get
+ * status 400 and an error line, and checkouts that fail for any other reason status 500.
+ *
+ * Parameters are parsed by hand from the raw query and the agreement is rendered with
+ * AgreementRenderer, so no formatters or regular expressions are created per request.
+ *
+ * GET /metrics returns the installed Metrics in the Prometheus text format.
+ */
+public final class CheckoutServer implements Closeable {
+
+    static final String CHECKOUT_PATH = "/checkout";
+    static final String METRICS_PATH = "/metrics";
+
+    private static final int MAX_BODY_LENGTH = 4096;
+
+    static {
+        // The JDK server writes headers and body separately; with Nagle's algorithm on, every
+        // keep-alive response then waits for the client's delayed ACK, about 40 ms on Linux.
+        // The setting is read once, when the server's configuration class is loaded.
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+    }
+
+    private final ToolCatalog toolCatalog;
+    private final Checkout checkout;
+    private HttpServer server;
+    private ExecutorService executor;
+
+    /**
+     * Constructor for CheckoutServer.
+     *
+     * @param toolCatalog The catalog the tool codes of requests are looked up in.
+     * @param checkout The checkout that prices the requests.
+     */
+    public CheckoutServer(ToolCatalog toolCatalog, Checkout checkout) {
+        this.toolCatalog = toolCatalog;
+        this.checkout = checkout;
+    }
+
+    /**
+     * Starts serving on the given address.
+     *
+     * @param address The address to listen on; port 0 picks a free port.
+     * @throws IOException If the server socket cannot be bound.
+     */
+    public synchronized void start(InetSocketAddress address) throws IOException {
+        if (server != null) {
+            throw new IllegalStateException("Server is already started.");
+        }
+        HttpServer httpServer = HttpServer.create(address, 1024);
+        executor = Executors.newVirtualThreadPerTaskExecutor();
+        httpServer.setExecutor(executor);
+        httpServer.createContext(CHECKOUT_PATH, this::handle);
+        httpServer.createContext(METRICS_PATH, CheckoutServer::handleMetrics);
+        httpServer.start();
+        server = httpServer;
+    }
+
+    /**
+     * @return The port the server listens on.
+     */
+    public synchronized int getPort() {
+        if (server == null) {
+            throw new IllegalStateException("Server is not started.");
+        }
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Stops the server, waiting up to a second for exchanges in progress to complete.
+     */
+    @Override
+    public synchronized void close() {
+        if (server != null) {
+            server.stop(1);
+            executor.close();
+            server = null;
+            executor = null;
+        }
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            String query;
+            String method = exchange.getRequestMethod();
+            if (method.equals("GET")) {
+                query = exchange.getRequestURI().getRawQuery();
+            } else if (method.equals("POST")) {
+                query = readBody(exchange.getRequestBody());
+                if (query == null) {
+                    respond(exchange, 413, "Error: Request body is too large.\n");
+                    return;
+                }
+            } else {
+                exchange.getResponseHeaders().set("Allow", "GET, POST");
+                respond(exchange, 405, "Error: Method not allowed.\n");
+                return;
+            }
+            if (!exchange.getRequestURI().getPath().equals(CHECKOUT_PATH)) {
+                respond(exchange, 404, "Error: Not found.\n");
+                return;
+            }
+
+            StringBuilder out = new StringBuilder(320);
+            int status;
+            try {
+                CheckoutParameters parameters = parse(query == null ? "" : query);
+                RentalAgreement agreement = parameters.checkout();
+                Metrics metrics = Metrics.get();
+                long start = metrics.startNanos();
+                if (parameters.csv) {
+                    BulkCheckoutPipeline.appendCsv(out, agreement);
+                } else {
+                    AgreementRenderer.render(agreement, out);
+                }
+                metrics.recordStage(Metrics.Stage.RENDER, start);
+                status = 200;
+            } catch (IllegalArgumentException e) {
+                out.setLength(0);
+                out.append("Error: ").append(e.getMessage()).append('\n');
+                status = 400;
+            } catch (RuntimeException e) {
+                // Not the request's fault, e.g. a node of a sharded checkout is unreachable
+                out.setLength(0);
+                out.append("Error: ").append(e.getMessage() != null ? e.getMessage() : e.toString()).append('\n');
+                status = 500;
+            }
+            respond(exchange, status, out);
+        }
+    }
+
+    private CheckoutParameters parse(String query) {
+        try {
+            return new CheckoutParameters(query);
+        } catch (IllegalArgumentException e) {
+            Metrics.get().recordValidationFailure(Metrics.ValidationFailure.MALFORMED_REQUEST);
+            throw e;
+        }
+    }
+
+    // Serves the installed metrics in the Prometheus text format; empty while they are off.
+    private static void handleMetrics(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!exchange.getRequestMethod().equals("GET")) {
+                exchange.getResponseHeaders().set("Allow", "GET");
+                respond(exchange, 405, "Error: Method not allowed.\n");
+                return;
+            }
+            respond(exchange, 200, Metrics.get().toPrometheusText());
+        }
+    }
+
+    private static void respond(HttpExchange exchange, int status, CharSequence text) throws IOException {
+        // Agreements are almost always ASCII; three bytes per char covers any UTF-8 text
+        ByteBuffer body = ByteBuffer.allocate(text.length() * 3);
+        AgreementRenderer.encode(text, body);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=UTF-8");
+        exchange.sendResponseHeaders(status, body.position());
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body.array(), 0, body.position());
+        }
+    }
+
+    // Returns null if the body is longer than MAX_BODY_LENGTH
+    private static String readBody(InputStream in) throws IOException {
+        byte[] body = in.readNBytes(MAX_BODY_LENGTH + 1);
+        if (body.length > MAX_BODY_LENGTH) {
+            return null;
+        }
+        return new String(body, StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * The CheckoutParameters nested class parses the form encoded parameters of one checkout
+     * request.
+     */
+    private final class CheckoutParameters {
+        private String toolCode;
+        private int rentalDays = Integer.MIN_VALUE;
+        private int discountPercent = Integer.MIN_VALUE;
+        private LocalDate checkoutDate;
+        private HolidayCalendar holidayCalendar = HolidayCalendar.DEFAULT;
+        private boolean csv;
+
+        CheckoutParameters(String query) {
+            int start = 0;
+            int length = query.length();
+            while (start < length) {
+                int end = query.indexOf('&', start);
+                if (end < 0) {
+                    end = length;
+                }
+                int equals = query.indexOf('=', start);
+                if (equals < 0 || equals > end) {
+                    equals = end;
+                }
+                set(query, start, equals, Math.min(equals + 1, end), end);
+                start = end + 1;
+            }
+            if (toolCode == null) {
+                throw new IllegalArgumentException("Missing parameter: tool");
+            }
+            if (rentalDays == Integer.MIN_VALUE) {
+                throw new IllegalArgumentException("Missing parameter: days");
+            }
+            if (discountPercent == Integer.MIN_VALUE) {
+                throw new IllegalArgumentException("Missing parameter: discount");
+            }
+            if (checkoutDate == null) {
+                throw new IllegalArgumentException("Missing parameter: date");
+            }
+        }
+
+        RentalAgreement checkout() {
+            ITool tool = toolCatalog.getTool(toolCode);
+            return checkout.checkoutTool(tool, rentalDays, discountPercent, checkoutDate, holidayCalendar);
+        }
+
+        private void set(String query, int nameStart, int nameEnd, int valueStart, int valueEnd) {
+            if (is(query, nameStart, nameEnd, "tool")) {
+                toolCode = decode(query, valueStart, valueEnd);
+            } else if (is(query, nameStart, nameEnd, "days")) {
+                rentalDays = number(query, valueStart, valueEnd, "days");
+            } else if (is(query, nameStart, nameEnd, "discount")) {
+                discountPercent = number(query, valueStart, valueEnd, "discount");
+            } else if (is(query, nameStart, nameEnd, "date")) {
+                checkoutDate = date(query, valueStart, valueEnd);
+            } else if (is(query, nameStart, nameEnd, "region")) {
+                holidayCalendar = HolidayCalendar.forRegion(decode(query, valueStart, valueEnd));
+            } else if (is(query, nameStart, nameEnd, "format")) {
+                if (is(query, valueStart, valueEnd, "csv")) {
+                    csv = true;
+                } else if (!is(query, valueStart, valueEnd, "text")) {
+                    throw new IllegalArgumentException("Unknown output format: " + decode(query, valueStart, valueEnd));
+                }
+            }
+            // Unknown parameters are ignored
+        }
+
+        private boolean is(String query, int start, int end, String name) {
+            return end - start == name.length() && query.startsWith(name, start);
+        }
+
+        private String decode(String query, int start, int end) {
+            String value = query.substring(start, end);
+            if (value.indexOf('%') < 0 && value.indexOf('+') < 0) {
+                return value;
+            }
+            try {
+                return URLDecoder.decode(value, StandardCharsets.UTF_8);
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Invalid parameter encoding: " + value);
+            }
+        }
+
+        // Parses an optionally negative integer of up to nine digits
+        private int number(String query, int start, int end, String name) {
+            boolean negative = start < end && query.charAt(start) == '-';
+            int first = negative ? start + 1 : start;
+            if (first == end || end - first > 9) {
+                throw new IllegalArgumentException("Invalid number for parameter: " + name);
+            }
+            int value = 0;
+            for (int i = first; i < end; i++) {
+                char c = query.charAt(i);
+                if (c < '0' || c > '9') {
+                    throw new IllegalArgumentException("Invalid number for parameter: " + name);
+                }
+                value = value * 10 + (c - '0');
+            }
+            return negative ? -value : value;
+        }
+
+        // Parses yyyy-MM-dd
+        private LocalDate date(String query, int start, int end) {
+            if (end - start != 10 || query.charAt(start + 4) != '-' || query.charAt(start + 7) != '-') {
+                throw new IllegalArgumentException("Invalid checkout date: " + decode(query, start, end));
+            }
+            int year = number(query, start, start + 4, "date");
+            int month = number(query, start + 5, start + 7, "date");
+            int day = number(query, start + 8, start + 10, "date");
+            try {
+                return LocalDate.of(year, month, day);
+            } catch (DateTimeException e) {
+                throw new IllegalArgumentException("Invalid checkout date: " + query.substring(start, end));
+            }
+        }
+    }
+}
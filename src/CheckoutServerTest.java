@@ -0,0 +1,108 @@
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.LocalDate;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CheckoutServerTest {
+
+    private final ToolCatalog catalog = ToolCatalog.standard(new ToolFactory());
+    private final HttpClient client = HttpClient.newHttpClient();
+    private CheckoutServer server;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new CheckoutServer(catalog, new Checkout());
+        server.start(new InetSocketAddress("localhost", 0));
+    }
+
+    @After
+    public void tearDown() {
+        server.close();
+    }
+
+    private HttpResponse<String> get(String pathAndQuery) throws Exception {
+        URI uri = URI.create("http://localhost:" + server.getPort() + pathAndQuery);
+        return client.send(HttpRequest.newBuilder(uri).build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    @Test
+    public void testCheckoutReturnsAgreement() throws Exception {
+        HttpResponse<String> response = get("/checkout?tool=JAKR&days=9&discount=0&date=2015-07-02");
+
+        assertEquals(200, response.statusCode());
+        String expected = new RentalAgreement(catalog.getTool("JAKR"), 9, 0, LocalDate.of(2015, 7, 2)).generateAgreement();
+        assertEquals(expected, response.body());
+    }
+
+    @Test
+    public void testPostFormAndCsvFormat() throws Exception {
+        URI uri = URI.create("http://localhost:" + server.getPort() + "/checkout");
+        HttpRequest request = HttpRequest.newBuilder(uri)
+                .header("Content-Type", "application/x-www-form-urlencoded")
+                .POST(HttpRequest.BodyPublishers.ofString("tool=LADW&days=3&discount=10&date=2020-07-02&format=csv"))
+                .build();
+        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+
+        assertEquals(200, response.statusCode());
+        assertEquals("LADW,Ladder,Werner,3,2020-07-02,2020-07-07,1.99,1,1.99,10,0.20,1.79,\n", response.body());
+    }
+
+    @Test
+    public void testInvalidRequestsAreRejected() throws Exception {
+        HttpResponse<String> discount = get("/checkout?tool=JAKR&days=5&discount=101&date=2015-09-03");
+        assertEquals(400, discount.statusCode());
+        assertEquals("Error: Discount percent must be between 0 and 100.\n", discount.body());
+
+        HttpResponse<String> tool = get("/checkout?tool=NOPE&days=5&discount=0&date=2015-09-03");
+        assertEquals(400, tool.statusCode());
+        assertEquals("Error: Unknown tool code: NOPE\n", tool.body());
+
+        HttpResponse<String> days = get("/checkout?tool=JAKR&days=999999999&discount=0&date=2015-09-03");
+        assertEquals(400, days.statusCode());
+        assertEquals("Error: Rental day count must be 3650 or fewer.\n", days.body());
+
+        assertEquals(400, get("/checkout?tool=JAKR&days=5&discount=0").statusCode());
+        assertEquals(400, get("/checkout?tool=JAKR&days=x&discount=0&date=2015-09-03").statusCode());
+        assertEquals(400, get("/checkout?tool=JAKR&days=5&discount=0&date=2015-02-30").statusCode());
+        assertEquals(404, get("/checkout/other").statusCode());
+    }
+
+    @Test
+    public void testCheckoutFailuresAreServerErrors() throws Exception {
+        server.close();
+        server = new CheckoutServer(catalog, new Checkout() {
+            @Override
+            public RentalAgreement checkoutTool(ITool tool, int rentalDayCount, int discountPercent,
+                                                LocalDate checkoutDate, HolidayCalendar holidayCalendar) {
+                throw new IllegalStateException("Inventory is offline.");
+            }
+        });
+        server.start(new InetSocketAddress("localhost", 0));
+
+        HttpResponse<String> response = get("/checkout?tool=JAKR&days=5&discount=0&date=2015-09-03");
+        assertEquals(500, response.statusCode());
+        assertEquals("Error: Inventory is offline.\n", response.body());
+        // The server keeps serving, and requests it cannot parse are still the client's fault
+        assertEquals(400, get("/checkout?tool=JAKR&days=five&discount=0&date=2015-09-03").statusCode());
+    }
+
+    @Test
+    public void testLoadGeneratorReportsLatencies() throws Exception {
+        CheckoutLoadGenerator generator = new CheckoutLoadGenerator(URI.create("http://localhost:" + server.getPort()),
+                4, Duration.ofMillis(100), Duration.ofMillis(300));
+        CheckoutLoadGenerator.Report report = generator.run();
+
+        assertTrue(report.getRequests() > 0);
+        assertEquals(0, report.getErrors());
+        assertTrue(report.getLatencyNanos(50) <= report.getLatencyNanos(99));
+        assertTrue(report.getLatencyNanos(99) <= report.getLatencyNanos(99.9));
+        assertTrue(report.getLatencyNanos(99.9) <= report.getLatencyNanos(100));
+    }
+}
@@ -0,0 +1,331 @@
+import java.time.LocalDate;
+
+/**
+ * The ColumnarPricer class prices large batches of rentals held as parallel primitive arrays,
+ * one array per column, instead of as RentalAgreement objects. It is meant for forecasting
+ * jobs that quote millions of hypothetical rentals and only need the numbers.
+ *
+ * At construction the pricer compiles the holiday calendar into two flat int indexes over a
+ * fixed range of epoch days, one section per charging policy:
+ * - a running count of chargeable days, so the charge days of a rental are one subtraction;
+ * - the offsets of the chargeable days in order, so the due date is one lookup.
+ * Pricing a batch is then a handful of straight loops over int and long arrays with no
+ * per-row allocation, no LocalDate and no virtual calls. The money loop has no branches and
+ * is a candidate for auto-vectorization. Results are identical to RentalAgreement.
+ *
+ * A pricer is immutable once built and can be shared between threads; each thread needs its
+ * own Batch.
+ */
+public final class ColumnarPricer {
+
+    private final long[] dailyChargeCents;
+    private final int[] policies;
+    // Rentals longer than this could overflow the discount calculation, per type id
+    private final int[] maxRentalDaysByType;
+    private final int firstEpochDay;
+    private final int lastCheckoutEpochDay;
+    private final int maxRentalDaysInRange;
+    private final int span;
+    // counts[policy * (span + 1) + i] is the number of chargeable days in [first, first + i)
+    private final int[] counts;
+    // chargeableDays[starts[policy] + k] is the offset from first of the policy's k-th chargeable day
+    private final int[] chargeableDays;
+    private final int[] starts;
+
+    /**
+     * Constructor for ColumnarPricer.
+     *
+     * @param toolTypes The tool types the batches' type ids refer to.
+     * @param holidayCalendar The holiday calendar rentals are priced with.
+     * @param firstCheckoutDate The earliest checkout date the pricer accepts.
+     * @param lastCheckoutDate The latest checkout date the pricer accepts.
+     * @param maxRentalDays The longest rental the pricer accepts.
+     */
+    public ColumnarPricer(ToolTypeRegistry.Snapshot toolTypes, HolidayCalendar holidayCalendar,
+                          LocalDate firstCheckoutDate, LocalDate lastCheckoutDate, int maxRentalDays) {
+        if (lastCheckoutDate.isBefore(firstCheckoutDate)) {
+            throw new IllegalArgumentException("Last checkout date must not be before the first checkout date.");
+        }
+        if (maxRentalDays < 1) {
+            throw new IllegalArgumentException("Rental days must be 1 or more.");
+        }
+        int types = toolTypes.size();
+        this.dailyChargeCents = new long[types];
+        this.policies = new int[types];
+        this.maxRentalDaysByType = new int[types];
+        for (int id = 0; id < types; id++) {
+            long cents = toolTypes.getDailyChargeCents(id);
+            dailyChargeCents[id] = cents;
+            policies[id] = (toolTypes.isWeekendCharge(id) ? HolidayCalendar.WEEKEND_CHARGE : 0)
+                    | (toolTypes.isHolidayCharge(id) ? HolidayCalendar.HOLIDAY_CHARGE : 0);
+            maxRentalDaysByType[id] = cents == 0
+                    ? Integer.MAX_VALUE : (int) Math.min(Integer.MAX_VALUE, Long.MAX_VALUE / 100 / cents);
+        }
+
+        this.firstEpochDay = Math.toIntExact(firstCheckoutDate.toEpochDay());
+        this.lastCheckoutEpochDay = Math.toIntExact(lastCheckoutDate.toEpochDay());
+        this.maxRentalDaysInRange = maxRentalDays;
+        this.span = spanFor(holidayCalendar, firstCheckoutDate, lastCheckoutDate, maxRentalDays);
+
+        // One pass over the range fills the running counts and the chargeable day offsets of
+        // every policy.
+        int policyCount = HolidayCalendar.POLICY_COUNT;
+        this.counts = new int[policyCount * (span + 1)];
+        int[][] offsets = new int[policyCount][span];
+        int[] found = new int[policyCount];
+        HolidayCalendar.YearTable table = holidayCalendar.yearTable(firstCheckoutDate.getYear());
+        int dayOfYear = firstCheckoutDate.getDayOfYear() - 1;
+        for (int i = 0; i < span; i++) {
+            if (dayOfYear == table.length) {
+                table = holidayCalendar.yearTable(table.year + 1);
+                dayOfYear = 0;
+            }
+            for (int policy = 0; policy < policyCount; policy++) {
+                int base = policy * (span + 1);
+                if (table.isChargeable(policy, dayOfYear)) {
+                    offsets[policy][found[policy]++] = i;
+                }
+                counts[base + i + 1] = found[policy];
+            }
+            dayOfYear++;
+        }
+        this.starts = new int[policyCount + 1];
+        for (int policy = 0; policy < policyCount; policy++) {
+            starts[policy + 1] = starts[policy] + found[policy];
+        }
+        this.chargeableDays = new int[starts[policyCount]];
+        for (int policy = 0; policy < policyCount; policy++) {
+            System.arraycopy(offsets[policy], 0, chargeableDays, starts[policy], found[policy]);
+        }
+    }
+
+    /**
+     * Returns how many days past the first checkout date the indexes must cover, so that
+     * every policy has maxRentalDays chargeable days after the last checkout date.
+     */
+    private static int spanFor(HolidayCalendar holidayCalendar, LocalDate first, LocalDate last, int maxRentalDays) {
+        // Charge days need [checkout, checkout + days); due dates need the chargeable days after checkout.
+        long checkoutDays = last.toEpochDay() - first.toEpochDay() + 1;
+        long span = checkoutDays + maxRentalDays;
+        for (int policy = 0; policy < HolidayCalendar.POLICY_COUNT; policy++) {
+            int year = last.getYear();
+            int from = last.getDayOfYear(); // zero-based index of the following day
+            int remaining = maxRentalDays;
+            long walked = 0;
+            while (true) {
+                HolidayCalendar.YearTable table = holidayCalendar.yearTable(year);
+                int available = table.chargeableBetween(policy, from, table.length);
+                if (remaining <= available) {
+                    walked += table.indexOfNthChargeable(policy, from, remaining) - from + 1;
+                    break;
+                }
+                if (year - last.getYear() > 100) {
+                    throw new IllegalArgumentException("Holiday calendar has too few chargeable days.");
+                }
+                remaining -= available;
+                walked += table.length - from;
+                year++;
+                from = 0;
+            }
+            span = Math.max(span, checkoutDays + walked);
+        }
+        if (span >= Integer.MAX_VALUE / HolidayCalendar.POLICY_COUNT) {
+            throw new IllegalArgumentException("Date range is too large.");
+        }
+        return (int) span;
+    }
+
+    public LocalDate getFirstCheckoutDate() {
+        return LocalDate.ofEpochDay(firstEpochDay);
+    }
+
+    public LocalDate getLastCheckoutDate() {
+        return LocalDate.ofEpochDay(lastCheckoutEpochDay);
+    }
+
+    public int getMaxRentalDays() {
+        return maxRentalDaysInRange;
+    }
+
+    /**
+     * Prices every row of the batch, filling its output columns.
+     *
+     * All rows are validated before any output is written, so a batch with an invalid row is
+     * left untouched.
+     *
+     * @param batch The rentals to price.
+     * @throws IllegalArgumentException If a row has an unknown type id, a checkout date or
+     *         rental length outside the pricer's range, or a discount outside 0 to 100.
+     */
+    public void price(Batch batch) {
+        int size = batch.size;
+        int[] typeIds = batch.typeIds;
+        int[] checkoutEpochDays = batch.checkoutEpochDays;
+        int[] rentalDays = batch.rentalDays;
+        byte[] discountPercents = batch.discountPercents;
+        int[] chargeDays = batch.chargeDays;
+        int[] dueEpochDays = batch.dueEpochDays;
+        long[] preDiscountCents = batch.preDiscountCents;
+        long[] discountCents = batch.discountCents;
+        long[] finalCents = batch.finalCents;
+
+        for (int i = 0; i < size; i++) {
+            validate(i, typeIds[i], checkoutEpochDays[i], rentalDays[i], discountPercents[i]);
+        }
+
+        // Charge days and due dates: two index lookups per row
+        int stride = span + 1;
+        for (int i = 0; i < size; i++) {
+            int policy = policies[typeIds[i]];
+            int checkout = checkoutEpochDays[i] - firstEpochDay;
+            int days = rentalDays[i];
+            int base = policy * stride;
+            chargeDays[i] = counts[base + checkout + days] - counts[base + checkout];
+            dueEpochDays[i] = firstEpochDay + chargeableDays[starts[policy] + counts[base + checkout + 1] + days - 1];
+        }
+
+        // Charges: the discount is rounded half up, and amounts are never negative here
+        for (int i = 0; i < size; i++) {
+            preDiscountCents[i] = dailyChargeCents[typeIds[i]] * chargeDays[i];
+        }
+        for (int i = 0; i < size; i++) {
+            discountCents[i] = (preDiscountCents[i] * discountPercents[i] + 50) / 100;
+        }
+        for (int i = 0; i < size; i++) {
+            finalCents[i] = preDiscountCents[i] - discountCents[i];
+        }
+    }
+
+    private void validate(int row, int typeId, int checkoutEpochDay, int days, int discountPercent) {
+        if (typeId < 0 || typeId >= policies.length) {
+            throw new IllegalArgumentException("Row " + row + ": unknown tool type id " + typeId + ".");
+        }
+        if (checkoutEpochDay < firstEpochDay || checkoutEpochDay > lastCheckoutEpochDay) {
+            throw new IllegalArgumentException("Row " + row + ": checkout date is outside the pricer's range.");
+        }
+        if (days < 1) {
+            throw new IllegalArgumentException("Row " + row + ": Rental days must be 1 or more.");
+        }
+        if (days > maxRentalDaysInRange || days > maxRentalDaysByType[typeId]) {
+            throw new IllegalArgumentException("Row " + row + ": rental days exceed the pricer's maximum.");
+        }
+        if (discountPercent < 0 || discountPercent > 100) {
+            throw new IllegalArgumentException("Row " + row + ": Discount percent must be between 0 and 100.");
+        }
+    }
+
+    /**
+     * The Batch nested class holds the input and output columns of a batch of rentals. The
+     * column accessors return the backing arrays themselves, not copies, so that callers can
+     * fill and read them without per-row calls. A batch is reusable: set its size, overwrite
+     * the input columns and price it again.
+     */
+    public static final class Batch {
+        private final int[] typeIds;
+        private final int[] checkoutEpochDays;
+        private final int[] rentalDays;
+        private final byte[] discountPercents;
+        private final int[] chargeDays;
+        private final int[] dueEpochDays;
+        private final long[] preDiscountCents;
+        private final long[] discountCents;
+        private final long[] finalCents;
+        private int size;
+
+        /**
+         * Constructor for Batch.
+         *
+         * @param capacity The maximum number of rows.
+         */
+        public Batch(int capacity) {
+            this.typeIds = new int[capacity];
+            this.checkoutEpochDays = new int[capacity];
+            this.rentalDays = new int[capacity];
+            this.discountPercents = new byte[capacity];
+            this.chargeDays = new int[capacity];
+            this.dueEpochDays = new int[capacity];
+            this.preDiscountCents = new long[capacity];
+            this.discountCents = new long[capacity];
+            this.finalCents = new long[capacity];
+        }
+
+        /**
+         * Appends a row to the batch. The discount percent is checked here, since the column
+         * holds bytes and a larger value would not survive until the batch is priced.
+         *
+         * @return The index of the new row.
+         * @throws IllegalArgumentException If the discount percent is not between 0 and 100.
+         */
+        public int add(int typeId, int checkoutEpochDay, int rentalDays, int discountPercent) {
+            if (size == typeIds.length) {
+                throw new IllegalStateException("Batch is full.");
+            }
+            if (discountPercent < 0 || discountPercent > 100) {
+                throw new IllegalArgumentException("Row " + size + ": Discount percent must be between 0 and 100.");
+            }
+            typeIds[size] = typeId;
+            checkoutEpochDays[size] = checkoutEpochDay;
+            this.rentalDays[size] = rentalDays;
+            discountPercents[size] = (byte) discountPercent;
+            return size++;
+        }
+
+        public int capacity() {
+            return typeIds.length;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        /**
+         * Sets the number of rows, for callers that fill the input columns directly.
+         */
+        public void setSize(int size) {
+            if (size < 0 || size > typeIds.length) {
+                throw new IllegalArgumentException("Size must be between 0 and " + typeIds.length + ".");
+            }
+            this.size = size;
+        }
+
+        public void clear() {
+            size = 0;
+        }
+
+        public int[] getTypeIds() {
+            return typeIds;
+        }
+
+        public int[] getCheckoutEpochDays() {
+            return checkoutEpochDays;
+        }
+
+        public int[] getRentalDays() {
+            return rentalDays;
+        }
+
+        public byte[] getDiscountPercents() {
+            return discountPercents;
+        }
+
+        public int[] getChargeDays() {
+            return chargeDays;
+        }
+
+        public int[] getDueEpochDays() {
+            return dueEpochDays;
+        }
+
+        public long[] getPreDiscountCents() {
+            return preDiscountCents;
+        }
+
+        public long[] getDiscountCents() {
+            return discountCents;
+        }
+
+        public long[] getFinalCents() {
+            return finalCents;
+        }
+    }
+}
@@ -0,0 +1,77 @@
+import org.junit.Test;
+import java.time.LocalDate;
+import java.util.Random;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ColumnarPricerTest {
+
+    private final ToolTypeRegistry.Snapshot toolTypes = ToolTypeRegistry.builtIn().getSnapshot();
+    private final ITool[] tools = {
+        new Tool("LADW", "Ladder", "Werner"),
+        new Tool("CHNS", "Chainsaw", "Stihl"),
+        new Tool("JAKD", "Jackhammer", "DeWalt")
+    };
+
+    @Test
+    public void testMatchesRentalAgreement() {
+        LocalDate first = LocalDate.of(2015, 1, 1);
+        LocalDate last = LocalDate.of(2025, 12, 31);
+        for (HolidayCalendar calendar : new HolidayCalendar[] {HolidayCalendar.DEFAULT, HolidayCalendar.US_FEDERAL}) {
+            ColumnarPricer pricer = new ColumnarPricer(toolTypes, calendar, first, last, 400);
+            ColumnarPricer.Batch batch = new ColumnarPricer.Batch(20_000);
+            Random random = new Random(13);
+            int span = (int) (last.toEpochDay() - first.toEpochDay()) + 1;
+            while (batch.size() < batch.capacity()) {
+                ITool tool = tools[random.nextInt(tools.length)];
+                int days = batch.size() % 100 == 0 ? 400 : 1 + random.nextInt(60);
+                batch.add(toolTypes.getTypeId(tool.getToolType()), (int) first.toEpochDay() + random.nextInt(span),
+                        days, random.nextInt(101));
+            }
+            pricer.price(batch);
+
+            for (int i = 0; i < batch.size(); i++) {
+                ITool tool = tools[0];
+                for (ITool candidate : tools) {
+                    if (toolTypes.getTypeId(candidate.getToolType()) == batch.getTypeIds()[i]) {
+                        tool = candidate;
+                    }
+                }
+                RentalAgreement expected = new RentalAgreement(tool, batch.getRentalDays()[i],
+                        batch.getDiscountPercents()[i], LocalDate.ofEpochDay(batch.getCheckoutEpochDays()[i]), calendar);
+                String row = "row " + i;
+                assertEquals(expected.getChargeDays(), batch.getChargeDays()[i], row);
+                assertEquals(expected.getDueDate().toEpochDay(), batch.getDueEpochDays()[i], row);
+                assertEquals(expected.getPreDiscountChargeCents(), batch.getPreDiscountCents()[i], row);
+                assertEquals(expected.getDiscountAmountCents(), batch.getDiscountCents()[i], row);
+                assertEquals(expected.getFinalChargeCents(), batch.getFinalCents()[i], row);
+            }
+        }
+    }
+
+    @Test
+    public void testInvalidRowLeavesBatchUntouched() {
+        LocalDate first = LocalDate.of(2020, 1, 1);
+        ColumnarPricer pricer = new ColumnarPricer(toolTypes, HolidayCalendar.DEFAULT, first, first.plusDays(30), 10);
+        ColumnarPricer.Batch batch = new ColumnarPricer.Batch(2);
+        batch.add(0, (int) first.toEpochDay(), 5, 10);
+        for (int discountPercent : new int[] {101, 300, 356, -1}) {
+            Exception exception = assertThrows(IllegalArgumentException.class,
+                    () -> batch.add(0, (int) first.toEpochDay(), 5, discountPercent));
+            assertEquals("Row 1: Discount percent must be between 0 and 100.", exception.getMessage());
+            assertEquals(1, batch.size());
+        }
+        batch.add(0, (int) first.toEpochDay(), 5, 10);
+        batch.getDiscountPercents()[1] = 101;
+
+        Exception exception = assertThrows(IllegalArgumentException.class, () -> pricer.price(batch));
+        assertEquals("Row 1: Discount percent must be between 0 and 100.", exception.getMessage());
+        assertEquals(0, batch.getFinalCents()[0]);
+
+        batch.getDiscountPercents()[1] = 10;
+        batch.getRentalDays()[1] = 11;
+        assertThrows(IllegalArgumentException.class, () -> pricer.price(batch));
+        batch.getRentalDays()[1] = 5;
+        batch.getCheckoutEpochDays()[1] = (int) first.plusDays(31).toEpochDay();
+        assertThrows(IllegalArgumentException.class, () -> pricer.price(batch));
+    }
+}
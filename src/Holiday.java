@@ -1,3 +1,4 @@
+import java.time.DayOfWeek;
 import java.time.LocalDate;
 import java.time.Month;
 
@@ -5,12 +6,24 @@ public class Holiday {
 
     /**
      * Checks if the given date is a holiday. Currently, it checks for
-     * Independence Day and Labor Day.
+     * Independence Day and Labor Day. The answer is read from the precomputed
+     * per-year bitmaps of the default HolidayCalendar.
      *
      * @param date The date to check for a holiday.
      * @return true if the date is a holiday, false otherwise.
      */
     public static boolean isHoliday(LocalDate date) {
+        return HolidayCalendar.DEFAULT.isHoliday(date);
+    }
+
+    /**
+     * Evaluates the original holiday checks directly, without consulting the calendar.
+     * Kept as the reference for the rules of the default HolidayCalendar.
+     *
+     * @param date The date to check for a holiday.
+     * @return true if the date is a holiday, false otherwise.
+     */
+    static boolean isObservedHoliday(LocalDate date) {
         return isIndependenceDay(date) || isLaborDay(date);
     }
 
@@ -44,18 +57,21 @@ public class Holiday {
      *         false otherwise.
      */
     private static boolean isIndependenceDay(LocalDate date) {
-        if (date.getMonth() == Month.JULY && date.getDayOfMonth() == 4) {
-            return true;
-        }
-        // Check for observed days
-        LocalDate july4 = LocalDate.of(date.getYear(), Month.JULY, 4);
-        if (july4.getDayOfWeek().getValue() == 6 && date.equals(july4.minusDays(1))) {
-            return true; // Observed on Friday
+        if (date.getMonth() != Month.JULY) {
+            return false;
         }
-        if (july4.getDayOfWeek().getValue() == 7 && date.equals(july4.plusDays(1))) {
-            return true; // Observed on Monday
+        switch (date.getDayOfMonth()) {
+            case 4:
+                return true;
+            case 3:
+                // July 4th on a Saturday is observed on Friday the 3rd
+                return date.getDayOfWeek() == DayOfWeek.FRIDAY;
+            case 5:
+                // July 4th on a Sunday is observed on Monday the 5th
+                return date.getDayOfWeek() == DayOfWeek.MONDAY;
+            default:
+                return false;
         }
-        return false;
     }
 
     /**
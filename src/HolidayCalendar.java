@@ -0,0 +1,525 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.Month;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * The HolidayCalendar class answers weekend, holiday and chargeable-day questions with a
+ * single bit lookup. For each year it precomputes a compact bitset of weekend days, observed
+ * holidays and, for every tool charging policy, the days on which a rental is chargeable.
+ *
+ * Year tables are built lazily on first use and cached, so the per-day cost of a rental
+ * quote is one array read instead of a chain of LocalDate allocations. Tables are immutable
+ * once published, which makes the calendar safe to share between threads.
+ *
+ * Each table also carries prefix counts of chargeable days per policy, so counting the
+ * chargeable days in a range is two array lookups per year spanned, and finding the n-th
+ * chargeable day is a binary search.
+ *
+ * A calendar is defined by a list of HolidayRules. However many rules a calendar has, they are
+ * compiled into the year table once, so lookups cost the same. Calendars are registered by
+ * region name and can be selected per checkout.
+ *
+ * To save building tables in a freshly started JVM, the tables of the registered calendars can
+ * be preloaded from a CalendarSnapshot file named by the toolrental.calendarSnapshot property.
+ */
+public final class HolidayCalendar {
+
+    /**
+     * The calendar used by RentalAgreement and Holiday unless told otherwise: Independence Day,
+     * observed on the nearest weekday, and Labor Day.
+     */
+    public static final HolidayCalendar DEFAULT = new HolidayCalendar("US", List.of(
+        HolidayRule.observedOnNearestWeekday(HolidayRule.fixedDate(Month.JULY, 4)),
+        HolidayRule.nthWeekday(Month.SEPTEMBER, DayOfWeek.MONDAY, 1)));
+
+    /**
+     * The United States federal holidays, each observed on the nearest weekday.
+     */
+    public static final HolidayCalendar US_FEDERAL = new HolidayCalendar("US-FEDERAL", List.of(
+        HolidayRule.observedOnNearestWeekday(HolidayRule.fixedDate(Month.JANUARY, 1)),
+        HolidayRule.nthWeekday(Month.JANUARY, DayOfWeek.MONDAY, 3),
+        HolidayRule.nthWeekday(Month.FEBRUARY, DayOfWeek.MONDAY, 3),
+        HolidayRule.lastWeekday(Month.MAY, DayOfWeek.MONDAY),
+        HolidayRule.observedOnNearestWeekday(HolidayRule.fixedDate(Month.JUNE, 19)),
+        HolidayRule.observedOnNearestWeekday(HolidayRule.fixedDate(Month.JULY, 4)),
+        HolidayRule.nthWeekday(Month.SEPTEMBER, DayOfWeek.MONDAY, 1),
+        HolidayRule.nthWeekday(Month.OCTOBER, DayOfWeek.MONDAY, 2),
+        HolidayRule.observedOnNearestWeekday(HolidayRule.fixedDate(Month.NOVEMBER, 11)),
+        HolidayRule.nthWeekday(Month.NOVEMBER, DayOfWeek.THURSDAY, 4),
+        HolidayRule.observedOnNearestWeekday(HolidayRule.fixedDate(Month.DECEMBER, 25))));
+
+    private static final Map<String, HolidayCalendar> REGIONS = new ConcurrentHashMap<>(Map.of(
+        DEFAULT.getName(), DEFAULT,
+        US_FEDERAL.getName(), US_FEDERAL));
+
+    // Charging policy bits, see policyOf(ITool)
+    static final int WEEKEND_CHARGE = 1;
+    static final int HOLIDAY_CHARGE = 2;
+    static final int POLICY_COUNT = 4;
+
+    // Years in this range are cached in a flat array. Anything else goes to a small
+    // direct-mapped cache where a year evicts whichever year shares its slot, so requests for
+    // arbitrary years cannot grow the heap.
+    private static final int FIRST_CACHED_YEAR = 1600;
+    private static final int CACHED_YEAR_COUNT = 1000;
+    private static final int OUTLYING_YEAR_SLOTS = 64;
+
+    /**
+     * System property naming a CalendarSnapshot file to preload the registered calendars' year
+     * tables from when this class is initialized.
+     */
+    public static final String SNAPSHOT_PROPERTY = "toolrental.calendarSnapshot";
+
+    static {
+        String snapshot = System.getProperty(SNAPSHOT_PROPERTY);
+        if (snapshot != null) {
+            // The snapshot only saves time, so a missing or damaged file leaves the tables to be built
+            try {
+                CalendarSnapshot.load(Path.of(snapshot));
+            } catch (IOException | RuntimeException e) {
+                System.err.println("Unable to load calendar snapshot from " + snapshot + ", building tables instead: " + e);
+            }
+        }
+    }
+
+    private final String name;
+    private final List<HolidayRule> rules;
+    private final AtomicReferenceArray<YearTable> years = new AtomicReferenceArray<>(CACHED_YEAR_COUNT);
+    private final AtomicReferenceArray<YearTable> outlyingYears = new AtomicReferenceArray<>(OUTLYING_YEAR_SLOTS);
+
+    /**
+     * Constructor for HolidayCalendar.
+     *
+     * @param name The region name of the calendar, e.g. "US".
+     * @param rules The rules that define the calendar's holidays.
+     */
+    public HolidayCalendar(String name, List<HolidayRule> rules) {
+        this.name = name;
+        this.rules = List.copyOf(rules);
+    }
+
+    /**
+     * Makes a calendar selectable by its region name, replacing any calendar of the same name.
+     *
+     * @param calendar The calendar to register.
+     */
+    public static void register(HolidayCalendar calendar) {
+        REGIONS.put(calendar.getName(), calendar);
+    }
+
+    /**
+     * Looks up a registered calendar by region name.
+     *
+     * @param region The region name, e.g. "US-FEDERAL".
+     * @return The calendar for the region.
+     * @throws IllegalArgumentException If no calendar is registered for the region.
+     */
+    public static HolidayCalendar forRegion(String region) {
+        HolidayCalendar calendar = REGIONS.get(region);
+        if (calendar == null) {
+            throw new IllegalArgumentException("Unknown holiday calendar region: " + region);
+        }
+        return calendar;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the registered calendars.
+     */
+    static Collection<HolidayCalendar> registered() {
+        return REGIONS.values();
+    }
+
+    /**
+     * Checks if the given date is a weekend day (Saturday or Sunday).
+     *
+     * @param date The date to check.
+     * @return true if the date falls on a weekend, false otherwise.
+     */
+    public boolean isWeekend(LocalDate date) {
+        return yearTable(date.getYear()).isWeekend(date.getDayOfYear() - 1);
+    }
+
+    /**
+     * Checks if the given date is a holiday or the observed day of a holiday.
+     *
+     * @param date The date to check.
+     * @return true if the date is a holiday, false otherwise.
+     */
+    public boolean isHoliday(LocalDate date) {
+        return yearTable(date.getYear()).isHoliday(date.getDayOfYear() - 1);
+    }
+
+    /**
+     * Determines if a given date is chargeable for the given tool, based on the tool's
+     * charging policy and the date's status as a weekend or holiday.
+     *
+     * @param date The date to check.
+     * @param tool The tool being rented.
+     * @return true if a rental of the tool is charged for the date, false otherwise.
+     */
+    public boolean isChargeable(LocalDate date, ITool tool) {
+        return yearTable(date.getYear()).isChargeable(policyOf(tool), date.getDayOfYear() - 1);
+    }
+
+    /**
+     * Counts the chargeable days for the given tool in the range [start, start + days).
+     *
+     * @param start The first day of the range.
+     * @param days The number of days in the range.
+     * @param tool The tool being rented.
+     * @return The number of chargeable days in the range.
+     */
+    public int countChargeableDays(LocalDate start, int days, ITool tool) {
+        return countChargeableDays(policyOf(tool), start.getYear(), start.getDayOfYear() - 1, days);
+    }
+
+    /**
+     * Finds the n-th chargeable day for the given tool strictly after the given date.
+     *
+     * @param date The date to start searching after.
+     * @param n The number of chargeable days to advance, 1 or more.
+     * @param tool The tool being rented.
+     * @return The n-th chargeable day after the date.
+     */
+    public LocalDate nthChargeableDayAfter(LocalDate date, int n, ITool tool) {
+        int policy = policyOf(tool);
+        int year = date.getYear();
+        int from = date.getDayOfYear(); // zero-based index of the following day
+        while (true) {
+            YearTable table = yearTable(year);
+            int available = table.chargeableBetween(policy, from, table.length);
+            if (n <= available) {
+                int day = table.indexOfNthChargeable(policy, from, n);
+                return LocalDate.ofYearDay(year, day + 1);
+            }
+            n -= available;
+            year++;
+            from = 0;
+        }
+    }
+
+    /**
+     * Finds the n-th chargeable day for the given tool strictly before the given date.
+     *
+     * @param date The date to start searching before.
+     * @param n The number of chargeable days to go back, 1 or more.
+     * @param tool The tool being rented.
+     * @return The n-th chargeable day before the date.
+     */
+    public LocalDate nthChargeableDayBefore(LocalDate date, int n, ITool tool) {
+        int policy = policyOf(tool);
+        int year = date.getYear();
+        int to = date.getDayOfYear() - 1; // zero-based index of the date itself, excluded
+        while (true) {
+            YearTable table = yearTable(year);
+            int available = table.chargeableBetween(policy, 0, to);
+            if (n <= available) {
+                int day = table.indexOfNthChargeable(policy, 0, available - n + 1);
+                return LocalDate.ofYearDay(year, day + 1);
+            }
+            n -= available;
+            year--;
+            to = yearTable(year).length;
+        }
+    }
+
+    int countChargeableDays(int policy, int year, int from, int days) {
+        int count = 0;
+        while (days > 0) {
+            YearTable table = yearTable(year);
+            int to = Math.min(table.length, from + days);
+            count += table.chargeableBetween(policy, from, to);
+            days -= to - from;
+            year++;
+            from = 0;
+        }
+        return count;
+    }
+
+    /**
+     * Maps a tool's weekend and holiday charging flags onto a policy index in [0, POLICY_COUNT).
+     * Weekday charging is not part of the policy; weekdays that are not holidays are always charged.
+     * Both flags are read from one set of tool type attributes, see PricedTool.
+     */
+    static int policyOf(ITool tool) {
+        return policyOf(PricedTool.of(tool).getAttributes());
+    }
+
+    static int policyOf(ToolAttributes.ToolTypeAttributes attributes) {
+        return (attributes.isWeekendCharge() ? WEEKEND_CHARGE : 0) | (attributes.isHolidayCharge() ? HOLIDAY_CHARGE : 0);
+    }
+
+    /**
+     * Returns the precomputed table for the given year, building and caching it on first use.
+     * Years outside the flat cache may be evicted and rebuilt later.
+     */
+    YearTable yearTable(int year) {
+        int slot = year - FIRST_CACHED_YEAR;
+        if (slot >= 0 && slot < CACHED_YEAR_COUNT) {
+            YearTable table = years.get(slot);
+            if (table == null) {
+                // Racing builders produce identical tables, so whichever lands first wins.
+                years.compareAndSet(slot, null, new YearTable(year, rules));
+                table = years.get(slot);
+            }
+            return table;
+        }
+        int outlyingSlot = Math.floorMod(year, OUTLYING_YEAR_SLOTS);
+        YearTable table = outlyingYears.get(outlyingSlot);
+        if (table == null || table.year != year) {
+            table = new YearTable(year, rules);
+            outlyingYears.set(outlyingSlot, table);
+        }
+        return table;
+    }
+
+    /**
+     * Returns a hash of the holidays the calendar's rules give each layout a year can have:
+     * January 1st on each day of the week, in common and in leap years. Rules that depend on
+     * nothing but that layout, as those of the HolidayRule factories do, give equal tables
+     * whenever they give equal fingerprints, so a CalendarSnapshot can tell whether its tables
+     * were built by the rules a calendar has now.
+     */
+    long rulesFingerprint() {
+        long[] hash = {0xcbf29ce484222325L};
+        boolean[] seen = new boolean[14];
+        int found = 0;
+        for (int year = 2001; found < seen.length; year++) {
+            LocalDate first = LocalDate.of(year, 1, 1);
+            int layout = first.getDayOfWeek().ordinal() * 2 + (first.isLeapYear() ? 1 : 0);
+            if (seen[layout]) {
+                continue;
+            }
+            seen[layout] = true;
+            found++;
+            long firstDay = first.toEpochDay();
+            for (HolidayRule rule : rules) {
+                rule.forEachDate(year, date -> hash[0] = (hash[0] ^ (((long) layout << 32)
+                        | ((date.toEpochDay() - firstDay) & 0xffffffffL))) * 0x100000001b3L);
+                hash[0] = (hash[0] ^ -1L) * 0x100000001b3L;
+            }
+        }
+        return hash[0];
+    }
+
+    /**
+     * Caches a year table built elsewhere, e.g. read from a snapshot, unless the year is
+     * already cached.
+     */
+    void preload(YearTable table) {
+        int slot = table.year - FIRST_CACHED_YEAR;
+        if (slot >= 0 && slot < CACHED_YEAR_COUNT) {
+            years.compareAndSet(slot, null, table);
+        } else {
+            outlyingYears.compareAndSet(Math.floorMod(table.year, OUTLYING_YEAR_SLOTS), null, table);
+        }
+    }
+
+    /**
+     * The YearTable nested class holds the bitsets for a single year, indexed by day of year
+     * starting at zero. Bit i of word i >>> 6 describes day i. For each policy, prefix[i] is
+     * the number of chargeable days in [0, i).
+     */
+    static final class YearTable {
+        final int year;
+        final int length;
+        private final long[] weekend;
+        private final long[] holiday;
+        private final long[][] chargeable;
+        private final short[][] prefix;
+
+        private YearTable(int year, int length, long[] weekend, long[] holiday, long[][] chargeable,
+                          short[][] prefix) {
+            this.year = year;
+            this.length = length;
+            this.weekend = weekend;
+            this.holiday = holiday;
+            this.chargeable = chargeable;
+            this.prefix = prefix;
+        }
+
+        YearTable(int year, List<HolidayRule> rules) {
+            this.year = year;
+            LocalDate first = LocalDate.of(year, 1, 1);
+            this.length = first.lengthOfYear();
+            int words = (length + 63) >>> 6;
+            this.weekend = new long[words];
+            this.holiday = new long[words];
+            this.chargeable = new long[POLICY_COUNT][words];
+
+            LocalDate date = first;
+            for (int day = 0; day < length; day++) {
+                DayOfWeek dayOfWeek = date.getDayOfWeek();
+                if (dayOfWeek == DayOfWeek.SATURDAY || dayOfWeek == DayOfWeek.SUNDAY) {
+                    weekend[day >>> 6] |= 1L << day;
+                }
+                date = date.plusDays(1);
+            }
+
+            // Observance shifts can move a neighbouring year's holiday into this year
+            for (int occurrence = year - 1; occurrence <= year + 1; occurrence++) {
+                for (HolidayRule rule : rules) {
+                    rule.forEachDate(occurrence, holidayDate -> {
+                        if (holidayDate.getYear() == year) {
+                            int day = holidayDate.getDayOfYear() - 1;
+                            holiday[day >>> 6] |= 1L << day;
+                        }
+                    });
+                }
+            }
+
+            for (int policy = 0; policy < POLICY_COUNT; policy++) {
+                long[] bits = chargeable[policy];
+                for (int word = 0; word < words; word++) {
+                    long charged = ~0L;
+                    if ((policy & WEEKEND_CHARGE) == 0) {
+                        charged &= ~weekend[word];
+                    }
+                    if ((policy & HOLIDAY_CHARGE) == 0) {
+                        charged &= ~holiday[word];
+                    }
+                    bits[word] = charged;
+                }
+                // Clear the padding bits past the end of the year.
+                if ((length & 63) != 0) {
+                    bits[words - 1] &= (1L << length) - 1;
+                }
+            }
+
+            this.prefix = new short[POLICY_COUNT][length + 1];
+            for (int policy = 0; policy < POLICY_COUNT; policy++) {
+                short[] counts = prefix[policy];
+                for (int day = 0; day < length; day++) {
+                    counts[day + 1] = (short) (counts[day] + (isChargeable(policy, day) ? 1 : 0));
+                }
+            }
+        }
+
+        /**
+         * Reads a table written by write from the buffer's position, little-endian.
+         */
+        static YearTable read(int year, ByteBuffer buffer) {
+            int length = buffer.getShort();
+            if (length != LocalDate.of(year, 1, 1).lengthOfYear()) {
+                throw new IllegalArgumentException("Year table for " + year + " has " + length + " days.");
+            }
+            int words = (length + 63) >>> 6;
+            long[] weekend = readLongs(buffer, words);
+            long[] holiday = readLongs(buffer, words);
+            long[][] chargeable = new long[POLICY_COUNT][];
+            for (int policy = 0; policy < POLICY_COUNT; policy++) {
+                chargeable[policy] = readLongs(buffer, words);
+            }
+            short[][] prefix = new short[POLICY_COUNT][length + 1];
+            for (int policy = 0; policy < POLICY_COUNT; policy++) {
+                buffer.asShortBuffer().get(prefix[policy]);
+                buffer.position(buffer.position() + 2 * (length + 1));
+            }
+            return new YearTable(year, length, weekend, holiday, chargeable, prefix);
+        }
+
+        private static long[] readLongs(ByteBuffer buffer, int count) {
+            long[] values = new long[count];
+            buffer.asLongBuffer().get(values);
+            buffer.position(buffer.position() + 8 * count);
+            return values;
+        }
+
+        /**
+         * @return The number of bytes write puts.
+         */
+        int serializedSize() {
+            int words = (length + 63) >>> 6;
+            return 2 + 8 * words * (2 + POLICY_COUNT) + 2 * POLICY_COUNT * (length + 1);
+        }
+
+        /**
+         * Writes the table at the buffer's position: the year length, then the weekend, holiday
+         * and per-policy chargeable words, then the per-policy prefix counts.
+         */
+        void write(ByteBuffer buffer) {
+            buffer.putShort((short) length);
+            for (long word : weekend) {
+                buffer.putLong(word);
+            }
+            for (long word : holiday) {
+                buffer.putLong(word);
+            }
+            for (long[] bits : chargeable) {
+                for (long word : bits) {
+                    buffer.putLong(word);
+                }
+            }
+            for (short[] counts : prefix) {
+                for (short count : counts) {
+                    buffer.putShort(count);
+                }
+            }
+        }
+
+        /**
+         * Returns true if the other table holds the same year and days.
+         */
+        boolean matches(YearTable other) {
+            return year == other.year
+                && Arrays.equals(weekend, other.weekend)
+                && Arrays.equals(holiday, other.holiday)
+                && Arrays.deepEquals(chargeable, other.chargeable)
+                && Arrays.deepEquals(prefix, other.prefix);
+        }
+
+        boolean isWeekend(int dayOfYear) {
+            return (weekend[dayOfYear >>> 6] & (1L << dayOfYear)) != 0;
+        }
+
+        boolean isHoliday(int dayOfYear) {
+            return (holiday[dayOfYear >>> 6] & (1L << dayOfYear)) != 0;
+        }
+
+        boolean isChargeable(int policy, int dayOfYear) {
+            return (chargeable[policy][dayOfYear >>> 6] & (1L << dayOfYear)) != 0;
+        }
+
+        /**
+         * Returns the number of chargeable days in [from, to).
+         */
+        int chargeableBetween(int policy, int from, int to) {
+            short[] counts = prefix[policy];
+            return counts[to] - counts[from];
+        }
+
+        /**
+         * Returns the index of the n-th chargeable day at or after from. The caller
+         * guarantees that at least n chargeable days remain in the year.
+         */
+        int indexOfNthChargeable(int policy, int from, int n) {
+            short[] counts = prefix[policy];
+            int target = counts[from] + n;
+            // Smallest day with counts[day + 1] >= target
+            int low = from;
+            int high = length - 1;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (counts[mid + 1] >= target) {
+                    high = mid;
+                } else {
+                    low = mid + 1;
+                }
+            }
+            return low;
+        }
+    }
+}
@@ -0,0 +1,100 @@
+import org.junit.Test;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.Month;
+import java.util.List;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HolidayCalendarTest {
+
+    private final HolidayCalendar calendar = HolidayCalendar.DEFAULT;
+
+    @Test
+    public void testIndependenceDayObservance() {
+        // July 4th 2020 was a Saturday, observed on Friday the 3rd
+        assertTrue(calendar.isHoliday(LocalDate.of(2020, 7, 3)));
+        assertTrue(calendar.isHoliday(LocalDate.of(2020, 7, 4)));
+        // July 4th 2021 was a Sunday, observed on Monday the 5th
+        assertTrue(calendar.isHoliday(LocalDate.of(2021, 7, 5)));
+        assertFalse(calendar.isHoliday(LocalDate.of(2024, 7, 5)));
+    }
+
+    @Test
+    public void testLaborDay() {
+        assertTrue(calendar.isHoliday(LocalDate.of(2024, 9, 2)));
+        assertFalse(calendar.isHoliday(LocalDate.of(2024, 9, 9)));
+    }
+
+    @Test
+    public void testChargeablePolicies() {
+        ITool ladder = new Tool("LADW", "Ladder", "Werner");
+        ITool chainsaw = new Tool("CHNS", "Chainsaw", "Stihl");
+        ITool jackhammer = new Tool("JAKR", "Jackhammer", "Ridgid");
+        LocalDate saturday = LocalDate.of(2024, 3, 16);
+        LocalDate july4 = LocalDate.of(2024, 7, 4);
+
+        assertTrue(calendar.isChargeable(saturday, ladder));
+        assertFalse(calendar.isChargeable(july4, ladder));
+        assertFalse(calendar.isChargeable(saturday, chainsaw));
+        assertTrue(calendar.isChargeable(july4, chainsaw));
+        assertFalse(calendar.isChargeable(saturday, jackhammer));
+        assertFalse(calendar.isChargeable(july4, jackhammer));
+    }
+
+    @Test
+    public void testMatchesHolidayRulesAcrossLeapYears() {
+        // Every day, including Dec 31 of leap years, agrees with the uncached rules
+        for (LocalDate date = LocalDate.of(1996, 1, 1); date.getYear() < 2030; date = date.plusDays(1)) {
+            assertEquals(Holiday.isObservedHoliday(date), calendar.isHoliday(date), date.toString());
+        }
+    }
+
+    @Test
+    public void testYearsOutsideTheFlatCacheShareBoundedSlots() {
+        // Years 64 apart share a slot of the outlying year cache and keep evicting each other
+        for (int round = 0; round < 3; round++) {
+            for (int year : new int[] {3000, 3064, 1000, 936}) {
+                LocalDate july4 = LocalDate.of(year, 7, 4);
+                assertEquals(year, calendar.yearTable(year).year);
+                assertEquals(Holiday.isObservedHoliday(july4), calendar.isHoliday(july4), july4.toString());
+            }
+        }
+    }
+
+    @Test
+    public void testRuleTypes() {
+        HolidayCalendar calendar = new HolidayCalendar("TEST", List.of(
+            HolidayRule.observedOnNextWeekday(HolidayRule.fixedDate(Month.JANUARY, 1)),
+            HolidayRule.nthWeekday(Month.NOVEMBER, DayOfWeek.THURSDAY, 4),
+            HolidayRule.lastWeekday(Month.MAY, DayOfWeek.MONDAY)));
+
+        // New Year's Day 2022 was a Saturday, observed on Monday the 3rd
+        assertTrue(calendar.isHoliday(LocalDate.of(2022, 1, 1)));
+        assertTrue(calendar.isHoliday(LocalDate.of(2022, 1, 3)));
+        assertTrue(calendar.isHoliday(LocalDate.of(2024, 11, 28)));
+        assertTrue(calendar.isHoliday(LocalDate.of(2024, 5, 27)));
+        assertFalse(calendar.isHoliday(LocalDate.of(2024, 5, 20)));
+        assertFalse(calendar.isHoliday(LocalDate.of(2024, 7, 4)));
+    }
+
+    @Test
+    public void testObservanceAcrossYearBoundary() {
+        // New Year's Day 2022 was a Saturday, observed on Friday December 31st 2021
+        assertTrue(HolidayCalendar.US_FEDERAL.isHoliday(LocalDate.of(2021, 12, 31)));
+        assertFalse(HolidayCalendar.US_FEDERAL.isHoliday(LocalDate.of(2020, 12, 31)));
+    }
+
+    @Test
+    public void testRegionalCalendarChangesPricing() {
+        ITool jackhammer = new Tool("JAKR", "Jackhammer", "Ridgid");
+        LocalDate thanksgivingWeek = LocalDate.of(2024, 11, 25);
+        RentalAgreement us = new RentalAgreement(jackhammer, 5, 0, thanksgivingWeek);
+        RentalAgreement federal = new RentalAgreement(jackhammer, 5, 0, thanksgivingWeek,
+                HolidayCalendar.forRegion("US-FEDERAL"));
+
+        assertEquals(5, us.getChargeDays());
+        assertEquals(4, federal.getChargeDays());
+        assertSame(HolidayCalendar.US_FEDERAL, federal.getHolidayCalendar());
+        assertThrows(IllegalArgumentException.class, () -> HolidayCalendar.forRegion("XX"));
+    }
+}
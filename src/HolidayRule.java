@@ -0,0 +1,87 @@
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.Month;
+import java.time.temporal.TemporalAdjusters;
+import java.util.function.Consumer;
+
+/**
+ * The HolidayRule interface describes how to find a holiday's dates in a given year.
+ * Rules are evaluated once per year when a HolidayCalendar compiles its year table, so
+ * they favor clarity over speed.
+ *
+ * The static factory methods cover fixed-date holidays, nth-weekday-of-month holidays,
+ * last-weekday-of-month holidays and weekend observance shifts.
+ */
+@FunctionalInterface
+public interface HolidayRule {
+
+    /**
+     * Passes every date the rule marks as a holiday for the occurrence in the given year.
+     * Observance shifts may produce dates in the neighbouring year, e.g. December 31st for a
+     * New Year's Day that falls on a Saturday.
+     *
+     * @param year The year of the occurrence.
+     * @param dates Receives the holiday dates.
+     */
+    void forEachDate(int year, Consumer<LocalDate> dates);
+
+    /**
+     * A holiday on the same date every year, e.g. July 4th.
+     */
+    static HolidayRule fixedDate(Month month, int dayOfMonth) {
+        return (year, dates) -> dates.accept(LocalDate.of(year, month, dayOfMonth));
+    }
+
+    /**
+     * A holiday on the n-th given weekday of a month, e.g. the first Monday of September.
+     */
+    static HolidayRule nthWeekday(Month month, DayOfWeek dayOfWeek, int n) {
+        if (n < 1 || n > 5) {
+            throw new IllegalArgumentException("Weekday ordinal must be between 1 and 5.");
+        }
+        return (year, dates) -> {
+            LocalDate date = LocalDate.of(year, month, 1).with(TemporalAdjusters.dayOfWeekInMonth(n, dayOfWeek));
+            // A fifth weekday does not exist in every month
+            if (date.getMonth() == month) {
+                dates.accept(date);
+            }
+        };
+    }
+
+    /**
+     * A holiday on the last given weekday of a month, e.g. the last Monday of May.
+     */
+    static HolidayRule lastWeekday(Month month, DayOfWeek dayOfWeek) {
+        return (year, dates) -> dates.accept(LocalDate.of(year, month, 1).with(TemporalAdjusters.lastInMonth(dayOfWeek)));
+    }
+
+    /**
+     * Observes a holiday that falls on a weekend on the nearest weekday: Friday for a Saturday,
+     * Monday for a Sunday. The holiday itself stays a holiday as well.
+     */
+    static HolidayRule observedOnNearestWeekday(HolidayRule holiday) {
+        return (year, dates) -> holiday.forEachDate(year, date -> {
+            dates.accept(date);
+            if (date.getDayOfWeek() == DayOfWeek.SATURDAY) {
+                dates.accept(date.minusDays(1));
+            } else if (date.getDayOfWeek() == DayOfWeek.SUNDAY) {
+                dates.accept(date.plusDays(1));
+            }
+        });
+    }
+
+    /**
+     * Observes a holiday that falls on a weekend on the following Monday. The holiday itself
+     * stays a holiday as well.
+     */
+    static HolidayRule observedOnNextWeekday(HolidayRule holiday) {
+        return (year, dates) -> holiday.forEachDate(year, date -> {
+            dates.accept(date);
+            if (date.getDayOfWeek() == DayOfWeek.SATURDAY) {
+                dates.accept(date.plusDays(2));
+            } else if (date.getDayOfWeek() == DayOfWeek.SUNDAY) {
+                dates.accept(date.plusDays(1));
+            }
+        });
+    }
+}
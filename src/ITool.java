@@ -3,8 +3,13 @@ public interface ITool {
     String getToolCode();
     String getToolType();
     String getBrand();
-    double getDailyCharge();
+    Money getDailyChargeMoney();
     boolean isWeekdayCharge();
     boolean isWeekendCharge();
     boolean isHolidayCharge();
+
+    // Compatibility accessor for callers still working with double charges
+    default double getDailyCharge() {
+        return getDailyChargeMoney().toDouble();
+    }
 }
\ No newline at end of file
@@ -0,0 +1,495 @@
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The Inventory class tracks the rentable units of each tool code and which of them are
+ * reserved on which days, so that a unit can never be rented out twice on the same day.
+ *
+ * Each tool code owns a pool of units numbered from zero. For every day with reservations the
+ * pool keeps a bitset with one bit per unit, set while the unit is reserved. A reservation
+ * claims its unit's bit on every day of its range with compare-and-set, in day order; if
+ * another reservation got to one of the days first, the claimed bits are rolled back and the
+ * next free unit is tried. There are no locks: reservations of different units or days never
+ * touch the same word, and two reservations of the same unit on overlapping days are
+ * resolved by whichever sets the first shared day's bit. While a claim is in progress its
+ * unit may appear reserved on some of its days, so availability queries can briefly
+ * under-report free units but never over-report them.
+ *
+ * "Which units are free from D1 to D2" ORs the day bitsets of the range together, touching
+ * one long per 64 units per day. With 100,000 units that is about 1,600 words per day.
+ *
+ * Reservation ranges are whole days, first and last day inclusive; a rental occupies its
+ * unit from the checkout date through the due date.
+ */
+public final class Inventory {
+
+    private final Map<String, UnitPool> pools = new ConcurrentHashMap<>();
+    private final Map<Long, Reservation> reservations = new ConcurrentHashMap<>();
+    private final AtomicLong nextReservationId = new AtomicLong(1);
+
+    /**
+     * Creates an inventory with the given number of units of every tool in the catalog.
+     *
+     * @param toolCatalog The tools to stock.
+     * @param unitsPerTool The number of units of each tool.
+     * @return The inventory.
+     */
+    public static Inventory forCatalog(ToolCatalog toolCatalog, int unitsPerTool) {
+        Inventory inventory = new Inventory();
+        for (ITool tool : toolCatalog.getTools()) {
+            inventory.addTool(tool.getToolCode(), unitsPerTool);
+        }
+        return inventory;
+    }
+
+    /**
+     * Adds a tool code with the given number of units.
+     *
+     * @param toolCode The tool code.
+     * @param units The number of rentable units, 1 or more.
+     * @throws IllegalArgumentException If the tool code is already stocked.
+     */
+    public void addTool(String toolCode, int units) {
+        if (units < 1) {
+            throw new IllegalArgumentException("Unit count must be 1 or more.");
+        }
+        if (pools.putIfAbsent(toolCode, new UnitPool(units)) != null) {
+            throw new IllegalArgumentException("Tool code is already stocked: " + toolCode);
+        }
+    }
+
+    /**
+     * Removes tool codes and all their reservations, e.g. to hand the tools to another
+     * inventory. The reservations are found in one scan over every reservation, so this is
+     * meant for occasional moves of many tools at once rather than the checkout path.
+     *
+     * @param toolCodes The tool codes.
+     * @return The current versions of each tool's reservations in id order, by tool code in
+     *         the order given.
+     * @throws IllegalArgumentException If a tool code is not stocked; nothing is removed.
+     */
+    public Map<String, List<Reservation>> removeTools(Collection<String> toolCodes) {
+        Map<String, List<Reservation>> removed = new LinkedHashMap<>();
+        for (String toolCode : toolCodes) {
+            pool(toolCode);
+            removed.put(toolCode, new ArrayList<>());
+        }
+        for (String toolCode : toolCodes) {
+            pools.remove(toolCode);
+        }
+        for (Reservation reservation : reservations.values()) {
+            List<Reservation> tool = removed.get(reservation.toolCode);
+            if (tool != null && reservations.remove(reservation.id, reservation)) {
+                tool.add(reservation);
+            }
+        }
+        for (List<Reservation> tool : removed.values()) {
+            tool.sort(Comparator.comparingLong(Reservation::getId));
+        }
+        return removed;
+    }
+
+    /**
+     * @return Whether the tool code has units in the inventory.
+     */
+    public boolean isStocked(String toolCode) {
+        return pools.containsKey(toolCode);
+    }
+
+    /**
+     * @return The number of units of the tool code.
+     * @throws IllegalArgumentException If the tool code is not stocked.
+     */
+    public int getUnitCount(String toolCode) {
+        return pool(toolCode).units;
+    }
+
+    /**
+     * Reserves any unit of the tool code that is free on every day of the range.
+     *
+     * @param toolCode The tool code.
+     * @param firstDay The first day of the reservation.
+     * @param lastDay The last day of the reservation, inclusive.
+     * @return The reservation.
+     * @throws IllegalArgumentException If the tool code is not stocked, the range is empty, or
+     *         no unit is free for the whole range.
+     */
+    public Reservation reserve(String toolCode, LocalDate firstDay, LocalDate lastDay) {
+        UnitPool pool = pool(toolCode);
+        int from = epochDay(firstDay);
+        int to = epochDay(lastDay);
+        checkRange(from, to);
+        int unit = pool.claimAny(from, to);
+        if (unit < 0) {
+            Metrics.get().recordValidationFailure(Metrics.ValidationFailure.UNAVAILABLE);
+            throw new IllegalArgumentException("No " + toolCode + " units are available from "
+                    + firstDay + " to " + lastDay + ".");
+        }
+        Reservation reservation = new Reservation(nextReservationId.getAndIncrement(), toolCode, unit, from, to);
+        reservations.put(reservation.id, reservation);
+        return reservation;
+    }
+
+    /**
+     * Reserves a given unit of the tool code, e.g. to restore a reservation moved from
+     * another inventory.
+     *
+     * @param toolCode The tool code.
+     * @param unit The unit number.
+     * @param firstDay The first day of the reservation.
+     * @param lastDay The last day of the reservation, inclusive.
+     * @return The reservation, with a new id.
+     * @throws IllegalArgumentException If the tool code is not stocked, the unit does not
+     *         exist, the range is empty, or the unit is not free for the whole range.
+     */
+    public Reservation reserveUnit(String toolCode, int unit, LocalDate firstDay, LocalDate lastDay) {
+        UnitPool pool = pool(toolCode);
+        int from = epochDay(firstDay);
+        int to = epochDay(lastDay);
+        checkRange(from, to);
+        if (unit < 0 || unit >= pool.units) {
+            throw new IllegalArgumentException("Unit " + unit + " of " + toolCode + " does not exist.");
+        }
+        if (!pool.claim(unit, from, to)) {
+            throw new IllegalArgumentException("Unit " + unit + " of " + toolCode + " is not available from "
+                    + firstDay + " to " + lastDay + ".");
+        }
+        Reservation reservation = new Reservation(nextReservationId.getAndIncrement(), toolCode, unit, from, to);
+        reservations.put(reservation.id, reservation);
+        return reservation;
+    }
+
+    /**
+     * Releases a reservation, freeing its unit for its days.
+     *
+     * @param reservation The reservation to release.
+     * @return True if it was released, false if it had already been released or replaced by
+     *         an extension.
+     */
+    public boolean release(Reservation reservation) {
+        if (!reservations.remove(reservation.id, reservation)) {
+            return false;
+        }
+        pool(reservation.toolCode).clear(reservation.unit, reservation.firstDay, reservation.lastDay);
+        return true;
+    }
+
+    /**
+     * Moves the last day of a reservation, keeping its unit. Extending claims the added days
+     * and fails if the unit is reserved on any of them; shortening frees the removed days.
+     *
+     * @param reservation The reservation to change.
+     * @param lastDay The new last day, inclusive.
+     * @return The changed reservation, which replaces the given one.
+     * @throws IllegalArgumentException If the new range is empty, the unit is not free on the
+     *         added days, or the reservation has been released or changed meanwhile.
+     */
+    public Reservation extend(Reservation reservation, LocalDate lastDay) {
+        UnitPool pool = pool(reservation.toolCode);
+        int to = epochDay(lastDay);
+        checkRange(reservation.firstDay, to);
+        Reservation changed = new Reservation(reservation.id, reservation.toolCode, reservation.unit,
+                reservation.firstDay, to);
+        if (to > reservation.lastDay) {
+            if (!pool.claim(reservation.unit, reservation.lastDay + 1, to)) {
+                Metrics.get().recordValidationFailure(Metrics.ValidationFailure.UNAVAILABLE);
+                throw new IllegalArgumentException("Unit " + reservation.unit + " of " + reservation.toolCode
+                        + " is not available until " + lastDay + ".");
+            }
+            if (!reservations.replace(reservation.id, reservation, changed)) {
+                pool.clear(reservation.unit, reservation.lastDay + 1, to);
+                throw new IllegalArgumentException("Reservation " + reservation.id + " is no longer current.");
+            }
+        } else {
+            if (!reservations.replace(reservation.id, reservation, changed)) {
+                throw new IllegalArgumentException("Reservation " + reservation.id + " is no longer current.");
+            }
+            if (to < reservation.lastDay) {
+                pool.clear(reservation.unit, to + 1, reservation.lastDay);
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * @return The current version of the reservation with the given id, or null if it has
+     *         been released.
+     */
+    public Reservation getReservation(long id) {
+        return reservations.get(id);
+    }
+
+    /**
+     * Returns the units of the tool code that are free on every day of the range.
+     *
+     * @param toolCode The tool code.
+     * @param firstDay The first day of the range.
+     * @param lastDay The last day of the range, inclusive.
+     * @return The free unit numbers.
+     */
+    public BitSet findFreeUnits(String toolCode, LocalDate firstDay, LocalDate lastDay) {
+        UnitPool pool = pool(toolCode);
+        int from = epochDay(firstDay);
+        int to = epochDay(lastDay);
+        checkRange(from, to);
+        AtomicLongArray[] days = pool.daysBetween(from, to);
+        long[] free = new long[pool.words];
+        for (int word = 0; word < pool.words; word++) {
+            free[word] = pool.freeBits(days, word);
+        }
+        return BitSet.valueOf(free);
+    }
+
+    /**
+     * @return The number of units of the tool code that are free on every day of the range.
+     */
+    public int countFreeUnits(String toolCode, LocalDate firstDay, LocalDate lastDay) {
+        UnitPool pool = pool(toolCode);
+        int from = epochDay(firstDay);
+        int to = epochDay(lastDay);
+        checkRange(from, to);
+        AtomicLongArray[] days = pool.daysBetween(from, to);
+        int count = 0;
+        for (int word = 0; word < pool.words; word++) {
+            count += Long.bitCount(pool.freeBits(days, word));
+        }
+        return count;
+    }
+
+    /**
+     * Returns, for every day of the range, the number of consecutive days starting on it for
+     * which a single unit of the tool code is free, counted up to the end of the range. A
+     * rental from a day can be reserved if its days fit in that day's run. Reading the whole
+     * range at once is cheaper than a range query per candidate rental when there are many.
+     *
+     * @param toolCode The tool code.
+     * @param firstDay The first day of the range.
+     * @param lastDay The last day of the range, inclusive.
+     * @return The free run length of each day of the range, indexed from the first day.
+     */
+    public int[] findFreeRuns(String toolCode, LocalDate firstDay, LocalDate lastDay) {
+        UnitPool pool = pool(toolCode);
+        int from = epochDay(firstDay);
+        int to = epochDay(lastDay);
+        checkRange(from, to);
+        int[] runs = new int[to - from + 1];
+        // Each unit's nearest reserved day at or after the current one, as an offset from the first day
+        int[] nextReserved = new int[pool.units];
+        Arrays.fill(nextReserved, runs.length);
+        int furthest = runs.length;
+        for (int offset = runs.length - 1; offset >= 0; offset--) {
+            AtomicLongArray bits = pool.days.get(from + offset);
+            if (bits != null) {
+                boolean changed = false;
+                for (int word = 0; word < pool.words; word++) {
+                    long busy = bits.get(word);
+                    while (busy != 0) {
+                        nextReserved[(word << 6) + Long.numberOfTrailingZeros(busy)] = offset;
+                        busy &= busy - 1;
+                        changed = true;
+                    }
+                }
+                if (changed) {
+                    furthest = 0;
+                    for (int next : nextReserved) {
+                        furthest = Math.max(furthest, next);
+                    }
+                }
+            }
+            runs[offset] = furthest - offset;
+        }
+        return runs;
+    }
+
+    /**
+     * Drops the day bitsets before the given day. Reservations are not affected, but their
+     * earlier days are no longer tracked, so units may be reserved again for those days.
+     *
+     * @param day The first day to keep.
+     */
+    public void purgeBefore(LocalDate day) {
+        int keepFrom = epochDay(day);
+        for (UnitPool pool : pools.values()) {
+            pool.days.keySet().removeIf(epochDay -> epochDay < keepFrom);
+        }
+    }
+
+    private UnitPool pool(String toolCode) {
+        UnitPool pool = pools.get(toolCode);
+        if (pool == null) {
+            throw new IllegalArgumentException("Tool code is not stocked: " + toolCode);
+        }
+        return pool;
+    }
+
+    private static int epochDay(LocalDate date) {
+        return Math.toIntExact(date.toEpochDay());
+    }
+
+    private static void checkRange(int from, int to) {
+        if (to < from) {
+            throw new IllegalArgumentException("Last day must not be before the first day.");
+        }
+    }
+
+    /**
+     * The Reservation nested class is one unit of a tool code reserved for a range of days.
+     * Reservations are immutable; extending one produces a new version with the same id.
+     */
+    public static final class Reservation {
+        private final long id;
+        private final String toolCode;
+        private final int unit;
+        private final int firstDay;
+        private final int lastDay;
+
+        Reservation(long id, String toolCode, int unit, int firstDay, int lastDay) {
+            this.id = id;
+            this.toolCode = toolCode;
+            this.unit = unit;
+            this.firstDay = firstDay;
+            this.lastDay = lastDay;
+        }
+
+        public long getId() {
+            return id;
+        }
+
+        public String getToolCode() {
+            return toolCode;
+        }
+
+        public int getUnit() {
+            return unit;
+        }
+
+        public LocalDate getFirstDay() {
+            return LocalDate.ofEpochDay(firstDay);
+        }
+
+        /**
+         * @return The last reserved day, inclusive.
+         */
+        public LocalDate getLastDay() {
+            return LocalDate.ofEpochDay(lastDay);
+        }
+
+        @Override
+        public String toString() {
+            return "Reservation{" +
+                   "id=" + id +
+                   ", toolCode='" + toolCode + '\'' +
+                   ", unit=" + unit +
+                   ", firstDay=" + getFirstDay() +
+                   ", lastDay=" + getLastDay() +
+                   '}';
+        }
+    }
+
+    /**
+     * The UnitPool nested class holds the per-day reservation bitsets of one tool code.
+     */
+    private static final class UnitPool {
+        final int units;
+        final int words;
+        final ConcurrentHashMap<Integer, AtomicLongArray> days = new ConcurrentHashMap<>();
+
+        UnitPool(int units) {
+            this.units = units;
+            this.words = (units + 63) >>> 6;
+        }
+
+        // The bits of the units that exist in a word
+        private long validBits(int word) {
+            int remaining = units - (word << 6);
+            return remaining >= 64 ? ~0L : (1L << remaining) - 1;
+        }
+
+        // The bitsets of the days in [from, to] that have any reservations
+        AtomicLongArray[] daysBetween(int from, int to) {
+            AtomicLongArray[] found = new AtomicLongArray[Math.min(to - from + 1, days.size())];
+            int count = 0;
+            for (int day = from; day <= to && count < found.length; day++) {
+                AtomicLongArray bits = days.get(day);
+                if (bits != null) {
+                    found[count++] = bits;
+                }
+            }
+            return count == found.length ? found : Arrays.copyOf(found, count);
+        }
+
+        long freeBits(AtomicLongArray[] dayBits, int word) {
+            long busy = 0;
+            for (AtomicLongArray bits : dayBits) {
+                busy |= bits.get(word);
+            }
+            return ~busy & validBits(word);
+        }
+
+        /**
+         * Claims some unit that is free on [from, to], starting the search at a random word so
+         * that concurrent callers spread over the pool. Returns -1 if none is free.
+         */
+        int claimAny(int from, int to) {
+            AtomicLongArray[] dayBits = daysBetween(from, to);
+            int start = words == 1 ? 0 : ThreadLocalRandom.current().nextInt(words);
+            for (int i = 0; i < words; i++) {
+                int word = start + i < words ? start + i : start + i - words;
+                long free = freeBits(dayBits, word);
+                while (free != 0) {
+                    int unit = (word << 6) + Long.numberOfTrailingZeros(free);
+                    if (claim(unit, from, to)) {
+                        return unit;
+                    }
+                    free &= free - 1;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * Sets the unit's bit on every day of [from, to], or none of them if another
+         * reservation holds the unit on any of those days.
+         */
+        boolean claim(int unit, int from, int to) {
+            int word = unit >>> 6;
+            long bit = 1L << unit;
+            for (int day = from; day <= to; day++) {
+                AtomicLongArray bits = days.computeIfAbsent(day, d -> new AtomicLongArray(words));
+                long current;
+                do {
+                    current = bits.get(word);
+                    if ((current & bit) != 0) {
+                        if (day > from) {
+                            clear(unit, from, day - 1);
+                        }
+                        return false;
+                    }
+                } while (!bits.compareAndSet(word, current, current | bit));
+            }
+            return true;
+        }
+
+        void clear(int unit, int from, int to) {
+            int word = unit >>> 6;
+            long mask = ~(1L << unit);
+            for (int day = from; day <= to; day++) {
+                AtomicLongArray bits = days.get(day);
+                if (bits != null) {
+                    bits.getAndAccumulate(word, mask, (current, keep) -> current & keep);
+                }
+            }
+        }
+    }
+}
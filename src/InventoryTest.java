@@ -0,0 +1,201 @@
+import org.junit.Test;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class InventoryTest {
+
+    private final LocalDate july1 = LocalDate.of(2024, 7, 1);
+
+    @Test
+    public void testConcurrentCheckoutsCannotShareTheLastUnit() throws Exception {
+        ToolCatalog catalog = ToolCatalog.standard(new ToolFactory());
+        Inventory inventory = Inventory.forCatalog(catalog, 1);
+        Checkout checkout = new Checkout(PricingEngine.DEFAULT, null, inventory);
+        ITool jackhammer = catalog.getTool("JAKR");
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Boolean>> results = new ArrayList<>();
+        try {
+            for (int i = 0; i < 8; i++) {
+                results.add(executor.submit(() -> {
+                    start.await();
+                    try {
+                        checkout.checkoutTool(jackhammer, 5, 0, july1);
+                        return true;
+                    } catch (IllegalArgumentException e) {
+                        return false;
+                    }
+                }));
+            }
+            start.countDown();
+            int succeeded = 0;
+            for (Future<Boolean> result : results) {
+                succeeded += result.get() ? 1 : 0;
+            }
+            assertEquals(1, succeeded);
+        } finally {
+            executor.shutdown();
+        }
+
+        // A different tool code and a later rental of the same code are unaffected.
+        RentalAgreement ladder = checkout.checkoutTool(catalog.getTool("LADW"), 5, 0, july1);
+        assertEquals(july1, ladder.getReservation().getFirstDay());
+        assertEquals(ladder.getDueDate(), ladder.getReservation().getLastDay());
+        assertNotNull(checkout.checkoutTool(jackhammer, 1, 0, july1.plusDays(30)).getReservation());
+    }
+
+    @Test
+    public void testReleaseAndExtend() {
+        Inventory inventory = new Inventory();
+        inventory.addTool("JAKR", 2);
+        Inventory.Reservation first = inventory.reserve("JAKR", july1, july1.plusDays(4));
+        Inventory.Reservation second = inventory.reserve("JAKR", july1.plusDays(2), july1.plusDays(3));
+        assertNotEquals(first.getUnit(), second.getUnit());
+        assertEquals(0, inventory.countFreeUnits("JAKR", july1.plusDays(3), july1.plusDays(3)));
+        assertThrows(IllegalArgumentException.class, () -> inventory.reserve("JAKR", july1.plusDays(3), july1.plusDays(10)));
+
+        // The second unit is free again from the 5th, so it can be extended over the first's days.
+        Inventory.Reservation extended = inventory.extend(second, july1.plusDays(9));
+        assertEquals(second.getId(), extended.getId());
+        assertSame(extended, inventory.getReservation(second.getId()));
+        assertThrows(IllegalArgumentException.class, () -> inventory.extend(second, july1.plusDays(12)));
+        assertFalse(inventory.release(second));
+
+        Inventory.Reservation shortened = inventory.extend(first, july1.plusDays(1));
+        BitSet free = inventory.findFreeUnits("JAKR", july1.plusDays(2), july1.plusDays(4));
+        assertEquals(1, free.cardinality());
+        assertTrue(free.get(first.getUnit()));
+
+        assertTrue(inventory.release(shortened));
+        assertTrue(inventory.release(extended));
+        assertNull(inventory.getReservation(first.getId()));
+        assertEquals(2, inventory.countFreeUnits("JAKR", july1, july1.plusDays(30)));
+    }
+
+    @Test
+    public void testLargePoolHasNoDoubleBookings() throws Exception {
+        int units = 100_000;
+        Inventory inventory = new Inventory();
+        inventory.addTool("LADW", units);
+        ConcurrentLinkedQueue<Inventory.Reservation> reserved = new ConcurrentLinkedQueue<>();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> tasks = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                int thread = t;
+                tasks.add(executor.submit(() -> {
+                    for (int i = 0; i < 20_000; i++) {
+                        LocalDate day = july1.plusDays((i * 7 + thread) % 20);
+                        reserved.add(inventory.reserve("LADW", day, day.plusDays(i % 5)));
+                    }
+                }));
+            }
+            for (Future<?> task : tasks) {
+                task.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        // Replaying the reservations into per-day bitsets must find every unit used at most once a day.
+        BitSet[] used = new BitSet[30];
+        for (Inventory.Reservation reservation : reserved) {
+            for (LocalDate day = reservation.getFirstDay(); !day.isAfter(reservation.getLastDay()); day = day.plusDays(1)) {
+                int index = (int) (day.toEpochDay() - july1.toEpochDay());
+                BitSet bits = used[index] == null ? used[index] = new BitSet(units) : used[index];
+                assertFalse(bits.get(reservation.getUnit()));
+                bits.set(reservation.getUnit());
+            }
+        }
+        for (int day = 0; day < used.length; day++) {
+            int busy = used[day] == null ? 0 : used[day].cardinality();
+            assertEquals(units - busy, inventory.countFreeUnits("LADW", july1.plusDays(day), july1.plusDays(day)));
+        }
+    }
+
+    @Test
+    public void testFreeRunsMatchRangeQueries() {
+        Inventory inventory = new Inventory();
+        inventory.addTool("JAKR", 70);
+        Random random = new Random(7);
+        for (int i = 0; i < 400; i++) {
+            LocalDate first = july1.plusDays(random.nextInt(90));
+            try {
+                inventory.reserve("JAKR", first, first.plusDays(random.nextInt(20)));
+            } catch (IllegalArgumentException fullyBooked) {
+                // Every unit is reserved on some day of the range
+            }
+        }
+
+        int[] runs = inventory.findFreeRuns("JAKR", july1, july1.plusDays(99));
+        assertEquals(100, runs.length);
+        for (int start = 0; start < runs.length; start++) {
+            for (int days = 1; start + days <= runs.length; days++) {
+                boolean free = inventory.countFreeUnits("JAKR", july1.plusDays(start), july1.plusDays(start + days - 1)) > 0;
+                assertEquals(free, days <= runs[start], "from day " + start + " for " + days + " days");
+            }
+        }
+    }
+
+    @Test
+    public void testChangingRentalDaysMovesTheReservation() {
+        ToolCatalog catalog = ToolCatalog.standard(new ToolFactory());
+        Inventory inventory = Inventory.forCatalog(catalog, 1);
+        Checkout checkout = new Checkout(PricingEngine.DEFAULT, null, inventory);
+        ITool ladder = catalog.getTool("LADW");
+
+        RentalAgreement agreement = checkout.checkoutTool(ladder, 3, 10, july1);
+        RentalAgreement extended = checkout.changeRentalDays(agreement, 10);
+        assertEquals(new RentalAgreement(ladder, 10, 10, july1).generateAgreement(), extended.generateAgreement());
+        assertEquals(extended.getDueDate(), extended.getReservation().getLastDay());
+        assertEquals(agreement.getReservation().getId(), extended.getReservation().getId());
+        assertEquals(0, inventory.countFreeUnits("LADW", july1, extended.getDueDate()));
+
+        RentalAgreement shortened = checkout.changeRentalDays(extended, 2);
+        assertEquals(new RentalAgreement(ladder, 2, 10, july1).generateAgreement(), shortened.generateAgreement());
+        assertEquals(1, inventory.countFreeUnits("LADW", shortened.getDueDate().plusDays(1), extended.getDueDate()));
+        // The replaced version of the reservation can no longer be changed
+        assertThrows(IllegalArgumentException.class, () -> checkout.changeRentalDays(extended, 4));
+    }
+
+    @Test
+    public void testRemovedToolCanBeRestoredElsewhere() {
+        Inventory source = new Inventory();
+        source.addTool("JAKR", 2);
+        Inventory.Reservation first = source.reserve("JAKR", july1, july1.plusDays(4));
+        Inventory.Reservation second = source.extend(source.reserve("JAKR", july1.plusDays(2), july1.plusDays(6)),
+                july1.plusDays(9));
+
+        source.addTool("LADW", 1);
+        source.reserve("LADW", july1, july1);
+        List<Inventory.Reservation> moved = source.removeTools(List.of("JAKR")).get("JAKR");
+        assertEquals(List.of(first, second), moved);
+        assertFalse(source.isStocked("JAKR"));
+        assertNull(source.getReservation(first.getId()));
+        assertThrows(IllegalArgumentException.class, () -> source.removeTools(List.of("LADW", "JAKR")));
+        assertEquals(0, source.countFreeUnits("LADW", july1, july1));
+
+        Inventory target = new Inventory();
+        target.addTool("JAKR", 2);
+        for (Inventory.Reservation reservation : moved) {
+            Inventory.Reservation restored = target.reserveUnit("JAKR", reservation.getUnit(),
+                    reservation.getFirstDay(), reservation.getLastDay());
+            assertEquals(reservation.getUnit(), restored.getUnit());
+        }
+        assertEquals(0, target.countFreeUnits("JAKR", july1.plusDays(2), july1.plusDays(4)));
+        assertEquals(1, target.countFreeUnits("JAKR", july1.plusDays(5), july1.plusDays(9)));
+        assertThrows(IllegalArgumentException.class,
+                () -> target.reserveUnit("JAKR", second.getUnit(), july1.plusDays(9), july1.plusDays(12)));
+        assertThrows(IllegalArgumentException.class, () -> target.reserveUnit("JAKR", 2, july1, july1));
+    }
+}
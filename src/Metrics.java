@@ -0,0 +1,304 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAdder;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Period;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * The Metrics class is the instrumentation layer of the checkout hot path. It times the
+ * stages of a checkout into one LatencyHistogram per stage and counts validation failures
+ * by reason in LongAdders.
+ *
+ * The installed instance defaults to NOOP, which records nothing: its methods return after
+ * a single check of a final field, and startNanos does not even read the clock. Install a
+ * recording instance with Metrics.install(Metrics.recording()) to turn the metrics on.
+ * Recording costs one clock read and a few mostly uncontended atomic adds per stage, as
+ * consecutive stages share the clock read between them.
+ *
+ * Snapshots can be exported in the Prometheus text exposition format, and as JFR events
+ * emitted once per recording chunk and at the period configured in the recording settings.
+ */
+public final class Metrics {
+
+    /**
+     * The timed stages of a checkout.
+     */
+    public enum Stage {
+        /** Checkout.checkoutTool, from validation to the finished agreement. */
+        CHECKOUT,
+        /** Finding the due date of a rental. */
+        DUE_DATE,
+        /** Counting the charge days of a rental. */
+        CHARGE_DAYS,
+        /** RentalAgreement.generateAgreement. */
+        RENDER
+    }
+
+    /**
+     * The reasons a checkout is rejected.
+     */
+    public enum ValidationFailure {
+        RENTAL_DAYS,
+        DISCOUNT_PERCENT,
+        UNKNOWN_TOOL,
+        MALFORMED_REQUEST,
+        UNAVAILABLE
+    }
+
+    /**
+     * Records nothing.
+     */
+    public static final Metrics NOOP = new Metrics(false);
+
+    private static volatile Metrics installed = NOOP;
+
+    private final boolean enabled;
+    private final LatencyHistogram[] stages;
+    private final LongAdder[] validationFailures;
+    private final Runnable flightRecorderHook = this::emitFlightRecorderEvents;
+
+    private Metrics(boolean enabled) {
+        this.enabled = enabled;
+        this.stages = new LatencyHistogram[enabled ? Stage.values().length : 0];
+        this.validationFailures = new LongAdder[enabled ? ValidationFailure.values().length : 0];
+        for (int i = 0; i < stages.length; i++) {
+            stages[i] = new LatencyHistogram();
+        }
+        for (int i = 0; i < validationFailures.length; i++) {
+            validationFailures[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Creates a new instance that records metrics.
+     */
+    public static Metrics recording() {
+        return new Metrics(true);
+    }
+
+    /**
+     * @return The installed instance the application records to.
+     */
+    public static Metrics get() {
+        return installed;
+    }
+
+    /**
+     * Installs the instance the application records to. A recording instance is also
+     * registered with the flight recorder, and the replaced one unregistered.
+     *
+     * @param metrics The instance to install, e.g. Metrics.recording() or Metrics.NOOP.
+     */
+    public static synchronized void install(Metrics metrics) {
+        Metrics previous = installed;
+        if (previous == metrics) {
+            return;
+        }
+        if (previous.enabled) {
+            FlightRecorder.removePeriodicEvent(previous.flightRecorderHook);
+        }
+        if (metrics.enabled) {
+            FlightRecorder.addPeriodicEvent(StageLatencyEvent.class, metrics.flightRecorderHook);
+        }
+        installed = metrics;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @return The current time for a later recordStage call, or 0 if the metrics are off.
+     */
+    public long startNanos() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Records a stage that started at the given time and ends now.
+     *
+     * @param stage The stage.
+     * @param startNanos The value startNanos returned when the stage started.
+     * @return The end time, which can start the next stage without another clock read, or 0
+     *         if the metrics are off.
+     */
+    public long recordStage(Stage stage, long startNanos) {
+        if (!enabled) {
+            return 0;
+        }
+        long endNanos = System.nanoTime();
+        stages[stage.ordinal()].record(endNanos - startNanos);
+        return endNanos;
+    }
+
+    /**
+     * Counts a rejected checkout.
+     *
+     * @param reason The reason it was rejected.
+     */
+    public void recordValidationFailure(ValidationFailure reason) {
+        if (enabled) {
+            validationFailures[reason.ordinal()].increment();
+        }
+    }
+
+    /**
+     * Takes a snapshot of a stage's latencies.
+     *
+     * @throws IllegalStateException If the metrics are off.
+     */
+    public LatencyHistogram.Snapshot getStageLatencies(Stage stage) {
+        checkEnabled();
+        return stages[stage.ordinal()].snapshot();
+    }
+
+    /**
+     * Returns the number of checkouts rejected for the given reason.
+     *
+     * @throws IllegalStateException If the metrics are off.
+     */
+    public long getValidationFailures(ValidationFailure reason) {
+        checkEnabled();
+        return validationFailures[reason.ordinal()].sum();
+    }
+
+    private void checkEnabled() {
+        if (!enabled) {
+            throw new IllegalStateException("Metrics are not recording.");
+        }
+    }
+
+    /**
+     * Writes a snapshot in the Prometheus text exposition format: a summary of the latency of
+     * every stage, in seconds, and a counter of validation failures by reason. Metrics that
+     * are off write nothing.
+     *
+     * @param out The destination.
+     * @throws IOException If the destination fails to accept the text.
+     */
+    public void writePrometheus(Appendable out) throws IOException {
+        if (!enabled) {
+            return;
+        }
+        StringBuilder text = new StringBuilder(2048);
+        text.append("# HELP toolrental_stage_latency_seconds Latency of the checkout stages.\n");
+        text.append("# TYPE toolrental_stage_latency_seconds summary\n");
+        for (Stage stage : Stage.values()) {
+            LatencyHistogram.Snapshot snapshot = getStageLatencies(stage);
+            String label = stage.name().toLowerCase(Locale.ROOT);
+            for (double quantile : new double[] {0.5, 0.99, 0.999}) {
+                text.append("toolrental_stage_latency_seconds{stage=\"").append(label)
+                    .append("\",quantile=\"").append(quantile).append("\"} ")
+                    .append(snapshot.getValueAtPercentile(quantile * 100) / 1e9).append('\n');
+            }
+            text.append("toolrental_stage_latency_seconds_sum{stage=\"").append(label).append("\"} ")
+                .append(snapshot.getSum() / 1e9).append('\n');
+            text.append("toolrental_stage_latency_seconds_count{stage=\"").append(label).append("\"} ")
+                .append(snapshot.getCount()).append('\n');
+        }
+        text.append("# HELP toolrental_validation_failures_total Checkouts rejected by validation.\n");
+        text.append("# TYPE toolrental_validation_failures_total counter\n");
+        for (ValidationFailure reason : ValidationFailure.values()) {
+            text.append("toolrental_validation_failures_total{reason=\"")
+                .append(reason.name().toLowerCase(Locale.ROOT)).append("\"} ")
+                .append(getValidationFailures(reason)).append('\n');
+        }
+        out.append(text);
+    }
+
+    /**
+     * @return A snapshot in the Prometheus text exposition format.
+     */
+    public String toPrometheusText() {
+        StringBuilder text = new StringBuilder(2048);
+        try {
+            writePrometheus(text);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // StringBuilder does not throw
+        }
+        return text.toString();
+    }
+
+    /**
+     * Emits a snapshot as JFR events: a StageLatencyEvent per stage and a
+     * ValidationFailuresEvent per reason. Does nothing unless a recording has the events enabled.
+     */
+    public void emitFlightRecorderEvents() {
+        if (!enabled) {
+            return;
+        }
+        StageLatencyEvent stageEvent = new StageLatencyEvent();
+        if (stageEvent.isEnabled()) {
+            for (Stage stage : Stage.values()) {
+                LatencyHistogram.Snapshot snapshot = getStageLatencies(stage);
+                StageLatencyEvent event = new StageLatencyEvent();
+                event.stage = stage.name();
+                event.count = snapshot.getCount();
+                event.p50 = snapshot.getValueAtPercentile(50);
+                event.p99 = snapshot.getValueAtPercentile(99);
+                event.p999 = snapshot.getValueAtPercentile(99.9);
+                event.max = snapshot.getMax();
+                event.commit();
+            }
+        }
+        if (new ValidationFailuresEvent().isEnabled()) {
+            for (ValidationFailure reason : ValidationFailure.values()) {
+                ValidationFailuresEvent event = new ValidationFailuresEvent();
+                event.reason = reason.name();
+                event.count = getValidationFailures(reason);
+                event.commit();
+            }
+        }
+    }
+
+    @Name("toolrental.StageLatency")
+    @Label("Checkout Stage Latency")
+    @Description("Latency percentiles of a checkout stage since the metrics were installed")
+    @Category({"Tool Rental", "Metrics"})
+    @Period("10 s")
+    @StackTrace(false)
+    static final class StageLatencyEvent extends Event {
+        @Label("Stage")
+        String stage;
+
+        @Label("Count")
+        long count;
+
+        @Label("p50")
+        @Timespan(Timespan.NANOSECONDS)
+        long p50;
+
+        @Label("p99")
+        @Timespan(Timespan.NANOSECONDS)
+        long p99;
+
+        @Label("p99.9")
+        @Timespan(Timespan.NANOSECONDS)
+        long p999;
+
+        @Label("Max")
+        @Timespan(Timespan.NANOSECONDS)
+        long max;
+    }
+
+    @Name("toolrental.ValidationFailures")
+    @Label("Checkout Validation Failures")
+    @Description("Checkouts rejected for a reason since the metrics were installed")
+    @Category({"Tool Rental", "Metrics"})
+    @StackTrace(false)
+    static final class ValidationFailuresEvent extends Event {
+        @Label("Reason")
+        String reason;
+
+        @Label("Count")
+        long count;
+    }
+}
@@ -0,0 +1,95 @@
+import org.junit.After;
+import org.junit.Test;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MetricsTest {
+
+    private final ToolCatalog catalog = ToolCatalog.standard(new ToolFactory());
+
+    @After
+    public void tearDown() {
+        Metrics.install(Metrics.NOOP);
+    }
+
+    @Test
+    public void testNoopRecordsNothing() {
+        assertSame(Metrics.NOOP, Metrics.get());
+        assertEquals(0, Metrics.NOOP.startNanos());
+        new Checkout().checkoutTool(catalog.getTool("LADW"), 3, 10, LocalDate.of(2020, 7, 2)).generateAgreement();
+        assertEquals("", Metrics.NOOP.toPrometheusText());
+        assertThrows(IllegalStateException.class, () -> Metrics.NOOP.getStageLatencies(Metrics.Stage.CHECKOUT));
+    }
+
+    @Test
+    public void testCheckoutStagesAndFailuresAreRecorded() {
+        Metrics metrics = Metrics.recording();
+        Metrics.install(metrics);
+        Checkout checkout = new Checkout();
+        for (int i = 0; i < 10; i++) {
+            checkout.checkoutTool(catalog.getTool("JAKR"), 1 + i, 10, LocalDate.of(2020, 7, 2)).generateAgreement();
+        }
+        assertThrows(IllegalArgumentException.class, () -> checkout.checkoutTool(catalog.getTool("JAKR"), 5, 101, LocalDate.of(2015, 9, 3)));
+        assertThrows(IllegalArgumentException.class, () -> checkout.checkoutTool(catalog.getTool("JAKR"), 0, 10, LocalDate.of(2015, 9, 3)));
+        assertThrows(IllegalArgumentException.class, () -> catalog.getTool("NOPE"));
+
+        for (Metrics.Stage stage : Metrics.Stage.values()) {
+            assertEquals(10, metrics.getStageLatencies(stage).getCount(), stage.name());
+        }
+        assertEquals(1, metrics.getValidationFailures(Metrics.ValidationFailure.DISCOUNT_PERCENT));
+        assertEquals(1, metrics.getValidationFailures(Metrics.ValidationFailure.RENTAL_DAYS));
+        assertEquals(1, metrics.getValidationFailures(Metrics.ValidationFailure.UNKNOWN_TOOL));
+        assertEquals(0, metrics.getValidationFailures(Metrics.ValidationFailure.MALFORMED_REQUEST));
+    }
+
+    @Test
+    public void testPrometheusText() {
+        Metrics metrics = Metrics.recording();
+        metrics.recordStage(Metrics.Stage.DUE_DATE, metrics.startNanos());
+        metrics.recordValidationFailure(Metrics.ValidationFailure.UNKNOWN_TOOL);
+        String text = metrics.toPrometheusText();
+
+        assertTrue(text.contains("# TYPE toolrental_stage_latency_seconds summary\n"));
+        assertTrue(text.contains("toolrental_stage_latency_seconds{stage=\"due_date\",quantile=\"0.99\"} "));
+        assertTrue(text.contains("toolrental_stage_latency_seconds_count{stage=\"due_date\"} 1\n"));
+        assertTrue(text.contains("toolrental_stage_latency_seconds_count{stage=\"render\"} 0\n"));
+        assertTrue(text.contains("# TYPE toolrental_validation_failures_total counter\n"));
+        assertTrue(text.contains("toolrental_validation_failures_total{reason=\"unknown_tool\"} 1\n"));
+        assertTrue(text.contains("toolrental_validation_failures_total{reason=\"rental_days\"} 0\n"));
+    }
+
+    @Test
+    public void testFlightRecorderEvents() throws Exception {
+        Metrics metrics = Metrics.recording();
+        for (int i = 0; i < 5; i++) {
+            metrics.recordStage(Metrics.Stage.CHECKOUT, metrics.startNanos());
+        }
+        Path file = Files.createTempFile("metrics", ".jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable("toolrental.StageLatency");
+            recording.enable("toolrental.ValidationFailures");
+            recording.start();
+            metrics.emitFlightRecorderEvents();
+            recording.stop();
+            recording.dump(file);
+
+            List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+            RecordedEvent checkout = events.stream()
+                    .filter(event -> event.getEventType().getName().equals("toolrental.StageLatency"))
+                    .filter(event -> event.getString("stage").equals("CHECKOUT"))
+                    .findFirst().orElseThrow();
+            assertEquals(5, checkout.getLong("count"));
+            assertEquals(Metrics.ValidationFailure.values().length, events.stream()
+                    .filter(event -> event.getEventType().getName().equals("toolrental.ValidationFailures"))
+                    .count());
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+}
@@ -0,0 +1,115 @@
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * The Money class is an exact amount of US currency, held as a whole number of cents.
+ *
+ * Charges are calculated in integer cents so that no binary floating point drift can creep in
+ * before rounding. The static methods work on raw cent values and never allocate, which is how
+ * RentalAgreement uses them on the pricing hot path; Money instances are for the API surface.
+ */
+public final class Money implements Comparable<Money> {
+
+    public static final Money ZERO = new Money(0);
+
+    private final long cents;
+
+    private Money(long cents) {
+        this.cents = cents;
+    }
+
+    /**
+     * Creates an amount from a number of cents.
+     *
+     * @param cents The amount in cents.
+     * @return The amount.
+     */
+    public static Money ofCents(long cents) {
+        return cents == 0 ? ZERO : new Money(cents);
+    }
+
+    /**
+     * Creates an amount from dollars, rounded half up to the nearest cent. The double is read by
+     * its shortest decimal representation, so a literal like 1.99 becomes exactly 199 cents.
+     *
+     * @param dollars The amount in dollars.
+     * @return The amount.
+     */
+    public static Money ofDollars(double dollars) {
+        return ofCents(BigDecimal.valueOf(dollars).setScale(2, RoundingMode.HALF_UP).unscaledValue().longValueExact());
+    }
+
+    public long getCents() {
+        return cents;
+    }
+
+    /**
+     * @return The amount in dollars, for callers still working with double charges.
+     */
+    public double toDouble() {
+        return toDouble(cents);
+    }
+
+    public Money times(int factor) {
+        return ofCents(times(cents, factor));
+    }
+
+    public Money percent(int percent) {
+        return ofCents(percentOf(cents, percent));
+    }
+
+    public Money minus(Money other) {
+        return ofCents(Math.subtractExact(cents, other.cents));
+    }
+
+    /**
+     * Multiplies an amount of cents by a whole factor.
+     *
+     * @throws ArithmeticException If the result overflows.
+     */
+    public static long times(long cents, int factor) {
+        return Math.multiplyExact(cents, (long) factor);
+    }
+
+    /**
+     * Calculates a percentage of an amount of cents, rounded half up to the nearest cent.
+     * Negative amounts round half away from zero, matching BigDecimal's HALF_UP.
+     *
+     * @param cents The amount in cents.
+     * @param percent The percentage, e.g. 25 for 25%.
+     * @return The percentage of the amount, in cents.
+     */
+    public static long percentOf(long cents, int percent) {
+        long scaled = Math.multiplyExact(cents, (long) percent);
+        return scaled >= 0 ? (scaled + 50) / 100 : -((-scaled + 50) / 100);
+    }
+
+    /**
+     * Converts an amount of cents to dollars.
+     */
+    public static double toDouble(long cents) {
+        return cents / 100.0;
+    }
+
+    @Override
+    public int compareTo(Money other) {
+        return Long.compare(cents, other.cents);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof Money && ((Money) other).cents == cents;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(cents);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder(16);
+        AgreementRenderer.appendCurrency(text, cents);
+        return text.toString();
+    }
+}
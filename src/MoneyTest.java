@@ -0,0 +1,38 @@
+import org.junit.Test;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MoneyTest {
+
+    @Test
+    public void testPercentOfRoundsHalfUp() {
+        for (long cents = -5000; cents <= 5000; cents++) {
+            for (int percent = 0; percent <= 100; percent++) {
+                long expected = BigDecimal.valueOf(cents).multiply(BigDecimal.valueOf(percent))
+                        .divide(BigDecimal.valueOf(100), 0, RoundingMode.HALF_UP).longValueExact();
+                assertEquals(expected, Money.percentOf(cents, percent), cents + " * " + percent + "%");
+            }
+        }
+    }
+
+    @Test
+    public void testDollarConversions() {
+        assertEquals(199, Money.ofDollars(1.99).getCents());
+        assertEquals(1.99, Money.ofCents(199).toDouble());
+        assertEquals(75, Money.ofDollars(0.745).getCents());
+        assertEquals("$1,234.05", Money.ofCents(123405).toString());
+        assertEquals("-$0.99", Money.ofCents(-99).toString());
+    }
+
+    @Test
+    public void testChargesAreExactCents() {
+        // 3 days at $1.49 with 50% off: $4.47 pre-discount, $2.235 rounds half up to $2.24
+        ITool chainsaw = new Tool("CHNS", "Chainsaw", "Stihl");
+        RentalAgreement rental = new RentalAgreement(chainsaw, 3, 50, java.time.LocalDate.of(2024, 3, 11));
+        assertEquals(447, rental.getPreDiscountChargeCents());
+        assertEquals(224, rental.getDiscountAmountCents());
+        assertEquals(223, rental.getFinalChargeCents());
+        assertEquals(2.23, rental.getFinalCharge());
+    }
+}
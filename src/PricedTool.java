@@ -0,0 +1,102 @@
+/**
+ * The PricedTool class is a tool with its rate and charging flags fixed: the ones a rental was
+ * priced with. A Tool follows its tool type registry, so a reload can change its rate between
+ * two reads; pricing reads a PricedTool instead, so every step of one calculation sees the
+ * same tool type attributes, and the agreement keeps them after later reloads.
+ *
+ * Instances are immutable.
+ */
+final class PricedTool implements ITool {
+
+    // Charging flag bits, as recorded by AgreementJournal and sent by ShardProtocol
+    static final int WEEKDAY_CHARGE = 1;
+    static final int WEEKEND_CHARGE = 2;
+    static final int HOLIDAY_CHARGE = 4;
+
+    private final String toolCode;
+    private final String toolType;
+    private final String brand;
+    private final ToolAttributes.ToolTypeAttributes attributes;
+
+    PricedTool(String toolCode, String toolType, String brand, ToolAttributes.ToolTypeAttributes attributes) {
+        this.toolCode = toolCode;
+        this.toolType = toolType;
+        this.brand = brand;
+        this.attributes = attributes;
+    }
+
+    /**
+     * @return The tool with the attributes it has now, read at once.
+     */
+    static PricedTool of(ITool tool) {
+        if (tool instanceof PricedTool priced) {
+            return priced;
+        }
+        if (tool instanceof Tool rentable) {
+            return rentable.priced();
+        }
+        return new PricedTool(tool.getToolCode(), tool.getToolType(), tool.getBrand(),
+                new ToolAttributes.ToolTypeAttributes(tool.getDailyChargeMoney(), tool.isWeekdayCharge(),
+                        tool.isWeekendCharge(), tool.isHolidayCharge()));
+    }
+
+    /**
+     * @return The tool with the given attributes.
+     */
+    static PricedTool of(ITool tool, ToolAttributes.ToolTypeAttributes attributes) {
+        return new PricedTool(tool.getToolCode(), tool.getToolType(), tool.getBrand(), attributes);
+    }
+
+    static int flagsOf(ToolAttributes.ToolTypeAttributes attributes) {
+        return (attributes.isWeekdayCharge() ? WEEKDAY_CHARGE : 0)
+             | (attributes.isWeekendCharge() ? WEEKEND_CHARGE : 0)
+             | (attributes.isHolidayCharge() ? HOLIDAY_CHARGE : 0);
+    }
+
+    static ToolAttributes.ToolTypeAttributes attributes(long dailyChargeCents, int flags) {
+        return new ToolAttributes.ToolTypeAttributes(Money.ofCents(dailyChargeCents), (flags & WEEKDAY_CHARGE) != 0,
+                (flags & WEEKEND_CHARGE) != 0, (flags & HOLIDAY_CHARGE) != 0);
+    }
+
+    ToolAttributes.ToolTypeAttributes getAttributes() {
+        return attributes;
+    }
+
+    public String getToolCode() {
+        return toolCode;
+    }
+
+    public String getToolType() {
+        return toolType;
+    }
+
+    public String getBrand() {
+        return brand;
+    }
+
+    public Money getDailyChargeMoney() {
+        return attributes.getDailyChargeMoney();
+    }
+
+    public boolean isWeekdayCharge() {
+        return attributes.isWeekdayCharge();
+    }
+
+    public boolean isWeekendCharge() {
+        return attributes.isWeekendCharge();
+    }
+
+    public boolean isHolidayCharge() {
+        return attributes.isHolidayCharge();
+    }
+
+    @Override
+    public String toString() {
+        return "PricedTool{" +
+               "toolCode='" + toolCode + '\'' +
+               ", toolType='" + toolType + '\'' +
+               ", brand='" + brand + '\'' +
+               ", dailyCharge=" + getDailyCharge() +
+               '}';
+    }
+}
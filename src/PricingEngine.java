@@ -0,0 +1,307 @@
+import java.time.LocalDate;
+
+/**
+ * The PricingEngine class calculates the due date and charges of a rental. It holds no
+ * per-rental state, so a single engine can be shared by any number of threads; every call
+ * works only on its arguments and the immutable holiday calendar tables.
+ *
+ * The engine returns RentalCharges, a compact immutable result that can be cached and shared,
+ * or a complete RentalAgreement. Neither needs the Checkout wrapper.
+ *
+ * By default the charge is the tool's daily rate times the charge days, less the discount. An
+ * engine with a PricingPlan applies the plan's rate caps, seasonal surcharges and promotions
+ * instead.
+ *
+ * A rental is priced with the tool's rate and charging flags as read once at the start, see
+ * PricedTool, and a change to a rental is priced with the agreement's own, so a reload of the
+ * tool types affects new rentals only.
+ */
+public final class PricingEngine {
+
+    /**
+     * The engine used by RentalAgreement and Checkout unless told otherwise.
+     */
+    public static final PricingEngine DEFAULT = new PricingEngine(RentalAgreement.CalculationMode.PREFIX_SUM);
+
+    /**
+     * The longest rental the engine prices, in rental days. Rentals run to the nth chargeable
+     * day, so this is at least ten years; longer requests are rejected rather than priced, which
+     * bounds the calendar years a single request can make the holiday calendars build.
+     */
+    public static final int MAX_RENTAL_DAYS = 3650;
+
+    private static final PricingEngine DAY_BY_DAY = new PricingEngine(RentalAgreement.CalculationMode.DAY_BY_DAY);
+
+    private final RentalAgreement.CalculationMode mode;
+    private final PricingPlan pricingPlan;
+
+    /**
+     * Constructor for PricingEngine.
+     *
+     * @param mode How due dates and charge days are calculated.
+     */
+    public PricingEngine(RentalAgreement.CalculationMode mode) {
+        this(mode, null);
+    }
+
+    /**
+     * Constructor for PricingEngine.
+     *
+     * @param mode How due dates and charge days are calculated.
+     * @param pricingPlan The compiled pricing rules, or null to charge the flat daily rate.
+     */
+    public PricingEngine(RentalAgreement.CalculationMode mode, PricingPlan pricingPlan) {
+        this.mode = mode;
+        this.pricingPlan = pricingPlan;
+    }
+
+    /**
+     * Returns a shared engine for the given calculation mode.
+     */
+    static PricingEngine forMode(RentalAgreement.CalculationMode mode) {
+        return mode == RentalAgreement.CalculationMode.DAY_BY_DAY ? DAY_BY_DAY : DEFAULT;
+    }
+
+    public RentalAgreement.CalculationMode getMode() {
+        return mode;
+    }
+
+    /**
+     * @return The compiled pricing rules, or null if the engine charges the flat daily rate.
+     */
+    public PricingPlan getPricingPlan() {
+        return pricingPlan;
+    }
+
+    /**
+     * Prices a rental with the default holiday calendar.
+     *
+     * @see #price(ITool, int, int, LocalDate, HolidayCalendar)
+     */
+    public RentalAgreement price(ITool tool, int rentalDays, int discountPercent, LocalDate checkoutDate) {
+        return price(tool, rentalDays, discountPercent, checkoutDate, HolidayCalendar.DEFAULT);
+    }
+
+    /**
+     * Prices a rental and returns its agreement.
+     *
+     * @param tool The tool being rented.
+     * @param rentalDays The number of days for which the tool is rented.
+     * @param discountPercent The discount percentage applied to the rental.
+     * @param checkoutDate The date on which the tool is checked out.
+     * @param holidayCalendar The holiday calendar of the store's region.
+     * @return The rental agreement.
+     * @throws IllegalArgumentException If the rental days or discount percent are out of range.
+     */
+    public RentalAgreement price(ITool tool, int rentalDays, int discountPercent, LocalDate checkoutDate,
+                                 HolidayCalendar holidayCalendar) {
+        RentalCharges charges = calculate(tool, rentalDays, discountPercent, checkoutDate, holidayCalendar);
+        return new RentalAgreement(tool, rentalDays, discountPercent, checkoutDate, holidayCalendar, charges);
+    }
+
+    /**
+     * Calculates the charges of a rental with the default holiday calendar.
+     *
+     * @see #calculate(ITool, int, int, LocalDate, HolidayCalendar)
+     */
+    public RentalCharges calculate(ITool tool, int rentalDays, int discountPercent, LocalDate checkoutDate) {
+        return calculate(tool, rentalDays, discountPercent, checkoutDate, HolidayCalendar.DEFAULT);
+    }
+
+    /**
+     * Calculates the due date, charge days and charges of a rental.
+     *
+     * @param tool The tool being rented.
+     * @param rentalDays The number of days for which the tool is rented.
+     * @param discountPercent The discount percentage applied to the rental.
+     * @param checkoutDate The date on which the tool is checked out.
+     * @param holidayCalendar The holiday calendar of the store's region.
+     * @return The charges of the rental.
+     * @throws IllegalArgumentException If the rental days or discount percent are out of range,
+     *         or the rental is not within the years of the engine's pricing plan.
+     */
+    public RentalCharges calculate(ITool tool, int rentalDays, int discountPercent, LocalDate checkoutDate,
+                                   HolidayCalendar holidayCalendar) {
+        // Read the rate and flags once, so that a reload cannot change them part way
+        tool = PricedTool.of(tool);
+        Metrics metrics = Metrics.get();
+        validateRentalDays(rentalDays, metrics);
+        if (discountPercent < 0 || discountPercent > 100) {
+            metrics.recordValidationFailure(Metrics.ValidationFailure.DISCOUNT_PERCENT);
+            throw new IllegalArgumentException("Discount percent must be between 0 and 100.");
+        }
+
+        LocalDate dueDate;
+        int chargeDays;
+        long start = metrics.startNanos();
+        if (mode == RentalAgreement.CalculationMode.DAY_BY_DAY) {
+            dueDate = calculateDueDate(tool, rentalDays, checkoutDate, holidayCalendar);
+            start = metrics.recordStage(Metrics.Stage.DUE_DATE, start);
+            chargeDays = countChargeDays(tool, rentalDays, checkoutDate, holidayCalendar);
+        } else {
+            dueDate = holidayCalendar.nthChargeableDayAfter(checkoutDate, rentalDays, tool);
+            start = metrics.recordStage(Metrics.Stage.DUE_DATE, start);
+            chargeDays = holidayCalendar.countChargeableDays(checkoutDate, rentalDays, tool);
+        }
+        metrics.recordStage(Metrics.Stage.CHARGE_DAYS, start);
+        return charges(tool, discountPercent, checkoutDate, rentalDays, dueDate, chargeDays, holidayCalendar);
+    }
+
+    private static void validateRentalDays(int rentalDays, Metrics metrics) {
+        if (rentalDays < 1) {
+            metrics.recordValidationFailure(Metrics.ValidationFailure.RENTAL_DAYS);
+            throw new IllegalArgumentException("Rental days must be 1 or more.");
+        }
+        if (rentalDays > MAX_RENTAL_DAYS) {
+            metrics.recordValidationFailure(Metrics.ValidationFailure.RENTAL_DAYS);
+            throw new IllegalArgumentException("Rental days must be " + MAX_RENTAL_DAYS + " or fewer.");
+        }
+    }
+
+    /**
+     * Calculates the charges of a rental whose due date and charge days are already known,
+     * with the engine's pricing plan if it has one.
+     */
+    RentalCharges charges(ITool tool, int discountPercent, LocalDate checkoutDate, int rentalDays,
+                          LocalDate dueDate, int chargeDays, HolidayCalendar holidayCalendar) {
+        tool = PricedTool.of(tool);
+        if (pricingPlan != null) {
+            return pricingPlan.charges(tool, discountPercent, checkoutDate, rentalDays, dueDate, chargeDays,
+                    holidayCalendar);
+        }
+        return calculateCharges(tool, discountPercent, dueDate, chargeDays, null);
+    }
+
+    /**
+     * Prices an extension or shortening of a rental and returns the changed agreement, which
+     * has no inventory reservation.
+     *
+     * @see #recalculate(RentalAgreement, int)
+     */
+    public RentalAgreement reprice(RentalAgreement agreement, int rentalDays) {
+        RentalCharges charges = recalculate(agreement, rentalDays);
+        return new RentalAgreement(agreement.getTool(), rentalDays, agreement.getDiscountPercent(),
+                agreement.getCheckoutDate(), agreement.getHolidayCalendar(), charges);
+    }
+
+    /**
+     * Calculates the charges of a rental after its rental days are changed, from the
+     * agreement's charges and the days added or removed only. The days up to the shorter of the
+     * two rental periods are not revisited: the due date moves from the old due date, and the
+     * charge days and pre-discount charge change by those of the delta days. The discount is
+     * recalculated from the new pre-discount charge, since rounding it is not additive. With a
+     * pricing plan, the charges are evaluated from the new charge days by the plan, as caps are
+     * not additive either. The result is identical to calculating the changed rental afresh
+     * with the rate and charging flags the agreement was priced with.
+     *
+     * @param agreement The agreement to change.
+     * @param rentalDays The new number of rental days.
+     * @return The charges of the changed rental.
+     * @throws IllegalArgumentException If the rental days are out of range, or the changed rental
+     *         is not within the years of the engine's pricing plan.
+     */
+    public RentalCharges recalculate(RentalAgreement agreement, int rentalDays) {
+        Metrics metrics = Metrics.get();
+        validateRentalDays(rentalDays, metrics);
+        int delta = rentalDays - agreement.getRentalDays();
+        if (delta == 0) {
+            return agreement.getCharges();
+        }
+        ITool tool = agreement.getPricedTool();
+        HolidayCalendar holidayCalendar = agreement.getHolidayCalendar();
+        LocalDate deltaStart = agreement.getCheckoutDate().plusDays(Math.min(rentalDays, agreement.getRentalDays()));
+        int deltaDays = Math.abs(delta);
+
+        LocalDate dueDate;
+        int deltaChargeDays;
+        long start = metrics.startNanos();
+        if (mode == RentalAgreement.CalculationMode.DAY_BY_DAY) {
+            dueDate = delta > 0
+                    ? calculateDueDate(tool, delta, agreement.getDueDate(), holidayCalendar)
+                    : calculateDueDateBefore(tool, deltaDays, agreement.getDueDate(), holidayCalendar);
+            start = metrics.recordStage(Metrics.Stage.DUE_DATE, start);
+            deltaChargeDays = countChargeDays(tool, deltaDays, deltaStart, holidayCalendar);
+        } else {
+            dueDate = delta > 0
+                    ? holidayCalendar.nthChargeableDayAfter(agreement.getDueDate(), delta, tool)
+                    : holidayCalendar.nthChargeableDayBefore(agreement.getDueDate(), deltaDays, tool);
+            start = metrics.recordStage(Metrics.Stage.DUE_DATE, start);
+            deltaChargeDays = holidayCalendar.countChargeableDays(deltaStart, deltaDays, tool);
+        }
+        metrics.recordStage(Metrics.Stage.CHARGE_DAYS, start);
+        if (delta < 0) {
+            deltaChargeDays = -deltaChargeDays;
+        }
+
+        int chargeDays = agreement.getChargeDays() + deltaChargeDays;
+        if (pricingPlan != null) {
+            return pricingPlan.charges(tool, agreement.getDiscountPercent(), agreement.getCheckoutDate(), rentalDays,
+                    dueDate, chargeDays, holidayCalendar);
+        }
+        long preDiscountCents = Math.addExact(agreement.getPreDiscountChargeCents(),
+                Money.times(tool.getDailyChargeMoney().getCents(), deltaChargeDays));
+        long discountCents = Money.percentOf(preDiscountCents, agreement.getDiscountPercent());
+        return new RentalCharges(dueDate, chargeDays, preDiscountCents, agreement.getDiscountPercent(), discountCents,
+                preDiscountCents - discountCents, PricedTool.of(tool).getAttributes());
+    }
+
+    /**
+     * Calculates the pre-discount charge, discount amount, and final charge for the rental at
+     * the flat daily rate, on behalf of the given plan if a plan has no rules for the tool.
+     * All arithmetic is done in whole cents; the discount is rounded half up to the cent.
+     */
+    static RentalCharges calculateCharges(ITool tool, int discountPercent, LocalDate dueDate, int chargeDays,
+                                          PricingPlan pricingPlan) {
+        ToolAttributes.ToolTypeAttributes attributes = PricedTool.of(tool).getAttributes();
+        long preDiscountCents = Money.times(attributes.getDailyChargeMoney().getCents(), chargeDays);
+        long discountCents = Money.percentOf(preDiscountCents, discountPercent);
+        return new RentalCharges(dueDate, chargeDays, preDiscountCents, discountPercent, discountCents,
+                preDiscountCents - discountCents, 0, 0, attributes, pricingPlan);
+    }
+
+    /**
+     * Calculates the due date one day at a time: the rentalDays-th chargeable day after checkout.
+     */
+    private static LocalDate calculateDueDate(ITool tool, int rentalDays, LocalDate checkoutDate,
+                                              HolidayCalendar holidayCalendar) {
+        LocalDate date = checkoutDate;
+        for (int i = 0; i < rentalDays; i++) {
+            date = date.plusDays(1);
+            while (!holidayCalendar.isChargeable(date, tool)) {
+                date = date.plusDays(1);
+            }
+        }
+        return date;
+    }
+
+    /**
+     * Walks back one day at a time to the n-th chargeable day before the given date.
+     */
+    private static LocalDate calculateDueDateBefore(ITool tool, int n, LocalDate date,
+                                                    HolidayCalendar holidayCalendar) {
+        for (int i = 0; i < n; i++) {
+            date = date.minusDays(1);
+            while (!holidayCalendar.isChargeable(date, tool)) {
+                date = date.minusDays(1);
+            }
+        }
+        return date;
+    }
+
+    /**
+     * Counts the chargeable days in the rental period one day at a time, starting on the
+     * checkout date.
+     */
+    private static int countChargeDays(ITool tool, int rentalDays, LocalDate checkoutDate,
+                                       HolidayCalendar holidayCalendar) {
+        int count = 0;
+        LocalDate date = checkoutDate;
+        for (int i = 0; i < rentalDays; i++) {
+            if (holidayCalendar.isChargeable(date, tool)) {
+                count++;
+            }
+            date = date.plusDays(1);
+        }
+        return count;
+    }
+}
@@ -0,0 +1,66 @@
+import org.junit.Test;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PricingEngineTest {
+
+    private final ITool jackhammer = new Tool("JAKR", "Jackhammer", "Ridgid");
+
+    @Test
+    public void testEngineMatchesAgreementConstructor() {
+        LocalDate date = LocalDate.of(2020, 7, 2);
+        RentalAgreement expected = new RentalAgreement(jackhammer, 9, 0, date);
+        for (RentalAgreement.CalculationMode mode : RentalAgreement.CalculationMode.values()) {
+            RentalAgreement priced = new PricingEngine(mode).price(jackhammer, 9, 0, date);
+            assertEquals(expected.getDueDate(), priced.getDueDate());
+            assertEquals(expected.getChargeDays(), priced.getChargeDays());
+            assertEquals(expected.getFinalChargeCents(), priced.getFinalChargeCents());
+            assertEquals(expected.generateAgreement(), priced.generateAgreement());
+        }
+    }
+
+    @Test
+    public void testCalculateValidatesInputs() {
+        LocalDate date = LocalDate.of(2020, 7, 2);
+        Exception days = assertThrows(IllegalArgumentException.class,
+                () -> PricingEngine.DEFAULT.calculate(jackhammer, 0, 10, date));
+        assertEquals("Rental days must be 1 or more.", days.getMessage());
+        Exception tooLong = assertThrows(IllegalArgumentException.class,
+                () -> PricingEngine.DEFAULT.calculate(jackhammer, PricingEngine.MAX_RENTAL_DAYS + 1, 10, date));
+        assertEquals("Rental days must be 3650 or fewer.", tooLong.getMessage());
+        assertNotNull(PricingEngine.DEFAULT.calculate(jackhammer, PricingEngine.MAX_RENTAL_DAYS, 10, date));
+        Exception discount = assertThrows(IllegalArgumentException.class,
+                () -> PricingEngine.DEFAULT.calculate(jackhammer, 5, 101, date));
+        assertEquals("Discount percent must be between 0 and 100.", discount.getMessage());
+    }
+
+    @Test
+    public void testSharedEngineIsThreadSafe() throws Exception {
+        LocalDate start = LocalDate.of(2015, 1, 1);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Long>> totals = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                totals.add(executor.submit(() -> {
+                    long total = 0;
+                    for (int i = 0; i < 2000; i++) {
+                        total += PricingEngine.DEFAULT.calculate(jackhammer, 1 + i % 30, i % 101, start.plusDays(i))
+                                .getFinalCents();
+                    }
+                    return total;
+                }));
+            }
+            long expected = totals.get(0).get();
+            for (Future<Long> total : totals) {
+                assertEquals(expected, total.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,410 @@
+import java.time.LocalDate;
+import java.time.MonthDay;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * The PricingPlan class is a list of PricingRules compiled into flat lookup tables for one
+ * snapshot of tool types and a range of years. PricingEngine prices with a plan in place of the
+ * flat daily rate:
+ *
+ *   pre-discount charge = rate-capped charge of the charge days + seasonal surcharge
+ *   discount percent    = clerk's discount + promotions, at most 100
+ *
+ * All tables are indexed by type id. Rate caps are arrays of periods, longest first, and cap
+ * amounts, with a table per type of the capped charge of every remainder shorter than each
+ * period, so a quote is capped in one pass over the type's caps. Seasons are expanded over
+ * the plan's years into sorted, non-overlapping epoch-day segments with the summed surcharge
+ * of every season covering them, and promotions likewise into checkout-date segments with
+ * their summed percentage. Evaluating a quote is therefore
+ * a type id lookup, a binary search into the type's segments and a few arithmetic steps per
+ * segment the rental touches, however many rules the plan was compiled from. The charges
+ * record the percent applied and the amounts the caps and surcharges changed, see
+ * RentalCharges.
+ *
+ * The remainder tables depend on the daily rate. They are built for the snapshot's rates when
+ * the plan is compiled; a tool priced at another rate, after a registry reload or when an
+ * agreement priced before one is changed, gets tables built for that rate once and kept
+ * next to the compiled ones, a few rates per type. Apart from that cache, plans are immutable,
+ * and they are safe to share between threads.
+ *
+ * Tools whose type is not in the snapshot are priced at the flat daily rate.
+ */
+public final class PricingPlan {
+
+    // The most daily rates a type keeps remainder tables for, the compiled rate included
+    private static final int MAX_RATES_PER_TYPE = 4;
+
+    private final ToolTypeRegistry.Snapshot toolTypes;
+    private final int firstYear;
+    private final int lastYear;
+    private final int firstDay;
+    private final int endDay;
+    private final int[] capOffsets;
+    private final int[] capPeriods;
+    private final long[] capCents;
+    private final int[] remainderOffsets;
+    // Remainder tables per type by daily rate, the compiled rate's first
+    private final AtomicReferenceArray<RemainderTable[]> remainderTables;
+    private final int[] seasonOffsets;
+    private final int[] seasonStarts;
+    private final int[] seasonEnds;
+    private final int[] seasonPercents;
+    private final int[] promotionOffsets;
+    private final int[] promotionStarts;
+    private final int[] promotionEnds;
+    private final int[] promotionPercents;
+
+    private PricingPlan(Compiler compiler) {
+        this.toolTypes = compiler.toolTypes;
+        this.firstYear = compiler.firstYear;
+        this.lastYear = compiler.lastYear;
+        this.firstDay = compiler.firstDay;
+        this.endDay = compiler.endDay;
+        int types = toolTypes.size();
+
+        this.capOffsets = new int[types + 1];
+        List<Integer> periods = new ArrayList<>();
+        List<Long> caps = new ArrayList<>();
+        for (int type = 0; type < types; type++) {
+            for (Map.Entry<Integer, Long> cap : compiler.caps.get(type).descendingMap().entrySet()) {
+                periods.add(cap.getKey());
+                caps.add(cap.getValue());
+            }
+            capOffsets[type + 1] = periods.size();
+        }
+        this.capPeriods = periods.stream().mapToInt(Integer::intValue).toArray();
+        this.capCents = caps.stream().mapToLong(Long::longValue).toArray();
+        this.remainderOffsets = new int[capPeriods.length + 1];
+        for (int cap = 0; cap < capPeriods.length; cap++) {
+            // Charge days never exceed the rental days, so longer remainders cannot occur
+            remainderOffsets[cap + 1] = remainderOffsets[cap]
+                    + Math.min(capPeriods[cap], PricingEngine.MAX_RENTAL_DAYS + 1);
+        }
+        this.remainderTables = new AtomicReferenceArray<>(types);
+        for (int type = 0; type < types; type++) {
+            if (capOffsets[type] < capOffsets[type + 1]) {
+                remainderTables.set(type, new RemainderTable[] {buildRemainderTable(type, toolTypes.getDailyChargeCents(type))});
+            }
+        }
+
+        this.seasonOffsets = new int[types + 1];
+        this.promotionOffsets = new int[types + 1];
+        List<int[]> seasons = new ArrayList<>();
+        List<int[]> promotions = new ArrayList<>();
+        for (int type = 0; type < types; type++) {
+            addSegments(compiler.seasons.get(type), seasons);
+            seasonOffsets[type + 1] = seasons.size();
+            addSegments(compiler.promotions.get(type), promotions);
+            promotionOffsets[type + 1] = promotions.size();
+        }
+        this.seasonStarts = column(seasons, 0);
+        this.seasonEnds = column(seasons, 1);
+        this.seasonPercents = column(seasons, 2);
+        this.promotionStarts = column(promotions, 0);
+        this.promotionEnds = column(promotions, 1);
+        this.promotionPercents = column(promotions, 2);
+    }
+
+    /**
+     * Sweeps the percentage changes at each day into segments {start, end, percent} of
+     * constant, non-zero percentage.
+     */
+    private static void addSegments(TreeMap<Integer, Integer> changes, List<int[]> segments) {
+        int percent = 0;
+        int start = 0;
+        for (Map.Entry<Integer, Integer> change : changes.entrySet()) {
+            if (percent != 0) {
+                segments.add(new int[] {start, change.getKey(), percent});
+            }
+            start = change.getKey();
+            percent += change.getValue();
+        }
+    }
+
+    private static int[] column(List<int[]> segments, int field) {
+        int[] column = new int[segments.size()];
+        for (int i = 0; i < column.length; i++) {
+            column[i] = segments.get(i)[field];
+        }
+        return column;
+    }
+
+    /**
+     * Compiles pricing rules into a plan.
+     *
+     * @param rules The rules, in any order.
+     * @param toolTypes The tool types the rules refer to.
+     * @param firstYear The first year of the rentals the plan prices.
+     * @param lastYear The last year of the rentals the plan prices, inclusive.
+     * @return The compiled plan.
+     * @throws IllegalArgumentException If a rule names a tool type that is not in the snapshot,
+     *         or the years are out of order.
+     */
+    public static PricingPlan compile(List<PricingRule> rules, ToolTypeRegistry.Snapshot toolTypes,
+                                      int firstYear, int lastYear) {
+        if (lastYear < firstYear) {
+            throw new IllegalArgumentException("Last year must not be before the first year.");
+        }
+        Compiler compiler = new Compiler(toolTypes, firstYear, lastYear);
+        for (PricingRule rule : rules) {
+            rule.compileInto(compiler);
+        }
+        return new PricingPlan(compiler);
+    }
+
+    public int getFirstYear() {
+        return firstYear;
+    }
+
+    public int getLastYear() {
+        return lastYear;
+    }
+
+    /**
+     * Calculates the charges of a rental whose due date and charge days are known.
+     *
+     * @param tool The tool being rented.
+     * @param discountPercent The clerk's discount percentage.
+     * @param checkoutDate The date on which the tool is checked out.
+     * @param rentalDays The number of days for which the tool is rented.
+     * @param dueDate The due date of the rental.
+     * @param chargeDays The number of chargeable days in the rental.
+     * @param holidayCalendar The holiday calendar of the store's region.
+     * @return The charges of the rental.
+     * @throws IllegalArgumentException If the rental is not within the plan's years.
+     */
+    RentalCharges charges(ITool tool, int discountPercent, LocalDate checkoutDate, int rentalDays,
+                          LocalDate dueDate, int chargeDays, HolidayCalendar holidayCalendar) {
+        PricedTool priced = PricedTool.of(tool);
+        tool = priced;
+        long checkoutDay = checkoutDate.toEpochDay();
+        if (checkoutDay < firstDay || checkoutDay + rentalDays > endDay) {
+            throw new IllegalArgumentException("Rental must fall within the pricing plan's years, "
+                    + firstYear + " to " + lastYear + ".");
+        }
+        long dailyCents = tool.getDailyChargeMoney().getCents();
+        int type = toolTypes.getTypeId(tool.getToolType());
+        if (type < 0) {
+            return PricingEngine.calculateCharges(tool, discountPercent, dueDate, chargeDays, this);
+        }
+        long uncappedCents = Money.times(dailyCents, chargeDays);
+        long cappedCents = cappedCents(type, dailyCents, chargeDays);
+        long surchargeCents = surchargeCents(type, tool, dailyCents, (int) checkoutDay, rentalDays, holidayCalendar);
+        long preDiscountCents = Math.addExact(cappedCents, surchargeCents);
+        int percent = Math.min(100, discountPercent + promotionPercent(type, (int) checkoutDay));
+        long discountCents = Money.percentOf(preDiscountCents, percent);
+        return new RentalCharges(dueDate, chargeDays, preDiscountCents, percent, discountCents,
+                preDiscountCents - discountCents, uncappedCents - cappedCents, surchargeCents,
+                priced.getAttributes(), this);
+    }
+
+    /**
+     * Returns the capped charge for the given charge days. Under the caps [cap, end), the charge
+     * is the lower of the charge under the caps after the first one, and the full periods at
+     * the first cap plus the rest under the caps after it, capped again. Unrolled, that is the
+     * lowest of the uncapped charge and, for each cap, its full periods plus the lower of its
+     * amount and the rest under the caps after it, which the type's remainder table holds.
+     */
+    private long cappedCents(int type, long dailyCents, int chargeDays) {
+        int first = capOffsets[type];
+        int end = capOffsets[type + 1];
+        if (first == end) {
+            return Money.times(dailyCents, chargeDays);
+        }
+        return cappedCents(first, end, remainderTable(type, dailyCents).cents, remainderOffsets[first], dailyCents,
+                chargeDays);
+    }
+
+    private long cappedCents(int first, int end, long[] remainders, int base, long dailyCents, int chargeDays) {
+        long charge = Money.times(dailyCents, chargeDays);
+        for (int cap = first; cap < end; cap++) {
+            int periods = chargeDays / capPeriods[cap];
+            long rest = remainders[remainderOffsets[cap] - base + chargeDays % capPeriods[cap]];
+            charge = Math.min(charge, Math.addExact(Money.times(capCents[cap], periods), Math.min(rest, capCents[cap])));
+        }
+        return charge;
+    }
+
+    /**
+     * Returns the type's remainder table for the daily rate, building it if the rate has none
+     * yet. The compiled rate's table is always kept; of the others, the oldest makes room once
+     * the type has MAX_RATES_PER_TYPE.
+     */
+    private RemainderTable remainderTable(int type, long dailyCents) {
+        RemainderTable[] tables = remainderTables.get(type);
+        for (RemainderTable table : tables) {
+            if (table.dailyCents == dailyCents) {
+                return table;
+            }
+        }
+        RemainderTable table = buildRemainderTable(type, dailyCents);
+        int kept = Math.min(tables.length, MAX_RATES_PER_TYPE - 1);
+        RemainderTable[] added = new RemainderTable[kept + 1];
+        added[0] = tables[0];
+        System.arraycopy(tables, tables.length - kept + 1, added, 1, kept - 1);
+        added[kept] = table;
+        // Racing builders produce identical tables; a lost race only means building it again later
+        remainderTables.compareAndSet(type, tables, added);
+        return table;
+    }
+
+    /**
+     * Builds the type's remainder table: for each cap, the charge of every day count shorter
+     * than its period, up to the longest rental, under the caps after it. The caps are filled
+     * shortest first, so each only reads the tables of shorter caps.
+     */
+    private RemainderTable buildRemainderTable(int type, long dailyCents) {
+        int first = capOffsets[type];
+        int end = capOffsets[type + 1];
+        int base = remainderOffsets[first];
+        long[] cents = new long[remainderOffsets[end] - base];
+        for (int cap = end - 1; cap >= first; cap--) {
+            for (int days = 0; days < remainderOffsets[cap + 1] - remainderOffsets[cap]; days++) {
+                cents[remainderOffsets[cap] - base + days] = cappedCents(cap + 1, end, cents, base, dailyCents, days);
+            }
+        }
+        return new RemainderTable(dailyCents, cents);
+    }
+
+    /**
+     * Returns the surcharge of the charge days in [checkoutDay, checkoutDay + rentalDays) that
+     * fall in the type's season segments: the daily rate times the sum of each segment's charge
+     * days times its percentage, rounded half up to the cent once.
+     */
+    private long surchargeCents(int type, ITool tool, long dailyCents, int checkoutDay, int rentalDays,
+                                HolidayCalendar holidayCalendar) {
+        int end = seasonOffsets[type + 1];
+        int segment = firstSegmentEndingAfter(seasonEnds, seasonOffsets[type], end, checkoutDay);
+        int rentalEnd = checkoutDay + rentalDays;
+        int weightedDays = 0;
+        for (; segment < end && seasonStarts[segment] < rentalEnd; segment++) {
+            int from = Math.max(checkoutDay, seasonStarts[segment]);
+            int to = Math.min(rentalEnd, seasonEnds[segment]);
+            int days = holidayCalendar.countChargeableDays(LocalDate.ofEpochDay(from), to - from, tool);
+            weightedDays = Math.addExact(weightedDays, Math.multiplyExact(days, seasonPercents[segment]));
+        }
+        return weightedDays == 0 ? 0 : Money.percentOf(Money.times(dailyCents, weightedDays), 1);
+    }
+
+    private int promotionPercent(int type, int checkoutDay) {
+        int end = promotionOffsets[type + 1];
+        int segment = firstSegmentEndingAfter(promotionEnds, promotionOffsets[type], end, checkoutDay);
+        return segment < end && promotionStarts[segment] <= checkoutDay ? promotionPercents[segment] : 0;
+    }
+
+    /**
+     * Returns the first segment in [from, to) whose exclusive end is after the day, or to if
+     * there is none. Segment ends are sorted as the segments do not overlap.
+     */
+    private static int firstSegmentEndingAfter(int[] ends, int from, int to, int day) {
+        int low = from;
+        int high = to;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (ends[mid] > day) {
+                high = mid;
+            } else {
+                low = mid + 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * The RemainderTable nested class holds a type's remainder charges for one daily rate.
+     */
+    private static final class RemainderTable {
+        final long dailyCents;
+        final long[] cents;
+
+        RemainderTable(long dailyCents, long[] cents) {
+            this.dailyCents = dailyCents;
+            this.cents = cents;
+        }
+    }
+
+    /**
+     * The Compiler nested class collects the terms of the rules being compiled, per type id.
+     * Caps with the same period keep the lowest amount. Seasons and promotions are collected
+     * as percentage changes at the epoch days where they start and end.
+     */
+    public static final class Compiler {
+        private final ToolTypeRegistry.Snapshot toolTypes;
+        private final int firstYear;
+        private final int lastYear;
+        private final int firstDay;
+        private final int endDay;
+        private final List<TreeMap<Integer, Long>> caps = new ArrayList<>();
+        private final List<TreeMap<Integer, Integer>> seasons = new ArrayList<>();
+        private final List<TreeMap<Integer, Integer>> promotions = new ArrayList<>();
+
+        private Compiler(ToolTypeRegistry.Snapshot toolTypes, int firstYear, int lastYear) {
+            this.toolTypes = toolTypes;
+            this.firstYear = firstYear;
+            this.lastYear = lastYear;
+            this.firstDay = Math.toIntExact(LocalDate.of(firstYear, 1, 1).toEpochDay());
+            this.endDay = Math.toIntExact(LocalDate.of(lastYear + 1, 1, 1).toEpochDay());
+            for (int type = 0; type < toolTypes.size(); type++) {
+                caps.add(new TreeMap<>());
+                seasons.add(new TreeMap<>());
+                promotions.add(new TreeMap<>());
+            }
+        }
+
+        private int[] typeIds(String toolType) {
+            if (toolType == null) {
+                int[] all = new int[toolTypes.size()];
+                Arrays.setAll(all, type -> type);
+                return all;
+            }
+            int type = toolTypes.getTypeId(toolType);
+            if (type < 0) {
+                throw new IllegalArgumentException("Unknown tool type: " + toolType);
+            }
+            return new int[] {type};
+        }
+
+        void addRateCap(String toolType, int periodDays, long capCents) {
+            for (int type : typeIds(toolType)) {
+                caps.get(type).merge(periodDays, capCents, Math::min);
+            }
+        }
+
+        void addSeasonalSurcharge(String toolType, MonthDay first, MonthDay last, int percent) {
+            int[] types = typeIds(toolType);
+            // The season starting in the year before may run into the first year
+            for (int year = firstYear - 1; year <= lastYear; year++) {
+                LocalDate start = first.atYear(year);
+                LocalDate end = last.atYear(year);
+                if (end.isBefore(start)) {
+                    end = last.atYear(year + 1);
+                }
+                int from = Math.max(firstDay, Math.toIntExact(start.toEpochDay()));
+                int to = Math.min(endDay, Math.toIntExact(end.toEpochDay()) + 1);
+                if (from < to) {
+                    for (int type : types) {
+                        addChange(seasons.get(type), from, to, percent);
+                    }
+                }
+            }
+        }
+
+        void addPromotion(String toolType, LocalDate first, LocalDate last, int percent) {
+            int from = Math.toIntExact(first.toEpochDay());
+            int to = Math.toIntExact(last.toEpochDay()) + 1;
+            for (int type : typeIds(toolType)) {
+                addChange(promotions.get(type), from, to, percent);
+            }
+        }
+
+        private static void addChange(TreeMap<Integer, Integer> changes, int from, int to, int percent) {
+            changes.merge(from, percent, Integer::sum);
+            changes.merge(to, -percent, Integer::sum);
+        }
+    }
+}
@@ -0,0 +1,207 @@
+import org.junit.Test;
+import java.time.LocalDate;
+import java.time.MonthDay;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PricingPlanTest {
+
+    private final ToolTypeRegistry.Snapshot toolTypes = ToolTypeRegistry.builtIn().getSnapshot();
+    private final ITool[] tools = {
+        new Tool("LADW", "Ladder", "Werner"),
+        new Tool("CHNS", "Chainsaw", "Stihl"),
+        new Tool("JAKR", "Jackhammer", "Ridgid")
+    };
+
+    private PricingEngine engine(List<PricingRule> rules) {
+        return new PricingEngine(RentalAgreement.CalculationMode.PREFIX_SUM,
+                PricingPlan.compile(rules, toolTypes, 2000, 2040));
+    }
+
+    @Test
+    public void testRateCaps() {
+        ITool jackhammer = tools[2];
+        PricingEngine weekly = engine(List.of(
+                PricingRule.rateCap("Jackhammer", 7, Money.ofDollars(12.00)),
+                PricingRule.rateCap("Jackhammer", 7, Money.ofDollars(15.00)),
+                PricingRule.rateCap(null, 20, Money.ofDollars(30.00))));
+        LocalDate monday = LocalDate.of(2024, 1, 8);
+
+        // 10 weekday charge days: one capped week and 3 days at $2.99
+        RentalCharges charges = weekly.calculate(jackhammer, 14, 0, monday);
+        assertEquals(10, charges.getChargeDays());
+        assertEquals(2097, charges.getPreDiscountCents());
+        // 13 charge days: the 6 days after the first week are capped as well
+        assertEquals(2400, weekly.calculate(jackhammer, 17, 0, monday).getPreDiscountCents());
+        // 20 charge days: the 20-day cap is above 2 weeks and 6 days capped at the weekly rate
+        assertEquals(3000, weekly.calculate(jackhammer, 28, 0, monday).getPreDiscountCents());
+        // 22 charge days: one 20-day period and 2 days, less than the weekly rate alone
+        assertEquals(3598, weekly.calculate(jackhammer, 30, 0, monday).getPreDiscountCents());
+
+        // A cap above the daily rate times the period has no effect
+        PricingEngine high = engine(List.of(PricingRule.rateCap("Jackhammer", 7, Money.ofDollars(30.00))));
+        assertEquals(PricingEngine.DEFAULT.calculate(jackhammer, 30, 10, monday).getFinalCents(),
+                high.calculate(jackhammer, 30, 10, monday).getFinalCents());
+        // Other tool types are not capped
+        assertEquals(PricingEngine.DEFAULT.calculate(tools[0], 30, 0, monday).getFinalCents(),
+                high.calculate(tools[0], 30, 0, monday).getFinalCents());
+    }
+
+    @Test
+    public void testSeasonsAndPromotionsMatchDayByDay() {
+        MonthDay summerStart = MonthDay.of(6, 1);
+        MonthDay summerEnd = MonthDay.of(8, 31);
+        MonthDay winterStart = MonthDay.of(12, 20);
+        MonthDay winterEnd = MonthDay.of(1, 5);
+        LocalDate promotionStart = LocalDate.of(2024, 3, 1);
+        LocalDate promotionEnd = LocalDate.of(2024, 3, 31);
+        PricingEngine engine = engine(List.of(
+                PricingRule.seasonalSurcharge("Chainsaw", summerStart, summerEnd, 25),
+                PricingRule.seasonalSurcharge(null, winterStart, winterEnd, 10),
+                PricingRule.seasonalSurcharge("Chainsaw", MonthDay.of(7, 1), MonthDay.of(7, 31), 5),
+                PricingRule.promotion(null, promotionStart, promotionEnd, 15),
+                PricingRule.promotion("Ladder", LocalDate.of(2024, 3, 15), LocalDate.of(2024, 4, 15), 90)));
+
+        Random random = new Random(20);
+        for (int i = 0; i < 20000; i++) {
+            ITool tool = tools[random.nextInt(tools.length)];
+            LocalDate checkout = LocalDate.of(2023, 1, 1).plusDays(random.nextInt(3 * 365));
+            int rentalDays = 1 + random.nextInt(random.nextBoolean() ? 15 : 200);
+            int discount = random.nextInt(101);
+
+            // The plan's terms applied one day at a time
+            int chargeDays = 0;
+            int weightedDays = 0;
+            LocalDate date = checkout;
+            for (int day = 0; day < rentalDays; day++, date = date.plusDays(1)) {
+                if (!HolidayCalendar.DEFAULT.isChargeable(date, tool)) {
+                    continue;
+                }
+                chargeDays++;
+                MonthDay monthDay = MonthDay.from(date);
+                if (tool.getToolType().equals("Chainsaw") && !monthDay.isBefore(summerStart) && !monthDay.isAfter(summerEnd)) {
+                    weightedDays += 25;
+                }
+                if (tool.getToolType().equals("Chainsaw") && date.getMonthValue() == 7) {
+                    weightedDays += 5;
+                }
+                if (!monthDay.isBefore(winterStart) || !monthDay.isAfter(winterEnd)) {
+                    weightedDays += 10;
+                }
+            }
+            int percent = discount;
+            if (!checkout.isBefore(promotionStart) && !checkout.isAfter(promotionEnd)) {
+                percent += 15;
+            }
+            if (tool.getToolType().equals("Ladder") && !checkout.isBefore(LocalDate.of(2024, 3, 15))
+                    && !checkout.isAfter(LocalDate.of(2024, 4, 15))) {
+                percent += 90;
+            }
+            long dailyCents = tool.getDailyChargeMoney().getCents();
+            long preDiscountCents = dailyCents * chargeDays + Money.percentOf(dailyCents * weightedDays, 1);
+            long discountCents = Money.percentOf(preDiscountCents, Math.min(100, percent));
+
+            String context = tool.getToolType() + " " + checkout + " for " + rentalDays + " days";
+            RentalAgreement agreement = engine.price(tool, rentalDays, discount, checkout);
+            assertEquals(chargeDays, agreement.getChargeDays(), context);
+            assertEquals(preDiscountCents, agreement.getPreDiscountChargeCents(), context);
+            assertEquals(discountCents, agreement.getDiscountAmountCents(), context);
+            assertEquals(preDiscountCents - discountCents, agreement.getFinalChargeCents(), context);
+
+            // Incremental repricing evaluates the plan from the new totals
+            int changedDays = 1 + random.nextInt(200);
+            RentalAgreement changed = engine.reprice(agreement, changedDays);
+            RentalAgreement fresh = engine.price(tool, changedDays, discount, checkout);
+            assertEquals(fresh.generateAgreement(), changed.generateAgreement(), context + " to " + changedDays);
+        }
+    }
+
+    @Test
+    public void testCompileAndRangeErrors() {
+        Exception unknown = assertThrows(IllegalArgumentException.class,
+                () -> engine(List.of(PricingRule.promotion("Drill", LocalDate.of(2024, 1, 1), LocalDate.of(2024, 1, 2), 5))));
+        assertEquals("Unknown tool type: Drill", unknown.getMessage());
+        assertThrows(IllegalArgumentException.class, () -> PricingRule.rateCap(null, 0, Money.ofDollars(1)));
+        assertThrows(IllegalArgumentException.class,
+                () -> PricingRule.promotion(null, LocalDate.of(2024, 1, 2), LocalDate.of(2024, 1, 1), 5));
+
+        PricingEngine engine = engine(List.of());
+        Exception range = assertThrows(IllegalArgumentException.class,
+                () -> engine.calculate(tools[0], 5, 0, LocalDate.of(2040, 12, 30)));
+        assertEquals("Rental must fall within the pricing plan's years, 2000 to 2040.", range.getMessage());
+        // Without rules, a plan prices exactly like the flat daily rate
+        assertEquals(new RentalAgreement(tools[1], 9, 20, LocalDate.of(2020, 7, 2)).generateAgreement(),
+                engine.price(tools[1], 9, 20, LocalDate.of(2020, 7, 2)).generateAgreement());
+    }
+
+    @Test
+    public void testManyCapsMatchTheirDefinition() {
+        // Dozens of caps on one type, checked against the recursive definition of capping
+        Random random = new Random(201);
+        List<PricingRule> rules = new ArrayList<>();
+        TreeMap<Integer, Long> caps = new TreeMap<>();
+        for (int i = 0; i < 30; i++) {
+            int period = 2 + random.nextInt(60);
+            long cents = 100 + random.nextInt(period * 299);
+            rules.add(PricingRule.rateCap("Jackhammer", period, Money.ofCents(cents)));
+            caps.merge(period, cents, Math::min);
+        }
+        int[] periods = caps.descendingKeySet().stream().mapToInt(Integer::intValue).toArray();
+        long[] amounts = caps.descendingMap().values().stream().mapToLong(Long::longValue).toArray();
+        PricingEngine engine = engine(rules);
+        LocalDate monday = LocalDate.of(2024, 1, 8);
+        for (int rentalDays = 1; rentalDays <= 400; rentalDays++) {
+            RentalCharges charges = engine.calculate(tools[2], rentalDays, 0, monday);
+            long expected = capped(periods, amounts, 0, 299, charges.getChargeDays());
+            assertEquals(expected, charges.getPreDiscountCents(), rentalDays + " rental days");
+            assertEquals(299L * charges.getChargeDays() - expected, charges.getRateCapCreditCents());
+        }
+
+        // Tools priced at other rates, e.g. agreements from before a reload, interleaved with
+        // more rates than the plan keeps tables for
+        ToolAttributes.ToolTypeAttributes jackhammer = PricedTool.of(tools[2]).getAttributes();
+        long[] rates = {150, 299, 420, 999, 77, 150, 1234, 299};
+        for (int rentalDays = 1; rentalDays <= 400; rentalDays += 7) {
+            for (long rate : rates) {
+                ITool priced = PricedTool.of(tools[2], PricedTool.attributes(rate, PricedTool.flagsOf(jackhammer)));
+                RentalCharges charges = engine.calculate(priced, rentalDays, 0, monday);
+                assertEquals(capped(periods, amounts, 0, rate, charges.getChargeDays()), charges.getPreDiscountCents(),
+                        rentalDays + " rental days at " + rate);
+            }
+        }
+    }
+
+    // The capped charge as the rules define it: for the first cap, the lower of the charge under
+    // the other caps, and its full periods plus the rest under the other caps, capped again
+    private static long capped(int[] periods, long[] amounts, int cap, long dailyCents, int days) {
+        if (cap == periods.length) {
+            return dailyCents * days;
+        }
+        long uncapped = capped(periods, amounts, cap + 1, dailyCents, days);
+        long rest = capped(periods, amounts, cap + 1, dailyCents, days % periods[cap]);
+        return Math.min(uncapped, amounts[cap] * (days / periods[cap]) + Math.min(rest, amounts[cap]));
+    }
+
+    @Test
+    public void testAgreementShowsWhatThePlanChanged() {
+        PricingEngine engine = engine(List.of(
+                PricingRule.rateCap("Jackhammer", 7, Money.ofDollars(12.00)),
+                PricingRule.seasonalSurcharge("Jackhammer", MonthDay.of(1, 1), MonthDay.of(1, 31), 10),
+                PricingRule.promotion(null, LocalDate.of(2024, 1, 1), LocalDate.of(2024, 1, 31), 15)));
+        RentalAgreement agreement = engine.price(tools[2], 14, 10, LocalDate.of(2024, 1, 8));
+
+        assertEquals(10, agreement.getDiscountPercent());
+        assertEquals(25, agreement.getAppliedDiscountPercent());
+        // 10 charge days at $2.99, one week capped at $12.00, and 10% on every charge day
+        assertEquals(2990 - 2097, agreement.getRateCapCreditCents());
+        assertEquals(299, agreement.getSurchargeCents());
+        assertEquals(299 * 10 - agreement.getRateCapCreditCents() + agreement.getSurchargeCents(),
+                agreement.getPreDiscountChargeCents());
+        String text = agreement.generateAgreement();
+        assertTrue(text.contains("Charge days: 10\nRate cap credit: $8.93\nSeasonal surcharge: $2.99\n"
+                + "Pre-discount charge: $23.96\nDiscount percent: 25%\nDiscount amount: $5.99\n"), text);
+    }
+}
@@ -0,0 +1,344 @@
+import org.junit.Test;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.Month;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Randomized differential test of every pricing path against an independent oracle.
+ *
+ * Cases cover the three tool types, checkout dates from 1900 to 2100, 1 to 1000 rental days and
+ * discounts from 0 to 100. The oracle walks the rental one day at a time with its own weekend
+ * and holiday checks and prices it with BigDecimal, sharing no code with the application.
+ *
+ * Cases are generated in fixed-size chunks, each from its own seed, and the chunks run in
+ * parallel on all cores; results do not depend on the number of threads. A failing case is
+ * shrunk to a minimal one before it is reported, with the seed that reproduces it.
+ *
+ * The regular build runs 100,000 cases. A longer run is started with e.g.
+ *   gradle test --tests PricingPropertyTest -PpricingCases=5000000 -PpricingSeed=42
+ */
+public class PricingPropertyTest {
+
+    private static final int CHUNK_SIZE = 10_000;
+    private static final LocalDate FIRST_DATE = LocalDate.of(1900, 1, 1);
+    private static final LocalDate LAST_DATE = LocalDate.of(2100, 12, 31);
+    // Dates shrink towards this one
+    private static final LocalDate ORIGIN = LocalDate.of(2000, 1, 3);
+
+    private static final String[] TOOL_TYPES = {"Ladder", "Chainsaw", "Jackhammer"};
+    private static final String[] TOOL_CODES = {"LADW", "CHNS", "JAKR"};
+    private static final String[] BRANDS = {"Werner", "Stihl", "Ridgid"};
+
+    private final PricingEngine dayByDay = new PricingEngine(RentalAgreement.CalculationMode.DAY_BY_DAY);
+    private final PricingEngine prefixSum = new PricingEngine(RentalAgreement.CalculationMode.PREFIX_SUM);
+
+    @Test
+    public void testEveryPricingPathMatchesTheOracle() throws Exception {
+        int cases = Integer.getInteger("toolrental.pricingCases", 100_000);
+        long seed = Long.getLong("toolrental.pricingSeed", 23);
+        Case failure = findFailure(seed, cases, this::mismatch);
+        if (failure != null) {
+            Case minimal = shrink(failure, this::mismatch);
+            fail("Seed " + seed + " fails on " + failure + ", shrunk to " + minimal + ": " + mismatch(minimal));
+        }
+    }
+
+    @Test
+    public void testFailuresShrinkToAMinimalCase() throws Exception {
+        // An injected off-by-one cent from the 41st rental day on, independent of everything else
+        Function<Case, String> buggy = c -> c.rentalDays > 40 ? "one cent too much" : null;
+        Case failure = findFailure(5, 50_000, buggy);
+        assertNotNull(failure);
+        Case minimal = shrink(failure, buggy);
+        assertEquals(new Case(0, ORIGIN, 41, 0), minimal);
+        assertEquals("Ladder from 2000-01-03 for 41 days at 0%", minimal.toString());
+
+        // The same seed finds the same first failure however the chunks are scheduled
+        assertEquals(failure, findFailure(5, 50_000, buggy));
+        assertNull(findFailure(5, 50_000, c -> null));
+    }
+
+    @Test
+    public void testOracle() {
+        // Chainsaws are charged on July 4th but not on the weekend
+        Expected expected = oracle(new Case(1, LocalDate.of(2024, 7, 2), 5, 10));
+        assertEquals(LocalDate.of(2024, 7, 9), expected.dueDate);
+        assertEquals(4, expected.chargeDays);
+        assertEquals(new BigDecimal("5.36"), expected.finalCharge);
+        // July 4th 2020 is a Saturday, observed on Friday the 3rd
+        assertEquals(1, oracle(new Case(2, LocalDate.of(2020, 7, 2), 3, 0)).chargeDays);
+        // July 4th 2021 is a Sunday, observed on Monday the 5th; ladders are charged on weekends
+        assertEquals(4, oracle(new Case(0, LocalDate.of(2021, 7, 2), 6, 0)).chargeDays);
+        // July 4th 2100 is a Sunday: chainsaws are charged on holidays but not on weekends
+        assertEquals(LocalDate.of(2100, 7, 5), oracle(new Case(1, LocalDate.of(2100, 7, 2), 1, 0)).dueDate);
+        // Labor Day 1900 is September 3rd
+        assertEquals(LocalDate.of(1900, 9, 4), oracle(new Case(2, LocalDate.of(1900, 8, 31), 1, 0)).dueDate);
+    }
+
+    /**
+     * Compares every pricing path with the oracle. A path that throws is a failure too, so that
+     * the case is shrunk and reported with its seed like any other.
+     *
+     * @return A description of the first difference, or null if all paths agree.
+     */
+    private String mismatch(Case c) {
+        try {
+            return compare(c);
+        } catch (RuntimeException e) {
+            return "threw " + e;
+        }
+    }
+
+    private String compare(Case c) {
+        Expected expected = oracle(c);
+        ITool tool = c.tool();
+        List<RentalAgreement> agreements = new ArrayList<>();
+        agreements.add(new RentalAgreement(tool, c.rentalDays, c.discountPercent, c.checkoutDate));
+        agreements.add(dayByDay.price(tool, c.rentalDays, c.discountPercent, c.checkoutDate));
+        agreements.add(prefixSum.price(tool, c.rentalDays, c.discountPercent, c.checkoutDate));
+        // Incremental repricing from a different length, in both directions
+        int otherDays = c.rentalDays > 1 ? c.rentalDays / 2 : 2;
+        agreements.add(prefixSum.reprice(prefixSum.price(tool, otherDays, c.discountPercent, c.checkoutDate), c.rentalDays));
+        agreements.add(dayByDay.reprice(dayByDay.price(tool, otherDays, c.discountPercent, c.checkoutDate), c.rentalDays));
+
+        String[] paths = {"RentalAgreement", "DAY_BY_DAY", "PREFIX_SUM", "PREFIX_SUM reprice", "DAY_BY_DAY reprice"};
+        for (int i = 0; i < agreements.size(); i++) {
+            RentalAgreement actual = agreements.get(i);
+            if (!actual.getDueDate().equals(expected.dueDate)) {
+                return paths[i] + " due date " + actual.getDueDate() + ", expected " + expected.dueDate;
+            }
+            if (actual.getChargeDays() != expected.chargeDays) {
+                return paths[i] + " charge days " + actual.getChargeDays() + ", expected " + expected.chargeDays;
+            }
+            if (actual.getPreDiscountChargeCents() != cents(expected.preDiscountCharge)
+                    || actual.getDiscountAmountCents() != cents(expected.discountAmount)
+                    || actual.getFinalChargeCents() != cents(expected.finalCharge)) {
+                return paths[i] + " charges " + actual.getPreDiscountChargeCents() + " - "
+                        + actual.getDiscountAmountCents() + " = " + actual.getFinalChargeCents() + " cents, expected "
+                        + expected.preDiscountCharge + " - " + expected.discountAmount + " = " + expected.finalCharge;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Runs the cases chunk by chunk on all cores.
+     *
+     * @return The first failing case in generation order, or null if none fails.
+     */
+    private static Case findFailure(long seed, int cases, Function<Case, String> mismatch) throws Exception {
+        int chunks = (cases + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        // Chunks after a failing one are skipped, as they cannot hold the first failure
+        AtomicInteger firstFailingChunk = new AtomicInteger(Integer.MAX_VALUE);
+        ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        try {
+            List<Future<Case>> results = new ArrayList<>();
+            for (int chunk = 0; chunk < chunks; chunk++) {
+                int index = chunk;
+                int size = Math.min(CHUNK_SIZE, cases - chunk * CHUNK_SIZE);
+                results.add(executor.submit(() -> {
+                    SplittableRandom random = new SplittableRandom(seed * 1_000_003L + index);
+                    for (int i = 0; i < size && index < firstFailingChunk.get(); i++) {
+                        Case c = Case.random(random);
+                        if (mismatch.apply(c) != null) {
+                            firstFailingChunk.accumulateAndGet(index, Math::min);
+                            return c;
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<Case> result : results) {
+                Case failure = result.get();
+                if (failure != null) {
+                    return failure;
+                }
+            }
+            return null;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Greedily replaces a failing case by a simpler one that still fails, until no candidate
+     * does: fewer rental days, a smaller discount, a checkout date closer to the origin and an
+     * earlier tool type.
+     */
+    private static Case shrink(Case failure, Function<Case, String> mismatch) {
+        Case current = failure;
+        boolean shrunk = true;
+        while (shrunk) {
+            shrunk = false;
+            for (Case candidate : current.simpler()) {
+                if (mismatch.apply(candidate) != null) {
+                    current = candidate;
+                    shrunk = true;
+                    break;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Prices a case the straightforward way: day by day from the checkout date, with the
+     * holidays checked from their definitions and the charges in BigDecimal dollars.
+     */
+    static Expected oracle(Case c) {
+        boolean weekendCharge = c.toolType == 0;
+        boolean holidayCharge = c.toolType == 1;
+        BigDecimal dailyCharge = new BigDecimal(new String[] {"1.99", "1.49", "2.99"}[c.toolType]);
+
+        int chargeDays = 0;
+        LocalDate date = c.checkoutDate;
+        for (int day = 0; day < c.rentalDays; day++, date = date.plusDays(1)) {
+            if (isCharged(date, weekendCharge, holidayCharge)) {
+                chargeDays++;
+            }
+        }
+        LocalDate dueDate = c.checkoutDate;
+        for (int found = 0; found < c.rentalDays; ) {
+            dueDate = dueDate.plusDays(1);
+            if (isCharged(dueDate, weekendCharge, holidayCharge)) {
+                found++;
+            }
+        }
+
+        BigDecimal preDiscount = dailyCharge.multiply(BigDecimal.valueOf(chargeDays));
+        BigDecimal discount = preDiscount.multiply(BigDecimal.valueOf(c.discountPercent))
+                .divide(BigDecimal.valueOf(100), 2, RoundingMode.HALF_UP);
+        return new Expected(dueDate, chargeDays, preDiscount, discount, preDiscount.subtract(discount));
+    }
+
+    // A day is free if it is a weekend day or a holiday the tool is not charged for; a holiday
+    // on a weekend is free for a tool that is charged on holidays but not on weekends
+    private static boolean isCharged(LocalDate date, boolean weekendCharge, boolean holidayCharge) {
+        DayOfWeek dayOfWeek = date.getDayOfWeek();
+        boolean weekend = dayOfWeek == DayOfWeek.SATURDAY || dayOfWeek == DayOfWeek.SUNDAY;
+        return (weekendCharge || !weekend) && (holidayCharge || !isHoliday(date));
+    }
+
+    private static boolean isHoliday(LocalDate date) {
+        // Independence Day, and the weekday it is observed on when it falls on a weekend
+        LocalDate july4 = LocalDate.of(date.getYear(), Month.JULY, 4);
+        LocalDate observed = switch (july4.getDayOfWeek()) {
+            case SATURDAY -> july4.minusDays(1);
+            case SUNDAY -> july4.plusDays(1);
+            default -> july4;
+        };
+        if (date.equals(july4) || date.equals(observed)) {
+            return true;
+        }
+        // Labor Day, the first Monday in September
+        return date.getMonth() == Month.SEPTEMBER && date.getDayOfWeek() == DayOfWeek.MONDAY
+                && date.getDayOfMonth() <= 7;
+    }
+
+    private static long cents(BigDecimal dollars) {
+        return dollars.movePointRight(2).longValueExact();
+    }
+
+    /**
+     * One generated rental.
+     */
+    static final class Case {
+        final int toolType;
+        final LocalDate checkoutDate;
+        final int rentalDays;
+        final int discountPercent;
+
+        Case(int toolType, LocalDate checkoutDate, int rentalDays, int discountPercent) {
+            this.toolType = toolType;
+            this.checkoutDate = checkoutDate;
+            this.rentalDays = rentalDays;
+            this.discountPercent = discountPercent;
+        }
+
+        static Case random(SplittableRandom random) {
+            long firstDay = FIRST_DATE.toEpochDay();
+            return new Case(random.nextInt(TOOL_TYPES.length),
+                    LocalDate.ofEpochDay(random.nextLong(firstDay, LAST_DATE.toEpochDay() + 1)),
+                    1 + random.nextInt(1000),
+                    random.nextInt(101));
+        }
+
+        ITool tool() {
+            return new Tool(TOOL_CODES[toolType], TOOL_TYPES[toolType], BRANDS[toolType]);
+        }
+
+        /**
+         * @return Simpler variants of the case, most aggressive first.
+         */
+        List<Case> simpler() {
+            List<Case> candidates = new ArrayList<>();
+            for (int days : new int[] {1, rentalDays / 2, rentalDays - 1}) {
+                if (days >= 1 && days < rentalDays) {
+                    candidates.add(new Case(toolType, checkoutDate, days, discountPercent));
+                }
+            }
+            for (int percent : new int[] {0, discountPercent / 2, discountPercent - 1}) {
+                if (percent >= 0 && percent < discountPercent) {
+                    candidates.add(new Case(toolType, checkoutDate, rentalDays, percent));
+                }
+            }
+            long offset = checkoutDate.toEpochDay() - ORIGIN.toEpochDay();
+            for (long closer : new long[] {0, offset / 2, offset - Long.signum(offset)}) {
+                if (Math.abs(closer) < Math.abs(offset)) {
+                    candidates.add(new Case(toolType, ORIGIN.plusDays(closer), rentalDays, discountPercent));
+                }
+            }
+            for (int type = 0; type < toolType; type++) {
+                candidates.add(new Case(type, checkoutDate, rentalDays, discountPercent));
+            }
+            return candidates;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Case c && toolType == c.toolType && checkoutDate.equals(c.checkoutDate)
+                    && rentalDays == c.rentalDays && discountPercent == c.discountPercent;
+        }
+
+        @Override
+        public int hashCode() {
+            return ((toolType * 31 + checkoutDate.hashCode()) * 31 + rentalDays) * 31 + discountPercent;
+        }
+
+        @Override
+        public String toString() {
+            return TOOL_TYPES[toolType] + " from " + checkoutDate + " for " + rentalDays + " days at " + discountPercent + "%";
+        }
+    }
+
+    /**
+     * The oracle's answer for a case.
+     */
+    static final class Expected {
+        final LocalDate dueDate;
+        final int chargeDays;
+        final BigDecimal preDiscountCharge;
+        final BigDecimal discountAmount;
+        final BigDecimal finalCharge;
+
+        Expected(LocalDate dueDate, int chargeDays, BigDecimal preDiscountCharge, BigDecimal discountAmount,
+                 BigDecimal finalCharge) {
+            this.dueDate = dueDate;
+            this.chargeDays = chargeDays;
+            this.preDiscountCharge = preDiscountCharge;
+            this.discountAmount = discountAmount;
+            this.finalCharge = finalCharge;
+        }
+    }
+}
@@ -0,0 +1,76 @@
+import java.time.LocalDate;
+import java.time.MonthDay;
+
+/**
+ * The PricingRule interface describes one term of a pricing policy: a rate cap, a seasonal
+ * surcharge or a promotion. Rules are declarative; a PricingPlan compiles a list of them once
+ * into lookup tables, so they favor clarity over speed, just like HolidayRules.
+ *
+ * Every factory method takes the tool type the rule applies to, or null for every tool type.
+ */
+@FunctionalInterface
+public interface PricingRule {
+
+    /**
+     * Adds the rule's terms to a plan being compiled.
+     *
+     * @param plan The plan being compiled.
+     */
+    void compileInto(PricingPlan.Compiler plan);
+
+    /**
+     * Caps the charge for every full period of charge days, e.g. a weekly rate of $49.99 for
+     * every 7 charge days, and the charge for the remaining days at the same amount. A cap
+     * never raises a charge above the daily rate times the charge days.
+     *
+     * @param toolType The tool type, or null for every type.
+     * @param periodDays The charge days in the period, e.g. 7 or 30.
+     * @param cap The most charged for one period.
+     */
+    static PricingRule rateCap(String toolType, int periodDays, Money cap) {
+        if (periodDays < 1) {
+            throw new IllegalArgumentException("Rate cap period must be 1 day or more.");
+        }
+        if (cap.getCents() < 0) {
+            throw new IllegalArgumentException("Rate cap must not be negative.");
+        }
+        return plan -> plan.addRateCap(toolType, periodDays, cap.getCents());
+    }
+
+    /**
+     * Adds a percentage of the daily rate to every charge day in a season that recurs every
+     * year, e.g. 25% on chainsaws from June 1st through August 31st. A season may wrap around
+     * the new year. Overlapping seasons add up.
+     *
+     * @param toolType The tool type, or null for every type.
+     * @param first The first day of the season.
+     * @param last The last day of the season, inclusive.
+     * @param percent The surcharge percentage, 0 or more.
+     */
+    static PricingRule seasonalSurcharge(String toolType, MonthDay first, MonthDay last, int percent) {
+        if (percent < 0) {
+            throw new IllegalArgumentException("Surcharge percent must not be negative.");
+        }
+        return plan -> plan.addSeasonalSurcharge(toolType, first, last, percent);
+    }
+
+    /**
+     * Adds a percentage to the discount of rentals checked out between two dates. Promotions
+     * stack: the percentages of all promotions that apply are added to the clerk's discount,
+     * up to 100%.
+     *
+     * @param toolType The tool type, or null for every type.
+     * @param first The first checkout date of the promotion.
+     * @param last The last checkout date of the promotion, inclusive.
+     * @param percent The discount percentage, between 0 and 100.
+     */
+    static PricingRule promotion(String toolType, LocalDate first, LocalDate last, int percent) {
+        if (percent < 0 || percent > 100) {
+            throw new IllegalArgumentException("Promotion percent must be between 0 and 100.");
+        }
+        if (last.isBefore(first)) {
+            throw new IllegalArgumentException("Promotion must not end before it starts.");
+        }
+        return plan -> plan.addPromotion(toolType, first, last, percent);
+    }
+}
@@ -0,0 +1,249 @@
+import java.time.LocalDate;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * The QuoteCache class is a bounded, concurrent cache of calculated rental charges.
+ *
+ * Entries are keyed by everything the charges depend on: the tool's type, charging policy and
+ * daily rate, the holiday calendar, the checkout date, the rental days, the discount and the
+ * pricing engine's PricingPlan, so engines with different plans can share a cache. Because the
+ * daily rate and charging policy are part of the key, a pricing change can never return a stale
+ * quote; entries priced under old rates simply stop being hit and age out. The cache can also be
+ * bound to a ToolTypeRegistry so that every reload clears it right away.
+ *
+ * The cache is split into independently locked segments, each evicting its least recently
+ * used entry when full, so threads quoting different keys rarely contend. Hit, miss and
+ * eviction counters are kept in LongAdders.
+ */
+public final class QuoteCache {
+
+    private static final int SEGMENT_COUNT = 16;
+
+    private final Segment[] segments = new Segment[SEGMENT_COUNT];
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    /**
+     * Constructor for QuoteCache.
+     *
+     * @param maximumSize The maximum number of cached quotes.
+     */
+    public QuoteCache(int maximumSize) {
+        if (maximumSize < SEGMENT_COUNT) {
+            throw new IllegalArgumentException("Maximum size must be at least " + SEGMENT_COUNT + ".");
+        }
+        int perSegment = maximumSize / SEGMENT_COUNT;
+        for (int i = 0; i < SEGMENT_COUNT; i++) {
+            segments[i] = new Segment(perSegment);
+        }
+    }
+
+    /**
+     * Clears the cache whenever the given registry reloads its tool types.
+     *
+     * @param registry The registry whose pricing the cached quotes are based on.
+     */
+    public void invalidateOnReload(ToolTypeRegistry registry) {
+        registry.addReloadListener(this::invalidateAll);
+    }
+
+    /**
+     * Returns the cached charges for the given rental, calculating and caching them on a miss.
+     *
+     * @param tool The tool being rented; only its charging policy and daily rate matter.
+     * @param rentalDays The number of days for which the tool is rented.
+     * @param discountPercent The discount percentage applied to the rental.
+     * @param checkoutDate The date on which the tool is checked out.
+     * @param holidayCalendar The holiday calendar the rental is priced with.
+     * @param pricingPlan The plan the calculation prices with, or null for the flat daily rate.
+     * @param calculation Calculates the charges on a miss.
+     * @return The charges for the rental.
+     */
+    public RentalCharges get(ITool tool, int rentalDays, int discountPercent, LocalDate checkoutDate,
+                             HolidayCalendar holidayCalendar, PricingPlan pricingPlan,
+                             Supplier<RentalCharges> calculation) {
+        Key key = new Key(PricedTool.of(tool), rentalDays, discountPercent, checkoutDate, holidayCalendar, pricingPlan);
+        Segment segment = segments[(key.hashCode() >>> 16 ^ key.hashCode()) & (SEGMENT_COUNT - 1)];
+        RentalCharges charges = segment.get(key);
+        if (charges != null) {
+            hits.increment();
+            return charges;
+        }
+        misses.increment();
+        // Calculated outside the lock; two threads missing on the same key both calculate
+        // the same immutable result and the second put simply replaces the first.
+        charges = calculation.get();
+        // A reload of the tool types between the key and the calculation prices other rates
+        if (key.pricedWith(charges.getPricedAttributes())) {
+            segment.put(key, charges);
+        }
+        return charges;
+    }
+
+    /**
+     * Removes every cached quote.
+     */
+    public void invalidateAll() {
+        for (Segment segment : segments) {
+            segment.clear();
+        }
+        invalidations.increment();
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    public long getInvalidationCount() {
+        return invalidations.sum();
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    @Override
+    public String toString() {
+        return "QuoteCache{" +
+               "size=" + size() +
+               ", hits=" + getHitCount() +
+               ", misses=" + getMissCount() +
+               ", evictions=" + getEvictionCount() +
+               ", invalidations=" + getInvalidationCount() +
+               '}';
+    }
+
+    /**
+     * The Key nested class identifies a quote by the inputs its charges depend on.
+     */
+    private static final class Key {
+        private final String toolType; // pricing rules apply by type
+        private final long dailyChargeCents;
+        private final long checkoutEpochDay;
+        private final int rentalDays;
+        private final int policyAndDiscount;
+        private final HolidayCalendar holidayCalendar;
+        private final PricingPlan pricingPlan; // compared by identity, null for the flat rate
+        private final int hash;
+
+        Key(ITool tool, int rentalDays, int discountPercent, LocalDate checkoutDate, HolidayCalendar holidayCalendar,
+            PricingPlan pricingPlan) {
+            this.toolType = tool.getToolType();
+            this.dailyChargeCents = tool.getDailyChargeMoney().getCents();
+            this.checkoutEpochDay = checkoutDate.toEpochDay();
+            this.rentalDays = rentalDays;
+            this.policyAndDiscount = HolidayCalendar.policyOf(tool) << 8 | discountPercent;
+            this.holidayCalendar = holidayCalendar;
+            this.pricingPlan = pricingPlan;
+            int h = Long.hashCode(dailyChargeCents);
+            h = 31 * h + Long.hashCode(checkoutEpochDay);
+            h = 31 * h + rentalDays;
+            h = 31 * h + policyAndDiscount;
+            h = 31 * h + System.identityHashCode(holidayCalendar);
+            h = 31 * h + toolType.hashCode();
+            h = 31 * h + System.identityHashCode(pricingPlan);
+            this.hash = h;
+        }
+
+        boolean pricedWith(ToolAttributes.ToolTypeAttributes attributes) {
+            return dailyChargeCents == attributes.getDailyChargeMoney().getCents()
+                && policyAndDiscount >>> 8 == HolidayCalendar.policyOf(attributes);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) other;
+            return hash == key.hash
+                && dailyChargeCents == key.dailyChargeCents
+                && checkoutEpochDay == key.checkoutEpochDay
+                && rentalDays == key.rentalDays
+                && policyAndDiscount == key.policyAndDiscount
+                && holidayCalendar == key.holidayCalendar
+                && pricingPlan == key.pricingPlan
+                && toolType.equals(key.toolType);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    /**
+     * The Segment nested class is one lock-guarded, access-ordered LRU map.
+     */
+    private final class Segment {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final LinkedHashMap<Key, RentalCharges> entries;
+
+        Segment(int capacity) {
+            this.entries = new LinkedHashMap<>(capacity * 4 / 3 + 1, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Key, RentalCharges> eldest) {
+                    if (size() > capacity) {
+                        evictions.increment();
+                        return true;
+                    }
+                    return false;
+                }
+            };
+        }
+
+        RentalCharges get(Key key) {
+            lock.lock();
+            try {
+                return entries.get(key);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void put(Key key, RentalCharges charges) {
+            lock.lock();
+            try {
+                entries.put(key, charges);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void clear() {
+            lock.lock();
+            try {
+                entries.clear();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        int size() {
+            lock.lock();
+            try {
+                return entries.size();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,93 @@
+import org.junit.Test;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class QuoteCacheTest {
+
+    private final ITool ladder = new Tool("LADW", "Ladder", "Werner");
+
+    @Test
+    public void testRepeatQuotesHitTheCache() {
+        QuoteCache cache = new QuoteCache(1024);
+        Checkout checkout = new Checkout(cache);
+        LocalDate date = LocalDate.of(2024, 7, 2);
+
+        RentalAgreement first = checkout.checkoutTool(ladder, 5, 10, date);
+        RentalAgreement second = checkout.checkoutTool(new Tool("LADX", "Ladder", "Little Giant"), 5, 10, date);
+        RentalAgreement uncached = new RentalAgreement(ladder, 5, 10, date);
+
+        assertEquals(1, cache.getMissCount());
+        assertEquals(1, cache.getHitCount());
+        assertEquals("LADX", second.getTool().getToolCode());
+        for (RentalAgreement rental : new RentalAgreement[] {first, second}) {
+            assertEquals(uncached.getDueDate(), rental.getDueDate());
+            assertEquals(uncached.getChargeDays(), rental.getChargeDays());
+            assertEquals(uncached.getFinalChargeCents(), rental.getFinalChargeCents());
+        }
+    }
+
+    @Test
+    public void testDifferentInputsMiss() {
+        QuoteCache cache = new QuoteCache(1024);
+        Checkout checkout = new Checkout(cache);
+        LocalDate date = LocalDate.of(2024, 7, 2);
+        checkout.checkoutTool(ladder, 5, 10, date);
+        checkout.checkoutTool(ladder, 5, 11, date);
+        checkout.checkoutTool(ladder, 6, 10, date);
+        checkout.checkoutTool(ladder, 5, 10, date.plusDays(1));
+        checkout.checkoutTool(new Tool("CHNS", "Chainsaw", "Stihl"), 5, 10, date);
+        checkout.checkoutTool(ladder, 5, 10, date, HolidayCalendar.US_FEDERAL);
+        assertEquals(6, cache.getMissCount());
+        assertEquals(0, cache.getHitCount());
+    }
+
+    @Test
+    public void testEvictsLeastRecentlyUsed() {
+        QuoteCache cache = new QuoteCache(16);
+        Checkout checkout = new Checkout(cache);
+        for (int i = 0; i < 1000; i++) {
+            checkout.checkoutTool(ladder, 1 + i, 0, LocalDate.of(2024, 1, 1));
+        }
+        assertTrue(cache.size() <= 16);
+        assertEquals(1000 - cache.size(), cache.getEvictionCount());
+    }
+
+    @Test
+    public void testRegistryReloadInvalidates() throws IOException {
+        Path file = Files.createTempFile("tool-types", ".csv");
+        file.toFile().deleteOnExit();
+        Files.writeString(file, "type,dailyCharge,weekdayCharge,weekendCharge,holidayCharge\nLadder,1.99,true,true,false\n");
+        ToolTypeRegistry registry = ToolTypeRegistry.load(file);
+        QuoteCache cache = new QuoteCache(64);
+        cache.invalidateOnReload(registry);
+        new Checkout(cache).checkoutTool(ladder, 5, 10, LocalDate.of(2024, 7, 2));
+        assertEquals(1, cache.size());
+
+        registry.reload(file);
+
+        assertEquals(0, cache.size());
+        assertEquals(1, cache.getInvalidationCount());
+    }
+
+    @Test
+    public void testEnginesWithDifferentPlansDoNotShareQuotes() {
+        QuoteCache cache = new QuoteCache(64);
+        PricingPlan plan = PricingPlan.compile(List.of(PricingRule.promotion(null, LocalDate.of(2024, 1, 1),
+                LocalDate.of(2024, 12, 31), 50)), ToolTypeRegistry.getDefault().getSnapshot(), 2024, 2025);
+        Checkout flat = new Checkout(PricingEngine.DEFAULT, cache);
+        Checkout promoted = new Checkout(new PricingEngine(RentalAgreement.CalculationMode.PREFIX_SUM, plan), cache);
+        LocalDate date = LocalDate.of(2024, 7, 2);
+
+        RentalAgreement full = flat.checkoutTool(ladder, 5, 10, date);
+        RentalAgreement half = promoted.checkoutTool(ladder, 5, 10, date);
+
+        assertEquals(2, cache.getMissCount());
+        assertEquals(10, full.getAppliedDiscountPercent());
+        assertEquals(60, half.getAppliedDiscountPercent());
+        assertEquals(new RentalAgreement(ladder, 5, 10, date).getFinalChargeCents(), full.getFinalChargeCents());
+    }
+}
@@ -1,10 +1,4 @@
-import java.time.DayOfWeek;
 import java.time.LocalDate;
-import java.math.BigDecimal;
-import java.math.RoundingMode;
-import java.text.NumberFormat;
-import java.time.format.DateTimeFormatter;
-import java.util.Locale;
 
 /**
  * The RentalAgreement class represents a rental agreement for a tool. It includes details 
@@ -14,45 +8,135 @@ import java.util.Locale;
  * the code adheres to the Dependency Inversion Principle, a key aspect of SOLID principles. 
  * This approach makes the code more flexible and easier to maintain, as 
  * it can handle different types of tools that implement the ITool interface.
+ *
+ * Agreements are immutable: every field is final and the pricing itself is done by the
+ * stateless PricingEngine, so an agreement can be safely published to and shared between
+ * threads. The constructors remain as a convenience and delegate to the engine.
  */
 public class RentalAgreement {
 
-    private ITool tool;  // Using ITool interface
-    private int rentalDays;
-    private int discountPercent;
-    private LocalDate checkoutDate;
-    private LocalDate dueDate;
-    private int chargeDays;
-    private double preDiscountCharge;
-    private double discountAmount;
-    private double finalCharge;
+    /**
+     * Selects how the due date and charge days are calculated. DAY_BY_DAY walks the rental
+     * one day at a time and is kept as the reference implementation; PREFIX_SUM answers from
+     * the calendar's per-year prefix counts in time independent of the rental length.
+     * Both modes produce identical agreements.
+     */
+    public enum CalculationMode {
+        DAY_BY_DAY,
+        PREFIX_SUM
+    }
+
+    private final ITool tool;  // Using ITool interface
+    private final HolidayCalendar holidayCalendar;
+    private final int rentalDays;
+    private final int discountPercent;
+    private final LocalDate checkoutDate;
+    private final LocalDate dueDate;
+    private final int chargeDays;
+    // Charges are held in whole cents, see Money
+    private final long preDiscountCents;
+    private final long discountCents;
+    private final long finalCents;
+    // What a pricing plan changed, see RentalCharges
+    private final int appliedDiscountPercent;
+    private final long rateCapCreditCents;
+    private final long surchargeCents;
+    // The rate and flags the charges were priced with; the tool may have been repriced since
+    private final ToolAttributes.ToolTypeAttributes pricedAttributes;
+    private final PricingPlan pricingPlan;
+    private final Inventory.Reservation reservation;
 
     public ITool getTool() {
         return tool;
     }
 
+    public HolidayCalendar getHolidayCalendar() {
+        return holidayCalendar;
+    }
+
     public int getRentalDays() {
         return rentalDays;
     }
 
+    /**
+     * @return The clerk's discount percentage, as given at checkout.
+     */
     public int getDiscountPercent() {
         return discountPercent;
     }
 
+    /**
+     * @return The discount percentage the discount amount was calculated with: the clerk's,
+     *         plus any promotions of the pricing plan.
+     */
+    public int getAppliedDiscountPercent() {
+        return appliedDiscountPercent;
+    }
+
+    /**
+     * @return The amount the pricing plan's rate caps took off the daily rate times the charge
+     *         days, in cents.
+     */
+    public long getRateCapCreditCents() {
+        return rateCapCreditCents;
+    }
+
+    /**
+     * @return The pricing plan's seasonal surcharge, in cents.
+     */
+    public long getSurchargeCents() {
+        return surchargeCents;
+    }
+
     public LocalDate getCheckoutDate() {
         return checkoutDate;
     }
 
+    /**
+     * @return The daily rate the agreement was priced with, which a reload of the tool types
+     *         does not change.
+     */
+    public Money getDailyChargeMoney() {
+        return pricedAttributes.getDailyChargeMoney();
+    }
+
+    /**
+     * @return The tool with the daily rate and charging flags the agreement was priced with.
+     */
+    ITool getPricedTool() {
+        return PricedTool.of(tool, pricedAttributes);
+    }
+
     public double getPreDiscountCharge() {
-        return preDiscountCharge;
+        return Money.toDouble(preDiscountCents);
     }
 
     public double getDiscountAmount() {
-        return discountAmount;
+        return Money.toDouble(discountCents);
     }
 
     public double getFinalCharge() {
-        return finalCharge;
+        return Money.toDouble(finalCents);
+    }
+
+    public long getPreDiscountChargeCents() {
+        return preDiscountCents;
+    }
+
+    public long getDiscountAmountCents() {
+        return discountCents;
+    }
+
+    public long getFinalChargeCents() {
+        return finalCents;
+    }
+
+    /**
+     * @return The calculated part of the agreement, which can be cached and shared.
+     */
+    public RentalCharges getCharges() {
+        return new RentalCharges(dueDate, chargeDays, preDiscountCents, appliedDiscountPercent, discountCents,
+                finalCents, rateCapCreditCents, surchargeCents, pricedAttributes, pricingPlan);
     }
 
     public LocalDate getDueDate() {
@@ -62,9 +146,39 @@ public class RentalAgreement {
         return chargeDays;
     }
 
+    /**
+     * @return The reservation of the rented unit, or null if the checkout did not track
+     *         inventory.
+     */
+    public Inventory.Reservation getReservation() {
+        return reservation;
+    }
+
+    /**
+     * @return The pricing plan the agreement was priced by, or null if it was priced at the
+     *         flat daily rate.
+     */
+    public PricingPlan getPricingPlan() {
+        return pricingPlan;
+    }
+
+    /**
+     * Extends or shortens the rental, with the pricing plan the agreement was priced by. Only
+     * the days added or removed are priced, see PricingEngine.recalculate. The changed
+     * agreement has no inventory reservation; use Checkout.changeRentalDays to move the
+     * reservation as well.
+     * Parameters:
+     *   rentalDays: The new number of days for which the tool is rented.
+     */
+    public RentalAgreement withRentalDays(int rentalDays) {
+        PricingEngine pricingEngine = pricingPlan == null ? PricingEngine.DEFAULT
+                : new PricingEngine(RentalAgreement.CalculationMode.PREFIX_SUM, pricingPlan);
+        return pricingEngine.reprice(this, rentalDays);
+    }
+
     /**
      * Initializes a new RentalAgreement with the given tool, rental period, discount percentage, 
-     * and checkout date. It calculates the due date and charges as part of the initialization process.
+     * and checkout date. The due date and charges are calculated by the PricingEngine.
      * Parameters:
      *   tool: The tool being rented.
      *   rentalDays: The number of days for which the tool is rented.
@@ -72,111 +186,97 @@ public class RentalAgreement {
      *   checkoutDate: The date on which the tool is checked out.
      */
     public RentalAgreement(ITool tool, int rentalDays, int discountPercent, LocalDate checkoutDate) {
-        
-        if (rentalDays < 1) {
-            throw new IllegalArgumentException("Rental days must be 1 or more.");
-        }
-        if (discountPercent < 0 || discountPercent > 100) {
-            throw new IllegalArgumentException("Discount percent must be between 0 and 100.");
-        }
-
-        this.tool = tool;
-        this.rentalDays = rentalDays;
-        this.discountPercent = discountPercent;
-        this.checkoutDate = checkoutDate;
-        this.dueDate = calculateDueDate();
-        calculateCharges();
+        this(tool, rentalDays, discountPercent, checkoutDate, CalculationMode.PREFIX_SUM);
     }
 
     /**
-     * Calculates and returns the due date for the tool rental.
+     * Initializes a new RentalAgreement, calculating the due date and charge days with the
+     * given calculation mode.
+     * Parameters:
+     *   tool: The tool being rented.
+     *   rentalDays: The number of days for which the tool is rented.
+     *   discountPercent: The discount percentage applied to the rental.
+     *   checkoutDate: The date on which the tool is checked out.
+     *   mode: The calculation mode to use.
      */
-    private LocalDate calculateDueDate() {
-        LocalDate date = checkoutDate;
-        for (int i = 0; i < rentalDays; i++) {
-            date = date.plusDays(1);
-            while (!isChargeableDay(date)) {
-                date = date.plusDays(1);
-            }
-        }
-        return date;
+    public RentalAgreement(ITool tool, int rentalDays, int discountPercent, LocalDate checkoutDate,
+                           CalculationMode mode) {
+        this(tool, rentalDays, discountPercent, checkoutDate, HolidayCalendar.DEFAULT, mode);
     }
 
     /**
-     * Calculates the charge days, pre-discount charge, discount amount, and final charge for the rental.
+     * Initializes a new RentalAgreement whose weekends and holidays come from the given
+     * regional holiday calendar.
+     * Parameters:
+     *   tool: The tool being rented.
+     *   rentalDays: The number of days for which the tool is rented.
+     *   discountPercent: The discount percentage applied to the rental.
+     *   checkoutDate: The date on which the tool is checked out.
+     *   holidayCalendar: The holiday calendar of the store's region.
      */
-    private void calculateCharges() {
-        LocalDate date = checkoutDate;
-        for (int i = 0; i < rentalDays; i++) {
-            if (isChargeableDay(date)) {
-                chargeDays++;
-            }
-            date = date.plusDays(1);
-        }
-
-        preDiscountCharge = chargeDays * tool.getDailyCharge();
-        discountAmount = (preDiscountCharge * discountPercent) / 100.0;
-        discountAmount = BigDecimal.valueOf(discountAmount).setScale(2, RoundingMode.HALF_UP).doubleValue();
-        finalCharge = preDiscountCharge - discountAmount;
-        finalCharge = BigDecimal.valueOf(finalCharge).setScale(2, RoundingMode.HALF_UP).doubleValue();
+    public RentalAgreement(ITool tool, int rentalDays, int discountPercent, LocalDate checkoutDate,
+                           HolidayCalendar holidayCalendar) {
+        this(tool, rentalDays, discountPercent, checkoutDate, holidayCalendar, CalculationMode.PREFIX_SUM);
     }
 
     /**
-     * Determines if a given date is chargeable based on the tool's charging policy and 
-     * the date's status as a weekend or holiday.
-     * 
+     * Initializes a new RentalAgreement using the given holiday calendar and calculation mode.
      * Parameters:
-     *  date: local date
+     *   tool: The tool being rented.
+     *   rentalDays: The number of days for which the tool is rented.
+     *   discountPercent: The discount percentage applied to the rental.
+     *   checkoutDate: The date on which the tool is checked out.
+     *   holidayCalendar: The holiday calendar of the store's region.
+     *   mode: The calculation mode to use.
      */
-    private boolean isChargeableDay(LocalDate date) {
-        boolean isWeekend = date.getDayOfWeek() == DayOfWeek.SATURDAY || date.getDayOfWeek() == DayOfWeek.SUNDAY;
-        boolean isHoliday = Holiday.isHoliday(date);
-
-        // Check if the tool charges on weekends and holidays
-        boolean isWeekendChargeable = tool.isWeekendCharge();
-        boolean isHolidayChargeable = tool.isHolidayCharge();
+    public RentalAgreement(ITool tool, int rentalDays, int discountPercent, LocalDate checkoutDate,
+                           HolidayCalendar holidayCalendar, CalculationMode mode) {
+        this(tool, rentalDays, discountPercent, checkoutDate, holidayCalendar,
+             PricingEngine.forMode(mode).calculate(tool, rentalDays, discountPercent, checkoutDate, holidayCalendar));
+    }
 
-        // Determine if the day is chargeable based on the tool's charging policy
-        boolean isChargeable = true;
-        if (isWeekend && !isWeekendChargeable) {
-            isChargeable = false; // Not chargeable on weekends
-        }
-        if (isHoliday && !isHolidayChargeable) {
-            isChargeable = false; // Not chargeable on holidays
-        }
+    /**
+     * Initializes a RentalAgreement from charges that were already calculated for the same
+     * inputs, by the PricingEngine or the QuoteCache.
+     */
+    RentalAgreement(ITool tool, int rentalDays, int discountPercent, LocalDate checkoutDate,
+                    HolidayCalendar holidayCalendar, RentalCharges charges) {
+        this(tool, rentalDays, discountPercent, checkoutDate, holidayCalendar, charges, null);
+    }
 
-        return isChargeable;
+    /**
+     * Initializes a RentalAgreement from calculated charges and the reservation of the
+     * rented unit.
+     */
+    RentalAgreement(ITool tool, int rentalDays, int discountPercent, LocalDate checkoutDate,
+                    HolidayCalendar holidayCalendar, RentalCharges charges, Inventory.Reservation reservation) {
+        this.tool = tool;
+        this.holidayCalendar = holidayCalendar;
+        this.rentalDays = rentalDays;
+        this.discountPercent = discountPercent;
+        this.checkoutDate = checkoutDate;
+        this.dueDate = charges.getDueDate();
+        this.chargeDays = charges.getChargeDays();
+        this.preDiscountCents = charges.getPreDiscountCents();
+        this.discountCents = charges.getDiscountCents();
+        this.finalCents = charges.getFinalCents();
+        this.appliedDiscountPercent = charges.getDiscountPercent();
+        this.rateCapCreditCents = charges.getRateCapCreditCents();
+        this.surchargeCents = charges.getSurchargeCents();
+        this.pricedAttributes = charges.getPricedAttributes();
+        this.pricingPlan = charges.getPricingPlan();
+        this.reservation = reservation;
     }
 
     // Generate agreement details
     public String generateAgreement() {
-
-         // Date formatter for mm/dd/yy format
-         DateTimeFormatter dateFormatter = DateTimeFormatter.ofPattern("MM/dd/yy");
-        
-         // Currency formatter for $9,999.99 format
-         NumberFormat currencyFormatter = NumberFormat.getCurrencyInstance(Locale.US);
- 
-         return String.format(
-            "Tool code: %s\n" +
-            "Tool type: %s\n" +
-            "Tool brand: %s\n" +
-            "Rental days: %d\n" +
-            "Check out date: %s\n" +
-            "Due date: %s\n" +
-            "Daily rental charge: %s\n" +
-            "Charge days: %d\n" +
-            "Pre-discount charge: %s\n" +
-            "Discount percent: %d%%\n" +
-            "Discount amount: %s\n" +
-            "Final charge: %s\n\n",
-            tool.getToolCode(), tool.getToolType(), tool.getBrand(), rentalDays,
-            checkoutDate.format(dateFormatter), dueDate.format(dateFormatter), 
-            currencyFormatter.format(tool.getDailyCharge()),
-            chargeDays, currencyFormatter.format(preDiscountCharge), 
-            discountPercent, currencyFormatter.format(discountAmount), 
-            currencyFormatter.format(finalCharge)
-        );
+        Metrics metrics = Metrics.get();
+        long start = metrics.startNanos();
+        StringBuilder agreement = new StringBuilder(320);
+        AgreementRenderer.render(this, agreement);
+        String text = agreement.toString();
+        metrics.recordStage(Metrics.Stage.RENDER, start);
+        return text;
     }
 
     // Print agreement to console
@@ -0,0 +1,117 @@
+import org.junit.Test;
+import java.time.LocalDate;
+import java.time.MonthDay;
+import java.util.List;
+import java.util.Random;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RentalAgreementDifferentialTest {
+
+    private final ITool[] tools = {
+        new Tool("LADW", "Ladder", "Werner"),
+        new Tool("CHNS", "Chainsaw", "Stihl"),
+        new Tool("JAKR", "Jackhammer", "Ridgid")
+    };
+
+    private static void assertSameAgreement(RentalAgreement expected, RentalAgreement actual) {
+        String context = expected.getTool().getToolCode() + " " + expected.getCheckoutDate()
+                + " for " + expected.getRentalDays() + " days";
+        assertEquals(expected.getDueDate(), actual.getDueDate(), context);
+        assertEquals(expected.getChargeDays(), actual.getChargeDays(), context);
+        assertEquals(expected.getFinalCharge(), actual.getFinalCharge(), context);
+    }
+
+    @Test
+    public void testShortRentalsAroundHolidays() {
+        // Every checkout date in summers where July 4th falls on a Saturday, Sunday and weekday
+        for (int year : new int[] {2020, 2021, 2024}) {
+            for (LocalDate date = LocalDate.of(year, 6, 20); date.isBefore(LocalDate.of(year, 9, 15)); date = date.plusDays(1)) {
+                for (ITool tool : tools) {
+                    for (int days = 1; days <= 14; days++) {
+                        assertSameAgreement(
+                            new RentalAgreement(tool, days, 10, date, RentalAgreement.CalculationMode.DAY_BY_DAY),
+                            new RentalAgreement(tool, days, 10, date, RentalAgreement.CalculationMode.PREFIX_SUM));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testLongRentalsAcrossYearBoundaries() {
+        for (LocalDate date = LocalDate.of(2023, 12, 1); date.isBefore(LocalDate.of(2024, 1, 10)); date = date.plusDays(1)) {
+            for (ITool tool : tools) {
+                for (int days : new int[] {30, 365, 366, 1000}) {
+                    assertSameAgreement(
+                        new RentalAgreement(tool, days, 25, date, RentalAgreement.CalculationMode.DAY_BY_DAY),
+                        new RentalAgreement(tool, days, 25, date, RentalAgreement.CalculationMode.PREFIX_SUM));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testIncrementalRepricingMatchesFreshCalculation() {
+        HolidayCalendar[] calendars = {HolidayCalendar.DEFAULT, HolidayCalendar.US_FEDERAL};
+        PricingEngine[] engines = {
+            new PricingEngine(RentalAgreement.CalculationMode.DAY_BY_DAY),
+            new PricingEngine(RentalAgreement.CalculationMode.PREFIX_SUM)
+        };
+        Random random = new Random(19);
+        for (int i = 0; i < 20000; i++) {
+            ITool tool = tools[random.nextInt(tools.length)];
+            HolidayCalendar calendar = calendars[random.nextInt(calendars.length)];
+            PricingEngine engine = engines[random.nextInt(engines.length)];
+            LocalDate date = LocalDate.of(1950, 1, 1).plusDays(random.nextInt(150 * 365));
+            RentalAgreement agreement = PricingEngine.DEFAULT.price(tool, 1 + random.nextInt(60), random.nextInt(101),
+                    date, calendar);
+            // A chain of extensions and shortenings, some of them across year boundaries
+            for (int change = 0; change < 4; change++) {
+                int rentalDays = random.nextInt(4) == 0 ? 1 + random.nextInt(800) : 1 + random.nextInt(40);
+                RentalAgreement changed = engine.reprice(agreement, rentalDays);
+                RentalAgreement expected = PricingEngine.DEFAULT.price(tool, rentalDays,
+                        agreement.getDiscountPercent(), date, calendar);
+                String context = agreement.getRentalDays() + " to " + rentalDays + " days, " + calendar.getName();
+                assertSameAgreement(expected, changed);
+                assertEquals(expected.getRentalDays(), changed.getRentalDays(), context);
+                assertEquals(expected.getPreDiscountChargeCents(), changed.getPreDiscountChargeCents(), context);
+                assertEquals(expected.getDiscountAmountCents(), changed.getDiscountAmountCents(), context);
+                assertEquals(expected.getFinalChargeCents(), changed.getFinalChargeCents(), context);
+                agreement = changed;
+            }
+        }
+    }
+
+    @Test
+    public void testRepricingKeepsThePricingPlan() {
+        PricingPlan plan = PricingPlan.compile(List.of(
+                PricingRule.rateCap("Chainsaw", 7, Money.ofDollars(8.00)),
+                PricingRule.rateCap(null, 30, Money.ofDollars(40.00)),
+                PricingRule.seasonalSurcharge("Chainsaw", MonthDay.of(6, 1), MonthDay.of(8, 31), 25),
+                PricingRule.promotion(null, LocalDate.of(2024, 7, 1), LocalDate.of(2024, 7, 31), 20)),
+                ToolTypeRegistry.getDefault().getSnapshot(), 2020, 2030);
+        PricingEngine[] engines = {
+            new PricingEngine(RentalAgreement.CalculationMode.DAY_BY_DAY, plan),
+            new PricingEngine(RentalAgreement.CalculationMode.PREFIX_SUM, plan)
+        };
+        Random random = new Random(20);
+        for (int i = 0; i < 5000; i++) {
+            ITool tool = tools[random.nextInt(tools.length)];
+            PricingEngine engine = engines[random.nextInt(engines.length)];
+            LocalDate date = LocalDate.of(2023, 1, 1).plusDays(random.nextInt(3 * 365));
+            RentalAgreement agreement = engine.price(tool, 1 + random.nextInt(60), random.nextInt(101), date);
+            for (int change = 0; change < 4; change++) {
+                int rentalDays = 1 + random.nextInt(random.nextInt(4) == 0 ? 800 : 40);
+                RentalAgreement changed = random.nextBoolean()
+                        ? agreement.withRentalDays(rentalDays) : engine.reprice(agreement, rentalDays);
+                RentalAgreement expected = engine.price(tool, rentalDays, agreement.getDiscountPercent(), date);
+                String context = tool.getToolCode() + " " + date + ", " + agreement.getRentalDays() + " to "
+                        + rentalDays + " days";
+                assertSameAgreement(expected, changed);
+                assertSame(plan, changed.getPricingPlan(), context);
+                assertEquals(expected.getCharges().toString(), changed.getCharges().toString(), context);
+                agreement = changed;
+            }
+        }
+    }
+}
@@ -0,0 +1,166 @@
+import java.time.LocalDate;
+
+/**
+ * The RentalCharges class holds the calculated part of a rental agreement: the due date, the
+ * charge days and the charges in cents. It depends only on the tool's type, charging policy and
+ * daily rate, the holiday calendar, the checkout date, the rental days, the discount and the
+ * pricing plan, not on the individual tool, so one instance can be shared by every agreement
+ * with the same inputs.
+ *
+ * Under a PricingPlan the charges also record what the plan changed: the discount percent
+ * actually applied, which includes promotions, and the amounts that rate caps took off and
+ * seasonal surcharges added to the daily rate times the charge days. With the flat daily rate
+ * the applied percent is the clerk's and both amounts are zero, so in every case
+ *
+ *   pre-discount charge = daily rate * charge days - rate cap credit + seasonal surcharge
+ *
+ * The charges also keep the tool type attributes they were priced with, the daily rate and
+ * the charging flags, so that an agreement shows and extends its own rate after the tool
+ * types are reloaded, and the pricing plan that priced them, if any, so that a change to
+ * the rental is priced by the same plan.
+ *
+ * Instances are immutable and safe to cache and share between threads.
+ */
+public final class RentalCharges {
+    private final LocalDate dueDate;
+    private final int chargeDays;
+    private final long preDiscountCents;
+    private final int discountPercent;
+    private final long discountCents;
+    private final long finalCents;
+    private final long rateCapCreditCents;
+    private final long surchargeCents;
+    private final ToolAttributes.ToolTypeAttributes pricedAttributes;
+    private final PricingPlan pricingPlan;
+
+    /**
+     * Constructor for RentalCharges priced at the flat daily rate.
+     *
+     * @param dueDate The date the tool is due back.
+     * @param chargeDays The number of chargeable days in the rental.
+     * @param preDiscountCents The charge before the discount, in cents.
+     * @param discountPercent The discount percentage applied.
+     * @param discountCents The discount amount, in cents.
+     * @param finalCents The final charge, in cents.
+     * @param pricedAttributes The daily rate and charging flags the rental was priced with.
+     */
+    public RentalCharges(LocalDate dueDate, int chargeDays, long preDiscountCents, int discountPercent,
+                         long discountCents, long finalCents, ToolAttributes.ToolTypeAttributes pricedAttributes) {
+        this(dueDate, chargeDays, preDiscountCents, discountPercent, discountCents, finalCents, 0, 0,
+             pricedAttributes);
+    }
+
+    /**
+     * Constructor for RentalCharges.
+     *
+     * @param dueDate The date the tool is due back.
+     * @param chargeDays The number of chargeable days in the rental.
+     * @param preDiscountCents The charge before the discount, in cents.
+     * @param discountPercent The discount percentage applied, including any promotions.
+     * @param discountCents The discount amount, in cents.
+     * @param finalCents The final charge, in cents.
+     * @param rateCapCreditCents The amount rate caps took off the daily rate times the charge
+     *        days, in cents.
+     * @param surchargeCents The seasonal surcharge, in cents.
+     * @param pricedAttributes The daily rate and charging flags the rental was priced with.
+     */
+    public RentalCharges(LocalDate dueDate, int chargeDays, long preDiscountCents, int discountPercent,
+                         long discountCents, long finalCents, long rateCapCreditCents, long surchargeCents,
+                         ToolAttributes.ToolTypeAttributes pricedAttributes) {
+        this(dueDate, chargeDays, preDiscountCents, discountPercent, discountCents, finalCents, rateCapCreditCents,
+             surchargeCents, pricedAttributes, null);
+    }
+
+    /**
+     * Constructor for RentalCharges priced by a pricing plan.
+     *
+     * @param pricingPlan The plan the rental was priced by, or null for the flat daily rate.
+     * @see #RentalCharges(LocalDate, int, long, int, long, long, long, long, ToolAttributes.ToolTypeAttributes)
+     */
+    public RentalCharges(LocalDate dueDate, int chargeDays, long preDiscountCents, int discountPercent,
+                         long discountCents, long finalCents, long rateCapCreditCents, long surchargeCents,
+                         ToolAttributes.ToolTypeAttributes pricedAttributes, PricingPlan pricingPlan) {
+        this.dueDate = dueDate;
+        this.chargeDays = chargeDays;
+        this.preDiscountCents = preDiscountCents;
+        this.discountPercent = discountPercent;
+        this.discountCents = discountCents;
+        this.finalCents = finalCents;
+        this.rateCapCreditCents = rateCapCreditCents;
+        this.surchargeCents = surchargeCents;
+        this.pricedAttributes = pricedAttributes;
+        this.pricingPlan = pricingPlan;
+    }
+
+    public LocalDate getDueDate() {
+        return dueDate;
+    }
+
+    public int getChargeDays() {
+        return chargeDays;
+    }
+
+    public long getPreDiscountCents() {
+        return preDiscountCents;
+    }
+
+    /**
+     * @return The discount percentage applied, including any promotions of the pricing plan.
+     */
+    public int getDiscountPercent() {
+        return discountPercent;
+    }
+
+    public long getDiscountCents() {
+        return discountCents;
+    }
+
+    public long getFinalCents() {
+        return finalCents;
+    }
+
+    /**
+     * @return The amount the pricing plan's rate caps took off the daily rate times the charge
+     *         days, in cents.
+     */
+    public long getRateCapCreditCents() {
+        return rateCapCreditCents;
+    }
+
+    /**
+     * @return The pricing plan's seasonal surcharge, in cents.
+     */
+    public long getSurchargeCents() {
+        return surchargeCents;
+    }
+
+    /**
+     * @return The daily rate and charging flags the rental was priced with.
+     */
+    public ToolAttributes.ToolTypeAttributes getPricedAttributes() {
+        return pricedAttributes;
+    }
+
+    /**
+     * @return The pricing plan the rental was priced by, or null if it was priced at the flat
+     *         daily rate.
+     */
+    public PricingPlan getPricingPlan() {
+        return pricingPlan;
+    }
+
+    @Override
+    public String toString() {
+        return "RentalCharges{" +
+               "dueDate=" + dueDate +
+               ", chargeDays=" + chargeDays +
+               ", preDiscountCents=" + preDiscountCents +
+               ", discountPercent=" + discountPercent +
+               ", discountCents=" + discountCents +
+               ", finalCents=" + finalCents +
+               ", rateCapCreditCents=" + rateCapCreditCents +
+               ", surchargeCents=" + surchargeCents +
+               ", dailyChargeCents=" + pricedAttributes.getDailyChargeMoney().getCents() +
+               '}';
+    }
+}
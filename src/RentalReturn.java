@@ -0,0 +1,56 @@
+import java.time.LocalDate;
+
+/**
+ * The RentalReturn class holds the inputs of a single tool check-in: the agreement the tool
+ * was rented under, the date it came back and the charge for any damage found on inspection.
+ */
+public final class RentalReturn {
+    private final RentalAgreement agreement;
+    private final LocalDate returnDate;
+    private final Money damageCharge;
+
+    /**
+     * Constructor for RentalReturn of an undamaged tool.
+     *
+     * @param agreement The agreement the tool was rented under.
+     * @param returnDate The date on which the tool was returned.
+     */
+    public RentalReturn(RentalAgreement agreement, LocalDate returnDate) {
+        this(agreement, returnDate, Money.ZERO);
+    }
+
+    /**
+     * Constructor for RentalReturn.
+     *
+     * @param agreement The agreement the tool was rented under.
+     * @param returnDate The date on which the tool was returned.
+     * @param damageCharge The charge for damage to the tool.
+     */
+    public RentalReturn(RentalAgreement agreement, LocalDate returnDate, Money damageCharge) {
+        this.agreement = agreement;
+        this.returnDate = returnDate;
+        this.damageCharge = damageCharge;
+    }
+
+    public RentalAgreement getAgreement() {
+        return agreement;
+    }
+
+    public LocalDate getReturnDate() {
+        return returnDate;
+    }
+
+    public Money getDamageCharge() {
+        return damageCharge;
+    }
+
+    @Override
+    public String toString() {
+        return "RentalReturn{" +
+               "toolCode='" + agreement.getTool().getToolCode() + '\'' +
+               ", dueDate=" + agreement.getDueDate() +
+               ", returnDate=" + returnDate +
+               ", damageCharge=" + damageCharge +
+               '}';
+    }
+}
@@ -0,0 +1,382 @@
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * The RentalWindowSearch class answers questions such as "when can I rent a jackhammer for 5
+ * days at the lowest cost, starting sometime in the next 60 days?". It considers every tool
+ * of the type and every checkout date in the horizon, and returns the cheapest options whose
+ * tool has a unit free from checkout through the due date.
+ *
+ * No agreement is built per candidate. The price of a window depends only on the tool's daily
+ * rate, weekend and holiday charging and type, so tools that share those share one pass over
+ * the horizon: the charge days of each checkout date come from a sliding window over the
+ * calendar's chargeable days, one day in and one day out, and the due dates from a pointer
+ * that moves along the chargeable days. Each window is priced once per group, with the
+ * engine's pricing plan if it has one, and the group's checkout dates are sorted by price.
+ * Without a plan, windows with the same charge days cost the same and are priced once.
+ *
+ * The search then walks the groups from the cheapest, and each tool's dates from the
+ * cheapest, keeping the best options in a bounded heap. Once the heap is full, its most
+ * expensive option is a bound: a group whose cheapest window is above it is skipped
+ * without looking at its tools, and a tool's walk stops at the first window that is not below
+ * it. Inventory is only queried for windows that would enter the heap, one range at a time
+ * for the first few of a tool and from the tool's free runs over the horizon after that.
+ *
+ * Availability is read when the search runs; a unit may be reserved by another checkout
+ * before an option is taken.
+ */
+public final class RentalWindowSearch {
+
+    /**
+     * The number of range queries made for a tool's windows before its free days over the
+     * whole horizon are read at once instead.
+     */
+    private static final int RANGE_QUERIES_PER_TOOL = 4;
+
+    private final ToolCatalog toolCatalog;
+    private final PricingEngine pricingEngine;
+    private final HolidayCalendar holidayCalendar;
+    private final Inventory inventory;
+
+    /**
+     * Constructor for RentalWindowSearch.
+     *
+     * @param toolCatalog The tools to search.
+     * @param pricingEngine The engine that prices the windows.
+     * @param holidayCalendar The holiday calendar of the store's region.
+     * @param inventory The inventory whose free units limit the options, or null to treat
+     *                  every tool as always available.
+     */
+    public RentalWindowSearch(ToolCatalog toolCatalog, PricingEngine pricingEngine, HolidayCalendar holidayCalendar,
+                              Inventory inventory) {
+        this.toolCatalog = toolCatalog;
+        this.pricingEngine = pricingEngine;
+        this.holidayCalendar = holidayCalendar;
+        this.inventory = inventory;
+    }
+
+    /**
+     * Finds the cheapest rentals of a tool type.
+     *
+     * @param toolType The tool type, e.g. "Jackhammer".
+     * @param rentalDays The number of days for which the tool is rented.
+     * @param discountPercent The discount percentage applied to the rental.
+     * @param earliestStart The first possible checkout date.
+     * @param horizonDays The number of possible checkout dates, starting with the earliest.
+     * @param limit The maximum number of options to return.
+     * @return The cheapest available options, cheapest first; ties are broken by the earlier
+     *         checkout date and then the tool code. Empty if no tool of the type is available.
+     * @throws IllegalArgumentException If the rental days, discount percent, horizon or limit
+     *         are out of range, or a window is not within the years of the engine's pricing plan.
+     */
+    public List<Option> findCheapest(String toolType, int rentalDays, int discountPercent, LocalDate earliestStart,
+                                     int horizonDays, int limit) {
+        if (rentalDays < 1) {
+            throw new IllegalArgumentException("Rental days must be 1 or more.");
+        }
+        if (rentalDays > PricingEngine.MAX_RENTAL_DAYS) {
+            throw new IllegalArgumentException("Rental days must be " + PricingEngine.MAX_RENTAL_DAYS + " or fewer.");
+        }
+        if (discountPercent < 0 || discountPercent > 100) {
+            throw new IllegalArgumentException("Discount percent must be between 0 and 100.");
+        }
+        if (horizonDays < 1) {
+            throw new IllegalArgumentException("Horizon days must be 1 or more.");
+        }
+        if (limit < 1) {
+            throw new IllegalArgumentException("Limit must be 1 or more.");
+        }
+
+        // Tools priced alike share their windows; rates are at most a few per type
+        Map<Long, Windows> byPricing = new HashMap<>();
+        for (ITool tool : toolCatalog.getTools()) {
+            if (!tool.getToolType().equals(toolType)
+                    || (inventory != null && !inventory.isStocked(tool.getToolCode()))) {
+                continue;
+            }
+            PricedTool priced = PricedTool.of(tool);
+            long key = priced.getDailyChargeMoney().getCents() * HolidayCalendar.POLICY_COUNT
+                    + HolidayCalendar.policyOf(priced);
+            byPricing.computeIfAbsent(key, k -> new Windows(priced, rentalDays, discountPercent, earliestStart, horizonDays))
+                     .tools.add(tool);
+        }
+        List<Windows> groups = new ArrayList<>(byPricing.values());
+        groups.sort(Comparator.comparingLong(Windows::cheapestCents));
+
+        // The most expensive of the best candidates is on top
+        PriorityQueue<Candidate> best = new PriorityQueue<>(limit + 1, (a, b) -> b.compareTo(a));
+        for (Windows group : groups) {
+            if (best.size() == limit && group.cheapestCents() > best.peek().cents) {
+                // Groups are sorted, so no later group can improve on the heap either; a group
+                // that only ties the bound may still win on an earlier checkout date
+                break;
+            }
+            group.tools.sort(Comparator.comparing(ITool::getToolCode));
+            for (ITool tool : group.tools) {
+                Availability availability = new Availability(tool.getToolCode(), group);
+                for (int start : group.order) {
+                    long cents = group.finalCents[start];
+                    if (best.size() == limit && best.peek().compareTo(cents, start, tool.getToolCode()) <= 0) {
+                        break;
+                    }
+                    if (availability.isFree(start)) {
+                        best.add(new Candidate(group, tool, start, cents));
+                        if (best.size() > limit) {
+                            best.poll();
+                        }
+                    }
+                }
+            }
+        }
+
+        Candidate[] candidates = best.toArray(new Candidate[0]);
+        Arrays.sort(candidates);
+        List<Option> options = new ArrayList<>(candidates.length);
+        for (Candidate candidate : candidates) {
+            options.add(candidate.group.option(candidate.tool, candidate.start));
+        }
+        return List.copyOf(options);
+    }
+
+    /**
+     * Tells whether a tool has a unit free for the windows of a group. The first few windows
+     * are queried one by one, as a cheap tool is often free for one of them; after that, the
+     * tool's free runs over the horizon are read once and answer the rest.
+     */
+    private final class Availability {
+        private final String toolCode;
+        private final Windows group;
+        private int rangeQueries;
+        private int[] freeRuns;
+
+        Availability(String toolCode, Windows group) {
+            this.toolCode = toolCode;
+            this.group = group;
+        }
+
+        boolean isFree(int start) {
+            if (inventory == null) {
+                return true;
+            }
+            int dueOffset = group.dueOffsets[start];
+            if (freeRuns == null && rangeQueries++ < RANGE_QUERIES_PER_TOOL) {
+                return inventory.countFreeUnits(toolCode, group.earliestStart.plusDays(start),
+                        group.earliestStart.plusDays(dueOffset)) > 0;
+            }
+            if (freeRuns == null) {
+                freeRuns = inventory.findFreeRuns(toolCode, group.earliestStart,
+                        group.earliestStart.plusDays(group.lastDueOffset));
+            }
+            return freeRuns[start] > dueOffset - start;
+        }
+    }
+
+    /**
+     * A tool and checkout date in the heap. Offsets are from the same earliest start in every
+     * group, so they order like checkout dates.
+     */
+    private static final class Candidate implements Comparable<Candidate> {
+        final Windows group;
+        final ITool tool;
+        final int start;
+        final long cents;
+
+        Candidate(Windows group, ITool tool, int start, long cents) {
+            this.group = group;
+            this.tool = tool;
+            this.start = start;
+            this.cents = cents;
+        }
+
+        @Override
+        public int compareTo(Candidate other) {
+            return -other.compareTo(cents, start, tool.getToolCode());
+        }
+
+        /**
+         * Orders by final charge, then checkout date, then tool code, without creating a
+         * candidate for the other side.
+         */
+        int compareTo(long otherCents, int otherStart, String otherToolCode) {
+            if (cents != otherCents) {
+                return Long.compare(cents, otherCents);
+            }
+            if (start != otherStart) {
+                return Integer.compare(start, otherStart);
+            }
+            return tool.getToolCode().compareTo(otherToolCode);
+        }
+    }
+
+    /**
+     * The windows of every checkout date in the horizon, priced for the tools of one daily
+     * rate and charging policy.
+     */
+    private final class Windows {
+        final List<ITool> tools = new ArrayList<>();
+        final int rentalDays;
+        final int discountPercent;
+        final LocalDate earliestStart;
+        // Charge days, due date offsets and final charges by checkout date offset
+        final int[] chargeDays;
+        final int[] dueOffsets;
+        final long[] finalCents;
+        final int lastDueOffset;
+        // Checkout date offsets, cheapest window first
+        final int[] order;
+
+        Windows(ITool tool, int rentalDays, int discountPercent, LocalDate earliestStart, int horizonDays) {
+            this.rentalDays = rentalDays;
+            this.discountPercent = discountPercent;
+            this.earliestStart = earliestStart;
+            int policy = HolidayCalendar.policyOf(tool);
+
+            // The chargeable days from the earliest start through the last window's due date
+            boolean[] chargeable = new boolean[horizonDays + rentalDays * 2 + 16];
+            int[] chargeableOffsets = new int[chargeable.length];
+            int chargeableCount = 0;
+            int afterLastStart = 0;
+            int year = earliestStart.getYear();
+            int dayOfYear = earliestStart.getDayOfYear() - 1;
+            HolidayCalendar.YearTable table = holidayCalendar.yearTable(year);
+            for (int offset = 0; offset < horizonDays + rentalDays - 1 || afterLastStart < rentalDays; offset++) {
+                if (offset == chargeable.length) {
+                    chargeable = Arrays.copyOf(chargeable, offset * 2);
+                    chargeableOffsets = Arrays.copyOf(chargeableOffsets, offset * 2);
+                }
+                if (dayOfYear == table.length) {
+                    table = holidayCalendar.yearTable(++year);
+                    dayOfYear = 0;
+                }
+                if (table.isChargeable(policy, dayOfYear++)) {
+                    chargeable[offset] = true;
+                    chargeableOffsets[chargeableCount++] = offset;
+                    if (offset >= horizonDays) {
+                        afterLastStart++;
+                    }
+                }
+            }
+
+            chargeDays = new int[horizonDays];
+            dueOffsets = new int[horizonDays];
+            finalCents = new long[horizonDays];
+            // Without a plan the charge depends on the charge days alone, so each count is priced once
+            boolean flatRate = pricingEngine.getPricingPlan() == null;
+            long[] centsByChargeDays = new long[rentalDays + 1];
+            Arrays.fill(centsByChargeDays, -1);
+            int count = 0;
+            for (int offset = 0; offset < rentalDays; offset++) {
+                count += chargeable[offset] ? 1 : 0;
+            }
+            int next = 0; // the first chargeable day after the checkout date
+            for (int start = 0; start < horizonDays; start++) {
+                if (start > 0) {
+                    count += (chargeable[start + rentalDays - 1] ? 1 : 0) - (chargeable[start - 1] ? 1 : 0);
+                }
+                while (chargeableOffsets[next] <= start) {
+                    next++;
+                }
+                chargeDays[start] = count;
+                dueOffsets[start] = chargeableOffsets[next + rentalDays - 1];
+                if (flatRate && centsByChargeDays[count] >= 0) {
+                    finalCents[start] = centsByChargeDays[count];
+                } else {
+                    finalCents[start] = charges(tool, start).getFinalCents();
+                    centsByChargeDays[count] = finalCents[start];
+                }
+            }
+            lastDueOffset = dueOffsets[horizonDays - 1];
+
+            // Sorts (final charge, offset) pairs packed into one long each
+            long[] keys = new long[horizonDays];
+            for (int start = 0; start < horizonDays; start++) {
+                keys[start] = Math.addExact(Math.multiplyExact(finalCents[start], (long) horizonDays), start);
+            }
+            Arrays.sort(keys);
+            order = new int[horizonDays];
+            for (int i = 0; i < horizonDays; i++) {
+                order[i] = (int) (keys[i] % horizonDays);
+            }
+        }
+
+        long cheapestCents() {
+            return finalCents[order[0]];
+        }
+
+        RentalCharges charges(ITool tool, int start) {
+            return pricingEngine.charges(tool, discountPercent, earliestStart.plusDays(start), rentalDays,
+                    earliestStart.plusDays(dueOffsets[start]), chargeDays[start], holidayCalendar);
+        }
+
+        Option option(ITool tool, int start) {
+            return new Option(tool, rentalDays, discountPercent, earliestStart.plusDays(start), holidayCalendar,
+                    charges(tool, start));
+        }
+    }
+
+    /**
+     * The Option nested class is one rental found by the search: a tool, a checkout date and
+     * the charges of renting it then.
+     */
+    public static final class Option {
+        private final ITool tool;
+        private final int rentalDays;
+        private final int discountPercent;
+        private final LocalDate checkoutDate;
+        private final HolidayCalendar holidayCalendar;
+        private final RentalCharges charges;
+
+        private Option(ITool tool, int rentalDays, int discountPercent, LocalDate checkoutDate,
+                       HolidayCalendar holidayCalendar, RentalCharges charges) {
+            this.tool = tool;
+            this.rentalDays = rentalDays;
+            this.discountPercent = discountPercent;
+            this.checkoutDate = checkoutDate;
+            this.holidayCalendar = holidayCalendar;
+            this.charges = charges;
+        }
+
+        public ITool getTool() {
+            return tool;
+        }
+
+        public LocalDate getCheckoutDate() {
+            return checkoutDate;
+        }
+
+        public LocalDate getDueDate() {
+            return charges.getDueDate();
+        }
+
+        public int getChargeDays() {
+            return charges.getChargeDays();
+        }
+
+        public long getFinalChargeCents() {
+            return charges.getFinalCents();
+        }
+
+        public RentalCharges getCharges() {
+            return charges;
+        }
+
+        /**
+         * @return The agreement of this rental, without an inventory reservation.
+         */
+        public RentalAgreement toAgreement() {
+            return new RentalAgreement(tool, rentalDays, discountPercent, checkoutDate, holidayCalendar, charges);
+        }
+
+        @Override
+        public String toString() {
+            return tool.getToolCode() + " from " + checkoutDate + " to " + getDueDate() + ": "
+                   + Money.ofCents(getFinalChargeCents());
+        }
+    }
+}
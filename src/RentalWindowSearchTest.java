@@ -0,0 +1,113 @@
+import org.junit.Test;
+import java.time.LocalDate;
+import java.time.MonthDay;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RentalWindowSearchTest {
+
+    private final ToolTypeRegistry.Snapshot toolTypes = ToolTypeRegistry.builtIn().getSnapshot();
+
+    @Test
+    public void testFindsTheCheapestWeekOfTheJackhammers() {
+        ToolCatalog catalog = ToolCatalog.standard(new ToolFactory());
+        Inventory inventory = Inventory.forCatalog(catalog, 1);
+        // JAKR is out until the 10th; JAKD is out for the first week of July
+        inventory.reserve("JAKR", LocalDate.of(2024, 6, 20), LocalDate.of(2024, 7, 10));
+        inventory.reserve("JAKD", LocalDate.of(2024, 6, 29), LocalDate.of(2024, 7, 7));
+        RentalWindowSearch search = new RentalWindowSearch(catalog, PricingEngine.DEFAULT, HolidayCalendar.DEFAULT,
+                inventory);
+
+        // 5 days charge 3 to 5 weekdays, and 2 in the week of Independence Day
+        List<RentalWindowSearch.Option> options = search.findCheapest("Jackhammer", 5, 0,
+                LocalDate.of(2024, 6, 28), 14, 3);
+        // The Independence Day week is out, so the cheapest are the windows over the next weekend
+        assertEquals(List.of(
+                "JAKD from 2024-07-10 to 2024-07-17: $8.97",
+                "JAKD from 2024-07-11 to 2024-07-18: $8.97",
+                "JAKR from 2024-07-11 to 2024-07-18: $8.97"), options.stream().map(Object::toString).toList());
+        RentalWindowSearch.Option cheapest = options.get(0);
+        assertEquals(3, cheapest.getChargeDays());
+        assertEquals(new RentalAgreement(cheapest.getTool(), 5, 0, cheapest.getCheckoutDate()).generateAgreement(),
+                cheapest.toAgreement().generateAgreement());
+
+        assertTrue(search.findCheapest("Drill", 5, 0, LocalDate.of(2024, 6, 28), 14, 3).isEmpty());
+        assertThrows(IllegalArgumentException.class,
+                () -> search.findCheapest("Jackhammer", 5, 0, LocalDate.of(2024, 6, 28), 0, 3));
+        assertThrows(IllegalArgumentException.class,
+                () -> search.findCheapest("Jackhammer", 5, 0, LocalDate.of(2024, 6, 28), 14, 0));
+    }
+
+    @Test
+    public void testMatchesExhaustiveSearch() {
+        Random random = new Random(22);
+        String[] types = {"Ladder", "Chainsaw", "Jackhammer"};
+        String[] brands = {"Werner", "Stihl", "Ridgid", "DeWalt"};
+        for (int round = 0; round < 40; round++) {
+            List<ITool> tools = new ArrayList<>();
+            for (int i = 0; i < 12; i++) {
+                tools.add(new Tool(String.format("T%03d", i), types[random.nextInt(types.length)],
+                        brands[random.nextInt(brands.length)]));
+            }
+            ToolCatalog catalog = new ToolCatalog(tools);
+            Inventory inventory = new Inventory();
+            LocalDate earliestStart = LocalDate.of(2023, 1, 1).plusDays(random.nextInt(3 * 365));
+            for (ITool tool : tools) {
+                if (random.nextInt(6) == 0) {
+                    continue; // not stocked
+                }
+                inventory.addTool(tool.getToolCode(), 1 + random.nextInt(2));
+                for (int i = random.nextInt(12); i > 0; i--) {
+                    LocalDate first = earliestStart.plusDays(random.nextInt(120) - 20);
+                    try {
+                        inventory.reserve(tool.getToolCode(), first, first.plusDays(random.nextInt(30)));
+                    } catch (IllegalArgumentException fullyBooked) {
+                        // The range overlaps the other reservations of every unit
+                    }
+                }
+            }
+            PricingPlan plan = random.nextBoolean() ? null : PricingPlan.compile(List.of(
+                    PricingRule.seasonalSurcharge(null, MonthDay.of(6, 1), MonthDay.of(8, 31), 20),
+                    PricingRule.rateCap("Jackhammer", 5, Money.ofDollars(9.00)),
+                    PricingRule.promotion(null, earliestStart.plusDays(random.nextInt(60)),
+                            earliestStart.plusDays(60 + random.nextInt(60)), 15)), toolTypes, 2000, 2040);
+            PricingEngine engine = new PricingEngine(RentalAgreement.CalculationMode.PREFIX_SUM, plan);
+            RentalWindowSearch search = new RentalWindowSearch(catalog, engine, HolidayCalendar.DEFAULT, inventory);
+
+            String toolType = types[random.nextInt(types.length)];
+            int rentalDays = 1 + random.nextInt(random.nextBoolean() ? 7 : 40);
+            int discount = random.nextInt(30);
+            int horizonDays = 1 + random.nextInt(90);
+            int limit = 1 + random.nextInt(20);
+
+            // Every tool and checkout date priced as an agreement
+            List<RentalAgreement> expected = new ArrayList<>();
+            for (ITool tool : tools) {
+                if (!tool.getToolType().equals(toolType) || !inventory.isStocked(tool.getToolCode())) {
+                    continue;
+                }
+                for (int start = 0; start < horizonDays; start++) {
+                    RentalAgreement agreement = engine.price(tool, rentalDays, discount, earliestStart.plusDays(start));
+                    if (inventory.countFreeUnits(tool.getToolCode(), agreement.getCheckoutDate(), agreement.getDueDate()) > 0) {
+                        expected.add(agreement);
+                    }
+                }
+            }
+            expected.sort(Comparator.comparingLong(RentalAgreement::getFinalChargeCents)
+                    .thenComparing(RentalAgreement::getCheckoutDate)
+                    .thenComparing(agreement -> agreement.getTool().getToolCode()));
+
+            List<RentalWindowSearch.Option> options = search.findCheapest(toolType, rentalDays, discount, earliestStart,
+                    horizonDays, limit);
+            String context = toolType + " from " + earliestStart + " for " + rentalDays + " days, round " + round;
+            assertEquals(Math.min(limit, expected.size()), options.size(), context);
+            for (int i = 0; i < options.size(); i++) {
+                assertEquals(expected.get(i).generateAgreement(), options.get(i).toAgreement().generateAgreement(),
+                        context + ", option " + i);
+            }
+        }
+    }
+}
@@ -0,0 +1,99 @@
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * The Settlement class is the outcome of a return: the rental's own charge, the late charge
+ * for the chargeable days between the due date and the return date, the damage charge and
+ * the total the customer owes.
+ */
+public final class Settlement {
+
+    static final String CSV_HEADER = "toolCode,toolType,checkoutDate,dueDate,returnDate,lateDays,lateChargeDays,"
+            + "rentalCharge,lateCharge,damageCharge,totalCharge\n";
+
+    private final RentalReturn rentalReturn;
+    private final int lateChargeDays;
+    private final long lateChargeCents;
+
+    Settlement(RentalReturn rentalReturn, int lateChargeDays, long lateChargeCents) {
+        this.rentalReturn = rentalReturn;
+        this.lateChargeDays = lateChargeDays;
+        this.lateChargeCents = lateChargeCents;
+    }
+
+    public RentalReturn getReturn() {
+        return rentalReturn;
+    }
+
+    public RentalAgreement getAgreement() {
+        return rentalReturn.getAgreement();
+    }
+
+    /**
+     * @return The calendar days from the due date to the return date, or 0 if the tool came
+     *         back on time.
+     */
+    public int getLateDays() {
+        long days = ChronoUnit.DAYS.between(getAgreement().getDueDate(), rentalReturn.getReturnDate());
+        return (int) Math.max(0, days);
+    }
+
+    /**
+     * @return The chargeable days after the due date, up to and including the return date.
+     */
+    public int getLateChargeDays() {
+        return lateChargeDays;
+    }
+
+    public long getLateChargeCents() {
+        return lateChargeCents;
+    }
+
+    public long getDamageChargeCents() {
+        return rentalReturn.getDamageCharge().getCents();
+    }
+
+    /**
+     * @return The rental's final charge plus the late and damage charges, in cents.
+     */
+    public long getTotalChargeCents() {
+        return Math.addExact(Math.addExact(getAgreement().getFinalChargeCents(), lateChargeCents), getDamageChargeCents());
+    }
+
+    /**
+     * Appends the settlement as one CSV row, see CSV_HEADER.
+     */
+    void appendCsv(StringBuilder line) {
+        RentalAgreement agreement = getAgreement();
+        BulkCheckoutPipeline.appendCsvText(line, agreement.getTool().getToolCode());
+        line.append(',');
+        BulkCheckoutPipeline.appendCsvText(line, agreement.getTool().getToolType());
+        line.append(',');
+        BulkCheckoutPipeline.appendIsoDate(line, agreement.getCheckoutDate());
+        line.append(',');
+        BulkCheckoutPipeline.appendIsoDate(line, agreement.getDueDate());
+        line.append(',');
+        BulkCheckoutPipeline.appendIsoDate(line, rentalReturn.getReturnDate());
+        line.append(',').append(getLateDays()).append(',').append(lateChargeDays).append(',');
+        BulkCheckoutPipeline.appendDecimal(line, agreement.getFinalChargeCents());
+        line.append(',');
+        BulkCheckoutPipeline.appendDecimal(line, lateChargeCents);
+        line.append(',');
+        BulkCheckoutPipeline.appendDecimal(line, getDamageChargeCents());
+        line.append(',');
+        BulkCheckoutPipeline.appendDecimal(line, getTotalChargeCents());
+        line.append('\n');
+    }
+
+    @Override
+    public String toString() {
+        return "Settlement{" +
+               "toolCode='" + getAgreement().getTool().getToolCode() + '\'' +
+               ", returnDate=" + rentalReturn.getReturnDate() +
+               ", lateChargeDays=" + lateChargeDays +
+               ", lateChargeCents=" + lateChargeCents +
+               ", damageChargeCents=" + getDamageChargeCents() +
+               ", totalChargeCents=" + getTotalChargeCents() +
+               '}';
+    }
+}
@@ -0,0 +1,249 @@
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * The SettlementEngine class settles returned tools. A tool returned after its due date is
+ * charged the daily rate its agreement was priced with for each chargeable day after the due
+ * date, up to and including the return date, by the same weekday, weekend and holiday rules
+ * and the same holiday calendar that priced the rental. Late days are charged at the full
+ * daily rate; the agreement's discount covers the rental period only. A tool returned early
+ * is not refunded.
+ *
+ * Returns can be settled one at a time or, at the end of the day, all at once. The batch
+ * groups the returns by tool type and, within a type, by holiday calendar and charging
+ * policy, so the calendar and its year tables are looked up once per group rather than once
+ * per return. The settlement rows are rendered into one buffer and written with a single
+ * call.
+ *
+ * An engine with an inventory also moves the end of each returned agreement's reservation to
+ * the return date: a late return keeps its unit reserved through the day it came back, and an
+ * early return frees the unit's remaining days. If the unit was reserved again for the late
+ * days meanwhile, the reservation keeps its due date; the late charge is owed either way.
+ *
+ * The engine holds no state of its own and can be shared between threads.
+ */
+public final class SettlementEngine {
+
+    private final Inventory inventory;
+
+    /**
+     * Constructor for SettlementEngine, for returns whose reservations are not tracked.
+     */
+    public SettlementEngine() {
+        this(null);
+    }
+
+    /**
+     * Constructor for SettlementEngine.
+     *
+     * @param inventory The inventory that holds the agreements' reservations, or null to
+     *        leave reservations alone.
+     */
+    public SettlementEngine(Inventory inventory) {
+        this.inventory = inventory;
+    }
+
+    /**
+     * Settles a single return.
+     *
+     * @param rentalReturn The return to settle.
+     * @return The settlement.
+     * @throws IllegalArgumentException If the tool was returned before its checkout date or
+     *         the damage charge is negative.
+     */
+    public Settlement settle(RentalReturn rentalReturn) {
+        validate(rentalReturn, -1);
+        RentalAgreement agreement = rentalReturn.getAgreement();
+        LocalDate dueDate = agreement.getDueDate();
+        long lateDays = rentalReturn.getReturnDate().toEpochDay() - dueDate.toEpochDay();
+        int lateChargeDays = lateDays <= 0 ? 0 : agreement.getHolidayCalendar()
+                .countChargeableDays(dueDate.plusDays(1), Math.toIntExact(lateDays), agreement.getPricedTool());
+        Settlement settlement = settlement(rentalReturn, lateChargeDays);
+        endReservation(rentalReturn);
+        return settlement;
+    }
+
+    /**
+     * Settles a batch of returns.
+     *
+     * A batch with an invalid return settles nothing.
+     *
+     * @param returns The returns to settle.
+     * @return The settlements, in the order of the returns.
+     * @throws IllegalArgumentException If a return is invalid, see settle.
+     */
+    public List<Settlement> settleAll(List<RentalReturn> returns) {
+        Settlement[] settlements = new Settlement[returns.size()];
+        settleGroups(returns, settlements);
+        return Arrays.asList(settlements);
+    }
+
+    /**
+     * Settles a batch of returns and writes them as CSV, a header line followed by one row
+     * per return, grouped by tool type. The rows are rendered into one buffer and passed to
+     * the destination in a single append.
+     *
+     * @param returns The returns to settle.
+     * @param out The destination, e.g. a Writer.
+     * @return The settlements, in the order of the returns.
+     * @throws IOException If the destination fails.
+     * @throws IllegalArgumentException If a return is invalid, see settle.
+     */
+    public List<Settlement> settleAll(List<RentalReturn> returns, Appendable out) throws IOException {
+        Settlement[] settlements = new Settlement[returns.size()];
+        List<Group> groups = settleGroups(returns, settlements);
+        StringBuilder rows = new StringBuilder(Settlement.CSV_HEADER.length() + returns.size() * 96);
+        rows.append(Settlement.CSV_HEADER);
+        for (Group group : groups) {
+            for (int i = 0; i < group.size; i++) {
+                settlements[group.members[i]].appendCsv(rows);
+            }
+        }
+        out.append(rows);
+        return Arrays.asList(settlements);
+    }
+
+    /**
+     * Settles every return into its slot of the array.
+     *
+     * @return The groups, ordered by tool type, calendar name and policy.
+     */
+    private List<Group> settleGroups(List<RentalReturn> returns, Settlement[] settlements) {
+        // One pass in input order. Reservations are only moved once every return is settled, so a
+        // batch that fails validation part way through has still settled nothing. There are only
+        // a handful of groups, so a scan beats hashing a key.
+        List<Group> groups = new ArrayList<>();
+        Group group = null;
+        for (int i = 0; i < returns.size(); i++) {
+            RentalReturn rentalReturn = returns.get(i);
+            validate(rentalReturn, i);
+            RentalAgreement agreement = rentalReturn.getAgreement();
+            ITool tool = agreement.getPricedTool();
+            HolidayCalendar holidayCalendar = agreement.getHolidayCalendar();
+            int policy = HolidayCalendar.policyOf(tool);
+            if (group == null || !group.matches(tool.getToolType(), holidayCalendar, policy)) {
+                group = null;
+                for (Group candidate : groups) {
+                    if (candidate.matches(tool.getToolType(), holidayCalendar, policy)) {
+                        group = candidate;
+                        break;
+                    }
+                }
+                if (group == null) {
+                    group = new Group(tool.getToolType(), holidayCalendar, policy);
+                    groups.add(group);
+                }
+            }
+            group.add(i);
+            LocalDate dueDate = agreement.getDueDate();
+            LocalDate returnDate = rentalReturn.getReturnDate();
+            int lateChargeDays = returnDate.isAfter(dueDate) ? group.chargeableDaysAfter(dueDate, returnDate) : 0;
+            settlements[i] = settlement(rentalReturn, lateChargeDays);
+        }
+        for (RentalReturn rentalReturn : returns) {
+            endReservation(rentalReturn);
+        }
+        groups.sort(Comparator.comparing((Group g) -> g.toolType)
+                              .thenComparing(g -> g.holidayCalendar.getName())
+                              .thenComparingInt(g -> g.policy));
+        return groups;
+    }
+
+    private static Settlement settlement(RentalReturn rentalReturn, int lateChargeDays) {
+        long dailyCents = rentalReturn.getAgreement().getDailyChargeMoney().getCents();
+        return new Settlement(rentalReturn, lateChargeDays, Money.times(dailyCents, lateChargeDays));
+    }
+
+    // Moves the last day of the agreement's reservation, as it is now, to the return date
+    private void endReservation(RentalReturn rentalReturn) {
+        Inventory.Reservation reservation = rentalReturn.getAgreement().getReservation();
+        if (inventory == null || reservation == null) {
+            return;
+        }
+        Inventory.Reservation current = inventory.getReservation(reservation.getId());
+        if (current == null || current.getLastDay().equals(rentalReturn.getReturnDate())) {
+            return;
+        }
+        try {
+            inventory.extend(current, rentalReturn.getReturnDate());
+        } catch (IllegalArgumentException e) {
+            // Reserved again for the late days, or changed meanwhile: keep the reservation as it is
+        }
+    }
+
+    /**
+     * @param index The return's index in its batch, or -1 for a single return.
+     */
+    private static void validate(RentalReturn rentalReturn, int index) {
+        if (rentalReturn.getReturnDate().isBefore(rentalReturn.getAgreement().getCheckoutDate())) {
+            throw invalid(index, "Return date must not be before the checkout date.");
+        }
+        if (rentalReturn.getDamageCharge().getCents() < 0) {
+            throw invalid(index, "Damage charge must not be negative.");
+        }
+    }
+
+    private static IllegalArgumentException invalid(int index, String message) {
+        return new IllegalArgumentException(index < 0 ? message : "Return " + index + ": " + message);
+    }
+
+    /**
+     * The indexes of the returns of one tool type that are charged by the same calendar and
+     * policy, and the year table the group looked up last.
+     */
+    private static final class Group {
+        final String toolType;
+        final HolidayCalendar holidayCalendar;
+        final int policy;
+        int[] members = new int[16];
+        int size;
+        private HolidayCalendar.YearTable table;
+
+        Group(String toolType, HolidayCalendar holidayCalendar, int policy) {
+            this.toolType = toolType;
+            this.holidayCalendar = holidayCalendar;
+            this.policy = policy;
+        }
+
+        boolean matches(String toolType, HolidayCalendar holidayCalendar, int policy) {
+            return this.holidayCalendar == holidayCalendar && this.policy == policy && this.toolType.equals(toolType);
+        }
+
+        void add(int member) {
+            if (size == members.length) {
+                members = Arrays.copyOf(members, size * 2);
+            }
+            members[size++] = member;
+        }
+
+        /**
+         * Counts the chargeable days in (dueDate, returnDate]; the return date is after the
+         * due date.
+         */
+        int chargeableDaysAfter(LocalDate dueDate, LocalDate returnDate) {
+            int year = dueDate.getYear();
+            int from = dueDate.getDayOfYear(); // zero-based index of the following day
+            int count = 0;
+            while (true) {
+                HolidayCalendar.YearTable table = table(year);
+                if (year == returnDate.getYear()) {
+                    return count + table.chargeableBetween(policy, from, returnDate.getDayOfYear());
+                }
+                count += table.chargeableBetween(policy, from, table.length);
+                year++;
+                from = 0;
+            }
+        }
+
+        private HolidayCalendar.YearTable table(int year) {
+            if (table == null || table.year != year) {
+                table = holidayCalendar.yearTable(year);
+            }
+            return table;
+        }
+    }
+}
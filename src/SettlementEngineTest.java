@@ -0,0 +1,138 @@
+import org.junit.Test;
+import java.io.StringWriter;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SettlementEngineTest {
+
+    private final ITool[] tools = {
+        new Tool("LADW", "Ladder", "Werner"),
+        new Tool("CHNS", "Chainsaw", "Stihl"),
+        new Tool("JAKD", "Jackhammer", "DeWalt"),
+        new Tool("JAKR", "Jackhammer", "Ridgid")
+    };
+    private final SettlementEngine engine = new SettlementEngine();
+
+    @Test
+    public void testLateReturnOverLaborDay() {
+        // Due Friday 2024-08-30, back the Wednesday after Labor Day
+        RentalAgreement agreement = new RentalAgreement(tools[3], 4, 10, LocalDate.of(2024, 8, 26));
+        assertEquals(LocalDate.of(2024, 8, 30), agreement.getDueDate());
+        Settlement settlement = engine.settle(new RentalReturn(agreement, LocalDate.of(2024, 9, 4), Money.ofDollars(25.00)));
+
+        // The weekend and Labor Day are free for a jackhammer: Tuesday and Wednesday are charged
+        assertEquals(5, settlement.getLateDays());
+        assertEquals(2, settlement.getLateChargeDays());
+        assertEquals(598, settlement.getLateChargeCents());
+        assertEquals(agreement.getFinalChargeCents() + 598 + 2500, settlement.getTotalChargeCents());
+
+        // On time and early returns owe the rental charge only
+        Settlement onTime = engine.settle(new RentalReturn(agreement, agreement.getDueDate()));
+        assertEquals(0, onTime.getLateDays());
+        assertEquals(agreement.getFinalChargeCents(), onTime.getTotalChargeCents());
+        assertEquals(0, engine.settle(new RentalReturn(agreement, LocalDate.of(2024, 8, 27))).getLateChargeDays());
+
+        Exception early = assertThrows(IllegalArgumentException.class,
+                () -> engine.settle(new RentalReturn(agreement, LocalDate.of(2024, 8, 25))));
+        assertEquals("Return date must not be before the checkout date.", early.getMessage());
+        Exception batch = assertThrows(IllegalArgumentException.class, () -> engine.settleAll(List.of(
+                new RentalReturn(agreement, LocalDate.of(2024, 9, 4)),
+                new RentalReturn(agreement, LocalDate.of(2024, 9, 4), Money.ofCents(-1)))));
+        assertEquals("Return 1: Damage charge must not be negative.", batch.getMessage());
+    }
+
+    @Test
+    public void testBatchMatchesSingleSettlementsAndDayByDay() throws Exception {
+        Random random = new Random(24);
+        HolidayCalendar[] calendars = {HolidayCalendar.DEFAULT, HolidayCalendar.US_FEDERAL};
+        List<RentalReturn> returns = new ArrayList<>();
+        for (int i = 0; i < 20_000; i++) {
+            ITool tool = tools[random.nextInt(tools.length)];
+            RentalAgreement agreement = PricingEngine.DEFAULT.price(tool, 1 + random.nextInt(30), random.nextInt(101),
+                    LocalDate.of(2023, 1, 1).plusDays(random.nextInt(2 * 365)), calendars[random.nextInt(calendars.length)]);
+            int lateness = random.nextInt(4) == 0 ? random.nextInt(400) : random.nextInt(10) - 5;
+            LocalDate returnDate = agreement.getDueDate().plusDays(lateness);
+            if (returnDate.isBefore(agreement.getCheckoutDate())) {
+                returnDate = agreement.getCheckoutDate();
+            }
+            returns.add(new RentalReturn(agreement, returnDate, Money.ofCents(random.nextInt(3) == 0 ? random.nextInt(10_000) : 0)));
+        }
+
+        StringWriter out = new StringWriter();
+        List<Settlement> settlements = engine.settleAll(returns, out);
+        assertEquals(returns.size(), settlements.size());
+        for (int i = 0; i < returns.size(); i++) {
+            RentalReturn rentalReturn = returns.get(i);
+            Settlement settlement = settlements.get(i);
+            assertSame(rentalReturn, settlement.getReturn());
+
+            // Walk the late days one at a time
+            RentalAgreement agreement = rentalReturn.getAgreement();
+            int lateChargeDays = 0;
+            for (LocalDate date = agreement.getDueDate().plusDays(1); !date.isAfter(rentalReturn.getReturnDate());
+                 date = date.plusDays(1)) {
+                if (agreement.getHolidayCalendar().isChargeable(date, agreement.getTool())) {
+                    lateChargeDays++;
+                }
+            }
+            String context = rentalReturn.toString();
+            assertEquals(lateChargeDays, settlement.getLateChargeDays(), context);
+            assertEquals(lateChargeDays * agreement.getTool().getDailyChargeMoney().getCents(),
+                    settlement.getLateChargeCents(), context);
+            Settlement single = engine.settle(rentalReturn);
+            assertEquals(single.getLateChargeDays(), settlement.getLateChargeDays(), context);
+            assertEquals(single.getTotalChargeCents(), settlement.getTotalChargeCents(), context);
+        }
+
+        // One header and one row per return, grouped by tool type
+        String[] lines = out.toString().split("\n");
+        assertEquals(Settlement.CSV_HEADER.trim(), lines[0]);
+        assertEquals(returns.size() + 1, lines.length);
+        String previousType = "";
+        for (int i = 1; i < lines.length; i++) {
+            String type = lines[i].split(",")[1];
+            assertTrue(type.compareTo(previousType) >= 0, lines[i]);
+            previousType = type;
+        }
+
+        // Settling without output gives the same settlements
+        List<Settlement> unwritten = engine.settleAll(returns);
+        for (int i = 0; i < returns.size(); i++) {
+            assertEquals(settlements.get(i).getTotalChargeCents(), unwritten.get(i).getTotalChargeCents());
+        }
+    }
+
+    @Test
+    public void testReturnsMoveTheEndOfTheReservation() {
+        Inventory inventory = new Inventory();
+        inventory.addTool("JAKR", 1);
+        inventory.addTool("LADW", 1);
+        Checkout checkout = new Checkout(PricingEngine.DEFAULT, null, inventory);
+        SettlementEngine reserving = new SettlementEngine(inventory);
+
+        // Late: the unit stays reserved through the return date
+        RentalAgreement late = checkout.checkoutTool(tools[3], 4, 0, LocalDate.of(2024, 8, 26));
+        LocalDate back = LocalDate.of(2024, 9, 4);
+        assertEquals(2, reserving.settle(new RentalReturn(late, back)).getLateChargeDays());
+        assertEquals(back, inventory.getReservation(late.getReservation().getId()).getLastDay());
+        assertEquals(0, inventory.countFreeUnits("JAKR", back, back));
+        assertEquals(1, inventory.countFreeUnits("JAKR", back.plusDays(1), back.plusDays(1)));
+
+        // Early: the remaining days are free again
+        RentalAgreement early = checkout.checkoutTool(tools[0], 10, 0, LocalDate.of(2024, 9, 2));
+        reserving.settleAll(List.of(new RentalReturn(early, LocalDate.of(2024, 9, 4))));
+        assertEquals(LocalDate.of(2024, 9, 4), inventory.getReservation(early.getReservation().getId()).getLastDay());
+        checkout.checkoutTool(tools[0], 3, 0, LocalDate.of(2024, 9, 5));
+
+        // Late, but the unit was taken again after the due date: the late charge stands
+        RentalAgreement taken = checkout.checkoutTool(tools[3], 2, 0, LocalDate.of(2024, 9, 9));
+        RentalAgreement next = checkout.checkoutTool(tools[3], 2, 0, taken.getDueDate().plusDays(1));
+        Settlement settlement = reserving.settle(new RentalReturn(taken, next.getDueDate()));
+        assertTrue(settlement.getLateChargeDays() > 0);
+        assertEquals(taken.getDueDate(), inventory.getReservation(taken.getReservation().getId()).getLastDay());
+        assertEquals(next.getDueDate(), inventory.getReservation(next.getReservation().getId()).getLastDay());
+    }
+}
@@ -0,0 +1,320 @@
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The ShardCluster class runs a sharded checkout cluster on the local machine, for testing
+ * rebalancing and for sizing. Every node is a ShardServer on a loopback port, either in this
+ * JVM or in a JVM of its own started with "ToolRentalApplication shard", and a
+ * ShardedCheckout routes checkouts to them. Nodes can be added and removed at any time; the
+ * checkout moves the affected tools as they join and leave.
+ *
+ * A child JVM runs the same Java installation and class path as the current one, and exits
+ * when its standard input is closed, so children do not outlive a cluster that is closed or
+ * a parent that dies.
+ */
+public final class ShardCluster implements Closeable {
+
+    static final String LISTENING_PREFIX = "Serving shard on port ";
+
+    private static final Duration WARM_UP = Duration.ofSeconds(1);
+
+    private final ShardedCheckout checkout;
+    private final boolean separateProcesses;
+    private final Map<String, Node> nodes = new LinkedHashMap<>();
+    private int nextNode = 1;
+
+    /**
+     * Constructor for ShardCluster. The cluster starts without nodes.
+     *
+     * @param toolCatalog The tools to stock on the nodes.
+     * @param unitsPerTool The number of units of each tool.
+     * @param separateProcesses Whether every node runs in a JVM of its own.
+     */
+    public ShardCluster(ToolCatalog toolCatalog, int unitsPerTool, boolean separateProcesses) {
+        this.checkout = new ShardedCheckout(toolCatalog, unitsPerTool);
+        this.separateProcesses = separateProcesses;
+    }
+
+    /**
+     * @return The checkout that routes to the nodes.
+     */
+    public ShardedCheckout getCheckout() {
+        return checkout;
+    }
+
+    /**
+     * @return The ids of the running nodes, in the order they were added.
+     */
+    public synchronized List<String> getNodes() {
+        return List.copyOf(nodes.keySet());
+    }
+
+    /**
+     * Starts a node and adds it to the ring.
+     *
+     * @return The new node's id.
+     * @throws IOException If the node cannot be started or the tools cannot be moved to it.
+     */
+    public synchronized String addNode() throws IOException {
+        String id = "node-" + nextNode++;
+        Node node = separateProcesses ? startProcess() : startInProcess();
+        try {
+            checkout.addShard(id, node.address);
+        } catch (IOException | RuntimeException e) {
+            node.stop();
+            throw e;
+        }
+        nodes.put(id, node);
+        return id;
+    }
+
+    /**
+     * Removes a node from the ring, moving its tools to the other nodes, and stops it.
+     *
+     * @param id The node's id.
+     * @throws IOException If the tools cannot be moved; the node then keeps running.
+     * @throws IllegalArgumentException If there is no such node.
+     * @throws IllegalStateException If it is the last node.
+     */
+    public synchronized void removeNode(String id) throws IOException {
+        Node node = nodes.get(id);
+        if (node == null) {
+            throw new IllegalArgumentException("Unknown node: " + id);
+        }
+        checkout.removeShard(id);
+        nodes.remove(id);
+        node.stop();
+    }
+
+    /**
+     * Disconnects the checkout and stops every node.
+     */
+    @Override
+    public synchronized void close() {
+        checkout.close();
+        for (Node node : nodes.values()) {
+            node.stop();
+        }
+        nodes.clear();
+    }
+
+    private Node startInProcess() throws IOException {
+        ShardServer server = new ShardServer();
+        server.start(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        return new Node(new InetSocketAddress(InetAddress.getLoopbackAddress(), server.getPort()), server, null);
+    }
+
+    private Node startProcess() throws IOException {
+        List<String> command = List.of(
+                Path.of(System.getProperty("java.home"), "bin", "java").toString(),
+                "-cp", System.getProperty("java.class.path"),
+                "ToolRentalApplication", "shard", "0");
+        Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+        BufferedReader output = new BufferedReader(new InputStreamReader(process.getInputStream(),
+                StandardCharsets.UTF_8));
+        String line = output.readLine();
+        if (line == null || !line.startsWith(LISTENING_PREFIX)) {
+            process.destroyForcibly();
+            throw new IOException("Shard process did not start: " + line);
+        }
+        int port = Integer.parseInt(line.substring(LISTENING_PREFIX.length()).trim());
+        // Keep draining the child's output so that it can never block on a full pipe
+        Thread.ofVirtual().start(() -> {
+            try {
+                process.getInputStream().transferTo(OutputStream.nullOutputStream());
+            } catch (IOException e) {
+                // The child exited
+            }
+        });
+        return new Node(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), null, process);
+    }
+
+    /**
+     * Measures checkout throughput with one node, then with each node added up to maxNodes.
+     * Concurrent clients send batches of checkouts of random tools back to back for a
+     * second of warm-up and then the given duration at every size. Every node added also moves the tools it takes over,
+     * and the move is timed.
+     *
+     * @param maxNodes The largest number of nodes.
+     * @param toolCount The number of tools in the catalog.
+     * @param clients The number of concurrent clients.
+     * @param batchSize The number of checkouts per batch.
+     * @param duration How long to measure at every size.
+     * @param separateProcesses Whether every node runs in a JVM of its own.
+     * @return One step per cluster size.
+     * @throws IOException If a node cannot be started.
+     * @throws InterruptedException If interrupted while waiting for the clients.
+     */
+    public static List<Step> measureScaling(int maxNodes, int toolCount, int clients, int batchSize,
+                                            Duration duration, boolean separateProcesses)
+            throws IOException, InterruptedException {
+        if (maxNodes < 1 || toolCount < 1 || clients < 1 || batchSize < 1) {
+            throw new IllegalArgumentException("Nodes, tools, clients and batch size must be 1 or more.");
+        }
+        String[][] types = {{"Ladder", "Werner"}, {"Chainsaw", "Stihl"}, {"Jackhammer", "Ridgid"}};
+        List<ITool> tools = new ArrayList<>(toolCount);
+        for (int i = 0; i < toolCount; i++) {
+            tools.add(new Tool(String.format("T%05d", i), types[i % types.length][0], types[i % types.length][1]));
+        }
+        ToolCatalog catalog = new ToolCatalog(tools);
+        List<Step> steps = new ArrayList<>(maxNodes);
+        try (ShardCluster cluster = new ShardCluster(catalog, 64, separateProcesses)) {
+            for (int size = 1; size <= maxNodes; size++) {
+                Map<String, String> owners = new HashMap<>();
+                if (size > 1) {
+                    for (ITool tool : tools) {
+                        owners.put(tool.getToolCode(), cluster.checkout.ownerOf(tool.getToolCode()));
+                    }
+                }
+                long start = System.nanoTime();
+                cluster.addNode();
+                long rebalanceNanos = System.nanoTime() - start;
+                int moved = 0;
+                for (Map.Entry<String, String> owner : owners.entrySet()) {
+                    if (!owner.getValue().equals(cluster.checkout.ownerOf(owner.getKey()))) {
+                        moved++;
+                    }
+                }
+                long checkouts = runClients(cluster.checkout, tools, clients, batchSize, duration, size);
+                steps.add(new Step(size, size == 1 ? toolCount : moved, rebalanceNanos,
+                        checkouts * 1e9 / duration.toNanos()));
+            }
+        }
+        return steps;
+    }
+
+    // Returns the number of checkouts in batches sent and answered within the duration, after a warm-up
+    private static long runClients(ShardedCheckout checkout, List<ITool> tools, int clients, int batchSize,
+                                   Duration duration, int seed) throws InterruptedException {
+        long from = System.nanoTime() + WARM_UP.toNanos();
+        long until = from + duration.toNanos();
+        LocalDate first = LocalDate.of(2020, 1, 1);
+        List<Future<Long>> counts = new ArrayList<>(clients);
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int client = 0; client < clients; client++) {
+                SplittableRandom random = new SplittableRandom(seed * 1000L + client);
+                counts.add(executor.submit(() -> {
+                    long count = 0;
+                    long start;
+                    while ((start = System.nanoTime()) < until) {
+                        List<CheckoutRequest> batch = new ArrayList<>(batchSize);
+                        for (int i = 0; i < batchSize; i++) {
+                            batch.add(new CheckoutRequest(tools.get(random.nextInt(tools.size())),
+                                    1 + random.nextInt(7), random.nextInt(51), first.plusDays(random.nextInt(20 * 365))));
+                        }
+                        checkout.checkoutAll(batch);
+                        if (start >= from && System.nanoTime() <= until) {
+                            count += batchSize;
+                        }
+                    }
+                    return count;
+                }));
+            }
+        }
+        long total = 0;
+        for (Future<Long> count : counts) {
+            try {
+                total += count.get();
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Cluster client failed", e.getCause());
+            }
+        }
+        return total;
+    }
+
+    /**
+     * The Node nested class is one running node: a server in this JVM or a child process.
+     */
+    private static final class Node {
+        final InetSocketAddress address;
+        final ShardServer server;
+        final Process process;
+
+        Node(InetSocketAddress address, ShardServer server, Process process) {
+            this.address = address;
+            this.server = server;
+            this.process = process;
+        }
+
+        void stop() {
+            if (server != null) {
+                server.close();
+                return;
+            }
+            try {
+                process.getOutputStream().close();
+                if (!process.waitFor(5, TimeUnit.SECONDS)) {
+                    process.destroyForcibly();
+                }
+            } catch (IOException e) {
+                process.destroyForcibly();
+            } catch (InterruptedException e) {
+                process.destroyForcibly();
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * The Step nested class is the measurement at one cluster size.
+     */
+    public static final class Step {
+        private final int nodes;
+        private final int movedTools;
+        private final long rebalanceNanos;
+        private final double checkoutsPerSecond;
+
+        Step(int nodes, int movedTools, long rebalanceNanos, double checkoutsPerSecond) {
+            this.nodes = nodes;
+            this.movedTools = movedTools;
+            this.rebalanceNanos = rebalanceNanos;
+            this.checkoutsPerSecond = checkoutsPerSecond;
+        }
+
+        public int getNodes() {
+            return nodes;
+        }
+
+        /**
+         * @return The number of tools moved to the node added at this step; all of them for
+         *         the first node.
+         */
+        public int getMovedTools() {
+            return movedTools;
+        }
+
+        public long getRebalanceNanos() {
+            return rebalanceNanos;
+        }
+
+        public double getCheckoutsPerSecond() {
+            return checkoutsPerSecond;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d node(s): %.0f checkouts/s, %d tools moved in %.1f ms", nodes, checkoutsPerSecond,
+                    movedTools, rebalanceNanos / 1e6);
+        }
+    }
+}
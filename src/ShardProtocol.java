@@ -0,0 +1,180 @@
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The ShardProtocol class defines the binary protocol between ShardedCheckout and the
+ * ShardServer nodes. Every message is a frame: a big-endian int with the length of the rest,
+ * then the payload. Requests start with an opcode byte and responses with a status byte, OK
+ * or ERROR followed by the error message. Strings are written with DataOutput.writeUTF and
+ * dates as int epoch days.
+ *
+ * Payloads:
+ * <pre>
+ * CHECKOUT request   int count, then per checkout:
+ *                      UTF tool code, int rental days, int discount percent,
+ *                      int checkout date, UTF holiday calendar region
+ *          response  OK, int count, then per checkout an agreement record
+ * STOCK request      int count, then per tool a stock record
+ *       response     OK
+ * UNSTOCK request    int count, then per tool a UTF tool code
+ *         response   OK, int count, then per tool its stock record
+ * CHANGE request     UTF tool code, int unit, int checkout date, int last reserved day,
+ *                    int rental days, int discount percent, UTF holiday calendar region,
+ *                    int new rental days
+ *        response    OK, then an agreement record
+ *
+ * agreement record   AGREEMENT, int due date, int charge days, long pre-discount cents,
+ *                      long discount cents, long final cents, long reservation id, int unit,
+ *                      long daily charge cents, byte charging flags, see PricedTool
+ *                    or REJECTED, UTF error
+ * stock record       UTF tool code, UTF tool type, UTF brand, int units,
+ *                    int reservation count, then per reservation:
+ *                      long id, int unit, int first day, int last day
+ * </pre>
+ *
+ * A connection may send any number of requests without waiting; the node answers them in
+ * order. A rejected checkout or change has no effect, and neither has a request answered
+ * with ERROR.
+ */
+final class ShardProtocol {
+
+    static final byte CHECKOUT = 1;
+    static final byte STOCK = 2;
+    static final byte UNSTOCK = 3;
+    static final byte CHANGE = 4;
+
+    static final byte OK = 0;
+    static final byte ERROR = 1;
+
+    static final byte AGREEMENT = 0;
+    static final byte REJECTED = 1;
+
+    static final int MAX_FRAME_LENGTH = 1 << 24;
+    // The most checkouts or tools sent in one frame; larger batches are split into several
+    static final int MAX_BATCH = 512;
+
+    private ShardProtocol() {
+    }
+
+    /**
+     * Reads the next frame.
+     *
+     * @return The frame's payload, or null if the stream ended between frames.
+     * @throws IOException If the stream fails, ends inside a frame or the frame is too long.
+     */
+    static DataInputStream readFrame(DataInputStream in) throws IOException {
+        int length;
+        try {
+            length = in.readInt();
+        } catch (EOFException e) {
+            return null;
+        }
+        if (length < 1 || length > MAX_FRAME_LENGTH) {
+            throw new IOException("Invalid frame length: " + length);
+        }
+        byte[] payload = new byte[length];
+        in.readFully(payload);
+        return new DataInputStream(new ByteArrayInputStream(payload));
+    }
+
+    static void writeStock(DataOutput out, Stock stock) throws IOException {
+        ITool tool = stock.getTool();
+        out.writeUTF(tool.getToolCode());
+        out.writeUTF(tool.getToolType());
+        out.writeUTF(tool.getBrand());
+        out.writeInt(stock.getUnits());
+        out.writeInt(stock.getReservations().size());
+        for (Inventory.Reservation reservation : stock.getReservations()) {
+            out.writeLong(reservation.getId());
+            out.writeInt(reservation.getUnit());
+            out.writeInt(Math.toIntExact(reservation.getFirstDay().toEpochDay()));
+            out.writeInt(Math.toIntExact(reservation.getLastDay().toEpochDay()));
+        }
+    }
+
+    static Stock readStock(DataInput in) throws IOException {
+        String toolCode = in.readUTF();
+        ITool tool = new Tool(toolCode, in.readUTF(), in.readUTF());
+        int units = in.readInt();
+        int count = in.readInt();
+        List<Inventory.Reservation> reservations = new ArrayList<>(Math.min(count, 1024));
+        for (int i = 0; i < count; i++) {
+            reservations.add(new Inventory.Reservation(in.readLong(), toolCode, in.readInt(), in.readInt(), in.readInt()));
+        }
+        return new Stock(tool, units, reservations);
+    }
+
+    /**
+     * The Stock nested class is a tool as it moves between nodes: the tool, its number of
+     * units and its reservations.
+     */
+    static final class Stock {
+        private final ITool tool;
+        private final int units;
+        private final List<Inventory.Reservation> reservations;
+
+        Stock(ITool tool, int units, List<Inventory.Reservation> reservations) {
+            this.tool = tool;
+            this.units = units;
+            this.reservations = reservations;
+        }
+
+        ITool getTool() {
+            return tool;
+        }
+
+        int getUnits() {
+            return units;
+        }
+
+        List<Inventory.Reservation> getReservations() {
+            return reservations;
+        }
+    }
+
+    /**
+     * The FrameOutput nested class buffers one frame's payload so that its length can be
+     * written ahead of it. It is reused from frame to frame.
+     */
+    static final class FrameOutput extends DataOutputStream {
+        private final ByteArrayOutputStream buffer;
+
+        FrameOutput() {
+            this(new ByteArrayOutputStream(4096));
+        }
+
+        private FrameOutput(ByteArrayOutputStream buffer) {
+            super(buffer);
+            this.buffer = buffer;
+        }
+
+        /**
+         * Discards the payload written so far.
+         */
+        void reset() {
+            buffer.reset();
+            written = 0;
+        }
+
+        /**
+         * Writes the frame, length first, and starts the next one.
+         */
+        void writeTo(DataOutputStream out) throws IOException {
+            if (buffer.size() > MAX_FRAME_LENGTH) {
+                reset();
+                throw new IOException("Frame is too long.");
+            }
+            out.writeInt(buffer.size());
+            buffer.writeTo(out);
+            reset();
+        }
+    }
+}
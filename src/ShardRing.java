@@ -0,0 +1,160 @@
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * The ShardRing class assigns tool codes to shards by consistent hashing. Every shard is
+ * placed on a 64-bit hash ring at a fixed number of points, and a tool code belongs to the
+ * shard of the first point at or after the code's hash, wrapping around. Adding a shard only
+ * takes over the codes that now hash closest to its points, and removing one only hands its
+ * own codes to the next points, so about 1/n of the codes move when the n-th shard joins and
+ * no code moves between two shards that stay.
+ *
+ * Rings are immutable; withShard and withoutShard return a new ring.
+ */
+public final class ShardRing {
+
+    /**
+     * The default number of points per shard. With 128 points the busiest of a handful of
+     * shards usually owns within about 20% of its fair share of the codes.
+     */
+    public static final int DEFAULT_POINTS_PER_SHARD = 128;
+
+    private final List<String> shards;
+    private final int pointsPerShard;
+    // Sorted point hashes, and the index into shards of the shard at each point
+    private final long[] points;
+    private final int[] owners;
+
+    /**
+     * Constructor for ShardRing with the default number of points per shard.
+     *
+     * @param shards The shard ids.
+     */
+    public ShardRing(Collection<String> shards) {
+        this(shards, DEFAULT_POINTS_PER_SHARD);
+    }
+
+    /**
+     * Constructor for ShardRing.
+     *
+     * @param shards The shard ids.
+     * @param pointsPerShard The number of points each shard is placed at, 1 or more.
+     * @throws IllegalArgumentException If a shard id is repeated or pointsPerShard is less than 1.
+     */
+    public ShardRing(Collection<String> shards, int pointsPerShard) {
+        if (pointsPerShard < 1) {
+            throw new IllegalArgumentException("Points per shard must be 1 or more.");
+        }
+        this.shards = List.copyOf(shards);
+        this.pointsPerShard = pointsPerShard;
+        if (this.shards.stream().distinct().count() != this.shards.size()) {
+            throw new IllegalArgumentException("Shard ids must be unique.");
+        }
+
+        // Sort the points by hash; a point's shard is its index divided by pointsPerShard
+        int count = this.shards.size() * pointsPerShard;
+        long[] hashes = new long[count];
+        Integer[] order = new Integer[count];
+        for (int shard = 0; shard < this.shards.size(); shard++) {
+            for (int i = 0; i < pointsPerShard; i++) {
+                int point = shard * pointsPerShard + i;
+                hashes[point] = hash(this.shards.get(shard) + "#" + i);
+                order[point] = point;
+            }
+        }
+        Arrays.sort(order, (a, b) -> hashes[a] != hashes[b] ? Long.compare(hashes[a], hashes[b])
+                                                            : Integer.compare(a, b));
+        this.points = new long[count];
+        this.owners = new int[count];
+        for (int i = 0; i < count; i++) {
+            points[i] = hashes[order[i]];
+            owners[i] = order[i] / pointsPerShard;
+        }
+    }
+
+    /**
+     * @return The shard ids, in the order they were given.
+     */
+    public List<String> getShards() {
+        return shards;
+    }
+
+    public boolean isEmpty() {
+        return shards.isEmpty();
+    }
+
+    /**
+     * Returns the shard that owns a tool code.
+     *
+     * @param toolCode The tool code.
+     * @return The owning shard's id.
+     * @throws IllegalStateException If the ring has no shards.
+     */
+    public String ownerOf(String toolCode) {
+        return shards.get(indexOf(toolCode));
+    }
+
+    /**
+     * @return The index in getShards of the shard that owns the tool code.
+     */
+    int indexOf(String toolCode) {
+        if (points.length == 0) {
+            throw new IllegalStateException("The ring has no shards.");
+        }
+        int index = Arrays.binarySearch(points, hash(toolCode));
+        if (index < 0) {
+            index = -index - 1;
+        }
+        return owners[index == points.length ? 0 : index];
+    }
+
+    /**
+     * @return A ring with the given shard added.
+     * @throws IllegalArgumentException If the shard is already on the ring.
+     */
+    public ShardRing withShard(String shard) {
+        List<String> changed = new ArrayList<>(shards);
+        changed.add(shard);
+        return new ShardRing(changed, pointsPerShard);
+    }
+
+    /**
+     * @return A ring without the given shard.
+     * @throws IllegalArgumentException If the shard is not on the ring.
+     */
+    public ShardRing withoutShard(String shard) {
+        List<String> changed = new ArrayList<>(shards);
+        if (!changed.remove(shard)) {
+            throw new IllegalArgumentException("Unknown shard: " + shard);
+        }
+        return new ShardRing(changed, pointsPerShard);
+    }
+
+    /**
+     * 64-bit FNV-1a over the UTF-8 bytes, finished with the MurmurHash3 mixer so that codes
+     * differing only in their last character still land far apart.
+     */
+    static long hash(String key) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            hash = (hash ^ (b & 0xff)) * 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return "ShardRing{" +
+               "shards=" + shards +
+               ", pointsPerShard=" + pointsPerShard +
+               '}';
+    }
+}
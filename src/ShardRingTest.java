@@ -0,0 +1,65 @@
+import org.junit.Test;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ShardRingTest {
+
+    private final String[] codes = IntStream.range(0, 20_000).mapToObj(i -> String.format("T%05d", i))
+                                            .toArray(String[]::new);
+
+    private Map<String, Integer> shares(ShardRing ring) {
+        Map<String, Integer> shares = new HashMap<>();
+        for (String code : codes) {
+            shares.merge(ring.ownerOf(code), 1, Integer::sum);
+        }
+        return shares;
+    }
+
+    @Test
+    public void testCodesSpreadEvenlyAndFewMove() {
+        ShardRing four = new ShardRing(List.of("node-1", "node-2", "node-3", "node-4"));
+        Map<String, Integer> shares = shares(four);
+        assertEquals(4, shares.size());
+        for (int share : shares.values()) {
+            assertTrue(share > codes.length * 0.18 && share < codes.length * 0.32, shares.toString());
+        }
+        // The owner depends on the shards, not on the order they were listed in
+        ShardRing reordered = new ShardRing(List.of("node-3", "node-1", "node-4", "node-2"));
+        for (String code : codes) {
+            assertEquals(four.ownerOf(code), reordered.ownerOf(code));
+        }
+
+        // A fifth shard only takes codes, about a fifth of them
+        ShardRing five = four.withShard("node-5");
+        int moved = 0;
+        for (String code : codes) {
+            if (!four.ownerOf(code).equals(five.ownerOf(code))) {
+                assertEquals("node-5", five.ownerOf(code), code);
+                moved++;
+            }
+        }
+        assertTrue(moved > codes.length * 0.12 && moved < codes.length * 0.28, "moved " + moved);
+
+        // Removing a shard only moves its own codes
+        ShardRing without = five.withoutShard("node-2");
+        for (String code : codes) {
+            if (!five.ownerOf(code).equals("node-2")) {
+                assertEquals(five.ownerOf(code), without.ownerOf(code), code);
+            }
+        }
+        assertEquals(List.of("node-1", "node-3", "node-4", "node-5"), without.getShards());
+    }
+
+    @Test
+    public void testInvalidRings() {
+        assertThrows(IllegalStateException.class, () -> new ShardRing(List.of()).ownerOf("LADW"));
+        assertThrows(IllegalArgumentException.class, () -> new ShardRing(List.of("a", "a")));
+        assertThrows(IllegalArgumentException.class, () -> new ShardRing(List.of("a")).withShard("a"));
+        assertThrows(IllegalArgumentException.class, () -> new ShardRing(List.of("a")).withoutShard("b"));
+        assertThrows(IllegalArgumentException.class, () -> new ShardRing(List.of("a"), 0));
+        assertEquals("a", new ShardRing(List.of("a"), 1).ownerOf("LADW"));
+    }
+}
@@ -0,0 +1,374 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * The ShardServer class is one node of a sharded checkout cluster. It owns the tools that
+ * ShardedCheckout routes to it, with their units and reservations in its own Inventory, and
+ * prices and reserves their checkouts with a Checkout over that inventory. Tools arrive and
+ * leave with the STOCK and UNSTOCK requests of ShardProtocol when the cluster rebalances.
+ *
+ * Reservation ids are this node's own and change when a tool moves, so a rental is found
+ * by its tool code, unit and first day when a CHANGE request extends or shortens it, and the
+ * request must name the rental's current last day, so that a stale copy of an agreement is
+ * rejected as it is by Checkout. purgeBefore forgets the rentals that have ended. A
+ * checkout or change that fails for any reason is REJECTED on its own, and a request that
+ * fails as a whole is answered with an ERROR and changes nothing, so the connection stays
+ * usable either way.
+ *
+ * Each connection is served on its own virtual thread. Requests on a connection are handled
+ * in order, and responses are flushed once no further request is already buffered, so a
+ * client that pipelines several batches gets their responses back in as few writes.
+ */
+public final class ShardServer implements Closeable {
+
+    private final Inventory inventory = new Inventory();
+    private final Map<String, ITool> tools = new ConcurrentHashMap<>();
+    private final Checkout checkout = new Checkout(PricingEngine.DEFAULT, null, inventory);
+    private final Map<RentalKey, Long> reservationIds = new ConcurrentHashMap<>();
+    private final Set<Socket> connections = ConcurrentHashMap.newKeySet();
+    private ServerSocket serverSocket;
+    private ExecutorService executor;
+
+    /**
+     * Starts serving on the given address.
+     *
+     * @param address The address to listen on; port 0 picks a free port.
+     * @throws IOException If the server socket cannot be bound.
+     */
+    public synchronized void start(InetSocketAddress address) throws IOException {
+        if (serverSocket != null) {
+            throw new IllegalStateException("Server is already started.");
+        }
+        ServerSocket socket = new ServerSocket();
+        socket.bind(address, 64);
+        serverSocket = socket;
+        executor = Executors.newVirtualThreadPerTaskExecutor();
+        executor.submit(() -> accept(socket));
+    }
+
+    /**
+     * @return The port the server listens on.
+     */
+    public synchronized int getPort() {
+        if (serverSocket == null) {
+            throw new IllegalStateException("Server is not started.");
+        }
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * @return The number of tools this node owns.
+     */
+    public int getToolCount() {
+        return tools.size();
+    }
+
+    /**
+     * Stops the server and closes its connections.
+     */
+    @Override
+    public synchronized void close() {
+        if (serverSocket != null) {
+            closeQuietly(serverSocket);
+            for (Socket connection : connections) {
+                closeQuietly(connection);
+            }
+            executor.close();
+            serverSocket = null;
+            executor = null;
+        }
+    }
+
+    private void accept(ServerSocket socket) {
+        while (!socket.isClosed()) {
+            try {
+                Socket connection = socket.accept();
+                connection.setTcpNoDelay(true);
+                connections.add(connection);
+                executor.submit(() -> serve(connection));
+            } catch (IOException e) {
+                // Closed by close(), or a connection that failed while being accepted
+            }
+        }
+    }
+
+    private void serve(Socket connection) {
+        try (connection) {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(connection.getInputStream(), 1 << 16));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(connection.getOutputStream(), 1 << 16));
+            ShardProtocol.FrameOutput response = new ShardProtocol.FrameOutput();
+            DataInputStream request;
+            while ((request = ShardProtocol.readFrame(in)) != null) {
+                try {
+                    handle(request, response);
+                } catch (RuntimeException e) {
+                    response.reset();
+                    response.writeByte(ShardProtocol.ERROR);
+                    response.writeUTF(message(e));
+                }
+                response.writeTo(out);
+                if (in.available() == 0) {
+                    out.flush();
+                }
+            }
+        } catch (IOException e) {
+            // The client went away or sent a malformed frame; drop the connection
+        } finally {
+            connections.remove(connection);
+        }
+    }
+
+    private void handle(DataInputStream request, ShardProtocol.FrameOutput response) throws IOException {
+        byte opcode = request.readByte();
+        switch (opcode) {
+            case ShardProtocol.CHECKOUT -> checkout(request, response);
+            case ShardProtocol.STOCK -> stock(request, response);
+            case ShardProtocol.UNSTOCK -> unstock(request, response);
+            case ShardProtocol.CHANGE -> change(request, response);
+            default -> throw new IllegalArgumentException("Unknown opcode: " + opcode);
+        }
+    }
+
+    private void checkout(DataInputStream request, ShardProtocol.FrameOutput response) throws IOException {
+        int count = request.readInt();
+        response.writeByte(ShardProtocol.OK);
+        response.writeInt(count);
+        for (int i = 0; i < count; i++) {
+            String toolCode = request.readUTF();
+            int rentalDays = request.readInt();
+            int discountPercent = request.readInt();
+            LocalDate checkoutDate = LocalDate.ofEpochDay(request.readInt());
+            String region = request.readUTF();
+            RentalAgreement agreement = null;
+            try {
+                agreement = checkout.checkoutTool(stocked(toolCode), rentalDays, discountPercent, checkoutDate,
+                        HolidayCalendar.forRegion(region));
+                writeAgreement(response, agreement);
+                Inventory.Reservation reservation = agreement.getReservation();
+                reservationIds.put(new RentalKey(reservation), reservation.getId());
+            } catch (RuntimeException e) {
+                // Nothing was written for the agreement yet; do not keep a unit the client never learns of
+                if (agreement != null) {
+                    inventory.release(agreement.getReservation());
+                }
+                response.writeByte(ShardProtocol.REJECTED);
+                response.writeUTF(message(e));
+            }
+        }
+    }
+
+    private void stock(DataInputStream request, ShardProtocol.FrameOutput response) throws IOException {
+        int count = request.readInt();
+        List<ShardProtocol.Stock> stocks = new ArrayList<>(Math.min(count, ShardProtocol.MAX_BATCH));
+        for (int i = 0; i < count; i++) {
+            ShardProtocol.Stock stock = ShardProtocol.readStock(request);
+            if (tools.containsKey(stock.getTool().getToolCode())) {
+                throw new IllegalArgumentException("Tool code is already stocked: " + stock.getTool().getToolCode());
+            }
+            stocks.add(stock);
+        }
+        // A reservation that cannot be restored fails the whole request, so undo the tools added for it
+        List<String> added = new ArrayList<>(stocks.size());
+        try {
+            for (ShardProtocol.Stock stock : stocks) {
+                String toolCode = stock.getTool().getToolCode();
+                inventory.addTool(toolCode, stock.getUnits());
+                added.add(toolCode);
+                for (Inventory.Reservation moved : stock.getReservations()) {
+                    Inventory.Reservation reservation = inventory.reserveUnit(toolCode, moved.getUnit(),
+                            moved.getFirstDay(), moved.getLastDay());
+                    reservationIds.put(new RentalKey(reservation), reservation.getId());
+                }
+            }
+        } catch (RuntimeException e) {
+            forget(inventory.removeTools(added));
+            throw e;
+        }
+        for (ShardProtocol.Stock stock : stocks) {
+            tools.put(stock.getTool().getToolCode(), stock.getTool());
+        }
+        response.writeByte(ShardProtocol.OK);
+    }
+
+    private void unstock(DataInputStream request, ShardProtocol.FrameOutput response) throws IOException {
+        int count = request.readInt();
+        List<String> toolCodes = new ArrayList<>(Math.min(count, ShardProtocol.MAX_BATCH));
+        Set<String> listed = new HashSet<>();
+        for (int i = 0; i < count; i++) {
+            String toolCode = request.readUTF();
+            if (!tools.containsKey(toolCode)) {
+                throw new IllegalArgumentException("Tool code is not stocked: " + toolCode);
+            }
+            if (!listed.add(toolCode)) {
+                throw new IllegalArgumentException("Tool code is listed twice: " + toolCode);
+            }
+            toolCodes.add(toolCode);
+        }
+        int[] units = new int[count];
+        for (int i = 0; i < count; i++) {
+            units[i] = inventory.getUnitCount(toolCodes.get(i));
+        }
+        Map<String, List<Inventory.Reservation>> reservations = inventory.removeTools(toolCodes);
+        forget(reservations);
+        response.writeByte(ShardProtocol.OK);
+        response.writeInt(count);
+        for (int i = 0; i < count; i++) {
+            ITool tool = tools.remove(toolCodes.get(i));
+            ShardProtocol.writeStock(response, new ShardProtocol.Stock(tool, units[i], reservations.get(toolCodes.get(i))));
+        }
+    }
+
+    private void change(DataInputStream request, ShardProtocol.FrameOutput response) throws IOException {
+        String toolCode = request.readUTF();
+        int unit = request.readInt();
+        int checkoutDay = request.readInt();
+        int lastDay = request.readInt();
+        int rentalDays = request.readInt();
+        int discountPercent = request.readInt();
+        String region = request.readUTF();
+        int changedRentalDays = request.readInt();
+        response.writeByte(ShardProtocol.OK);
+        try {
+            ITool tool = stocked(toolCode);
+            LocalDate checkoutDate = LocalDate.ofEpochDay(checkoutDay);
+            RentalKey key = new RentalKey(toolCode, unit, checkoutDay);
+            Long id = reservationIds.get(key);
+            Inventory.Reservation reservation = id == null ? null : inventory.getReservation(id);
+            if (reservation == null) {
+                if (id != null) {
+                    reservationIds.remove(key, id);
+                }
+                throw new IllegalArgumentException("No rental of unit " + unit + " of " + toolCode + " from "
+                        + checkoutDate + ".");
+            }
+            // The node keeps no agreements, so the client's copy is rebuilt from its terms and priced
+            // afresh; a copy taken before a later change no longer ends on the reservation's last day
+            HolidayCalendar holidayCalendar = HolidayCalendar.forRegion(region);
+            RentalCharges charges = PricingEngine.DEFAULT.calculate(tool, rentalDays, discountPercent, checkoutDate,
+                    holidayCalendar);
+            if (reservation.getLastDay().toEpochDay() != lastDay || !charges.getDueDate().equals(reservation.getLastDay())) {
+                throw new IllegalArgumentException("Reservation " + reservation.getId() + " is no longer current.");
+            }
+            RentalAgreement current = new RentalAgreement(tool, rentalDays, discountPercent, checkoutDate,
+                    holidayCalendar, charges, reservation);
+            writeAgreement(response, checkout.changeRentalDays(current, changedRentalDays));
+        } catch (RuntimeException e) {
+            response.writeByte(ShardProtocol.REJECTED);
+            response.writeUTF(message(e));
+        }
+    }
+
+    /**
+     * Stops tracking the rentals that ended before the given day, together with the day bitsets
+     * Inventory.purgeBefore drops, so that a long-running node does not keep every rental it
+     * ever served. Those rentals can no longer be changed on this node.
+     *
+     * @param day The first day to keep.
+     */
+    public void purgeBefore(LocalDate day) {
+        inventory.purgeBefore(day);
+        reservationIds.entrySet().removeIf(entry -> {
+            Inventory.Reservation reservation = inventory.getReservation(entry.getValue());
+            return reservation == null || reservation.getLastDay().isBefore(day);
+        });
+    }
+
+    private ITool stocked(String toolCode) {
+        ITool tool = tools.get(toolCode);
+        if (tool == null) {
+            throw new IllegalArgumentException("Tool code is not stocked: " + toolCode);
+        }
+        return tool;
+    }
+
+    // Converts every field first, so that a failure leaves no partial record in the response
+    private static void writeAgreement(ShardProtocol.FrameOutput response, RentalAgreement agreement) throws IOException {
+        int dueDay = Math.toIntExact(agreement.getDueDate().toEpochDay());
+        Inventory.Reservation reservation = agreement.getReservation();
+        response.writeByte(ShardProtocol.AGREEMENT);
+        response.writeInt(dueDay);
+        response.writeInt(agreement.getChargeDays());
+        response.writeLong(agreement.getPreDiscountChargeCents());
+        response.writeLong(agreement.getDiscountAmountCents());
+        response.writeLong(agreement.getFinalChargeCents());
+        response.writeLong(reservation.getId());
+        response.writeInt(reservation.getUnit());
+        response.writeLong(agreement.getDailyChargeMoney().getCents());
+        response.writeByte(PricedTool.flagsOf(agreement.getCharges().getPricedAttributes()));
+    }
+
+    private void forget(Map<String, List<Inventory.Reservation>> removed) {
+        for (List<Inventory.Reservation> reservations : removed.values()) {
+            for (Inventory.Reservation reservation : reservations) {
+                reservationIds.remove(new RentalKey(reservation), reservation.getId());
+            }
+        }
+    }
+
+    private static String message(RuntimeException e) {
+        return e.getMessage() != null ? e.getMessage() : e.toString();
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            // Nothing left to do with it
+        }
+    }
+
+    /**
+     * The RentalKey nested class identifies a rental on this node by what stays the same
+     * when its tool moves: the tool code, the unit and the first day.
+     */
+    private static final class RentalKey {
+        private final String toolCode;
+        private final int unit;
+        private final long firstDay;
+
+        RentalKey(Inventory.Reservation reservation) {
+            this(reservation.getToolCode(), reservation.getUnit(), reservation.getFirstDay().toEpochDay());
+        }
+
+        RentalKey(String toolCode, int unit, long firstDay) {
+            this.toolCode = toolCode;
+            this.unit = unit;
+            this.firstDay = firstDay;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof RentalKey)) {
+                return false;
+            }
+            RentalKey key = (RentalKey) other;
+            return unit == key.unit
+                && firstDay == key.firstDay
+                && toolCode.equals(key.toolCode);
+        }
+
+        @Override
+        public int hashCode() {
+            int h = toolCode.hashCode();
+            h = 31 * h + unit;
+            h = 31 * h + Long.hashCode(firstDay);
+            return h;
+        }
+    }
+}
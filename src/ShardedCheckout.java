@@ -0,0 +1,677 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * The ShardedCheckout class is a Checkout whose tools are partitioned across ShardServer
+ * nodes. A ShardRing maps every tool code to the node that owns the tool's units and
+ * reservations, and each checkout is sent to that node, which prices and reserves it.
+ *
+ * There is one connection per node. Requests are batched into frames of up to
+ * ShardProtocol.MAX_BATCH checkouts and pipelined: checkoutAll writes every frame for every
+ * node before waiting for any response, and a reader thread per connection matches the
+ * responses to the requests in order. Concurrent checkoutTool calls share the connections
+ * the same way.
+ *
+ * The catalog's tools are stocked when the first node joins. When a node joins or leaves, the
+ * tools whose owner changes are moved, with their reservations, from the old owner to the
+ * new one, and checkouts wait until the move is done. A node that can no longer be reached
+ * is taken off the ring with dropShard. Holiday calendars are sent by region name and must
+ * be registered on the nodes.
+ *
+ * Agreements carry a copy of their reservation; the reservation itself lives on the node,
+ * and changeRentalDays asks the node that owns the tool to extend or shorten it. A
+ * connection that fails is opened again for the next request to its node.
+ */
+public class ShardedCheckout extends Checkout implements Closeable {
+
+    private final ToolCatalog toolCatalog;
+    private final int unitsPerTool;
+    private final ReentrantReadWriteLock membership = new ReentrantReadWriteLock();
+    private final Map<String, Connection> connections = new ConcurrentHashMap<>();
+    private final ReentrantLock reconnecting = new ReentrantLock();
+    private volatile ShardRing ring = new ShardRing(List.of());
+
+    /**
+     * Constructor for ShardedCheckout. Nodes are added with addShard.
+     *
+     * @param toolCatalog The tools to stock on the nodes.
+     * @param unitsPerTool The number of units of each tool.
+     */
+    public ShardedCheckout(ToolCatalog toolCatalog, int unitsPerTool) {
+        super(PricingEngine.DEFAULT, null, null);
+        if (unitsPerTool < 1) {
+            throw new IllegalArgumentException("Unit count must be 1 or more.");
+        }
+        this.toolCatalog = toolCatalog;
+        this.unitsPerTool = unitsPerTool;
+    }
+
+    /**
+     * Connects to a node and moves to it the tools it now owns.
+     *
+     * @param shard The node's id on the ring.
+     * @param address The node's address.
+     * @throws IOException If the node cannot be reached or a move fails; the tools already
+     *         moved are moved back and the node is not added.
+     * @throws IllegalArgumentException If the id is already on the ring.
+     */
+    public void addShard(String shard, InetSocketAddress address) throws IOException {
+        membership.writeLock().lock();
+        try {
+            ShardRing next = ring.withShard(shard);
+            Connection joining = new Connection(shard, address);
+            try {
+                if (ring.isEmpty()) {
+                    List<ShardProtocol.Stock> stocks = new ArrayList<>();
+                    for (ITool tool : toolCatalog.getTools()) {
+                        stocks.add(new ShardProtocol.Stock(tool, unitsPerTool, List.of()));
+                    }
+                    joining.stock(stocks);
+                } else {
+                    List<Move> moves = new ArrayList<>();
+                    for (Map.Entry<String, List<String>> moving : changedOwners(ring, next).entrySet()) {
+                        addMoves(moves, connection(moving.getKey()), joining, moving.getValue());
+                    }
+                    moveAll(moves);
+                }
+            } catch (IOException | RuntimeException e) {
+                joining.close();
+                throw e;
+            }
+            connections.put(shard, joining);
+            ring = next;
+        } finally {
+            membership.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Moves a node's tools to the nodes that own them without it and disconnects from it.
+     *
+     * @param shard The node's id on the ring.
+     * @throws IOException If a move fails; the tools already moved are moved back and the
+     *         node stays on the ring.
+     * @throws IllegalArgumentException If the id is not on the ring.
+     * @throws IllegalStateException If it is the last node.
+     */
+    public void removeShard(String shard) throws IOException {
+        membership.writeLock().lock();
+        try {
+            ShardRing next = ring.withoutShard(shard);
+            if (next.isEmpty()) {
+                throw new IllegalStateException("The last shard cannot be removed.");
+            }
+            Connection leaving = connection(shard);
+            Map<String, List<String>> moving = new LinkedHashMap<>();
+            for (ITool tool : toolCatalog.getTools()) {
+                if (ring.ownerOf(tool.getToolCode()).equals(shard)) {
+                    moving.computeIfAbsent(next.ownerOf(tool.getToolCode()), s -> new ArrayList<>()).add(tool.getToolCode());
+                }
+            }
+            List<Move> moves = new ArrayList<>();
+            for (Map.Entry<String, List<String>> move : moving.entrySet()) {
+                addMoves(moves, leaving, connection(move.getKey()), move.getValue());
+            }
+            moveAll(moves);
+            connections.remove(shard);
+            ring = next;
+            leaving.close();
+        } finally {
+            membership.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Takes a node that can no longer be reached off the ring without moving its tools. The
+     * nodes that own the tools without it stock them afresh, with every unit free: the
+     * dropped node's reservations are lost.
+     *
+     * @param shard The node's id on the ring.
+     * @throws IOException If the tools cannot be stocked on another node; the tools already
+     *         stocked are taken back and the node stays on the ring.
+     * @throws IllegalArgumentException If the id is not on the ring.
+     * @throws IllegalStateException If it is the last node.
+     */
+    public void dropShard(String shard) throws IOException {
+        membership.writeLock().lock();
+        try {
+            ShardRing next = ring.withoutShard(shard);
+            if (next.isEmpty()) {
+                throw new IllegalStateException("The last shard cannot be removed.");
+            }
+            Map<String, List<String>> orphaned = new LinkedHashMap<>();
+            for (ITool tool : toolCatalog.getTools()) {
+                if (ring.ownerOf(tool.getToolCode()).equals(shard)) {
+                    orphaned.computeIfAbsent(next.ownerOf(tool.getToolCode()), s -> new ArrayList<>()).add(tool.getToolCode());
+                }
+            }
+            // Moves without a source: the tools are stocked on the target from the catalog
+            List<Move> restocks = new ArrayList<>();
+            for (Map.Entry<String, List<String>> restock : orphaned.entrySet()) {
+                addMoves(restocks, null, connection(restock.getKey()), restock.getValue());
+            }
+            List<Move> done = new ArrayList<>(restocks.size());
+            try {
+                for (Move restock : restocks) {
+                    List<ShardProtocol.Stock> stocks = new ArrayList<>(restock.toolCodes.size());
+                    for (String toolCode : restock.toolCodes) {
+                        stocks.add(new ShardProtocol.Stock(toolCatalog.getTool(toolCode), unitsPerTool, List.of()));
+                    }
+                    restock.target.stock(stocks);
+                    done.add(restock);
+                }
+            } catch (IOException | RuntimeException e) {
+                for (Move restock : done) {
+                    try {
+                        restock.target.unstock(restock.toolCodes);
+                    } catch (IOException | RuntimeException undo) {
+                        e.addSuppressed(undo);
+                    }
+                }
+                throw e;
+            }
+            Connection dropped = connections.remove(shard);
+            ring = next;
+            dropped.close();
+        } finally {
+            membership.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return The ids of the nodes, in the order they joined.
+     */
+    public List<String> getShards() {
+        return ring.getShards();
+    }
+
+    /**
+     * @return The id of the node that owns the tool code.
+     * @throws IllegalStateException If there are no nodes.
+     */
+    public String ownerOf(String toolCode) {
+        return ring.ownerOf(toolCode);
+    }
+
+    /**
+     * Checks out a tool on the node that owns it.
+     *
+     * @throws IllegalArgumentException If the node rejects the checkout, with its message.
+     * @throws UncheckedIOException If the node cannot be reached.
+     */
+    @Override
+    public RentalAgreement checkoutTool(ITool tool, int rentalDayCount, int discountPercent, LocalDate checkoutDate,
+                                        HolidayCalendar holidayCalendar) {
+        CheckoutResult result = checkoutAll(List.of(
+                new CheckoutRequest(tool, rentalDayCount, discountPercent, checkoutDate, holidayCalendar))).get(0);
+        if (!result.isSuccess()) {
+            throw new IllegalArgumentException(result.getError());
+        }
+        return result.getAgreement();
+    }
+
+    /**
+     * Checks out every request on the node that owns its tool. Requests for the same tool are
+     * handled in the order given.
+     *
+     * @param requests The checkout requests.
+     * @return One result per request, in the same order as the requests.
+     * @throws UncheckedIOException If a node cannot be reached.
+     */
+    public List<CheckoutResult> checkoutAll(List<CheckoutRequest> requests) {
+        CheckoutResult[] results = new CheckoutResult[requests.size()];
+        membership.readLock().lock();
+        try {
+            ShardRing current = ring;
+            List<String> shards = current.getShards();
+            // Bucket the request indexes by owner, keeping their order
+            int[] owners = new int[requests.size()];
+            int[] starts = new int[shards.size() + 1];
+            for (int i = 0; i < owners.length; i++) {
+                owners[i] = current.indexOf(requests.get(i).getTool().getToolCode());
+                starts[owners[i] + 1]++;
+            }
+            for (int shard = 0; shard < shards.size(); shard++) {
+                starts[shard + 1] += starts[shard];
+            }
+            int[] byOwner = new int[owners.length];
+            int[] next = Arrays.copyOf(starts, shards.size());
+            for (int i = 0; i < owners.length; i++) {
+                byOwner[next[owners[i]]++] = i;
+            }
+
+            List<CompletableFuture<Void>> responses = new ArrayList<>();
+            for (int shard = 0; shard < shards.size(); shard++) {
+                Connection connection = connection(shards.get(shard));
+                for (int from = starts[shard]; from < starts[shard + 1]; from += ShardProtocol.MAX_BATCH) {
+                    responses.add(connection.checkout(requests, byOwner, from,
+                            Math.min(from + ShardProtocol.MAX_BATCH, starts[shard + 1]), results));
+                }
+            }
+            for (CompletableFuture<Void> response : responses) {
+                await(response);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            membership.readLock().unlock();
+        }
+        return Collections.unmodifiableList(Arrays.asList(results));
+    }
+
+    /**
+     * Extends or shortens a rental on the node that owns its tool, which prices the changed
+     * days and moves the end of the reservation. An agreement without a reservation is only
+     * repriced, as by a Checkout without inventory.
+     *
+     * @throws IllegalArgumentException If the node rejects the change, with its message.
+     * @throws UncheckedIOException If the node cannot be reached.
+     */
+    @Override
+    public RentalAgreement changeRentalDays(RentalAgreement agreement, int rentalDayCount) {
+        if (agreement.getReservation() == null) {
+            return super.changeRentalDays(agreement, rentalDayCount);
+        }
+        CheckoutResult result;
+        membership.readLock().lock();
+        try {
+            result = await(connection(ring.ownerOf(agreement.getTool().getToolCode()))
+                    .change(agreement, rentalDayCount));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            membership.readLock().unlock();
+        }
+        if (!result.isSuccess()) {
+            throw new IllegalArgumentException(result.getError());
+        }
+        return result.getAgreement();
+    }
+
+    /**
+     * Disconnects from every node. The nodes keep running.
+     */
+    @Override
+    public void close() {
+        membership.writeLock().lock();
+        try {
+            for (Connection connection : connections.values()) {
+                connection.close();
+            }
+            connections.clear();
+            ring = new ShardRing(List.of());
+        } finally {
+            membership.writeLock().unlock();
+        }
+    }
+
+    // The connection to a node, opened again first if it has failed
+    private Connection connection(String shard) throws IOException {
+        Connection connection = connections.get(shard);
+        if (!connection.isFailed()) {
+            return connection;
+        }
+        reconnecting.lock();
+        try {
+            Connection current = connections.get(shard);
+            if (current != connection) {
+                return current;
+            }
+            connection.close();
+            Connection reconnected = new Connection(shard, connection.address);
+            connections.put(shard, reconnected);
+            return reconnected;
+        } finally {
+            reconnecting.unlock();
+        }
+    }
+
+    // The catalog's tool codes whose owner differs between the rings, by their current owner
+    private Map<String, List<String>> changedOwners(ShardRing from, ShardRing to) {
+        Map<String, List<String>> moving = new LinkedHashMap<>();
+        for (ITool tool : toolCatalog.getTools()) {
+            String owner = from.ownerOf(tool.getToolCode());
+            if (!owner.equals(to.ownerOf(tool.getToolCode()))) {
+                moving.computeIfAbsent(owner, s -> new ArrayList<>()).add(tool.getToolCode());
+            }
+        }
+        return moving;
+    }
+
+    // Splits a move into frames of up to MAX_BATCH tools
+    private static void addMoves(List<Move> moves, Connection source, Connection target, List<String> toolCodes) {
+        for (int from = 0; from < toolCodes.size(); from += ShardProtocol.MAX_BATCH) {
+            moves.add(new Move(source, target, toolCodes.subList(from, Math.min(from + ShardProtocol.MAX_BATCH,
+                    toolCodes.size()))));
+        }
+    }
+
+    // Makes every move, or if one fails, moves the tools already moved back where they were
+    private static void moveAll(List<Move> moves) throws IOException {
+        List<Move> done = new ArrayList<>(moves.size());
+        try {
+            for (Move move : moves) {
+                List<ShardProtocol.Stock> stocks = move.source.unstock(move.toolCodes);
+                try {
+                    move.target.stock(stocks);
+                } catch (IOException | RuntimeException e) {
+                    move.source.stock(stocks);
+                    throw e;
+                }
+                done.add(move);
+            }
+        } catch (IOException | RuntimeException e) {
+            for (Move move : done.reversed()) {
+                try {
+                    move.source.stock(move.target.unstock(move.toolCodes));
+                } catch (IOException | RuntimeException undo) {
+                    e.addSuppressed(undo);
+                }
+            }
+            throw e;
+        }
+    }
+
+    // Reads an agreement record; nodes price at the flat daily rate, so the clerk's discount is the one applied
+    private static CheckoutResult readAgreement(DataInputStream response, CheckoutRequest request) throws IOException {
+        if (response.readByte() != ShardProtocol.AGREEMENT) {
+            return CheckoutResult.failure(request, response.readUTF());
+        }
+        int dueDay = response.readInt();
+        int chargeDays = response.readInt();
+        long preDiscountCents = response.readLong();
+        long discountCents = response.readLong();
+        long finalCents = response.readLong();
+        Inventory.Reservation reservation = new Inventory.Reservation(response.readLong(),
+                request.getTool().getToolCode(), response.readInt(),
+                Math.toIntExact(request.getCheckoutDate().toEpochDay()), dueDay);
+        // The rate and flags the node priced with, which are the ones its agreement keeps
+        ToolAttributes.ToolTypeAttributes pricedAttributes = PricedTool.attributes(response.readLong(),
+                response.readByte());
+        RentalCharges charges = new RentalCharges(LocalDate.ofEpochDay(dueDay), chargeDays, preDiscountCents,
+                request.getDiscountPercent(), discountCents, finalCents, pricedAttributes);
+        return CheckoutResult.success(request, new RentalAgreement(request.getTool(), request.getRentalDayCount(),
+                request.getDiscountPercent(), request.getCheckoutDate(), request.getHolidayCalendar(), charges,
+                reservation));
+    }
+
+    private static <T> T await(CompletableFuture<T> response) {
+        try {
+            return response.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof IOException cause) {
+                throw new UncheckedIOException(cause);
+            }
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * The Move nested class is a batch of tools to move from one node to another.
+     */
+    private static final class Move {
+        final Connection source;
+        final Connection target;
+        final List<String> toolCodes;
+
+        Move(Connection source, Connection target, List<String> toolCodes) {
+            this.source = source;
+            this.target = target;
+            this.toolCodes = toolCodes;
+        }
+    }
+
+    /**
+     * Writes one request's payload into a frame.
+     */
+    private interface Encoder {
+        void encode(ShardProtocol.FrameOutput frame) throws IOException;
+    }
+
+    /**
+     * Reads the payload of an OK response.
+     */
+    private interface Decoder<T> {
+        T decode(DataInputStream response) throws IOException;
+    }
+
+    /**
+     * The Connection nested class is the pipelined connection to one node. Frames are written
+     * under a lock, in the order their responses are queued for, and a reader thread completes
+     * the queued responses as they arrive.
+     */
+    private static final class Connection implements Closeable {
+        private final String shard;
+        private final InetSocketAddress address;
+        private final Socket socket;
+        private final DataOutputStream out;
+        private final DataInputStream in;
+        private final ShardProtocol.FrameOutput frame = new ShardProtocol.FrameOutput();
+        private final ReentrantLock writeLock = new ReentrantLock();
+        private final Queue<Pending<?>> pending = new ConcurrentLinkedQueue<>();
+        private final Thread reader;
+        private volatile IOException failure;
+
+        Connection(String shard, InetSocketAddress address) throws IOException {
+            this.shard = shard;
+            this.address = address;
+            this.socket = new Socket();
+            try {
+                socket.setTcpNoDelay(true);
+                socket.connect(address, 5_000);
+                this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), 1 << 16));
+                this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), 1 << 16));
+            } catch (IOException e) {
+                socket.close();
+                throw e;
+            }
+            this.reader = Thread.ofVirtual().name("shard-" + shard + "-reader").start(this::read);
+        }
+
+        CompletableFuture<Void> checkout(List<CheckoutRequest> requests, int[] indexes, int from, int to,
+                                         CheckoutResult[] results) {
+            return send(frame -> {
+                frame.writeByte(ShardProtocol.CHECKOUT);
+                frame.writeInt(to - from);
+                for (int i = from; i < to; i++) {
+                    CheckoutRequest request = requests.get(indexes[i]);
+                    frame.writeUTF(request.getTool().getToolCode());
+                    frame.writeInt(request.getRentalDayCount());
+                    frame.writeInt(request.getDiscountPercent());
+                    frame.writeInt(Math.toIntExact(request.getCheckoutDate().toEpochDay()));
+                    frame.writeUTF(request.getHolidayCalendar().getName());
+                }
+            }, response -> {
+                if (response.readInt() != to - from) {
+                    throw new IOException("Shard " + shard + " answered a different number of checkouts.");
+                }
+                for (int i = from; i < to; i++) {
+                    results[indexes[i]] = readAgreement(response, requests.get(indexes[i]));
+                }
+                return null;
+            });
+        }
+
+        CompletableFuture<CheckoutResult> change(RentalAgreement agreement, int rentalDayCount) {
+            Inventory.Reservation reservation = agreement.getReservation();
+            return send(frame -> {
+                frame.writeByte(ShardProtocol.CHANGE);
+                frame.writeUTF(agreement.getTool().getToolCode());
+                frame.writeInt(reservation.getUnit());
+                frame.writeInt(Math.toIntExact(agreement.getCheckoutDate().toEpochDay()));
+                frame.writeInt(Math.toIntExact(reservation.getLastDay().toEpochDay()));
+                frame.writeInt(agreement.getRentalDays());
+                frame.writeInt(agreement.getDiscountPercent());
+                frame.writeUTF(agreement.getHolidayCalendar().getName());
+                frame.writeInt(rentalDayCount);
+            }, response -> readAgreement(response, new CheckoutRequest(agreement.getTool(), rentalDayCount,
+                    agreement.getDiscountPercent(), agreement.getCheckoutDate(), agreement.getHolidayCalendar())));
+        }
+
+        void stock(List<ShardProtocol.Stock> stocks) throws IOException {
+            for (int from = 0; from < stocks.size(); from += ShardProtocol.MAX_BATCH) {
+                List<ShardProtocol.Stock> batch = stocks.subList(from, Math.min(from + ShardProtocol.MAX_BATCH, stocks.size()));
+                awaitIo(send(frame -> {
+                    frame.writeByte(ShardProtocol.STOCK);
+                    frame.writeInt(batch.size());
+                    for (ShardProtocol.Stock stock : batch) {
+                        ShardProtocol.writeStock(frame, stock);
+                    }
+                }, response -> null));
+            }
+        }
+
+        List<ShardProtocol.Stock> unstock(List<String> toolCodes) throws IOException {
+            return awaitIo(send(frame -> {
+                frame.writeByte(ShardProtocol.UNSTOCK);
+                frame.writeInt(toolCodes.size());
+                for (String toolCode : toolCodes) {
+                    frame.writeUTF(toolCode);
+                }
+            }, response -> {
+                int count = response.readInt();
+                List<ShardProtocol.Stock> stocks = new ArrayList<>(Math.min(count, ShardProtocol.MAX_BATCH));
+                for (int i = 0; i < count; i++) {
+                    stocks.add(ShardProtocol.readStock(response));
+                }
+                return stocks;
+            }));
+        }
+
+        private <T> CompletableFuture<T> send(Encoder encoder, Decoder<T> decoder) {
+            Pending<T> request = new Pending<>(decoder);
+            writeLock.lock();
+            try {
+                if (failure != null) {
+                    request.completeExceptionally(failure);
+                    return request;
+                }
+                frame.reset();
+                encoder.encode(frame);
+                pending.add(request);
+                frame.writeTo(out);
+                out.flush();
+            } catch (IOException e) {
+                fail(e);
+            } finally {
+                writeLock.unlock();
+            }
+            return request;
+        }
+
+        private void read() {
+            // The request whose response is being read; fail cannot reach it as it has left the queue
+            Pending<?> request = null;
+            try {
+                DataInputStream response;
+                while ((response = ShardProtocol.readFrame(in)) != null) {
+                    request = pending.poll();
+                    if (request == null) {
+                        throw new IOException("Shard " + shard + " sent an unexpected response.");
+                    }
+                    if (response.readByte() == ShardProtocol.OK) {
+                        request.decode(response);
+                    } else {
+                        request.completeExceptionally(new IllegalStateException("Shard " + shard + ": "
+                                + response.readUTF()));
+                    }
+                    request = null;
+                }
+                throw new EOFException("Shard " + shard + " closed the connection.");
+            } catch (IOException e) {
+                failAll(request, e);
+            } catch (RuntimeException e) {
+                failAll(request, new IOException("Shard " + shard + " sent a malformed response.", e));
+            }
+        }
+
+        private void failAll(Pending<?> request, IOException e) {
+            if (request != null) {
+                request.completeExceptionally(e);
+            }
+            fail(e);
+        }
+
+        boolean isFailed() {
+            return failure != null;
+        }
+
+        private void fail(IOException e) {
+            if (failure == null) {
+                failure = e;
+            }
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+                // Already failed
+            }
+            writeLock.lock();
+            try {
+                Pending<?> request;
+                while ((request = pending.poll()) != null) {
+                    request.completeExceptionally(failure);
+                }
+            } finally {
+                writeLock.unlock();
+            }
+        }
+
+        private static <T> T awaitIo(CompletableFuture<T> response) throws IOException {
+            try {
+                return await(response);
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        }
+
+        @Override
+        public void close() {
+            fail(new IOException("Connection to shard " + shard + " is closed."));
+            try {
+                reader.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * The Pending nested class is a response that has been asked for but not yet read.
+     */
+    private static final class Pending<T> extends CompletableFuture<T> {
+        private final Decoder<T> decoder;
+
+        Pending(Decoder<T> decoder) {
+            this.decoder = decoder;
+        }
+
+        void decode(DataInputStream response) throws IOException {
+            complete(decoder.decode(response));
+        }
+    }
+}
@@ -0,0 +1,309 @@
+import org.junit.Test;
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ShardedCheckoutTest {
+
+    private final LocalDate july1 = LocalDate.of(2024, 7, 1);
+
+    private static ToolCatalog catalog(int size) {
+        String[][] types = {{"Ladder", "Werner"}, {"Chainsaw", "Stihl"}, {"Jackhammer", "Ridgid"}};
+        List<ITool> tools = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            tools.add(new Tool(String.format("T%03d", i), types[i % types.length][0], types[i % types.length][1]));
+        }
+        return new ToolCatalog(tools);
+    }
+
+    @Test
+    public void testMatchesSingleInventoryWhileNodesJoinAndLeave() throws Exception {
+        // With one unit per tool, which checkouts succeed depends only on their order per tool
+        ToolCatalog catalog = catalog(60);
+        List<ITool> tools = new ArrayList<>(catalog.getTools());
+        Checkout reference = new Checkout(PricingEngine.DEFAULT, null, Inventory.forCatalog(catalog, 1));
+        HolidayCalendar[] calendars = {HolidayCalendar.DEFAULT, HolidayCalendar.US_FEDERAL};
+        Random random = new Random(25);
+
+        try (ShardCluster cluster = new ShardCluster(catalog, 1, false)) {
+            ShardedCheckout checkout = cluster.getCheckout();
+            cluster.addNode();
+            String[] changes = {"add", "add", "remove node-1", "add", "remove node-3", "add", "remove node-2"};
+            for (int round = 0; round <= changes.length; round++) {
+                List<CheckoutRequest> requests = new ArrayList<>();
+                for (int i = 0; i < 400; i++) {
+                    requests.add(new CheckoutRequest(tools.get(random.nextInt(tools.size())),
+                            random.nextInt(40) == 0 ? 0 : 1 + random.nextInt(10),
+                            random.nextInt(40) == 0 ? 101 : random.nextInt(101),
+                            july1.plusDays(random.nextInt(365)), calendars[random.nextInt(calendars.length)]));
+                }
+                List<CheckoutResult> results = checkout.checkoutAll(requests);
+
+                assertEquals(requests.size(), results.size());
+                for (int i = 0; i < requests.size(); i++) {
+                    CheckoutRequest request = requests.get(i);
+                    CheckoutResult result = results.get(i);
+                    String context = "round " + round + ", " + request;
+                    assertSame(request, result.getRequest(), context);
+                    try {
+                        RentalAgreement expected = reference.checkoutTool(request.getTool(), request.getRentalDayCount(),
+                                request.getDiscountPercent(), request.getCheckoutDate(), request.getHolidayCalendar());
+                        assertTrue(result.isSuccess(), context + ": " + result.getError());
+                        assertEquals(expected.generateAgreement(), result.getAgreement().generateAgreement(), context);
+                    } catch (IllegalArgumentException e) {
+                        assertEquals(e.getMessage(), result.getError(), context);
+                    }
+                }
+
+                if (round < changes.length) {
+                    if (changes[round].equals("add")) {
+                        cluster.addNode();
+                    } else {
+                        cluster.removeNode(changes[round].substring("remove ".length()));
+                    }
+                }
+            }
+            assertEquals(List.of("node-4", "node-5"), cluster.getNodes());
+            assertEquals(cluster.getNodes(), checkout.getShards());
+        }
+    }
+
+    @Test
+    public void testCheckoutToolRoutesToTheOwner() throws Exception {
+        ToolCatalog catalog = ToolCatalog.standard(new ToolFactory());
+        try (ShardCluster cluster = new ShardCluster(catalog, 1, false)) {
+            ShardedCheckout checkout = cluster.getCheckout();
+            assertThrows(IllegalStateException.class, () -> checkout.checkoutTool(catalog.getTool("JAKR"), 5, 0, july1));
+            String node = cluster.addNode();
+            cluster.addNode();
+
+            RentalAgreement agreement = checkout.checkoutTool(catalog.getTool("JAKR"), 9, 0, LocalDate.of(2015, 7, 2));
+            assertEquals(new RentalAgreement(catalog.getTool("JAKR"), 9, 0, LocalDate.of(2015, 7, 2)).generateAgreement(),
+                    agreement.generateAgreement());
+            Exception taken = assertThrows(IllegalArgumentException.class,
+                    () -> checkout.checkoutTool(catalog.getTool("JAKR"), 1, 0, LocalDate.of(2015, 7, 6)));
+            assertEquals("No JAKR units are available from 2015-07-06 to 2015-07-07.", taken.getMessage());
+            Exception discount = assertThrows(IllegalArgumentException.class,
+                    () -> checkout.checkoutTool(catalog.getTool("LADW"), 3, 101, july1));
+            assertEquals("Discount percent must be between 0 and 100.", discount.getMessage());
+
+            // The node that owns the tool moves the end of its reservation
+            RentalAgreement longer = checkout.changeRentalDays(agreement, 12);
+            RentalAgreement expected = new RentalAgreement(catalog.getTool("JAKR"), 12, 0, LocalDate.of(2015, 7, 2));
+            assertEquals(expected.generateAgreement(), longer.generateAgreement());
+            assertEquals(expected.getDueDate(), longer.getReservation().getLastDay());
+            assertThrows(IllegalArgumentException.class,
+                    () -> checkout.checkoutTool(catalog.getTool("JAKR"), 1, 0, expected.getDueDate()));
+            Exception days = assertThrows(IllegalArgumentException.class, () -> checkout.changeRentalDays(longer, 0));
+            assertEquals("Rental days must be 1 or more.", days.getMessage());
+
+            cluster.removeNode(node);
+            // The rental is still found after its tool moves, and shortening it frees the days
+            RentalAgreement shorter = checkout.changeRentalDays(longer, 3);
+            assertEquals(new RentalAgreement(catalog.getTool("JAKR"), 3, 0, LocalDate.of(2015, 7, 2)).generateAgreement(),
+                    shorter.generateAgreement());
+            assertTrue(shorter.getDueDate().isBefore(longer.getDueDate()));
+            // A copy of the agreement from before the change is stale and leaves the reservation alone
+            Exception stale = assertThrows(IllegalArgumentException.class, () -> checkout.changeRentalDays(longer, 20));
+            assertTrue(stale.getMessage().endsWith(" is no longer current."));
+            checkout.checkoutTool(catalog.getTool("JAKR"), 1, 0, shorter.getDueDate().plusDays(1));
+            assertThrows(IllegalStateException.class, () -> cluster.removeNode(cluster.getNodes().get(0)));
+            assertThrows(IllegalArgumentException.class, () -> cluster.removeNode(node));
+        }
+    }
+
+    @Test
+    public void testNodesInSeparateProcesses() throws Exception {
+        ToolCatalog catalog = catalog(40);
+        List<ITool> tools = new ArrayList<>(catalog.getTools());
+        try (ShardCluster cluster = new ShardCluster(catalog, 1, true)) {
+            ShardedCheckout checkout = cluster.getCheckout();
+            String first = cluster.addNode();
+            cluster.addNode();
+            List<CheckoutRequest> requests = new ArrayList<>();
+            for (ITool tool : tools) {
+                requests.add(new CheckoutRequest(tool, 5, 10, july1));
+            }
+            for (CheckoutResult result : checkout.checkoutAll(requests)) {
+                assertTrue(result.isSuccess(), result.getError());
+            }
+
+            // The reservations move with the tools when the first node leaves
+            cluster.removeNode(first);
+            for (CheckoutResult result : checkout.checkoutAll(requests)) {
+                ITool tool = result.getRequest().getTool();
+                LocalDate dueDate = new RentalAgreement(tool, 5, 10, july1).getDueDate();
+                assertEquals("No " + tool.getToolCode() + " units are available from " + july1 + " to " + dueDate + ".",
+                        result.getError());
+            }
+        }
+    }
+
+    @Test
+    public void testNodeRejectsFailuresAndKeepsTheConnection() throws Exception {
+        ITool tool = new Tool("T000", "Ladder", "Werner");
+        int july1Day = (int) july1.toEpochDay();
+        try (ShardServer server = new ShardServer()) {
+            server.start(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+            try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.getPort())) {
+                DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+                DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+                ShardProtocol.FrameOutput frame = new ShardProtocol.FrameOutput();
+
+                // Overlapping reservations of one unit fail the whole stock, which leaves nothing stocked
+                frame.writeByte(ShardProtocol.STOCK);
+                frame.writeInt(1);
+                ShardProtocol.writeStock(frame, new ShardProtocol.Stock(tool, 1, List.of(
+                        new Inventory.Reservation(1, "T000", 0, july1Day, july1Day + 4),
+                        new Inventory.Reservation(2, "T000", 0, july1Day + 3, july1Day + 5))));
+                DataInputStream response = exchange(frame, out, in);
+                assertEquals(ShardProtocol.ERROR, response.readByte());
+                assertEquals("Unit 0 of T000 is not available from 2024-07-04 to 2024-07-06.", response.readUTF());
+                assertEquals(0, server.getToolCount());
+
+                frame.writeByte(ShardProtocol.STOCK);
+                frame.writeInt(1);
+                ShardProtocol.writeStock(frame, new ShardProtocol.Stock(tool, 1, List.of()));
+                assertEquals(ShardProtocol.OK, exchange(frame, out, in).readByte());
+
+                // A due date past the protocol's int days is rejected, and its unit is not kept
+                frame.writeByte(ShardProtocol.CHECKOUT);
+                frame.writeInt(2);
+                for (int checkoutDay : new int[] {Integer.MAX_VALUE - 1, july1Day}) {
+                    frame.writeUTF("T000");
+                    frame.writeInt(5);
+                    frame.writeInt(0);
+                    frame.writeInt(checkoutDay);
+                    frame.writeUTF(HolidayCalendar.DEFAULT.getName());
+                }
+                response = exchange(frame, out, in);
+                assertEquals(ShardProtocol.OK, response.readByte());
+                assertEquals(2, response.readInt());
+                assertEquals(ShardProtocol.REJECTED, response.readByte());
+                assertEquals("integer overflow", response.readUTF());
+                assertEquals(ShardProtocol.AGREEMENT, response.readByte());
+                int dueDay = response.readInt();
+
+                // A change must name the rental's current last day, so a stale copy is rejected
+                for (int lastDay : new int[] {dueDay + 1, dueDay}) {
+                    writeChange(frame, july1Day, lastDay, 5, 7);
+                    response = exchange(frame, out, in);
+                    assertEquals(ShardProtocol.OK, response.readByte());
+                    if (lastDay != dueDay) {
+                        assertEquals(ShardProtocol.REJECTED, response.readByte());
+                        assertTrue(response.readUTF().endsWith(" is no longer current."));
+                    } else {
+                        assertEquals(ShardProtocol.AGREEMENT, response.readByte());
+                        assertTrue(response.readInt() > dueDay);
+                    }
+                }
+                writeChange(frame, july1Day, dueDay, 5, 3);
+                response = exchange(frame, out, in);
+                assertEquals(ShardProtocol.OK, response.readByte());
+                assertEquals(ShardProtocol.REJECTED, response.readByte());
+                assertTrue(response.readUTF().endsWith(" is no longer current."));
+
+                // Purging forgets the rentals that have ended
+                server.purgeBefore(LocalDate.ofEpochDay(dueDay + 30));
+                writeChange(frame, july1Day, dueDay, 5, 3);
+                response = exchange(frame, out, in);
+                assertEquals(ShardProtocol.OK, response.readByte());
+                assertEquals(ShardProtocol.REJECTED, response.readByte());
+                assertEquals("No rental of unit 0 of T000 from 2024-07-01.", response.readUTF());
+            }
+        }
+    }
+
+    @Test
+    public void testFailedNodesAreReconnectedOrDropped() throws Exception {
+        ToolCatalog catalog = catalog(30);
+        List<CheckoutRequest> requests = new ArrayList<>();
+        for (ITool tool : catalog.getTools()) {
+            requests.add(new CheckoutRequest(tool, 5, 0, july1));
+        }
+        ShardServer first = startServer(0);
+        ShardServer second = startServer(0);
+        try (ShardedCheckout checkout = new ShardedCheckout(catalog, 1)) {
+            checkout.addShard("node-1", new InetSocketAddress(InetAddress.getLoopbackAddress(), first.getPort()));
+            checkout.addShard("node-2", new InetSocketAddress(InetAddress.getLoopbackAddress(), second.getPort()));
+            checkout.checkoutAll(requests);
+
+            // A node that is gone cannot hand over its tools, but can be dropped with its reservations
+            List<String> dropped = new ArrayList<>();
+            for (ITool tool : catalog.getTools()) {
+                if (checkout.ownerOf(tool.getToolCode()).equals("node-2")) {
+                    dropped.add(tool.getToolCode());
+                }
+            }
+            assertFalse(dropped.isEmpty());
+            second.close();
+            assertThrows(UncheckedIOException.class, () -> checkout.checkoutAll(requests));
+            assertThrows(IOException.class, () -> checkout.removeShard("node-2"));
+            checkout.dropShard("node-2");
+            assertEquals(List.of("node-1"), checkout.getShards());
+            assertEquals(catalog.getTools().size(), first.getToolCount());
+            for (CheckoutResult result : checkout.checkoutAll(requests)) {
+                String toolCode = result.getRequest().getTool().getToolCode();
+                assertEquals(dropped.contains(toolCode), result.isSuccess(), toolCode);
+            }
+
+            // A node that restarts on the same address is reached again
+            int port = first.getPort();
+            first.close();
+            first = startServer(port);
+            List<CheckoutResult> results = assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+                while (true) {
+                    try {
+                        return checkout.checkoutAll(requests);
+                    } catch (UncheckedIOException e) {
+                        Thread.sleep(10);
+                    }
+                }
+            });
+            for (CheckoutResult result : results) {
+                assertEquals("Tool code is not stocked: " + result.getRequest().getTool().getToolCode(),
+                        result.getError());
+            }
+        } finally {
+            first.close();
+            second.close();
+        }
+    }
+
+    private static ShardServer startServer(int port) throws IOException {
+        ShardServer server = new ShardServer();
+        server.start(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+        return server;
+    }
+
+    private static void writeChange(ShardProtocol.FrameOutput frame, int checkoutDay, int lastDay, int rentalDays,
+            int changedRentalDays) throws IOException {
+        frame.writeByte(ShardProtocol.CHANGE);
+        frame.writeUTF("T000");
+        frame.writeInt(0);
+        frame.writeInt(checkoutDay);
+        frame.writeInt(lastDay);
+        frame.writeInt(rentalDays);
+        frame.writeInt(0);
+        frame.writeUTF(HolidayCalendar.DEFAULT.getName());
+        frame.writeInt(changedRentalDays);
+    }
+
+    private static DataInputStream exchange(ShardProtocol.FrameOutput frame, DataOutputStream out, DataInputStream in)
+            throws IOException {
+        frame.writeTo(out);
+        out.flush();
+        return ShardProtocol.readFrame(in);
+    }
+}
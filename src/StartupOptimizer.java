@@ -0,0 +1,186 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The StartupOptimizer class prepares and measures the fast startup mode, for kiosks and batch
+ * workers that start a fresh JVM for every short job.
+ *
+ * Preparing writes two files to a directory:
+ * - A CalendarSnapshot of the holiday calendars for a range of years, so the first quotes
+ *   read their year tables from a file instead of building them.
+ * - A dynamic application class-data-sharing archive, dumped at the exit of a training run of
+ *   the application. A JVM started with it maps the already parsed and verified classes of
+ *   java.time, the collections and the application instead of loading them one by one.
+ *   Only classes loaded from JAR files are archived, so the application's own classes are
+ *   included only when it runs from a JAR such as build/libs/tool-rental.jar.
+ *
+ * Measuring starts the application's demo run in a fresh JVM, with and without the optimized
+ * files, and times each run from launch until the first agreement arrives on its standard
+ * output. Runs of the different configurations are interleaved so that machine noise affects
+ * them alike.
+ */
+public final class StartupOptimizer {
+
+    /**
+     * The class-data-sharing archive's file name in the startup directory.
+     */
+    public static final String ARCHIVE_FILE = "toolrental.jsa";
+
+    /**
+     * The calendar snapshot's file name in the startup directory.
+     */
+    public static final String SNAPSHOT_FILE = "calendars.snapshot";
+
+    private final Path directory;
+    private final String javaExecutable;
+    private final String classPath;
+
+    /**
+     * Constructor for StartupOptimizer. The JVMs it starts run the same Java installation and
+     * class path as the current one.
+     *
+     * @param directory The directory the archive and snapshot are written to and read from.
+     */
+    public StartupOptimizer(Path directory) {
+        this.directory = directory;
+        this.javaExecutable = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+        this.classPath = System.getProperty("java.class.path");
+    }
+
+    /**
+     * Writes the calendar snapshot and then records the class-data-sharing archive from a
+     * training run that uses it.
+     *
+     * @param firstYear The first year of the calendar snapshot.
+     * @param lastYear The last year of the calendar snapshot, inclusive.
+     * @throws IOException If the files cannot be written or the training run fails.
+     * @throws InterruptedException If interrupted while waiting for the training run.
+     */
+    public void prepare(int firstYear, int lastYear) throws IOException, InterruptedException {
+        Files.createDirectories(directory);
+        CalendarSnapshot.write(directory.resolve(SNAPSHOT_FILE), firstYear, lastYear);
+        Files.deleteIfExists(directory.resolve(ARCHIVE_FILE));
+        Process training = launch(List.of(
+                "-XX:ArchiveClassesAtExit=" + directory.resolve(ARCHIVE_FILE),
+                "-D" + HolidayCalendar.SNAPSHOT_PROPERTY + "=" + directory.resolve(SNAPSHOT_FILE)));
+        training.getInputStream().transferTo(OutputStream.nullOutputStream());
+        int exitCode = training.waitFor();
+        if (exitCode != 0 || !Files.exists(directory.resolve(ARCHIVE_FILE))) {
+            throw new IOException("Training run failed with exit code " + exitCode + ".");
+        }
+    }
+
+    /**
+     * Measures the time to the first agreement in each configuration.
+     *
+     * @param runs The number of runs per configuration.
+     * @return The report.
+     * @throws IOException If a run cannot be started or fails.
+     * @throws InterruptedException If interrupted while waiting for a run.
+     */
+    public Report measure(int runs) throws IOException, InterruptedException {
+        if (runs < 1) {
+            throw new IllegalArgumentException("Runs must be 1 or more.");
+        }
+        String snapshot = "-D" + HolidayCalendar.SNAPSHOT_PROPERTY + "=" + directory.resolve(SNAPSHOT_FILE);
+        String archive = "-XX:SharedArchiveFile=" + directory.resolve(ARCHIVE_FILE);
+        List<List<String>> configurations = List.of(List.of(), List.of(snapshot), List.of(archive, snapshot));
+        long[][] nanos = new long[configurations.size()][runs];
+        for (int run = 0; run < runs; run++) {
+            for (int i = 0; i < configurations.size(); i++) {
+                nanos[i][run] = timeToFirstAgreement(configurations.get(i));
+            }
+        }
+        return new Report(nanos[0], nanos[1], nanos[2]);
+    }
+
+    private long timeToFirstAgreement(List<String> jvmOptions) throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        Process process = launch(jvmOptions);
+        InputStream output = process.getInputStream();
+        // The agreement is rendered in full before it is printed
+        int first = output.read();
+        long elapsed = System.nanoTime() - start;
+        output.transferTo(OutputStream.nullOutputStream());
+        int exitCode = process.waitFor();
+        if (first < 0 || exitCode != 0) {
+            throw new IOException("Startup run failed with exit code " + exitCode + ".");
+        }
+        return elapsed;
+    }
+
+    private Process launch(List<String> jvmOptions) throws IOException {
+        List<String> command = new ArrayList<>();
+        command.add(javaExecutable);
+        // Keeps JVM warnings, e.g. about classes the archive skips, out of the timed output
+        command.add("-Xlog:disable");
+        command.addAll(jvmOptions);
+        command.add("-cp");
+        command.add(classPath);
+        command.add("ToolRentalApplication");
+        return new ProcessBuilder(command).redirectErrorStream(true).start();
+    }
+
+    /**
+     * The Report nested class holds the measured times to the first agreement, in nanoseconds,
+     * of each configuration.
+     */
+    public static final class Report {
+        private final long[] defaultNanos;
+        private final long[] snapshotNanos;
+        private final long[] optimizedNanos;
+
+        private Report(long[] defaultNanos, long[] snapshotNanos, long[] optimizedNanos) {
+            this.defaultNanos = defaultNanos.clone();
+            this.snapshotNanos = snapshotNanos.clone();
+            this.optimizedNanos = optimizedNanos.clone();
+            Arrays.sort(this.defaultNanos);
+            Arrays.sort(this.snapshotNanos);
+            Arrays.sort(this.optimizedNanos);
+        }
+
+        /**
+         * @return The median time without the archive or the snapshot.
+         */
+        public long getDefaultMedianNanos() {
+            return median(defaultNanos);
+        }
+
+        /**
+         * @return The median time with the calendar snapshot only.
+         */
+        public long getSnapshotMedianNanos() {
+            return median(snapshotNanos);
+        }
+
+        /**
+         * @return The median time with the class-data-sharing archive and the calendar snapshot.
+         */
+        public long getOptimizedMedianNanos() {
+            return median(optimizedNanos);
+        }
+
+        private static long median(long[] sorted) {
+            return sorted[sorted.length / 2];
+        }
+
+        @Override
+        public String toString() {
+            return line("Default", defaultNanos)
+                 + line("Calendar snapshot", snapshotNanos)
+                 + line("CDS archive + calendar snapshot", optimizedNanos)
+                 + String.format("Speedup: %.2fx%n", (double) getDefaultMedianNanos() / getOptimizedMedianNanos());
+        }
+
+        private static String line(String configuration, long[] sorted) {
+            return String.format("%-32s median %6.1f ms, min %6.1f ms (%d runs)%n", configuration + ":",
+                    median(sorted) / 1e6, sorted[0] / 1e6, sorted.length);
+        }
+    }
+}
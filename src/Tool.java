@@ -1,27 +1,62 @@
+/**
+ * The Tool class is a rentable tool. Its rates and charging flags come from the tool type in
+ * a ToolTypeRegistry and follow the registry's current snapshot, so a reload of the tool
+ * types changes the prices of existing tools without rebuilding the catalog. If a reload
+ * drops the tool's type, the tool keeps the rates it last had. Agreements are not affected:
+ * they keep the rates they were priced with, see PricedTool.
+ */
 public class Tool implements ITool{
-    private String toolCode;
-    private String toolType;
-    private String brand;
-    private ToolAttributes.ToolTypeAttributes attributes;
+    private final String toolCode;
+    private final String toolType;
+    private final String brand;
+    private final ToolTypeRegistry registry;
+    // Attributes resolved against one snapshot; replaced as a whole, so racing readers are safe
+    private Binding binding;
 
     // Constructor
     public Tool(String toolCode, String toolType, String brand) {
+        this(toolCode, toolType, brand, ToolTypeRegistry.getDefault());
+    }
+
+    /**
+     * Constructor for Tool resolving the tool type in the given registry.
+     *
+     * @throws IllegalArgumentException If the registry does not hold the tool type.
+     */
+    Tool(String toolCode, String toolType, String brand, ToolTypeRegistry registry) {
         this.toolCode = toolCode;
         this.toolType = toolType;
         this.brand = brand;
-        switch (toolType) {
-            case "Ladder":
-                this.attributes = ToolAttributes.LADDER;
-                break;
-            case "Chainsaw":
-                this.attributes = ToolAttributes.CHAINSAW;
-                break;
-            case "Jackhammer":
-                this.attributes = ToolAttributes.JACKHAMMER;
-                break;
-            default:
-                throw new IllegalArgumentException("Invalid tool type");
+        this.registry = registry;
+        ToolTypeRegistry.Snapshot snapshot = registry.getSnapshot();
+        int typeId = snapshot.getTypeId(toolType);
+        if (typeId < 0) {
+            throw new IllegalArgumentException("Invalid tool type");
+        }
+        this.binding = new Binding(snapshot, priced(snapshot.getAttributes(typeId)));
+    }
+
+    /**
+     * @return This tool with the attributes of the registry's current snapshot, all read
+     *         from that one snapshot.
+     */
+    PricedTool priced() {
+        Binding current = binding;
+        ToolTypeRegistry.Snapshot snapshot = registry.getSnapshot();
+        if (current.snapshot != snapshot) {
+            int typeId = snapshot.getTypeId(toolType);
+            current = new Binding(snapshot, typeId < 0 ? current.priced : priced(snapshot.getAttributes(typeId)));
+            binding = current;
         }
+        return current.priced;
+    }
+
+    private PricedTool priced(ToolAttributes.ToolTypeAttributes attributes) {
+        return new PricedTool(toolCode, toolType, brand, attributes);
+    }
+
+    private ToolAttributes.ToolTypeAttributes attributes() {
+        return priced().getAttributes();
     }
 
     // Getters
@@ -37,20 +72,24 @@ public class Tool implements ITool{
         return brand;
     }
 
+    public Money getDailyChargeMoney() {
+        return attributes().getDailyChargeMoney();
+    }
+
     public double getDailyCharge() {
-        return attributes.getDailyCharge();
+        return attributes().getDailyCharge();
     }
 
     public boolean isWeekdayCharge() {
-        return attributes.isWeekdayCharge();
+        return attributes().isWeekdayCharge();
     }
 
     public boolean isWeekendCharge() {
-        return attributes.isWeekendCharge();
+        return attributes().isWeekendCharge();
     }
 
     public boolean isHolidayCharge() {
-        return attributes.isHolidayCharge();
+        return attributes().isHolidayCharge();
     }
 
     @Override
@@ -65,4 +104,14 @@ public class Tool implements ITool{
                ", holidayCharge=" + isHolidayCharge() +
                '}';
     }
+
+    private static final class Binding {
+        final ToolTypeRegistry.Snapshot snapshot;
+        final PricedTool priced;
+
+        Binding(ToolTypeRegistry.Snapshot snapshot, PricedTool priced) {
+            this.snapshot = snapshot;
+            this.priced = priced;
+        }
+    }
 }
@@ -1,18 +1,30 @@
 /**
  * The ToolAttributes class defines the attributes for different types of tools.
  * It contains predefined constants for various tool types, each with specific charging rules and rates.
+ * Further tool types can be loaded from a file, see ToolTypeRegistry.
  */
 public class ToolAttributes {
-    public static final ToolTypeAttributes LADDER = new ToolTypeAttributes(1.99, true, true, false);
-    public static final ToolTypeAttributes CHAINSAW = new ToolTypeAttributes(1.49, true, false, true);
-    public static final ToolTypeAttributes JACKHAMMER = new ToolTypeAttributes(2.99, true, false, false);
+    public static final ToolTypeAttributes LADDER = new ToolTypeAttributes(Money.ofCents(199), true, true, false);
+    public static final ToolTypeAttributes CHAINSAW = new ToolTypeAttributes(Money.ofCents(149), true, false, true);
+    public static final ToolTypeAttributes JACKHAMMER = new ToolTypeAttributes(Money.ofCents(299), true, false, false);
+
+    /**
+     * Looks up the attributes of a tool type by name in the default ToolTypeRegistry, which
+     * holds the constants above unless a tool type file has been configured.
+     *
+     * @param toolType The tool type, e.g. "Ladder".
+     * @return The attributes of the tool type, or null if the type is unknown.
+     */
+    public static ToolTypeAttributes forType(String toolType) {
+        return ToolTypeRegistry.getDefault().getAttributes(toolType);
+    }
 
     /**
      * The ToolTypeAttributes nested class defines the specific attributes for a tool type.
      * It includes the daily charge rate and booleans to indicate if charges apply on weekdays, weekends, and holidays.
      */
     public static class ToolTypeAttributes {
-        private final double dailyCharge;
+        private final Money dailyCharge;
         private final boolean weekdayCharge;
         private final boolean weekendCharge;
         private final boolean holidayCharge;
@@ -25,17 +37,29 @@ public class ToolAttributes {
          * @param weekendCharge Whether the tool is chargeable on weekends.
          * @param holidayCharge Whether the tool is chargeable on holidays.
          */
-        public ToolTypeAttributes(double dailyCharge, boolean weekdayCharge, boolean weekendCharge, boolean holidayCharge) {
+        public ToolTypeAttributes(Money dailyCharge, boolean weekdayCharge, boolean weekendCharge, boolean holidayCharge) {
             this.dailyCharge = dailyCharge;
             this.weekdayCharge = weekdayCharge;
             this.weekendCharge = weekendCharge;
             this.holidayCharge = holidayCharge;
         }
 
-        public double getDailyCharge() {
+        /**
+         * Constructor for ToolTypeAttributes taking the daily charge in dollars, which is
+         * rounded half up to the nearest cent.
+         */
+        public ToolTypeAttributes(double dailyCharge, boolean weekdayCharge, boolean weekendCharge, boolean holidayCharge) {
+            this(Money.ofDollars(dailyCharge), weekdayCharge, weekendCharge, holidayCharge);
+        }
+
+        public Money getDailyChargeMoney() {
             return dailyCharge;
         }
 
+        public double getDailyCharge() {
+            return dailyCharge.toDouble();
+        }
+
         public boolean isWeekdayCharge() {
             return weekdayCharge;
         }
@@ -0,0 +1,127 @@
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * The ToolCatalog class is the preloaded inventory of rentable tools, keyed by tool code.
+ * Lookups return shared, immutable tool instances in constant time, so request handlers no
+ * longer need to create a Tool per checkout.
+ *
+ * The catalog is held as an immutable map behind an atomic reference. Readers never lock and
+ * always see a complete snapshot; changes build a new map and swap it in atomically
+ * (copy-on-write), so a reload never exposes a half-updated inventory.
+ */
+public final class ToolCatalog {
+
+    private final AtomicReference<Map<String, ITool>> tools = new AtomicReference<>(Map.of());
+
+    /**
+     * Constructor for ToolCatalog.
+     *
+     * @param tools The tools in the catalog; tool codes must be unique.
+     */
+    public ToolCatalog(Collection<? extends ITool> tools) {
+        reload(tools);
+    }
+
+    /**
+     * Creates the catalog of the standard rental inventory.
+     *
+     * @param toolFactory The factory used for creating the Tool objects.
+     * @return A catalog with the LADW, CHNS, JAKD and JAKR tools.
+     */
+    public static ToolCatalog standard(ToolFactory toolFactory) {
+        return new ToolCatalog(List.of(
+            toolFactory.createTool("LADW", "Ladder", "Werner"),
+            toolFactory.createTool("CHNS", "Chainsaw", "Stihl"),
+            toolFactory.createTool("JAKD", "Jackhammer", "DeWalt"),
+            toolFactory.createTool("JAKR", "Jackhammer", "Ridgid")));
+    }
+
+    /**
+     * Looks up a tool by its code.
+     *
+     * @param toolCode The code of the tool, e.g. "JAKR".
+     * @return The shared tool instance.
+     * @throws IllegalArgumentException If no tool has the given code.
+     */
+    public ITool getTool(String toolCode) {
+        ITool tool = tools.get().get(toolCode);
+        if (tool == null) {
+            Metrics.get().recordValidationFailure(Metrics.ValidationFailure.UNKNOWN_TOOL);
+            throw new IllegalArgumentException("Unknown tool code: " + toolCode);
+        }
+        return tool;
+    }
+
+    /**
+     * Looks up a tool by its code.
+     *
+     * @param toolCode The code of the tool.
+     * @return The shared tool instance, or null if no tool has the given code.
+     */
+    public ITool findTool(String toolCode) {
+        return tools.get().get(toolCode);
+    }
+
+    /**
+     * @return An immutable snapshot of all tools in the catalog.
+     */
+    public Collection<ITool> getTools() {
+        return tools.get().values();
+    }
+
+    public int size() {
+        return tools.get().size();
+    }
+
+    /**
+     * Atomically replaces the whole inventory.
+     *
+     * @param newTools The tools in the new inventory; tool codes must be unique.
+     */
+    public void reload(Collection<? extends ITool> newTools) {
+        Map<String, ITool> byCode = new HashMap<>();
+        for (ITool tool : newTools) {
+            if (byCode.putIfAbsent(tool.getToolCode(), tool) != null) {
+                throw new IllegalArgumentException("Duplicate tool code: " + tool.getToolCode());
+            }
+        }
+        tools.set(Map.copyOf(byCode));
+    }
+
+    /**
+     * Atomically adds a tool, or replaces the tool with the same code.
+     *
+     * @param tool The tool to add.
+     */
+    public void put(ITool tool) {
+        tools.updateAndGet(current -> {
+            Map<String, ITool> copy = new HashMap<>(current);
+            copy.put(tool.getToolCode(), tool);
+            return Map.copyOf(copy);
+        });
+    }
+
+    /**
+     * Atomically removes a tool.
+     *
+     * @param toolCode The code of the tool to remove.
+     * @return true if the tool was in the catalog, false otherwise.
+     */
+    public boolean remove(String toolCode) {
+        while (true) {
+            Map<String, ITool> current = tools.get();
+            if (!current.containsKey(toolCode)) {
+                return false;
+            }
+            Map<String, ITool> copy = new HashMap<>(current);
+            copy.remove(toolCode);
+            if (tools.compareAndSet(current, Map.copyOf(copy))) {
+                return true;
+            }
+        }
+    }
+}
@@ -0,0 +1,40 @@
+import org.junit.Test;
+import java.util.List;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ToolCatalogTest {
+
+    @Test
+    public void testLookupReturnsSharedInstances() {
+        ToolCatalog catalog = ToolCatalog.standard(new ToolFactory());
+        assertEquals(4, catalog.size());
+        assertSame(catalog.getTool("JAKR"), catalog.getTool("JAKR"));
+        assertEquals("Ridgid", catalog.getTool("JAKR").getBrand());
+        assertNull(catalog.findTool("NONE"));
+        assertThrows(IllegalArgumentException.class, () -> catalog.getTool("NONE"));
+    }
+
+    @Test
+    public void testCopyOnWriteChanges() {
+        ToolCatalog catalog = ToolCatalog.standard(new ToolFactory());
+        var before = catalog.getTools();
+
+        catalog.put(new Tool("LADR", "Ladder", "Little Giant"));
+        assertTrue(catalog.remove("CHNS"));
+        assertFalse(catalog.remove("CHNS"));
+
+        assertEquals(4, before.size());
+        assertEquals(4, catalog.size());
+        assertEquals("Little Giant", catalog.getTool("LADR").getBrand());
+        assertNull(catalog.findTool("CHNS"));
+    }
+
+    @Test
+    public void testReloadRejectsDuplicateCodes() {
+        ToolCatalog catalog = ToolCatalog.standard(new ToolFactory());
+        assertThrows(IllegalArgumentException.class, () -> catalog.reload(List.of(
+            new Tool("LADW", "Ladder", "Werner"),
+            new Tool("LADW", "Ladder", "Werner"))));
+        assertEquals(4, catalog.size());
+    }
+}
@@ -9,11 +9,18 @@
  * The ToolFactory is used to create Tool instances, thus separating the responsibility
  * of object creation from the business logic, adhering to the Single Responsibility Principle.
  */
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.time.LocalDate;
 
 public class ToolRentalApplication {
 
     private ToolFactory toolFactory;
+    private ToolCatalog toolCatalog;
 
      /**
      * Constructor for ToolRentalApplication.
@@ -22,18 +29,19 @@ public class ToolRentalApplication {
      */
     public ToolRentalApplication(ToolFactory toolFactory) {
         this.toolFactory = toolFactory;
+        this.toolCatalog = ToolCatalog.standard(toolFactory);
     }
 
     /**
      * The main method that runs the application.
-     * It demonstrates creating tools using the factory and simulates tool rentals.
+     * It looks up the tools created by the factory in the catalog and simulates tool rentals.
      */
     public void run() {
-        // Use the factory to create tools
-        ITool ladder = toolFactory.createTool("LADW", "Ladder", "Werner");
-        ITool chainsaw = toolFactory.createTool("CHNS", "Chainsaw", "Stihl");
-        ITool jackhammerDewalt = toolFactory.createTool("JAKD", "Jackhammer", "DeWalt");
-        ITool jackhammerRidgid = toolFactory.createTool("JAKR", "Jackhammer", "Ridgid");
+        // Shared tool instances from the catalog
+        ITool ladder = toolCatalog.getTool("LADW");
+        ITool chainsaw = toolCatalog.getTool("CHNS");
+        ITool jackhammerDewalt = toolCatalog.getTool("JAKD");
+        ITool jackhammerRidgid = toolCatalog.getTool("JAKR");
 
         // Simulate checkouts
         try {
@@ -53,9 +61,224 @@ public class ToolRentalApplication {
         }
     }
 
+    /**
+     * Streams a CSV file of checkout requests through the bulk checkout pipeline and writes
+     * the agreements to an output file, then reports the throughput.
+     * Usage: checkout <input.csv> <output> [text|csv]
+     *
+     * @param args The command line arguments, starting with "checkout".
+     * @return The process exit code.
+     */
+    public int runBulkCheckout(String[] args) {
+        if (args.length < 3 || args.length > 4) {
+            System.out.println("Usage: checkout <input.csv> <output> [text|csv]");
+            return 2;
+        }
+        BulkCheckoutPipeline.Format format;
+        try {
+            format = args.length == 4 ? BulkCheckoutPipeline.Format.valueOf(args[3].toUpperCase()) : BulkCheckoutPipeline.Format.TEXT;
+        } catch (IllegalArgumentException e) {
+            System.out.println("Unknown output format: " + args[3]);
+            return 2;
+        }
+        BulkCheckoutPipeline pipeline = new BulkCheckoutPipeline(toolCatalog, new BatchCheckout(new Checkout()), format);
+        try {
+            BulkCheckoutPipeline.Summary summary = pipeline.run(Path.of(args[1]), Path.of(args[2]));
+            System.out.println(summary);
+            return 0;
+        } catch (IOException e) {
+            System.out.println("Error during bulk checkout: " + e.getMessage());
+            return 1;
+        }
+    }
+
+    /**
+     * Serves checkouts over HTTP until the process is stopped.
+     * Usage: serve [port]
+     *
+     * @param args The command line arguments, starting with "serve".
+     * @return The process exit code if the server could not be started.
+     */
+    public int runServer(String[] args) {
+        if (args.length > 2) {
+            System.out.println("Usage: serve [port]");
+            return 2;
+        }
+        CheckoutServer server = new CheckoutServer(toolCatalog, new Checkout(new QuoteCache(1 << 16)));
+        try {
+            server.start(new InetSocketAddress(args.length == 2 ? Integer.parseInt(args[1]) : 8080));
+        } catch (IOException | IllegalArgumentException e) {
+            System.out.println("Error starting server: " + e.getMessage());
+            return 1;
+        }
+        System.out.println("Serving checkouts on port " + server.getPort());
+        try {
+            Thread.currentThread().join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        server.close();
+        return 0;
+    }
+
+    /**
+     * Runs the load generator against a local checkout server and prints the report. Without a
+     * port an embedded server is started on a free port.
+     * Usage: loadtest [port] [concurrency] [seconds]
+     *
+     * @param args The command line arguments, starting with "loadtest".
+     * @return The process exit code.
+     */
+    public int runLoadTest(String[] args) {
+        if (args.length > 4) {
+            System.out.println("Usage: loadtest [port] [concurrency] [seconds]");
+            return 2;
+        }
+        CheckoutServer embedded = null;
+        try {
+            int port;
+            if (args.length >= 2 && !args[1].equals("0")) {
+                port = Integer.parseInt(args[1]);
+            } else {
+                embedded = new CheckoutServer(toolCatalog, new Checkout(new QuoteCache(1 << 16)));
+                embedded.start(new InetSocketAddress("localhost", 0));
+                port = embedded.getPort();
+            }
+            int concurrency = args.length >= 3 ? Integer.parseInt(args[2]) : 64;
+            int seconds = args.length >= 4 ? Integer.parseInt(args[3]) : 10;
+            CheckoutLoadGenerator generator = new CheckoutLoadGenerator(URI.create("http://localhost:" + port),
+                    concurrency, Duration.ofSeconds(Math.min(5, seconds)), Duration.ofSeconds(seconds));
+            System.out.println(generator.run());
+            return 0;
+        } catch (IOException | IllegalArgumentException e) {
+            System.out.println("Error during load test: " + e.getMessage());
+            return 1;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return 1;
+        } finally {
+            if (embedded != null) {
+                embedded.close();
+            }
+        }
+    }
+
+    /**
+     * Runs one node of a sharded checkout cluster until standard input is closed.
+     * Usage: shard [port]
+     *
+     * @param args The command line arguments, starting with "shard".
+     * @return The process exit code.
+     */
+    public int runShard(String[] args) {
+        if (args.length > 2) {
+            System.out.println("Usage: shard [port]");
+            return 2;
+        }
+        try (ShardServer server = new ShardServer()) {
+            server.start(new InetSocketAddress(args.length == 2 ? Integer.parseInt(args[1]) : 9090));
+            System.out.println(ShardCluster.LISTENING_PREFIX + server.getPort());
+            System.out.flush();
+            System.in.transferTo(OutputStream.nullOutputStream());
+            return 0;
+        } catch (IOException | IllegalArgumentException e) {
+            System.out.println("Error running shard: " + e.getMessage());
+            return 1;
+        }
+    }
+
+    /**
+     * Starts a local sharded checkout cluster, growing it one node at a time, and prints the
+     * checkout throughput and rebalancing cost at every size.
+     * Usage: cluster [maxNodes] [tools] [seconds] [processes|inprocess]
+     *
+     * @param args The command line arguments, starting with "cluster".
+     * @return The process exit code.
+     */
+    public int runCluster(String[] args) {
+        if (args.length > 5 || (args.length == 5 && !args[4].equals("processes") && !args[4].equals("inprocess"))) {
+            System.out.println("Usage: cluster [maxNodes] [tools] [seconds] [processes|inprocess]");
+            return 2;
+        }
+        try {
+            int maxNodes = args.length >= 2 ? Integer.parseInt(args[1]) : 4;
+            int tools = args.length >= 3 ? Integer.parseInt(args[2]) : 10_000;
+            int seconds = args.length >= 4 ? Integer.parseInt(args[3]) : 5;
+            boolean processes = args.length < 5 || args[4].equals("processes");
+            for (ShardCluster.Step step : ShardCluster.measureScaling(maxNodes, tools, 8, 512,
+                    Duration.ofSeconds(seconds), processes)) {
+                System.out.println(step);
+            }
+            return 0;
+        } catch (IOException | IllegalArgumentException e) {
+            System.out.println("Error running cluster: " + e.getMessage());
+            return 1;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return 1;
+        }
+    }
+
+    /**
+     * Prepares the fast startup files in a directory, or measures the time to the first
+     * agreement with and without them.
+     * Usage: startup prepare <dir> [firstYear] [lastYear]
+     *        startup measure <dir> [runs]
+     *
+     * @param args The command line arguments, starting with "startup".
+     * @return The process exit code.
+     */
+    public int runStartup(String[] args) {
+        boolean prepare = args.length >= 3 && args.length <= 5 && args[1].equals("prepare");
+        boolean measure = args.length >= 3 && args.length <= 4 && args[1].equals("measure");
+        if (!prepare && !measure) {
+            System.out.println("Usage: startup prepare <dir> [firstYear] [lastYear]");
+            System.out.println("       startup measure <dir> [runs]");
+            return 2;
+        }
+        StartupOptimizer optimizer = new StartupOptimizer(Path.of(args[2]));
+        try {
+            if (prepare) {
+                int currentYear = LocalDate.now().getYear();
+                int firstYear = args.length >= 4 ? Integer.parseInt(args[3]) : currentYear - 1;
+                int lastYear = args.length >= 5 ? Integer.parseInt(args[4]) : currentYear + 10;
+                optimizer.prepare(firstYear, lastYear);
+                System.out.println("Wrote " + StartupOptimizer.ARCHIVE_FILE + " and " + StartupOptimizer.SNAPSHOT_FILE
+                        + " to " + args[2]);
+            } else {
+                System.out.print(optimizer.measure(args.length == 4 ? Integer.parseInt(args[3]) : 10));
+            }
+            return 0;
+        } catch (IOException | IllegalArgumentException e) {
+            System.out.println("Error during startup " + args[1] + ": " + e.getMessage());
+            return 1;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return 1;
+        }
+    }
+
     public static void main(String[] args) {
         ToolFactory toolFactory = new ToolFactory();
         ToolRentalApplication app = new ToolRentalApplication(toolFactory);
+        if (args.length > 0 && args[0].equals("checkout")) {
+            System.exit(app.runBulkCheckout(args));
+        }
+        if (args.length > 0 && args[0].equals("serve")) {
+            System.exit(app.runServer(args));
+        }
+        if (args.length > 0 && args[0].equals("loadtest")) {
+            System.exit(app.runLoadTest(args));
+        }
+        if (args.length > 0 && args[0].equals("startup")) {
+            System.exit(app.runStartup(args));
+        }
+        if (args.length > 0 && args[0].equals("shard")) {
+            System.exit(app.runShard(args));
+        }
+        if (args.length > 0 && args[0].equals("cluster")) {
+            System.exit(app.runCluster(args));
+        }
         app.run();
     }
 }
@@ -0,0 +1,432 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * The ToolTypeRegistry class holds the tool types and their pricing, loaded from a CSV file
+ * instead of hard-coded constants. Each type gets an integer type id, and the per-type data
+ * is kept in compact parallel arrays indexed by that id.
+ *
+ * The file has a header line followed by one line per type:
+ *
+ *   type,dailyCharge,weekdayCharge,weekendCharge,holidayCharge
+ *   Ladder,1.99,true,true,false
+ *
+ * Blank lines and lines starting with # are ignored. The file is parsed straight from a
+ * memory-mapped buffer, so large catalogs load in milliseconds.
+ *
+ * Loaded data is published as an immutable snapshot through a volatile field. Reloading parses
+ * the new file completely before swapping the snapshot in, so readers never block and never
+ * see a partially loaded catalog. Type ids are only stable within one snapshot. Tools follow
+ * the current snapshot, so a reload reprices them without restarting.
+ */
+public final class ToolTypeRegistry {
+
+    /**
+     * System property naming a tool type file to load the default registry from.
+     * Without it, the default registry holds the built-in Ladder, Chainsaw and Jackhammer types.
+     */
+    public static final String FILE_PROPERTY = "toolrental.toolTypes";
+
+    private static final int WEEKDAY_CHARGE = 1;
+    private static final int WEEKEND_CHARGE = 2;
+    private static final int HOLIDAY_CHARGE = 4;
+
+    private static final ToolTypeRegistry DEFAULT = createDefault();
+
+    private final List<Runnable> reloadListeners = new CopyOnWriteArrayList<>();
+    private volatile Snapshot snapshot;
+
+    private ToolTypeRegistry(Snapshot snapshot) {
+        this.snapshot = snapshot;
+    }
+
+    /**
+     * @return The registry used by ToolAttributes and Tool.
+     */
+    public static ToolTypeRegistry getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Creates a registry holding the built-in Ladder, Chainsaw and Jackhammer types.
+     */
+    public static ToolTypeRegistry builtIn() {
+        return new ToolTypeRegistry(new Snapshot(
+            new String[] {"Ladder", "Chainsaw", "Jackhammer"},
+            new ToolAttributes.ToolTypeAttributes[] {ToolAttributes.LADDER, ToolAttributes.CHAINSAW, ToolAttributes.JACKHAMMER},
+            0));
+    }
+
+    /**
+     * Creates a registry from a tool type file.
+     *
+     * @param file The CSV file to load.
+     * @return The loaded registry.
+     * @throws IOException If the file cannot be read.
+     * @throws IllegalArgumentException If the file is malformed.
+     */
+    public static ToolTypeRegistry load(Path file) throws IOException {
+        return new ToolTypeRegistry(parse(file, 0));
+    }
+
+    private static ToolTypeRegistry createDefault() {
+        String file = System.getProperty(FILE_PROPERTY);
+        if (file == null) {
+            return builtIn();
+        }
+        try {
+            return load(Path.of(file));
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to load tool types from " + file, e);
+        }
+    }
+
+    /**
+     * Replaces the registry contents with the types in the given file. If the file cannot be
+     * read or parsed, the current types stay in place and the exception is rethrown. Reloads
+     * are serialized, so every snapshot gets its own version and listeners run in order.
+     *
+     * @param file The CSV file to load.
+     * @throws IOException If the file cannot be read.
+     * @throws IllegalArgumentException If the file is malformed.
+     */
+    public synchronized void reload(Path file) throws IOException {
+        snapshot = parse(file, snapshot.version + 1);
+        for (Runnable listener : reloadListeners) {
+            listener.run();
+        }
+    }
+
+    /**
+     * Registers a callback that runs after every successful reload.
+     *
+     * @param listener The callback to run.
+     */
+    public void addReloadListener(Runnable listener) {
+        reloadListeners.add(listener);
+    }
+
+    /**
+     * Watches the given file and reloads the registry whenever it changes. Reload failures
+     * are reported on standard error and leave the current types in place.
+     *
+     * @param file The CSV file to watch.
+     * @return A handle that stops watching when closed.
+     * @throws IOException If the file's directory cannot be watched.
+     */
+    public Closeable watch(Path file) throws IOException {
+        Path absolute = file.toAbsolutePath();
+        WatchService watcher = FileSystems.getDefault().newWatchService();
+        absolute.getParent().register(watcher, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        Thread thread = new Thread(() -> {
+            try {
+                while (true) {
+                    WatchKey key = watcher.take();
+                    boolean changed = false;
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        changed |= absolute.getFileName().equals(event.context());
+                    }
+                    key.reset();
+                    if (changed) {
+                        try {
+                            reload(absolute);
+                        } catch (IOException | RuntimeException e) {
+                            System.err.println("Error reloading tool types: " + e.getMessage());
+                        }
+                    }
+                }
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                // Watching stopped
+            }
+        }, "tool-type-watcher");
+        thread.setDaemon(true);
+        thread.start();
+        return watcher;
+    }
+
+    /**
+     * Looks up the id of a tool type in the current snapshot.
+     *
+     * @param toolType The name of the tool type.
+     * @return The type id, or -1 if the type is unknown.
+     */
+    public int getTypeId(String toolType) {
+        Integer id = snapshot.ids.get(toolType);
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * Looks up the attributes of a tool type in the current snapshot.
+     *
+     * @param toolType The name of the tool type.
+     * @return The attributes, or null if the type is unknown.
+     */
+    public ToolAttributes.ToolTypeAttributes getAttributes(String toolType) {
+        Snapshot current = snapshot;
+        Integer id = current.ids.get(toolType);
+        return id == null ? null : current.attributes[id];
+    }
+
+    /**
+     * @return The current snapshot of tool types. Callers pricing many rows should hold on
+     *         to one snapshot so that type ids stay consistent across a reload.
+     */
+    public Snapshot getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * The Snapshot nested class is one immutable version of the registry contents, as
+     * parallel arrays indexed by type id.
+     */
+    public static final class Snapshot {
+        private final String[] names;
+        private final long[] dailyChargeCents;
+        private final byte[] chargeFlags;
+        private final ToolAttributes.ToolTypeAttributes[] attributes;
+        private final Map<String, Integer> ids;
+        private final long version;
+
+        private Snapshot(String[] names, ToolAttributes.ToolTypeAttributes[] attributes, long version) {
+            this.names = names;
+            this.attributes = attributes;
+            this.version = version;
+            this.dailyChargeCents = new long[names.length];
+            this.chargeFlags = new byte[names.length];
+            Map<String, Integer> byName = new HashMap<>(names.length * 2);
+            for (int id = 0; id < names.length; id++) {
+                if (byName.putIfAbsent(names[id], id) != null) {
+                    throw new IllegalArgumentException("Duplicate tool type: " + names[id]);
+                }
+                dailyChargeCents[id] = attributes[id].getDailyChargeMoney().getCents();
+                chargeFlags[id] = (byte) ((attributes[id].isWeekdayCharge() ? WEEKDAY_CHARGE : 0)
+                        | (attributes[id].isWeekendCharge() ? WEEKEND_CHARGE : 0)
+                        | (attributes[id].isHolidayCharge() ? HOLIDAY_CHARGE : 0));
+            }
+            this.ids = Map.copyOf(byName);
+        }
+
+        public int size() {
+            return names.length;
+        }
+
+        /**
+         * @return The version of this snapshot, incremented on every reload.
+         */
+        public long getVersion() {
+            return version;
+        }
+
+        public int getTypeId(String toolType) {
+            Integer id = ids.get(toolType);
+            return id == null ? -1 : id;
+        }
+
+        public String getTypeName(int typeId) {
+            return names[typeId];
+        }
+
+        public long getDailyChargeCents(int typeId) {
+            return dailyChargeCents[typeId];
+        }
+
+        public boolean isWeekdayCharge(int typeId) {
+            return (chargeFlags[typeId] & WEEKDAY_CHARGE) != 0;
+        }
+
+        public boolean isWeekendCharge(int typeId) {
+            return (chargeFlags[typeId] & WEEKEND_CHARGE) != 0;
+        }
+
+        public boolean isHolidayCharge(int typeId) {
+            return (chargeFlags[typeId] & HOLIDAY_CHARGE) != 0;
+        }
+
+        public ToolAttributes.ToolTypeAttributes getAttributes(int typeId) {
+            return attributes[typeId];
+        }
+    }
+
+    private static Snapshot parse(Path file, long version) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new CsvParser(data).parse(version);
+        }
+    }
+
+    /**
+     * Parses the tool type CSV directly from the mapped bytes, without decoding the file
+     * into Strings first. Only type names are materialized.
+     */
+    private static final class CsvParser {
+        private static final int COLUMNS = 5;
+        // The most digits in a daily charge; eighteen always fit in a long
+        private static final int MAX_CHARGE_DIGITS = 18;
+
+        private final MappedByteBuffer data;
+        private final int[] fieldStart = new int[COLUMNS];
+        private final int[] fieldEnd = new int[COLUMNS];
+        private int lineNumber;
+
+        CsvParser(MappedByteBuffer data) {
+            this.data = data;
+        }
+
+        Snapshot parse(long version) {
+            String[] names = new String[16];
+            ToolAttributes.ToolTypeAttributes[] attributes = new ToolAttributes.ToolTypeAttributes[16];
+            int count = 0;
+            boolean header = true;
+            int position = 0;
+            int limit = data.limit();
+            while (position < limit) {
+                int end = position;
+                while (end < limit && data.get(end) != '\n') {
+                    end++;
+                }
+                lineNumber++;
+                int lineEnd = end > position && data.get(end - 1) == '\r' ? end - 1 : end;
+                if (!isBlankOrComment(position, lineEnd)) {
+                    if (header) {
+                        header = false;
+                    } else {
+                        splitFields(position, lineEnd);
+                        if (count == names.length) {
+                            names = Arrays.copyOf(names, count * 2);
+                            attributes = Arrays.copyOf(attributes, count * 2);
+                        }
+                        names[count] = text(0);
+                        attributes[count] = new ToolAttributes.ToolTypeAttributes(Money.ofCents(cents(1)),
+                                flag(2), flag(3), flag(4));
+                        count++;
+                    }
+                }
+                position = end + 1;
+            }
+            return new Snapshot(Arrays.copyOf(names, count), Arrays.copyOf(attributes, count), version);
+        }
+
+        private boolean isBlankOrComment(int start, int end) {
+            for (int i = start; i < end; i++) {
+                byte b = data.get(i);
+                if (b != ' ' && b != '\t') {
+                    return b == '#';
+                }
+            }
+            return true;
+        }
+
+        private void splitFields(int start, int end) {
+            int field = 0;
+            int fieldBegin = start;
+            for (int i = start; i <= end; i++) {
+                if (i == end || data.get(i) == ',') {
+                    if (field == COLUMNS) {
+                        throw error("expected " + COLUMNS + " columns");
+                    }
+                    int from = fieldBegin;
+                    int to = i;
+                    while (from < to && data.get(from) == ' ') {
+                        from++;
+                    }
+                    while (to > from && data.get(to - 1) == ' ') {
+                        to--;
+                    }
+                    fieldStart[field] = from;
+                    fieldEnd[field] = to;
+                    field++;
+                    fieldBegin = i + 1;
+                }
+            }
+            if (field != COLUMNS) {
+                throw error("expected " + COLUMNS + " columns");
+            }
+        }
+
+        private String text(int field) {
+            int length = fieldEnd[field] - fieldStart[field];
+            if (length == 0) {
+                throw error("tool type is empty");
+            }
+            byte[] bytes = new byte[length];
+            data.get(fieldStart[field], bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        // Parses a non-negative amount with at most two decimals, e.g. 1.99, into cents. The
+        // digit count is capped so that the cents always fit in a long.
+        private long cents(int field) {
+            long cents = 0;
+            int decimals = -1;
+            int digits = 0;
+            for (int i = fieldStart[field]; i < fieldEnd[field]; i++) {
+                byte b = data.get(i);
+                if (b == '.' && decimals < 0) {
+                    decimals = 0;
+                } else if (b >= '0' && b <= '9' && decimals < 2 && ++digits <= MAX_CHARGE_DIGITS) {
+                    cents = cents * 10 + (b - '0');
+                    if (decimals >= 0) {
+                        decimals++;
+                    }
+                } else {
+                    throw error("invalid daily charge");
+                }
+            }
+            if (fieldStart[field] == fieldEnd[field] || decimals == 0) {
+                throw error("invalid daily charge");
+            }
+            try {
+                for (int i = Math.max(decimals, 0); i < 2; i++) {
+                    cents = Math.multiplyExact(cents, 10);
+                }
+            } catch (ArithmeticException e) {
+                throw error("invalid daily charge");
+            }
+            return cents;
+        }
+
+        private boolean flag(int field) {
+            int length = fieldEnd[field] - fieldStart[field];
+            byte first = length > 0 ? (byte) Character.toLowerCase(data.get(fieldStart[field])) : 0;
+            if ((first == 't' && matches(field, "true")) || (first == 'y' && matches(field, "yes"))) {
+                return true;
+            }
+            if ((first == 'f' && matches(field, "false")) || (first == 'n' && matches(field, "no"))) {
+                return false;
+            }
+            throw error("invalid charge flag");
+        }
+
+        private boolean matches(int field, String word) {
+            if (fieldEnd[field] - fieldStart[field] != word.length()) {
+                return false;
+            }
+            for (int i = 0; i < word.length(); i++) {
+                if (Character.toLowerCase(data.get(fieldStart[field] + i)) != word.charAt(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private IllegalArgumentException error(String message) {
+            return new IllegalArgumentException("Invalid tool type file, line " + lineNumber + ": " + message);
+        }
+    }
+}
@@ -0,0 +1,154 @@
+import org.junit.Test;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ToolTypeRegistryTest {
+
+    private static Path writeTypes(String content) throws IOException {
+        Path file = Files.createTempFile("tool-types", ".csv");
+        file.toFile().deleteOnExit();
+        Files.writeString(file, content);
+        return file;
+    }
+
+    @Test
+    public void testBundledFileMatchesBuiltInTypes() throws IOException {
+        ToolTypeRegistry.Snapshot loaded = ToolTypeRegistry.load(Path.of("data/tool-types.csv")).getSnapshot();
+        ToolTypeRegistry.Snapshot builtIn = ToolTypeRegistry.builtIn().getSnapshot();
+        assertEquals(builtIn.size(), loaded.size());
+        for (int id = 0; id < builtIn.size(); id++) {
+            int loadedId = loaded.getTypeId(builtIn.getTypeName(id));
+            assertEquals(builtIn.getDailyChargeCents(id), loaded.getDailyChargeCents(loadedId));
+            assertEquals(builtIn.isWeekdayCharge(id), loaded.isWeekdayCharge(loadedId));
+            assertEquals(builtIn.isWeekendCharge(id), loaded.isWeekendCharge(loadedId));
+            assertEquals(builtIn.isHolidayCharge(id), loaded.isHolidayCharge(loadedId));
+        }
+    }
+
+    @Test
+    public void testParsesChargesAndFlags() throws IOException {
+        ToolTypeRegistry registry = ToolTypeRegistry.load(writeTypes(
+            "type,dailyCharge,weekdayCharge,weekendCharge,holidayCharge\r\n" +
+            "\r\n" +
+            "# comment\r\n" +
+            "Pressure Washer, 12.5 ,yes,No,TRUE\r\n" +
+            "Trowel,3,true,true,true"));
+        ToolTypeRegistry.Snapshot snapshot = registry.getSnapshot();
+        int washer = registry.getTypeId("Pressure Washer");
+        assertEquals(2, snapshot.size());
+        assertEquals(1250, snapshot.getDailyChargeCents(washer));
+        assertTrue(snapshot.isWeekdayCharge(washer));
+        assertFalse(snapshot.isWeekendCharge(washer));
+        assertTrue(snapshot.isHolidayCharge(washer));
+        assertEquals(300, registry.getAttributes("Trowel").getDailyChargeMoney().getCents());
+        assertEquals(-1, registry.getTypeId("Ladder"));
+    }
+
+    @Test
+    public void testReloadSwapsSnapshotAndKeepsOldOnError() throws IOException {
+        String header = "type,dailyCharge,weekdayCharge,weekendCharge,holidayCharge\n";
+        Path file = writeTypes(header + "Ladder,1.99,true,true,false\n");
+        ToolTypeRegistry registry = ToolTypeRegistry.load(file);
+        int[] reloads = new int[1];
+        registry.addReloadListener(() -> reloads[0]++);
+
+        Files.writeString(file, header + "Ladder,2.49,true,true,false\nAuger,9.00,true,false,false\n");
+        registry.reload(file);
+        assertEquals(249, registry.getAttributes("Ladder").getDailyChargeMoney().getCents());
+        assertEquals(1, registry.getSnapshot().getVersion());
+        assertEquals(1, reloads[0]);
+
+        Files.writeString(file, header + "Ladder,2.499,true,true,false\n");
+        IllegalArgumentException error = assertThrows(IllegalArgumentException.class, () -> registry.reload(file));
+        assertEquals("Invalid tool type file, line 2: invalid daily charge", error.getMessage());
+        assertEquals(249, registry.getAttributes("Ladder").getDailyChargeMoney().getCents());
+        assertEquals(1, reloads[0]);
+    }
+
+    @Test
+    public void testRejectsChargesTooLargeForCents() throws IOException {
+        String header = "type,dailyCharge,weekdayCharge,weekendCharge,holidayCharge\n";
+        for (String charge : new String[] {"922337203685477580", "12345678901234567890", "9999999999999999.999"}) {
+            Path file = writeTypes(header + "Ladder," + charge + ",true,true,false\n");
+            IllegalArgumentException error = assertThrows(IllegalArgumentException.class, () -> ToolTypeRegistry.load(file));
+            assertEquals("Invalid tool type file, line 2: invalid daily charge", error.getMessage());
+        }
+        ToolTypeRegistry registry = ToolTypeRegistry.load(writeTypes(header + "Ladder,9999999999999999.99,true,true,false\n"));
+        assertEquals(999999999999999999L, registry.getSnapshot().getDailyChargeCents(registry.getTypeId("Ladder")));
+    }
+
+    @Test
+    public void testReloadRepricesExistingTools() throws Exception {
+        String header = "type,dailyCharge,weekdayCharge,weekendCharge,holidayCharge\n";
+        Path file = writeTypes(header + "Ladder,1.99,true,true,false\n");
+        ToolTypeRegistry registry = ToolTypeRegistry.load(file);
+        Tool ladder = new Tool("LADW", "Ladder", "Werner", registry);
+        assertEquals(199, ladder.getDailyChargeMoney().getCents());
+
+        Files.writeString(file, header + "Ladder,2.49,true,false,true\n");
+        registry.reload(file);
+        assertEquals(249, ladder.getDailyChargeMoney().getCents());
+        assertFalse(ladder.isWeekendCharge());
+        assertTrue(ladder.isHolidayCharge());
+
+        // A reload that drops the type leaves the tool with the rates it last had
+        Files.writeString(file, header + "Auger,9.00,true,false,false\n");
+        registry.reload(file);
+        assertEquals(249, ladder.getDailyChargeMoney().getCents());
+        assertThrows(IllegalArgumentException.class, () -> new Tool("LADR", "Ladder", "Werner", registry));
+
+        // Concurrent reloads each publish a snapshot of their own
+        Thread[] reloaders = new Thread[4];
+        for (int i = 0; i < reloaders.length; i++) {
+            reloaders[i] = new Thread(() -> {
+                try {
+                    for (int j = 0; j < 25; j++) {
+                        registry.reload(file);
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            reloaders[i].start();
+        }
+        for (Thread reloader : reloaders) {
+            reloader.join();
+        }
+        assertEquals(102, registry.getSnapshot().getVersion());
+    }
+
+    @Test
+    public void testReloadLeavesIssuedAgreementsAlone() throws Exception {
+        String header = "type,dailyCharge,weekdayCharge,weekendCharge,holidayCharge\n";
+        String before = header + "Jackhammer,2.99,true,false,false\n";
+        Path file = writeTypes(before);
+        ToolTypeRegistry registry = ToolTypeRegistry.load(file);
+        Tool jackhammer = new Tool("JAKR", "Jackhammer", "Ridgid", registry);
+        LocalDate checkoutDate = LocalDate.of(2015, 7, 2);
+        RentalAgreement agreement = PricingEngine.DEFAULT.price(jackhammer, 5, 0, checkoutDate);
+        String text = agreement.generateAgreement();
+
+        Files.writeString(file, header + "Jackhammer,9.99,true,true,true\n");
+        registry.reload(file);
+        assertEquals(999, jackhammer.getDailyChargeMoney().getCents());
+        assertEquals(text, agreement.generateAgreement());
+        assertTrue(text.contains("Daily rental charge: $2.99\n"), text);
+
+        // Changes and late days are priced with the agreement's rate and flags, not the reloaded ones
+        Tool unchanged = new Tool("JAKR", "Jackhammer", "Ridgid", ToolTypeRegistry.load(writeTypes(before)));
+        RentalAgreement expected = PricingEngine.DEFAULT.price(unchanged, 6, 0, checkoutDate);
+        RentalAgreement longer = agreement.withRentalDays(6);
+        assertEquals(expected.getCharges().toString(), longer.getCharges().toString());
+        assertEquals(expected.generateAgreement(), longer.generateAgreement());
+        Settlement settlement = new SettlementEngine().settle(new RentalReturn(agreement,
+                agreement.getDueDate().plusDays(7), Money.ofCents(0)));
+        assertEquals(5 * 299, settlement.getLateChargeCents());
+
+        // New rentals get the reloaded rate
+        assertEquals(999, PricingEngine.DEFAULT.price(jackhammer, 5, 0, checkoutDate).getDailyChargeMoney().getCents());
+    }
+}